@@ -4,6 +4,7 @@ from pydantic import BaseModel
 from typing import List, Optional, Dict, Any
 from langchain_core.messages import HumanMessage, AIMessage, SystemMessage
 from app.graph.agent import agent_executor
+from app.services.context_store import chain_hash, context_store
 import json
 import asyncio
 
@@ -14,10 +15,40 @@ class ChatMessage(BaseModel):
     content: str
     content_type: Optional[str] = "text"
 
+class ContextHandle(BaseModel):
+    handle: str
+    base_count: int = 0
+    base_hash: str = ""
+    hash: str
+
 class ChatRequest(BaseModel):
     messages: List[ChatMessage]
     user_id: Optional[str] = None
     stream: bool = True
+    # 有值时 messages 只包含句柄之后新增的消息（base_count=0 表示全量发送并建立句柄）
+    context: Optional[ContextHandle] = None
+
+def resolve_context(request: ChatRequest) -> List[ChatMessage]:
+    """
+    还原本轮完整上下文并更新句柄；句柄失效或哈希不一致时返回 409，后端会全量重发
+    """
+    ctx = request.context
+    if ctx.base_count > 0:
+        base = context_store.get(ctx.handle, ctx.base_count, ctx.base_hash)
+        if base is None:
+            raise HTTPException(status_code=409, detail="context_miss")
+    else:
+        base = []
+
+    digest = ctx.base_hash if ctx.base_count > 0 else ""
+    for msg in request.messages:
+        digest = chain_hash(digest, msg.role, msg.content_type, msg.content)
+    if digest != ctx.hash:
+        raise HTTPException(status_code=409, detail="context_miss")
+
+    messages = base + list(request.messages)
+    context_store.put(ctx.handle, messages, digest)
+    return messages
 
 def format_sse(data: str, event: str = None) -> str:
     msg = f"data: {data}\n\n"
@@ -32,9 +63,16 @@ async def chat_completions(request: ChatRequest):
     Compatible with Coze-like message structure.
     """
     
+    messages = request.messages
+    headers = {}
+    if request.context is not None:
+        messages = resolve_context(request)
+        # 回传哈希表示已保存本轮完整上下文，后端下一轮可以只发新增消息
+        headers["X-Context-Hash"] = request.context.hash
+
     # Convert messages to LangChain format
     lc_messages = []
-    for msg in request.messages:
+    for msg in messages:
         content = msg.content
         
         # Handle object_string content type (Coze format for files)
@@ -135,7 +173,7 @@ async def chat_completions(request: ChatRequest):
             yield format_sse(error_payload)
 
     if request.stream:
-        return StreamingResponse(event_generator(), media_type="text/event-stream")
+        return StreamingResponse(event_generator(), media_type="text/event-stream", headers=headers)
     else:
         # Non-streaming implementation
         result = await agent_executor.ainvoke(inputs)
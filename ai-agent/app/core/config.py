@@ -32,6 +32,11 @@ class Settings(BaseSettings):
     R2_CONNECT_TIMEOUT: int = 10    # R2 连接超时（秒）
     R2_READ_TIMEOUT: int = 60       # R2 读取超时（秒）
     
+    # 会话上下文句柄（后端只发送新增消息时使用）
+    # 句柄保存在进程内存中：仅在单 worker 部署时让后端开启 AGENT_STATEFUL_CONTEXT_ENABLED
+    CONTEXT_STORE_MAX_HANDLES: int = 1000   # 最多保留的会话上下文数
+    CONTEXT_STORE_TTL_SECONDS: int = 3600   # 句柄闲置多久后失效（秒）
+    
     # App
     APP_NAME: str = "Legal AI Agent"
     API_V1_STR: str = "/v1"
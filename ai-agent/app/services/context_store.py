@@ -0,0 +1,55 @@
+import hashlib
+import time
+from collections import OrderedDict
+from typing import List, Optional, Tuple
+
+from app.core.config import get_settings
+
+settings = get_settings()
+
+
+def chain_hash(previous: str, role: str, content_type: Optional[str], content: str) -> str:
+    """
+    链式哈希：h(i) = sha256(h(i-1) \\0 role \\0 content_type \\0 content)，h(0) 为空串。
+    必须与后端 AgentContextHandles.chain 保持一致。
+    """
+    digest = hashlib.sha256()
+    digest.update(previous.encode("ascii"))
+    for part in (role or "", content_type or "text", content or ""):
+        digest.update(b"\0")
+        digest.update(part.encode("utf-8"))
+    return digest.hexdigest()
+
+
+class ContextStore:
+    """
+    按会话句柄保存后端已发送过的上下文消息（进程内 LRU + 闲置过期）。
+
+    后端只发送句柄之后新增的消息；句柄不存在、前缀哈希对不上时由调用方返回 409，后端随即全量重发。
+    """
+
+    def __init__(self, max_handles: int, ttl_seconds: int):
+        self.max_handles = max_handles
+        self.ttl_seconds = ttl_seconds
+        self._entries: "OrderedDict[str, Tuple[list, str, float]]" = OrderedDict()
+
+    def get(self, handle: str, base_count: int, base_hash: str) -> Optional[list]:
+        entry = self._entries.get(handle)
+        if entry is None:
+            return None
+        messages, digest, touched = entry
+        if time.monotonic() - touched > self.ttl_seconds:
+            del self._entries[handle]
+            return None
+        if len(messages) != base_count or digest != base_hash:
+            return None
+        return list(messages)
+
+    def put(self, handle: str, messages: List, digest: str) -> None:
+        self._entries[handle] = (list(messages), digest, time.monotonic())
+        self._entries.move_to_end(handle)
+        while len(self._entries) > self.max_handles:
+            self._entries.popitem(last=False)
+
+
+context_store = ContextStore(settings.CONTEXT_STORE_MAX_HANDLES, settings.CONTEXT_STORE_TTL_SECONDS)
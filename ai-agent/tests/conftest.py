@@ -0,0 +1,26 @@
+"""pytest 公共配置：不依赖真实的 .env、LLM 与外部服务"""
+import os
+import sys
+import types
+
+# Add parent directory to path
+AGENT_ROOT = os.path.dirname(os.path.dirname(os.path.abspath(__file__)))
+sys.path.insert(0, AGENT_ROOT)
+
+# Settings 中没有默认值的字段，测试里给占位值即可
+for _name in (
+    "LLM_API_KEY", "LLM_API_BASE", "LLM_MODEL", "EMBEDDING_API_KEY",
+    "CF_ACCOUNT_ID", "CF_API_TOKEN",
+    "R2_ACCESS_KEY_ID", "R2_SECRET_ACCESS_KEY", "R2_ENDPOINT_URL", "R2_BUCKET_NAME", "R2_PUBLIC_URL",
+):
+    os.environ.setdefault(_name, "test")
+
+# app/api/__init__.py 会导入全部路由（文件、知识库等依赖外部服务），这里只登记包路径，按需导入子模块
+_api_package = types.ModuleType("app.api")
+_api_package.__path__ = [os.path.join(AGENT_ROOT, "app", "api")]
+sys.modules.setdefault("app.api", _api_package)
+
+# app.api.chat 导入时会构建 LangGraph agent（需要 LLM 与向量库），测试只用到其中的纯函数
+_agent_stub = types.ModuleType("app.graph.agent")
+_agent_stub.agent_executor = None
+sys.modules.setdefault("app.graph.agent", _agent_stub)
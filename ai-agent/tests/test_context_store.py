@@ -0,0 +1,107 @@
+import pytest
+from fastapi import HTTPException
+
+from app.api.chat import ChatMessage, ChatRequest, ContextHandle, resolve_context
+from app.services import context_store as context_store_module
+from app.services.context_store import ContextStore, chain_hash
+
+
+def chain(messages, previous=""):
+    digest = previous
+    for role, content in messages:
+        digest = chain_hash(digest, role, None, content)
+    return digest
+
+
+def request(handle, messages, base_count=0, base_hash="", digest=None):
+    return ChatRequest(
+        messages=[ChatMessage(role=role, content=content) for role, content in messages],
+        context=ContextHandle(handle=handle, base_count=base_count, base_hash=base_hash,
+                              hash=digest if digest is not None else chain(messages, base_hash)),
+    )
+
+
+@pytest.fixture(autouse=True)
+def fresh_store(monkeypatch):
+    store = ContextStore(max_handles=2, ttl_seconds=60)
+    monkeypatch.setattr("app.api.chat.context_store", store)
+    return store
+
+
+def test_chain_hash_matches_backend():
+    # 与后端 AgentServiceContextHandleTest.chainHash_matchesAgentImplementation 固定的值一致
+    first = chain_hash("", "user", "text", "押金不退怎么办？")
+    assert first == "58207cbdc95906f08eb78717c19fd9d8d26b7855525fd0a49cc70154e749f829"
+    # content_type 缺省按 text 计算
+    assert chain_hash(first, "assistant", None, "可以起诉。") == \
+        "438a62ec93823ea21ccfc3c8286210a5290fa4f48c91b33fff199509dac0a127"
+
+
+def test_chain_hash_separates_fields():
+    assert chain_hash("", "user", "text", "ab") != chain_hash("", "user", "texta", "b")
+
+
+def test_store_rejects_unknown_mismatched_and_expired_handles(monkeypatch):
+    now = [1000.0]
+    monkeypatch.setattr(context_store_module.time, "monotonic", lambda: now[0])
+    store = ContextStore(max_handles=10, ttl_seconds=60)
+    store.put("s1", ["m1", "m2"], "h2")
+
+    assert store.get("missing", 2, "h2") is None
+    assert store.get("s1", 1, "h2") is None
+    assert store.get("s1", 2, "other") is None
+    assert store.get("s1", 2, "h2") == ["m1", "m2"]
+
+    now[0] += 61
+    assert store.get("s1", 2, "h2") is None
+
+
+def test_store_evicts_least_recently_used_handle():
+    store = ContextStore(max_handles=2, ttl_seconds=60)
+    store.put("a", ["1"], "ha")
+    store.put("b", ["1"], "hb")
+    store.put("a", ["1", "2"], "ha2")
+    store.put("c", ["1"], "hc")
+
+    assert store.get("b", 1, "hb") is None
+    assert store.get("a", 2, "ha2") == ["1", "2"]
+    assert store.get("c", 1, "hc") == ["1"]
+
+
+def test_resolve_context_full_send_then_incremental_turn():
+    first_turn = [("user", "押金不退怎么办？")]
+    full = resolve_context(request("s1", first_turn))
+    assert [m.content for m in full] == ["押金不退怎么办？"]
+
+    base_hash = chain(first_turn)
+    next_turn = [("assistant", "可以起诉。"), ("user", "需要什么证据？")]
+    resolved = resolve_context(request("s1", next_turn, base_count=1, base_hash=base_hash))
+
+    assert [m.content for m in resolved] == ["押金不退怎么办？", "可以起诉。", "需要什么证据？"]
+    assert resolved[-1].role == "user"
+
+
+def test_resolve_context_unknown_handle_is_409():
+    with pytest.raises(HTTPException) as error:
+        resolve_context(request("never-seen", [("user", "hi")], base_count=3, base_hash="abc"))
+    assert error.value.status_code == 409
+
+
+def test_resolve_context_prefix_changed_is_409():
+    resolve_context(request("s1", [("user", "q1")]))
+
+    # 后端认为的前缀（例如被摘要替换）与 Agent 保存的不同
+    stale_base = chain([("user", "q1-edited")])
+    with pytest.raises(HTTPException) as error:
+        resolve_context(request("s1", [("user", "q2")], base_count=1, base_hash=stale_base))
+    assert error.value.status_code == 409
+
+
+def test_resolve_context_hash_mismatch_is_409_and_keeps_previous_state(fresh_store):
+    resolve_context(request("s1", [("user", "q1")]))
+    base_hash = chain([("user", "q1")])
+
+    with pytest.raises(HTTPException) as error:
+        resolve_context(request("s1", [("user", "q2")], base_count=1, base_hash=base_hash, digest="corrupted"))
+    assert error.value.status_code == 409
+    assert [m.content for m in fresh_store.get("s1", 1, base_hash)] == ["q1"]
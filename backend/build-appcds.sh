@@ -0,0 +1,40 @@
+#!/usr/bin/env bash
+# 构建 AppCDS 归档：打包 -> 解压 fat jar -> 以 prod,fast-startup 训练运行一次（就绪即退出）-> 生成 target/cds/app.jsa
+#
+# 需要 JDK 13+（-XX:ArchiveClassesAtExit）。训练运行时若能连上数据库，
+# 传入 CDS_VALIDATE_SCHEMA=true 让 Hibernate 在这里做一次 ddl-auto=validate，副本启动时不再重复校验。
+set -euo pipefail
+
+cd "$(dirname "$0")"
+
+OUT=target/cds
+MVN=${MVN:-mvn}
+
+if [ "${SKIP_PACKAGE:-false}" != "true" ]; then
+  "$MVN" -B -q -DskipTests package
+fi
+
+JAR=$(ls target/*.jar | grep -v -- '-plain.jar$' | head -n 1)
+rm -rf "$OUT"
+mkdir -p "$OUT/app"
+(cd "$OUT/app" && jar -xf "../../../$JAR")
+
+# CDS 只接受 jar 形式的 classpath，BOOT-INF/classes 需要重新打成 jar
+jar -cf "$OUT/app-classes.jar" -C "$OUT/app/BOOT-INF/classes" .
+CLASSPATH="$OUT/app-classes.jar"
+for lib in "$OUT"/app/BOOT-INF/lib/*.jar; do
+  CLASSPATH="$CLASSPATH:$lib"
+done
+echo "$CLASSPATH" > "$OUT/classpath.txt"
+
+TRAINING_ARGS=(--spring.profiles.active=prod,fast-startup --app.startup.exit-on-ready=true)
+if [ "${CDS_VALIDATE_SCHEMA:-false}" = "true" ]; then
+  TRAINING_ARGS+=(--spring.jpa.hibernate.ddl-auto=validate)
+fi
+
+java -XX:ArchiveClassesAtExit="$OUT/app.jsa" -cp "$CLASSPATH" com.equivocal.EquivocalApplication "${TRAINING_ARGS[@]}"
+
+echo
+echo "AppCDS 归档已生成：$OUT/app.jsa"
+echo "启动命令："
+echo "  java -XX:SharedArchiveFile=$OUT/app.jsa -cp \$(cat $OUT/classpath.txt) com.equivocal.EquivocalApplication --spring.profiles.active=prod,fast-startup"
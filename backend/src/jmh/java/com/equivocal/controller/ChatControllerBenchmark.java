@@ -0,0 +1,47 @@
+package com.equivocal.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式聊天中逐事件解析 JSON 并累积回复内容（每个 token 事件执行一次）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class ChatControllerBenchmark {
+
+    private static final String CONTENT_EVENT = "{\"type\":\"content\",\"content\":\"根据《民法典》第五百七十七条\"}";
+    private static final String TOOL_EVENT = "{\"type\":\"tool_call\",\"name\":\"search_law\",\"args\":{\"q\":\"押金\"}}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private StringBuilder fullResponse;
+
+    @Setup
+    public void setUp() {
+        fullResponse = new StringBuilder();
+    }
+
+    @Benchmark
+    public int accumulateContentEvent() {
+        if (fullResponse.length() > 1 << 16) {
+            fullResponse.setLength(0);
+        }
+        ChatController.accumulateContent(objectMapper, CONTENT_EVENT, fullResponse);
+        return fullResponse.length();
+    }
+
+    @Benchmark
+    public int accumulateNonContentEvent() {
+        ChatController.accumulateContent(objectMapper, TOOL_EVENT, fullResponse);
+        return fullResponse.length();
+    }
+}
@@ -0,0 +1,72 @@
+package com.equivocal.controller;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 聊天请求体解析：旧格式（完整 messages 列表）与 v2（只含新消息）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ChatRequestParsingBenchmark {
+
+    private static final String TURN = "根据《民法典》第五百七十七条的规定，当事人一方不履行合同义务或者履行合同义务不符合约定的，"
+            + "应当承担继续履行、采取补救措施或者赔偿损失等违约责任。";
+
+    /**
+     * 会话中已有的消息条数（旧格式每轮都会重新上传）
+     */
+    @Param({"10", "100", "500"})
+    public int historySize;
+
+    private ObjectReader reader;
+    private byte[] legacyBody;
+    private byte[] leanBody;
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        reader = objectMapper.readerFor(ChatController.ChatRequest.class);
+
+        ObjectNode legacy = objectMapper.createObjectNode().put("sessionId", "session_1");
+        ArrayNode messages = legacy.putArray("messages");
+        for (int i = 0; i < historySize; i++) {
+            messages.addObject()
+                    .put("role", i % 2 == 0 ? "user" : "assistant")
+                    .put("content", TURN)
+                    .put("content_type", "text");
+        }
+        messages.addObject().put("role", "user").put("content", "押金不退怎么办？").put("content_type", "text");
+        legacyBody = objectMapper.writeValueAsBytes(legacy);
+
+        ObjectNode lean = objectMapper.createObjectNode().put("version", 2).put("sessionId", "session_1");
+        lean.putObject("message").put("content", "押金不退怎么办？").put("content_type", "text");
+        leanBody = objectMapper.writeValueAsBytes(lean);
+    }
+
+    @Benchmark
+    public ChatController.ChatInput parseLegacy() throws Exception {
+        ChatController.ChatRequest request = reader.readValue(legacyBody);
+        return request.latestUserMessage();
+    }
+
+    @Benchmark
+    public ChatController.ChatInput parseLean() throws Exception {
+        ChatController.ChatRequest request = reader.readValue(leanBody);
+        return request.latestUserMessage();
+    }
+}
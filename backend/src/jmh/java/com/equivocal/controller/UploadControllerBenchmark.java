@@ -0,0 +1,43 @@
+package com.equivocal.controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上传文件魔数校验
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class UploadControllerBenchmark {
+
+    @Param({"application/pdf", "image/png", "application/msword"})
+    private String contentType;
+
+    private byte[] header;
+
+    @Setup
+    public void setUp() {
+        if ("application/pdf".equals(contentType)) {
+            header = "%PDF-1.7".getBytes(StandardCharsets.US_ASCII);
+        } else if ("image/png".equals(contentType)) {
+            header = new byte[]{(byte) 0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A};
+        } else {
+            header = new byte[]{(byte) 0xD0, (byte) 0xCF, 0x11, (byte) 0xE0, (byte) 0xA1, (byte) 0xB1, 0x1A, (byte) 0xE1};
+        }
+    }
+
+    @Benchmark
+    public boolean hasValidSignature() {
+        return UploadController.hasValidSignature(contentType, header);
+    }
+}
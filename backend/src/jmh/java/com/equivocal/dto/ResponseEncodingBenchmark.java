@@ -0,0 +1,116 @@
+package com.equivocal.dto;
+
+import com.equivocal.config.JacksonConfig;
+import com.equivocal.entity.ChatMessage;
+import com.equivocal.entity.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消息历史与管理端用户列表的 JSON / CBOR / Smile 编码耗时。编码器取自 JacksonConfig 的转换器，
+ * 与线上协商得到的完全一致。各编码的相对大小由 JacksonConfigBinaryFormatsTest 断言
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ResponseEncodingBenchmark {
+
+    private static final String QUESTION = "我和房东签了两年的租赁合同，现在房东要提前收回房屋，押金也不退，"
+            + "还说我损坏了家具要扣钱。我应该怎么维权？需要准备哪些证据？";
+
+    private static final String ANSWER = "根据您描述的情况，可以从以下几个方面分析：\n\n"
+            + "一、房东提前收回房屋属于违约。《中华人民共和国民法典》第七百零三条规定，租赁合同是出租人将租赁物交付承租人使用、"
+            + "收益，承租人支付租金的合同。第五百七十七条规定，当事人一方不履行合同义务或者履行合同义务不符合约定的，"
+            + "应当承担继续履行、采取补救措施或者赔偿损失等违约责任。\n\n"
+            + "二、押金应当返还。押金属于担保性质的款项，租赁关系终止后，除用于抵扣欠付租金或实际损失外，出租人应当返还剩余部分。"
+            + "房东主张家具损坏，应当就损坏事实、与您使用行为之间的因果关系以及损失金额承担举证责任；"
+            + "《民法典》第七百一十条规定，承租人按照约定的方法或者根据租赁物的性质使用租赁物，致使租赁物受到损耗的，不承担赔偿责任。\n\n"
+            + "三、建议准备的证据：1. 租赁合同原件及押金、租金支付凭证；2. 入住时的房屋交接清单或照片；"
+            + "3. 与房东沟通的聊天记录、通话录音；4. 退房时的房屋现状照片或视频。\n\n"
+            + "四、维权途径：可以先与房东协商，协商不成可向房屋所在地的人民调解委员会申请调解，"
+            + "或向房屋所在地人民法院提起诉讼，要求返还押金并赔偿因提前解约造成的搬家费用等损失。";
+
+    @Param({"20", "200"})
+    public int size;
+
+    private ObjectMapper jsonMapper;
+    private ObjectMapper cborMapper;
+    private ObjectMapper smileMapper;
+    private MessageListResponse messages;
+    private UserPageResponse users;
+
+    @Setup
+    public void setUp() throws Exception {
+        JacksonConfig config = new JacksonConfig();
+        jsonMapper = builder().build();
+        cborMapper = config.cborHttpMessageConverter(builder()).getObjectMapper();
+        smileMapper = config.smileHttpMessageConverter(builder()).getObjectMapper();
+
+        LocalDateTime now = LocalDateTime.now();
+        List<ChatMessage> chatMessages = new ArrayList<>();
+        List<UserView> userViews = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            boolean user = i % 2 == 0;
+            chatMessages.add(ChatMessage.builder().id((long) i).sessionId("session_8f14e45fceea167a5a36dedd4bea2543")
+                    .role(user ? "user" : "assistant")
+                    .content(user ? QUESTION : ANSWER)
+                    .contentType("text").createdAt(now.plusSeconds(i)).build());
+            userViews.add(UserView.of(User.builder().id("user_" + i).email("user" + i + "@example.com")
+                    .password("x").role(1).emailVerified(i % 3 != 0).createdAt(now).updatedAt(now).build()));
+        }
+        messages = new MessageListResponse(MessageView.ofAll(chatMessages));
+        users = new UserPageResponse(userViews, size, 1, size, 1);
+    }
+
+    @Benchmark
+    public byte[] messagesJson() throws Exception {
+        return jsonMapper.writeValueAsBytes(messages);
+    }
+
+    @Benchmark
+    public byte[] messagesCbor() throws Exception {
+        return cborMapper.writeValueAsBytes(messages);
+    }
+
+    @Benchmark
+    public byte[] messagesSmile() throws Exception {
+        return smileMapper.writeValueAsBytes(messages);
+    }
+
+    @Benchmark
+    public byte[] usersJson() throws Exception {
+        return jsonMapper.writeValueAsBytes(users);
+    }
+
+    @Benchmark
+    public byte[] usersCbor() throws Exception {
+        return cborMapper.writeValueAsBytes(users);
+    }
+
+    @Benchmark
+    public byte[] usersSmile() throws Exception {
+        return smileMapper.writeValueAsBytes(users);
+    }
+
+    // 与 Spring Boot 注入的 Jackson2ObjectMapperBuilder 配置一致
+    private static Jackson2ObjectMapperBuilder builder() {
+        return Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .modulesToInstall(new BlackbirdModule());
+    }
+}
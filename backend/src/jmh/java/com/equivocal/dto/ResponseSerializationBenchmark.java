@@ -0,0 +1,126 @@
+package com.equivocal.dto;
+
+import com.equivocal.entity.ChatMessage;
+import com.equivocal.entity.ChatSession;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 会话列表与消息列表的响应构建 + 序列化：手写 HashMap（旧实现）对比类型化 DTO，
+ * 以及 DTO 叠加 Blackbird。每次分配量用 -Pbenchmark,benchmark-profilers 查看 gc.alloc.rate.norm
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ResponseSerializationBenchmark {
+
+    @Param({"20", "200"})
+    public int size;
+
+    private ObjectMapper plainMapper;
+    private ObjectMapper blackbirdMapper;
+    private List<ChatSession> sessions;
+    private List<ChatMessage> messages;
+
+    @Setup
+    public void setUp() {
+        // 与 Spring Boot 的默认配置一致（JavaTimeModule、日期输出为 ISO 字符串）
+        plainMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+        blackbirdMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+        blackbirdMapper.registerModule(new BlackbirdModule());
+
+        LocalDateTime now = LocalDateTime.now();
+        sessions = new ArrayList<>();
+        messages = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            sessions.add(ChatSession.builder().id("session_" + i).userId("user_1")
+                    .title("房屋租赁押金纠纷 " + i).createdAt(now).updatedAt(now).build());
+            messages.add(ChatMessage.builder().id((long) i).sessionId("session_1")
+                    .role(i % 2 == 0 ? "user" : "assistant")
+                    .content("根据《民法典》第五百七十七条的规定，当事人一方不履行合同义务的，应当承担违约责任。" + i)
+                    .contentType("text").createdAt(now).build());
+        }
+    }
+
+    @Benchmark
+    public byte[] sessionListMap() throws Exception {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (ChatSession session : sessions) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("id", session.getId());
+            map.put("userId", session.getUserId());
+            map.put("title", session.getTitle());
+            map.put("createdAt", session.getCreatedAt());
+            map.put("updatedAt", session.getUpdatedAt());
+            list.add(map);
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("sessions", list);
+        return plainMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] sessionListDto() throws Exception {
+        return plainMapper.writeValueAsBytes(sessionListResponse());
+    }
+
+    @Benchmark
+    public byte[] sessionListDtoBlackbird() throws Exception {
+        return blackbirdMapper.writeValueAsBytes(sessionListResponse());
+    }
+
+    @Benchmark
+    public byte[] messageListMap() throws Exception {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (ChatMessage message : messages) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("id", message.getId());
+            map.put("sessionId", message.getSessionId());
+            map.put("role", message.getRole());
+            map.put("content", message.getContent());
+            map.put("createdAt", message.getCreatedAt());
+            list.add(map);
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("messages", list);
+        return plainMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] messageListDto() throws Exception {
+        return plainMapper.writeValueAsBytes(new MessageListResponse(MessageView.ofAll(messages)));
+    }
+
+    @Benchmark
+    public byte[] messageListDtoBlackbird() throws Exception {
+        return blackbirdMapper.writeValueAsBytes(new MessageListResponse(MessageView.ofAll(messages)));
+    }
+
+    private SessionListResponse sessionListResponse() {
+        List<SessionView> views = new ArrayList<>(sessions.size());
+        for (ChatSession session : sessions) {
+            views.add(SessionView.of(session));
+        }
+        return new SessionListResponse(true, views);
+    }
+}
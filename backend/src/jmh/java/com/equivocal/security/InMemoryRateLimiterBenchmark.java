@@ -0,0 +1,47 @@
+package com.equivocal.security;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 限流器在多线程下的吞吐：所有线程争用同一个 key（单一热点 IP），以及分散到大量 key
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Threads(8)
+public class InMemoryRateLimiterBenchmark {
+
+    private static final int KEY_COUNT = 5_000;
+
+    private InMemoryRateLimiter limiter;
+    private String[] keys;
+
+    @Setup
+    public void setUp() {
+        limiter = new InMemoryRateLimiter(300_000, Integer.MAX_VALUE, System::currentTimeMillis);
+        keys = new String[KEY_COUNT];
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keys[i] = "203.0.113." + i;
+        }
+    }
+
+    @Benchmark
+    public boolean sameKey() {
+        return limiter.allow("203.0.113.1");
+    }
+
+    @Benchmark
+    public boolean spreadKeys() {
+        return limiter.allow(keys[ThreadLocalRandom.current().nextInt(KEY_COUNT)]);
+    }
+}
@@ -0,0 +1,52 @@
+package com.equivocal.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 密码验证：BCrypt（cost 10）与旧版简单哈希
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class PasswordServiceBenchmark {
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    private PasswordHashExecutor executor;
+    private PasswordService passwordService;
+    private String bcryptHash;
+    private String legacyHash;
+
+    @Setup
+    public void setUp() {
+        executor = new PasswordHashExecutor(1, 1, new SimpleMeterRegistry());
+        passwordService = new PasswordService(executor);
+        bcryptHash = passwordService.hashPassword(PASSWORD);
+        legacyHash = passwordService.legacySimpleHash(PASSWORD);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public boolean verifyBcrypt() {
+        return passwordService.verifyPassword(PASSWORD, bcryptHash);
+    }
+
+    @Benchmark
+    public boolean verifyLegacy() {
+        return passwordService.verifyPassword(PASSWORD, legacyHash);
+    }
+}
@@ -0,0 +1,52 @@
+package com.equivocal.service;
+
+import com.equivocal.metrics.ChatStreamMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Agent 流式响应的逐行处理与会话标题生成
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class AgentServiceBenchmark {
+
+    private static final String CONTENT_LINE = "data: {\"type\":\"content\",\"content\":\"根据《民法典》第五百七十七条的规定，\"}";
+    private static final String DONE_LINE = "data: [DONE]";
+    private static final String TITLE_INPUT = "你好，请问房屋租赁合同到期后房东拒绝退还押金，我应该如何维权？\n补充：合同里没有约定违约金。";
+
+    private AgentService agentService;
+
+    @Setup
+    public void setUp() {
+        agentService = new AgentService(WebClient.create(), new ObjectMapper(),
+                new ChatStreamMetrics(new SimpleMeterRegistry()), new AgentContextHandles());
+    }
+
+    @Benchmark
+    public List<String> processContentLine() {
+        return agentService.processStreamLine(CONTENT_LINE).collectList().block();
+    }
+
+    @Benchmark
+    public List<String> processDoneLine() {
+        return agentService.processStreamLine(DONE_LINE).collectList().block();
+    }
+
+    @Benchmark
+    public String generateTitle() {
+        return agentService.generateTitle(TITLE_INPUT);
+    }
+}
@@ -0,0 +1,37 @@
+package com.equivocal.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地 token 估算（约 2KB 中英混合文本）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class TokenEstimatorBenchmark {
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < 2048) {
+            builder.append("根据《民法典》第五百七十七条的规定，当事人一方不履行合同义务的，应当承担违约责任。")
+                    .append("See Article 577 of the Civil Code for breach of contract liability. ");
+        }
+        text = builder.toString();
+    }
+
+    @Benchmark
+    public int estimate() {
+        return TokenEstimator.estimateText(text);
+    }
+}
@@ -0,0 +1,81 @@
+package com.equivocal.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单个操作的延迟样本与错误数；样本量为压测规模（数千级），直接保存原始值计算精确分位数
+ */
+public class LatencyRecorder {
+
+    private final String name;
+    private final List<Long> samplesNanos = Collections.synchronizedList(new ArrayList<Long>());
+    private final AtomicInteger errors = new AtomicInteger();
+    private volatile long startedAt;
+    private volatile long finishedAt;
+
+    public LatencyRecorder(String name) {
+        this.name = name;
+    }
+
+    public void start() {
+        startedAt = System.nanoTime();
+    }
+
+    public void finish() {
+        finishedAt = System.nanoTime();
+    }
+
+    public void record(long nanos) {
+        samplesNanos.add(nanos);
+    }
+
+    public void error() {
+        errors.incrementAndGet();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Map<String, Object> summary() {
+        List<Long> sorted;
+        synchronized (samplesNanos) {
+            sorted = new ArrayList<Long>(samplesNanos);
+        }
+        Collections.sort(sorted);
+
+        double wallSeconds = Math.max(1, finishedAt - startedAt) / 1_000_000_000.0;
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("operation", name);
+        summary.put("count", sorted.size());
+        summary.put("errors", errors.get());
+        summary.put("throughputPerSec", round(sorted.size() / wallSeconds));
+        summary.put("p50Ms", millis(percentile(sorted, 0.50)));
+        summary.put("p90Ms", millis(percentile(sorted, 0.90)));
+        summary.put("p99Ms", millis(percentile(sorted, 0.99)));
+        summary.put("maxMs", millis(sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1)));
+        return summary;
+    }
+
+    private static long percentile(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+
+    private static double millis(long nanos) {
+        return round(nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -0,0 +1,196 @@
+package com.equivocal.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 压测客户端：依次执行登录、会话列表、并发 SSE 聊天与文件上传，每个阶段单独统计
+ */
+@Slf4j
+public class LoadGenerator {
+
+    private final WebClient webClient;
+    private final LoadTestConfig config;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Duration timeout;
+
+    public LoadGenerator(String baseUrl, LoadTestConfig config) {
+        this.webClient = WebClient.builder()
+                .baseUrl(baseUrl)
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(4 * 1024 * 1024))
+                .build();
+        this.config = config;
+        this.timeout = Duration.ofMillis(config.getRequestTimeoutMs());
+    }
+
+    public List<LatencyRecorder> run(List<String> emails, String password) {
+        List<String> tokens = Collections.synchronizedList(new ArrayList<String>());
+
+        LatencyRecorder login = phase("auth.login", emails.size(), config.getConcurrency(),
+                i -> login(emails.get(i), password).doOnNext(tokens::add).then());
+        if (tokens.isEmpty()) {
+            throw new IllegalStateException("No user could log in; aborting load test");
+        }
+
+        // 先聊天再列会话，列表查询才有数据
+        LatencyRecorder chatFirstEvent = new LatencyRecorder("chat.first-event");
+        chatFirstEvent.start();
+        LatencyRecorder chat = phase("chat.stream", config.getChats(), config.getChatConcurrency(),
+                i -> chat(tokens.get(i % tokens.size()), i, chatFirstEvent));
+        chatFirstEvent.finish();
+
+        LatencyRecorder sessions = phase("sessions.list", config.getSessionListRequests(), config.getConcurrency(),
+                i -> listSessions(tokens.get(i % tokens.size())));
+
+        LatencyRecorder upload = phase("upload", config.getUploads(), config.getConcurrency(),
+                i -> upload(tokens.get(i % tokens.size()), i));
+
+        return Arrays.asList(login, sessions, chatFirstEvent, chat, upload);
+    }
+
+    private LatencyRecorder phase(String name, int requests, int concurrency, Function<Integer, Mono<Void>> call) {
+        LatencyRecorder recorder = new LatencyRecorder(name);
+        log.info("[LoadGenerator] Phase {}: {} requests, concurrency {}", name, requests, concurrency);
+        recorder.start();
+        Flux.range(0, requests)
+                .flatMap(i -> Mono.defer(() -> {
+                    long start = System.nanoTime();
+                    return call.apply(i)
+                            .timeout(timeout)
+                            .doOnSuccess(ignored -> recorder.record(System.nanoTime() - start))
+                            .onErrorResume(e -> {
+                                recorder.error();
+                                log.debug("[LoadGenerator] {} #{} failed: {}", name, i, e.toString());
+                                return Mono.empty();
+                            });
+                }), Math.max(1, concurrency))
+                .blockLast();
+        recorder.finish();
+        return recorder;
+    }
+
+    private Mono<String> login(String email, String password) {
+        Map<String, String> body = new HashMap<>();
+        body.put("email", email);
+        body.put("password", password);
+        return webClient.post()
+                .uri("/api/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .map(json -> {
+                    String token = json.path("token").asText(null);
+                    if (token == null) {
+                        throw new IllegalStateException("login returned no token");
+                    }
+                    return token;
+                });
+    }
+
+    private Mono<Void> listSessions(String token) {
+        return webClient.get()
+                .uri("/api/chat/sessions")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .retrieve()
+                .bodyToMono(String.class)
+                .then();
+    }
+
+    private Mono<Void> chat(String token, int index, LatencyRecorder firstEvent) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("content", "压测消息 #" + index + "：租赁合同押金如何退还？");
+        message.put("content_type", "text");
+        Map<String, Object> body = new HashMap<>();
+        body.put("version", 2);
+        body.put("message", message);
+
+        long start = System.nanoTime();
+        AtomicBoolean sawContent = new AtomicBoolean();
+        AtomicBoolean sawDone = new AtomicBoolean();
+        AtomicLong events = new AtomicLong();
+        return webClient.post()
+                .uri("/api/chat")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToFlux(String.class)
+                .doOnNext(data -> {
+                    events.incrementAndGet();
+                    String type = typeOf(data);
+                    if ("content".equals(type) && sawContent.compareAndSet(false, true)) {
+                        firstEvent.record(System.nanoTime() - start);
+                    } else if ("done".equals(type)) {
+                        sawDone.set(true);
+                    } else if ("error".equals(type)) {
+                        throw new IllegalStateException("chat stream returned error event: " + data);
+                    }
+                })
+                .then(Mono.defer(() -> {
+                    if (!sawDone.get()) {
+                        firstEvent.error();
+                        return Mono.error(new IllegalStateException("chat stream ended without done event after "
+                                + events.get() + " events"));
+                    }
+                    return Mono.<Void>empty();
+                }));
+    }
+
+    private Mono<Void> upload(String token, int index) {
+        byte[] content = new byte[config.getUploadBytes()];
+        // 每次上传内容不同，避免命中上传去重缓存
+        byte[] prefix = ("load test upload #" + index + " " + System.nanoTime() + "\n").getBytes(StandardCharsets.UTF_8);
+        Arrays.fill(content, (byte) 'x');
+        System.arraycopy(prefix, 0, content, 0, Math.min(prefix.length, content.length));
+
+        MultipartBodyBuilder multipart = new MultipartBodyBuilder();
+        multipart.part("file", new ByteArrayResource(content) {
+            @Override
+            public String getFilename() {
+                return "loadtest-" + index + ".txt";
+            }
+        }).contentType(MediaType.TEXT_PLAIN);
+
+        return webClient.post()
+                .uri("/api/upload")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(multipart.build()))
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .flatMap(json -> json.path("success").asBoolean()
+                        ? Mono.<Void>empty()
+                        : Mono.<Void>error(new IllegalStateException("upload failed: " + json)));
+    }
+
+    private String typeOf(String data) {
+        try {
+            return objectMapper.readTree(data).path("type").asText();
+        } catch (Exception e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.equivocal.loadtest;
+
+import lombok.Data;
+
+/**
+ * 压测参数，全部可通过 -Dloadtest.xxx 系统属性覆盖
+ */
+@Data
+public class LoadTestConfig {
+
+    private int users = 20;
+    private int concurrency = 16;
+    private int sessionListRequests = 200;
+    private int chats = 50;
+    private int chatConcurrency = 20;
+    private int uploads = 20;
+    private int uploadBytes = 64 * 1024;
+    private long requestTimeoutMs = 60_000;
+
+    private int stubPort = 0;
+    private int stubTokens = 40;
+    private long stubFirstTokenMs = 150;
+    private long stubTokenIntervalMs = 15;
+    private long stubUploadLatencyMs = 80;
+    private double stubErrorRate = 0.0;
+
+    private String reportFile = "target/loadtest-report.json";
+
+    public static LoadTestConfig fromSystemProperties() {
+        LoadTestConfig config = new LoadTestConfig();
+        config.setUsers(Integer.getInteger("loadtest.users", config.getUsers()));
+        config.setConcurrency(Integer.getInteger("loadtest.concurrency", config.getConcurrency()));
+        config.setSessionListRequests(Integer.getInteger("loadtest.session-list-requests", config.getSessionListRequests()));
+        config.setChats(Integer.getInteger("loadtest.chats", config.getChats()));
+        config.setChatConcurrency(Integer.getInteger("loadtest.chat-concurrency", config.getChatConcurrency()));
+        config.setUploads(Integer.getInteger("loadtest.uploads", config.getUploads()));
+        config.setUploadBytes(Integer.getInteger("loadtest.upload-bytes", config.getUploadBytes()));
+        config.setRequestTimeoutMs(Long.getLong("loadtest.request-timeout-ms", config.getRequestTimeoutMs()));
+        config.setStubPort(Integer.getInteger("loadtest.stub.port", config.getStubPort()));
+        config.setStubTokens(Integer.getInteger("loadtest.stub.tokens", config.getStubTokens()));
+        config.setStubFirstTokenMs(Long.getLong("loadtest.stub.first-token-ms", config.getStubFirstTokenMs()));
+        config.setStubTokenIntervalMs(Long.getLong("loadtest.stub.token-interval-ms", config.getStubTokenIntervalMs()));
+        config.setStubUploadLatencyMs(Long.getLong("loadtest.stub.upload-latency-ms", config.getStubUploadLatencyMs()));
+        config.setStubErrorRate(Double.parseDouble(System.getProperty("loadtest.stub.error-rate",
+                String.valueOf(config.getStubErrorRate()))));
+        config.setReportFile(System.getProperty("loadtest.report-file", config.getReportFile()));
+        return config;
+    }
+}
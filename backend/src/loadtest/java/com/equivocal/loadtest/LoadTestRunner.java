@@ -0,0 +1,133 @@
+package com.equivocal.loadtest;
+
+import com.equivocal.EquivocalApplication;
+import com.equivocal.entity.User;
+import com.equivocal.repository.UserRepository;
+import com.equivocal.security.PasswordService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 单机离线压测入口：启动桩 Agent、以 loadtest profile（内存 H2）启动后端、预置用户，然后执行 {@link LoadGenerator}。
+ *
+ * ./mvnw -Ploadtest -DskipTests verify -Dloadtest.chats=200 -Dloadtest.chat-concurrency=50
+ */
+@Slf4j
+public class LoadTestRunner {
+
+    private static final String PASSWORD = "loadtest-password";
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.fromSystemProperties();
+        StubAgentServer agent = StubAgentServer.start(config);
+        ConfigurableApplicationContext app = null;
+        try {
+            // 以命令行参数传入，优先级高于 application.yml 中的环境变量占位符
+            List<String> appArgs = new ArrayList<>(Arrays.asList(args));
+            appArgs.add("--server.port=0");
+            appArgs.add("--agent.api-url=" + agent.baseUrl());
+            // 每次运行随机生成，不落盘
+            appArgs.add("--jwt.secret=" + randomSecret());
+            app = new SpringApplicationBuilder(EquivocalApplication.class)
+                    .profiles("loadtest")
+                    .run(appArgs.toArray(new String[0]));
+            int port = app.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+
+            List<String> emails = seedUsers(app, config.getUsers());
+            LoadGenerator generator = new LoadGenerator("http://127.0.0.1:" + port, config);
+
+            long started = System.currentTimeMillis();
+            List<LatencyRecorder> results = generator.run(emails, PASSWORD);
+            long elapsedMs = System.currentTimeMillis() - started;
+
+            report(config, agent, results, elapsedMs);
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+            agent.stop();
+        }
+    }
+
+    private static List<String> seedUsers(ConfigurableApplicationContext app, int count) {
+        UserRepository userRepository = app.getBean(UserRepository.class);
+        // 所有压测用户共用一个哈希，预置阶段只需计算一次 BCrypt
+        String hash = app.getBean(PasswordService.class).hashPassword(PASSWORD);
+        List<User> users = new ArrayList<>();
+        List<String> emails = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String email = "loadtest-" + i + "@example.com";
+            emails.add(email);
+            users.add(User.builder()
+                    .id("user_" + UUID.randomUUID().toString().replace("-", ""))
+                    .email(email)
+                    .password(hash)
+                    .role(1)
+                    .emailVerified(true)
+                    .createdAt(LocalDateTime.now())
+                    .updatedAt(LocalDateTime.now())
+                    .build());
+        }
+        userRepository.saveAll(users);
+        log.info("[LoadTestRunner] Seeded {} users", count);
+        return emails;
+    }
+
+    private static void report(LoadTestConfig config, StubAgentServer agent, List<LatencyRecorder> results,
+                               long elapsedMs) throws Exception {
+        List<Map<String, Object>> operations = new ArrayList<>();
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("%n%-18s %7s %7s %10s %9s %9s %9s %9s%n",
+                "operation", "count", "errors", "req/s", "p50(ms)", "p90(ms)", "p99(ms)", "max(ms)"));
+        for (LatencyRecorder recorder : results) {
+            Map<String, Object> summary = recorder.summary();
+            operations.add(summary);
+            table.append(String.format("%-18s %7s %7s %10s %9s %9s %9s %9s%n",
+                    summary.get("operation"), summary.get("count"), summary.get("errors"),
+                    summary.get("throughputPerSec"), summary.get("p50Ms"), summary.get("p90Ms"),
+                    summary.get("p99Ms"), summary.get("maxMs")));
+        }
+        log.info("[LoadTestRunner] Finished in {}ms{}", elapsedMs, table);
+
+        Map<String, Object> stub = new LinkedHashMap<>();
+        stub.put("chats", agent.getChats());
+        stub.put("uploads", agent.getUploads());
+        stub.put("injectedErrors", agent.getInjectedErrors());
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("config", config);
+        report.put("elapsedMs", elapsedMs);
+        report.put("operations", operations);
+        report.put("stubAgent", stub);
+
+        File file = new File(config.getReportFile());
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, report);
+        log.info("[LoadTestRunner] Report written to {}", file.getAbsolutePath());
+    }
+
+    private static String randomSecret() {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,147 @@
+package com.equivocal.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 启动基准：为每组 profile 反复冷启动一个新 JVM 运行 EquivocalApplication，就绪后立即退出，
+ * 统计就绪耗时（SpringApplication 报告值）与进程墙钟时间；设置 startup.max-ready-ms 时中位数超出即失败。
+ *
+ * ./mvnw -Pstartup-benchmark -DskipTests verify -Dstartup.runs=5 -Dstartup.max-ready-ms=8000
+ */
+@Slf4j
+public class StartupBenchmark {
+
+    private static final Pattern READY_LINE = Pattern.compile("startup-ready-ms=(\\d+), jvm-uptime-ms=(\\d+)");
+
+    public static void main(String[] args) throws Exception {
+        int runs = Integer.getInteger("startup.runs", 5);
+        long maxReadyMs = Long.getLong("startup.max-ready-ms", 0L);
+        // 多组 profile 用 ; 分隔，默认对比常规启动与 fast-startup
+        List<String> profileSets = Arrays.asList(System.getProperty("startup.profiles", "loadtest;loadtest,fast-startup").split(";"));
+        List<String> jvmArgs = splitArgs(System.getProperty("startup.jvm-args", ""));
+        String reportFile = System.getProperty("startup.report-file", "target/startup-report.json");
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        boolean regression = false;
+        for (String profiles : profileSets) {
+            List<Long> readyMs = new ArrayList<>();
+            List<Long> uptimeMs = new ArrayList<>();
+            List<Long> wallMs = new ArrayList<>();
+            for (int i = 0; i < runs; i++) {
+                long[] run = startOnce(profiles.trim(), jvmArgs);
+                readyMs.add(run[0]);
+                uptimeMs.add(run[1]);
+                wallMs.add(run[2]);
+                log.info("[StartupBenchmark] profiles={} run {}/{}: ready={}ms, jvmUptime={}ms, wall={}ms",
+                        profiles, i + 1, runs, run[0], run[1], run[2]);
+            }
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("profiles", profiles.trim());
+            result.put("runs", runs);
+            result.put("readyMedianMs", median(readyMs));
+            result.put("readyMinMs", Collections.min(readyMs));
+            result.put("readyMaxMs", Collections.max(readyMs));
+            result.put("jvmUptimeMedianMs", median(uptimeMs));
+            result.put("wallMedianMs", median(wallMs));
+            results.add(result);
+
+            if (maxReadyMs > 0 && median(readyMs) > maxReadyMs) {
+                log.error("[StartupBenchmark] profiles={} median ready {}ms exceeds budget {}ms",
+                        profiles, median(readyMs), maxReadyMs);
+                regression = true;
+            }
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("jvmArgs", jvmArgs);
+        report.put("maxReadyMs", maxReadyMs);
+        report.put("results", results);
+        File file = new File(reportFile);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, report);
+        log.info("[StartupBenchmark] {} -> {}", results, file.getAbsolutePath());
+
+        if (regression) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 返回 {就绪耗时, JVM 运行时长, 进程墙钟时间}，单位毫秒
+     */
+    private static long[] startOnce(String profiles, List<String> jvmArgs) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("com.equivocal.EquivocalApplication");
+        command.add("--spring.profiles.active=" + profiles);
+        command.add("--app.startup.exit-on-ready=true");
+        command.add("--server.port=0");
+        command.add("--jwt.secret=" + UUID.randomUUID() + UUID.randomUUID());
+        command.add("--agent.api-url=http://127.0.0.1:9/v1");
+        command.add("--logging.level.com.equivocal.metrics=INFO");
+
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        long readyMs = -1;
+        long uptimeMs = -1;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher matcher = READY_LINE.matcher(line);
+                if (matcher.find()) {
+                    readyMs = Long.parseLong(matcher.group(1));
+                    uptimeMs = Long.parseLong(matcher.group(2));
+                }
+            }
+        }
+        if (!process.waitFor(2, TimeUnit.MINUTES)) {
+            process.destroyForcibly();
+            throw new IllegalStateException("application did not exit after becoming ready: profiles=" + profiles);
+        }
+        long wallMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        if (readyMs < 0) {
+            throw new IllegalStateException("application failed to start: profiles=" + profiles
+                    + ", exit=" + process.exitValue());
+        }
+        return new long[]{readyMs, uptimeMs, wallMs};
+    }
+
+    private static long median(List<Long> values) {
+        List<Long> sorted = new ArrayList<Long>(values);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+
+    private static List<String> splitArgs(String args) {
+        List<String> result = new ArrayList<>();
+        for (String arg : args.trim().split("\\s+")) {
+            if (!arg.isEmpty()) {
+                result.add(arg);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,159 @@
+package com.equivocal.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 模拟 Python Agent 的最小 HTTP 服务，只监听回环地址。
+ *
+ * POST /v1/chat/completions 以 SSE 逐个输出 token，POST /v1/files/upload 返回固定结构的上传结果；
+ * 首 token 延迟、token 间隔、上传延迟与错误率均可配置。
+ */
+@Slf4j
+public class StubAgentServer {
+
+    private final LoadTestConfig config;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicInteger chats = new AtomicInteger();
+    private final AtomicInteger uploads = new AtomicInteger();
+    private final AtomicInteger injectedErrors = new AtomicInteger();
+
+    private StubAgentServer(LoadTestConfig config) throws IOException {
+        this.config = config;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), config.getStubPort()), 0);
+        // SSE 连接在整个流式输出期间占用一个线程
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "stub-agent-" + UUID.randomUUID().toString().substring(0, 8));
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/v1/chat/completions", this::handleChat);
+        server.createContext("/v1/files/upload", this::handleUpload);
+    }
+
+    public static StubAgentServer start(LoadTestConfig config) throws IOException {
+        StubAgentServer stub = new StubAgentServer(config);
+        stub.server.start();
+        log.info("[StubAgentServer] Listening on {}", stub.baseUrl());
+        return stub;
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+    }
+
+    public int getChats() { return chats.get(); }
+    public int getUploads() { return uploads.get(); }
+    public int getInjectedErrors() { return injectedErrors.get(); }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handleChat(HttpExchange exchange) throws IOException {
+        try {
+            drain(exchange.getRequestBody());
+            chats.incrementAndGet();
+            if (shouldFail()) {
+                respond(exchange, 500, "application/json", "{\"error\":\"injected failure\"}");
+                return;
+            }
+
+            sleep(config.getStubFirstTokenMs());
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (int i = 0; i < config.getStubTokens(); i++) {
+                    if (i > 0) {
+                        sleep(config.getStubTokenIntervalMs());
+                    }
+                    writeEvent(out, "{\"type\":\"content\",\"content\":\"token" + i + " \"}");
+                }
+                writeEvent(out, "[DONE]");
+            }
+        } catch (IOException e) {
+            // 客户端取消流时写入会失败，属于正常情况
+            log.debug("[StubAgentServer] Chat stream aborted: {}", e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleUpload(HttpExchange exchange) throws IOException {
+        try {
+            long size = drain(exchange.getRequestBody());
+            uploads.incrementAndGet();
+            if (shouldFail()) {
+                respond(exchange, 500, "application/json", "{\"error\":\"injected failure\"}");
+                return;
+            }
+            sleep(config.getStubUploadLatencyMs());
+            String id = UUID.randomUUID().toString();
+            respond(exchange, 200, "application/json",
+                    "{\"url\":\"stub://files/" + id + "\",\"filename\":\"upload-" + size + ".txt\",\"extracted_text\":\"\"}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private boolean shouldFail() {
+        if (config.getStubErrorRate() > 0 && ThreadLocalRandom.current().nextDouble() < config.getStubErrorRate()) {
+            injectedErrors.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private static void writeEvent(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static long drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            total += read;
+        }
+        return total;
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.equivocal.config;
+
+import com.equivocal.datasource.ReadReplica;
+import com.equivocal.datasource.ReadWriteRoutingDataSource;
+import com.equivocal.datasource.ReadYourWritesTracker;
+import com.equivocal.datasource.Workload;
+import com.equivocal.datasource.WorkloadPoolFilter;
+import com.equivocal.datasource.WorkloadRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.DispatcherType;
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 连接池拓扑（app.datasource.pools.enabled 或 app.datasource.replica.enabled 开启时生效）。
+ *
+ * <ul>
+ *   <li>负载隔离：主库按 {@link Workload} 拆成 auth / chat / admin 三个连接池，各自的大小与空闲策略在
+ *       app.datasource.pools.&lt;key&gt; 中覆盖 spring.datasource.hikari</li>
+ *   <li>读写分离：标注 {@link ReadReplica} 的查询读 app.datasource.replica.* 指向的只读副本</li>
+ * </ul>
+ * 连接池不注册为 Bean，避免被其他 DataSource 后处理器重复包装；指标在所有单例创建后按连接池名注册，
+ * 关闭由本配置负责。
+ */
+@Configuration
+@ConditionalOnExpression("${app.datasource.pools.enabled:false} or ${app.datasource.replica.enabled:false}")
+@Slf4j
+public class DataSourceConfig implements SmartInitializingSingleton, DisposableBean {
+
+    static final String DEFAULT_POOL_NAME = "TiDBHikariPool";
+    static final String REPLICA_POOL_SUFFIX = "-replica";
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    public DataSourceConfig(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties, Environment environment,
+                                 ReadYourWritesTracker readYourWritesTracker) {
+        Binder binder = Binder.get(environment);
+        boolean workloadPools = binder.bind("app.datasource.pools.enabled", Boolean.class).orElse(false);
+        boolean replicaEnabled = binder.bind("app.datasource.replica.enabled", Boolean.class).orElse(false);
+
+        DataSource primary;
+        if (workloadPools) {
+            Map<Workload, DataSource> workloads = new EnumMap<>(Workload.class);
+            for (Workload workload : Workload.values()) {
+                HikariDataSource pool = createPool(properties, binder, properties.determineUrl(),
+                        properties.determineUsername(), properties.determinePassword());
+                pool.setPoolName(pool.getPoolName() + "-" + workload.getKey());
+                binder.bind("app.datasource.pools." + workload.getKey(), Bindable.ofInstance(pool));
+                workloads.put(workload, pool);
+                log.info("[DataSourceConfig] Pool {}: maximumPoolSize={}, minimumIdle={}",
+                        pool.getPoolName(), pool.getMaximumPoolSize(), pool.getMinimumIdle());
+            }
+            primary = new WorkloadRoutingDataSource(workloads);
+        } else {
+            primary = createPool(properties, binder, properties.determineUrl(),
+                    properties.determineUsername(), properties.determinePassword());
+        }
+        if (!replicaEnabled) {
+            return primary;
+        }
+
+        String replicaUrl = binder.bind("app.datasource.replica.url", String.class).orElse(null);
+        if (!StringUtils.hasText(replicaUrl)) {
+            throw new IllegalStateException("app.datasource.replica.enabled=true 时必须配置 app.datasource.replica.url");
+        }
+        HikariDataSource replica = createPool(properties, binder, replicaUrl,
+                binder.bind("app.datasource.replica.username", String.class).orElse(properties.determineUsername()),
+                binder.bind("app.datasource.replica.password", String.class).orElse(properties.determinePassword()));
+        replica.setPoolName(replica.getPoolName() + REPLICA_POOL_SUFFIX);
+        binder.bind("app.datasource.replica.hikari", Bindable.ofInstance(replica));
+        replica.setReadOnly(true);
+        log.info("[DataSourceConfig] Read/write splitting enabled: replica={}", replica.getJdbcUrl());
+        return routingDataSource(primary, replica, readYourWritesTracker);
+    }
+
+    /**
+     * 路由数据源外再包一层延迟连接代理，使读写路由在第一条 SQL 执行时（只读标记已就绪）才发生
+     */
+    public static DataSource routingDataSource(DataSource primary, DataSource replica, ReadYourWritesTracker tracker) {
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy();
+        proxy.setTargetDataSource(new ReadWriteRoutingDataSource(primary, replica, tracker));
+        DataSource defaults = primary instanceof AbstractRoutingDataSource
+                ? ((AbstractRoutingDataSource) primary).getResolvedDefaultDataSource()
+                : primary;
+        if (defaults instanceof HikariDataSource) {
+            HikariDataSource hikari = (HikariDataSource) defaults;
+            // 预先给出默认值，避免启动时为探测默认属性而借出连接
+            proxy.setDefaultAutoCommit(hikari.isAutoCommit());
+            if (hikari.getTransactionIsolation() != null) {
+                proxy.setDefaultTransactionIsolationName(hikari.getTransactionIsolation());
+            }
+        }
+        proxy.afterPropertiesSet();
+        return proxy;
+    }
+
+    // 每个连接池都以 spring.datasource.hikari 为基础
+    private HikariDataSource createPool(DataSourceProperties properties, Binder binder,
+                                        String url, String username, String password) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        if (!StringUtils.hasText(pool.getPoolName())) {
+            pool.setPoolName(DEFAULT_POOL_NAME);
+        }
+        pools.add(pool);
+        return pool;
+    }
+
+    /**
+     * 为标注了 {@link ReadReplica} 的 Repository 方法设置副本读取范围
+     */
+    @Bean
+    public static BeanPostProcessor readReplicaRepositoryPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport) {
+                    ((RepositoryFactoryBeanSupport<?, ?, ?>) bean).addRepositoryFactoryCustomizer(repositoryFactory ->
+                            repositoryFactory.addRepositoryProxyPostProcessor((factory, information) -> {
+                                Class<?> repositoryInterface = information.getRepositoryInterface();
+                                ConcurrentMap<Method, Boolean> marked = new ConcurrentHashMap<>();
+                                factory.addAdvice((MethodInterceptor) invocation -> {
+                                    boolean replica = marked.computeIfAbsent(invocation.getMethod(),
+                                            method -> isReadReplica(repositoryInterface, method));
+                                    if (!replica) {
+                                        return invocation.proceed();
+                                    }
+                                    ReadWriteRoutingDataSource.beginReplicaRead();
+                                    try {
+                                        return invocation.proceed();
+                                    } finally {
+                                        ReadWriteRoutingDataSource.endReplicaRead();
+                                    }
+                                });
+                            }));
+                }
+                return bean;
+            }
+        };
+    }
+
+    // 继承自 JpaRepository 的方法（count、findAll 等）需在 Repository 接口中重新声明后标注
+    private static boolean isReadReplica(Class<?> repositoryInterface, Method method) {
+        if (method.isAnnotationPresent(ReadReplica.class)) {
+            return true;
+        }
+        try {
+            return repositoryInterface.getDeclaredMethod(method.getName(), method.getParameterTypes())
+                    .isAnnotationPresent(ReadReplica.class);
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 负载绑定过滤器排在 Spring Security 之前，JWT 认证的用户查询也走目标连接池。
+     * 处理器映射在首个请求时才取用，不提前初始化 MVC 基础设施
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.datasource.pools.enabled", havingValue = "true")
+    public FilterRegistrationBean<WorkloadPoolFilter> workloadPoolFilter(
+            @Qualifier("requestMappingHandlerMapping") ObjectProvider<HandlerMapping> handlerMapping) {
+        FilterRegistrationBean<WorkloadPoolFilter> registration =
+                new FilterRegistrationBean<>(new WorkloadPoolFilter(handlerMapping));
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 10);
+        registration.setDispatcherTypes(DispatcherType.REQUEST, DispatcherType.ASYNC);
+        return registration;
+    }
+
+    /**
+     * 每个连接池单独上报 hikaricp.* 指标（pool 标签为连接池名）。
+     * MeterRegistry 初始化时会绑定 DataSource 指标，不能在创建连接池时直接依赖它
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry == null) {
+            return;
+        }
+        for (HikariDataSource pool : pools) {
+            // Spring Boot 可能已通过 DataSource 解包为默认连接池绑定过指标
+            if (pool.getMetricRegistry() == null && pool.getMetricsTrackerFactory() == null) {
+                try {
+                    pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+                } catch (IllegalStateException e) {
+                    log.warn("[DataSourceConfig] Failed to bind metrics for pool {}: {}", pool.getPoolName(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        for (HikariDataSource pool : pools) {
+            pool.close();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.equivocal.config;
+
+import com.equivocal.dto.AuthResponse;
+import com.equivocal.dto.MessageListResponse;
+import com.equivocal.dto.SessionListResponse;
+import com.equivocal.dto.SessionMessagePageResponse;
+import com.equivocal.dto.SessionView;
+import com.equivocal.dto.UserPageResponse;
+import com.equivocal.dto.UserView;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 全局共享的 ObjectMapper 由 Spring Boot 创建，这里只追加模块：
+ * Blackbird 用 LambdaMetafactory 生成的访问器替代反射读取 getter。
+ *
+ * 二进制编码（CBOR、Smile）按 Accept 协商，ObjectMapper 同样由 Spring Boot 的 Jackson2ObjectMapperBuilder
+ * 构建，模块、日期格式等与 JSON 完全一致，只替换底层编码。转换器排在 JSON 之后，Accept 缺省或为通配时仍返回 JSON
+ */
+@Configuration
+@Slf4j
+public class JacksonConfig {
+
+    /**
+     * 启动时预先构建的响应序列化器
+     */
+    static final List<Class<?>> RESPONSE_TYPES = Arrays.asList(
+            SessionView.class,
+            SessionListResponse.class,
+            MessageListResponse.class,
+            SessionMessagePageResponse.class,
+            UserView.class,
+            UserPageResponse.class,
+            AuthResponse.class);
+
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+
+    /**
+     * application/cbor
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    /**
+     * application/x-jackson-smile；消息列表中 role、sessionId 等短字符串重复出现，开启共享字符串引用
+     */
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        SmileFactory factory = SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build();
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(factory).build());
+    }
+
+    /**
+     * 在启动阶段为响应 DTO 构建并缓存序列化器，首个请求不再承担反射内省与访问器生成（JSON 与二进制编码各一份）
+     */
+    @Bean
+    public SmartInitializingSingleton responseSerializerWarmup(ObjectMapper objectMapper,
+                                                               List<AbstractJackson2HttpMessageConverter> converters) {
+        return () -> {
+            Set<ObjectMapper> mappers = Collections.newSetFromMap(new IdentityHashMap<>());
+            mappers.add(objectMapper);
+            for (AbstractJackson2HttpMessageConverter converter : converters) {
+                mappers.add(converter.getObjectMapper());
+            }
+            for (ObjectMapper mapper : mappers) {
+                for (Class<?> type : RESPONSE_TYPES) {
+                    try {
+                        mapper.writerFor(type);
+                    } catch (RuntimeException e) {
+                        log.warn("[JacksonConfig] Failed to prebuild serializer for {}: {}", type.getSimpleName(), e.getMessage());
+                    }
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,95 @@
+package com.equivocal.config;
+
+import com.equivocal.metrics.ConnectionHoldProfiler;
+import com.equivocal.metrics.EndpointTrackingInterceptor;
+import com.equivocal.metrics.PerformanceRecorder;
+import com.equivocal.metrics.ProfilingDataSource;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+
+@Configuration
+@ConditionalOnProperty(name = "app.profiling.connection-hold.enabled", havingValue = "true", matchIfMissing = true)
+public class ProfilingConfig implements WebMvcConfigurer {
+
+    private final ObjectProvider<PerformanceRecorder> performanceRecorder;
+
+    public ProfilingConfig(ObjectProvider<PerformanceRecorder> performanceRecorder) {
+        this.performanceRecorder = performanceRecorder;
+    }
+
+    /**
+     * 包装 DataSource 以统计连接占用；profiler 延迟获取，避免过早初始化 MeterRegistry
+     */
+    @Bean
+    public static BeanPostProcessor profilingDataSourcePostProcessor(ObjectProvider<ConnectionHoldProfiler> profiler) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && !(bean instanceof ProfilingDataSource)) {
+                    return new ProfilingDataSource((DataSource) bean, profiler::getObject);
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * 为所有 Spring Data Repository 代理加上计时；需在 FactoryBean 创建代理之前注册
+     */
+    @Bean
+    public static BeanPostProcessor repositoryTimingPostProcessor(ObjectProvider<PerformanceRecorder> recorder) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport) {
+                    ((RepositoryFactoryBeanSupport<?, ?, ?>) bean).addRepositoryFactoryCustomizer(repositoryFactory ->
+                            repositoryFactory.addRepositoryProxyPostProcessor((factory, information) -> {
+                                String repository = information.getRepositoryInterface().getSimpleName();
+                                factory.addAdvice((MethodInterceptor) invocation -> {
+                                    long start = System.nanoTime();
+                                    try {
+                                        return invocation.proceed();
+                                    } finally {
+                                        recorder.getObject().recordRepositoryCall(repository,
+                                                invocation.getMethod().getName(), System.nanoTime() - start);
+                                    }
+                                });
+                            }));
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * 标记远程调用：在事务中发起的 WebClient 请求会被记为慢操作
+     */
+    @Bean
+    public ExchangeFilterFunction remoteCallMarkerFilter() {
+        return (request, next) -> {
+            ConnectionHoldProfiler.markSlowOperation(ConnectionHoldProfiler.WEBCLIENT);
+            return next.exchange(request);
+        };
+    }
+
+    @Bean
+    public WebClientCustomizer remoteCallMarkerCustomizer(ExchangeFilterFunction remoteCallMarkerFilter) {
+        return builder -> builder.filter(remoteCallMarkerFilter);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new EndpointTrackingInterceptor(performanceRecorder.getObject()));
+    }
+}
@@ -34,6 +34,9 @@ public class SecurityConfig {
                 .antMatchers("/api/auth/**").permitAll()
                 .antMatchers("/api/config").permitAll()
                 .antMatchers("/api/models").permitAll()
+                // 健康检查公开；指标包含用户与会话的运行信息，仅管理员令牌可抓取
+                .antMatchers("/actuator/health").permitAll()
+                .antMatchers("/actuator/**").hasRole("ADMIN")
                 // 管理员端点
                 .antMatchers("/api/admin/**").hasRole("ADMIN")
                 // 其他端点需要认证
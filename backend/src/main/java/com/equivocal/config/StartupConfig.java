@@ -0,0 +1,24 @@
+package com.equivocal.config;
+
+import com.equivocal.security.JwtAuthFilter;
+import com.equivocal.security.JwtService;
+import com.equivocal.security.PasswordHashExecutor;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class StartupConfig {
+
+    /**
+     * 开启懒加载（fast-startup profile）时仍需在启动阶段创建的 Bean：
+     * JWT 密钥校验要在启动时失败，而不是在第一个请求时
+     */
+    @Bean
+    public static LazyInitializationExcludeFilter eagerStartupBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(
+                JwtService.class,
+                JwtAuthFilter.class,
+                PasswordHashExecutor.class);
+    }
+}
@@ -3,6 +3,8 @@ package com.equivocal.config;
 import io.netty.channel.ChannelOption;
 import io.netty.handler.timeout.ReadTimeoutHandler;
 import io.netty.handler.timeout.WriteTimeoutHandler;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
@@ -17,7 +19,7 @@ import java.util.concurrent.TimeUnit;
 public class WebClientConfig {
     
     @Bean
-    public WebClient webClient() {
+    public WebClient webClient(ObjectProvider<WebClientCustomizer> customizers) {
         // 配置连接池 - 禁用连接复用以避免陈旧连接问题
         ConnectionProvider connectionProvider = ConnectionProvider.builder("webclient-pool")
                 .maxConnections(50)
@@ -35,11 +37,13 @@ public class WebClientConfig {
                         .addHandlerLast(new ReadTimeoutHandler(300, TimeUnit.SECONDS)) // 读取超时 5 分钟
                         .addHandlerLast(new WriteTimeoutHandler(30, TimeUnit.SECONDS))); // 写入超时 30 秒
         
-        return WebClient.builder()
+        WebClient.Builder builder = WebClient.builder()
                 .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .codecs(configurer -> configurer
                         .defaultCodecs()
-                        .maxInMemorySize(16 * 1024 * 1024)) // 16MB
-                .build();
+                        .maxInMemorySize(16 * 1024 * 1024)); // 16MB
+        // 应用全局定制（如远程调用监控过滤器）
+        customizers.orderedStream().forEach(customizer -> customizer.customize(builder));
+        return builder.build();
     }
 }
@@ -1,24 +1,33 @@
 package com.equivocal.controller;
 
+import com.equivocal.datasource.Workload;
+import com.equivocal.datasource.WorkloadPool;
+import com.equivocal.dto.MessageView;
+import com.equivocal.dto.SessionMessagePageResponse;
+import com.equivocal.dto.SessionView;
 import com.equivocal.entity.ChatMessage;
 import com.equivocal.entity.ChatSession;
 import com.equivocal.repository.ChatMessageRepository;
 import com.equivocal.repository.ChatSessionRepository;
+import com.equivocal.service.ChatArchiveService;
+import com.equivocal.service.ChatSyncService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @RestController
+@WorkloadPool(Workload.ADMIN)
 @RequestMapping("/api/admin/chat-sessions")
 @RequiredArgsConstructor
 @Slf4j
@@ -26,6 +35,8 @@ public class AdminChatController {
     
     private final ChatSessionRepository chatSessionRepository;
     private final ChatMessageRepository chatMessageRepository;
+    private final ChatSyncService chatSyncService;
+    private final ChatArchiveService chatArchiveService;
     
     /**
      * 获取会话的所有消息（管理员功能）
@@ -45,40 +56,18 @@ public class AdminChatController {
             int safePage = Math.max(1, page);
             int safeLimit = Math.max(1, Math.min(500, limit));
             PageRequest pageable = PageRequest.of(safePage - 1, safeLimit, Sort.by(Sort.Direction.ASC, "createdAt"));
-            Page<ChatMessage> messagePage = chatMessageRepository.findBySessionId(id, pageable);
-            List<ChatMessage> messages = messagePage.getContent();
-            
-            List<Map<String, Object>> messageList = messages.stream()
-                    .map(message -> {
-                        Map<String, Object> map = new HashMap<>();
-                        map.put("id", message.getId());
-                        map.put("sessionId", message.getSessionId());
-                        map.put("role", message.getRole());
-                        map.put("content", message.getContent());
-                        map.put("createdAt", message.getCreatedAt());
-                        return map;
-                    })
-                    .collect(Collectors.toList());
+            Page<ChatMessage> messagePage = sessionOpt.get().getArchivedAt() != null
+                    ? archivedPage(sessionOpt.get(), pageable)
+                    : chatMessageRepository.findBySessionId(id, pageable);
             
             // 返回会话信息和消息列表
-            ChatSession session = sessionOpt.get();
-            Map<String, Object> result = new HashMap<>();
-            
-            Map<String, Object> sessionMap = new HashMap<>();
-            sessionMap.put("id", session.getId());
-            sessionMap.put("userId", session.getUserId());
-            sessionMap.put("title", session.getTitle());
-            sessionMap.put("createdAt", session.getCreatedAt());
-            sessionMap.put("updatedAt", session.getUpdatedAt());
-            
-            result.put("session", sessionMap);
-            result.put("messages", messageList);
-            result.put("page", safePage);
-            result.put("limit", safeLimit);
-            result.put("total", messagePage.getTotalElements());
-            result.put("totalPages", messagePage.getTotalPages());
-             
-            return ResponseEntity.ok(result);
+            return ResponseEntity.ok(new SessionMessagePageResponse(
+                    SessionView.of(sessionOpt.get()),
+                    MessageView.ofAll(messagePage.getContent()),
+                    safePage,
+                    safeLimit,
+                    messagePage.getTotalElements(),
+                    messagePage.getTotalPages()));
         } catch (Exception e) {
             log.error("[AdminChatController] Failed to get session messages: {}", e.getMessage(), e);
             Map<String, String> error = new HashMap<>();
@@ -102,18 +91,13 @@ public class AdminChatController {
             
             ChatSession session = sessionOpt.get();
             
-            // 获取消息数量
+            // 获取消息数量（含归档块中的消息）
             long messageCount = chatMessageRepository.countBySessionId(id);
+            if (session.getArchivedAt() != null) {
+                messageCount += chatArchiveService.archivedMessageCounts(Collections.singletonList(id)).getOrDefault(id, 0L);
+            }
             
-            Map<String, Object> result = new HashMap<>();
-            result.put("id", session.getId());
-            result.put("userId", session.getUserId());
-            result.put("title", session.getTitle());
-            result.put("createdAt", session.getCreatedAt());
-            result.put("updatedAt", session.getUpdatedAt());
-            result.put("messageCount", messageCount);
-            
-            return ResponseEntity.ok(result);
+            return ResponseEntity.ok(SessionView.withMessageCount(session, messageCount));
         } catch (Exception e) {
             log.error("[AdminChatController] Failed to get session: {}", e.getMessage(), e);
             Map<String, String> error = new HashMap<>();
@@ -130,15 +114,20 @@ public class AdminChatController {
         try {
             log.info("[AdminChatController] Deleting session: {}", id);
             
-            if (!chatSessionRepository.existsById(id)) {
+            Optional<ChatSession> sessionOpt = chatSessionRepository.findById(id);
+            if (!sessionOpt.isPresent()) {
                 return ResponseEntity.notFound().build();
             }
             
-            // 先删除会话的所有消息
-            chatMessageRepository.deleteBySessionId(id);
-            
-            // 再删除会话
-            chatSessionRepository.deleteById(id);
+            chatSyncService.run(sessionOpt.get().getUserId(), changes -> {
+                // 先删除会话的所有消息（含归档块）
+                chatMessageRepository.deleteBySessionId(id);
+                chatArchiveService.deleteArchives(Collections.singletonList(id));
+                
+                // 再删除会话
+                chatSessionRepository.deleteById(id);
+                changes.sessionDeleted(id);
+            });
             
             log.info("[AdminChatController] Session deleted: {}", id);
             
@@ -153,4 +142,14 @@ public class AdminChatController {
             return ResponseEntity.internalServerError().body(error);
         }
     }
+
+    /**
+     * 归档会话的消息整块解码后在内存中分页
+     */
+    private Page<ChatMessage> archivedPage(ChatSession session, PageRequest pageable) {
+        List<ChatMessage> messages = chatArchiveService.findMessages(session);
+        int from = (int) Math.min(messages.size(), pageable.getOffset());
+        int to = Math.min(messages.size(), from + pageable.getPageSize());
+        return new PageImpl<>(messages.subList(from, to), pageable, messages.size());
+    }
 }
@@ -0,0 +1,39 @@
+package com.equivocal.controller;
+
+import com.equivocal.datasource.Workload;
+import com.equivocal.datasource.WorkloadPool;
+import com.equivocal.metrics.ConnectionHoldProfiler;
+import com.equivocal.metrics.PerformanceRecorder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@WorkloadPool(Workload.ADMIN)
+@RequestMapping("/api/admin/perf")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminPerfController {
+
+    private final PerformanceRecorder performanceRecorder;
+    private final ObjectProvider<ConnectionHoldProfiler> connectionHoldProfiler;
+
+    /**
+     * 端点 / Repository 延迟分位数与每请求 SQL 条数；启用连接分析时附带最近的慢操作记录
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getPerf() {
+        Map<String, Object> result = performanceRecorder.snapshot();
+        ConnectionHoldProfiler profiler = connectionHoldProfiler.getIfAvailable();
+        if (profiler != null) {
+            result.put("connectionHoldViolations", profiler.getRecentViolations());
+        }
+        return ResponseEntity.ok(result);
+    }
+}
@@ -1,6 +1,9 @@
 package com.equivocal.controller;
 
+import com.equivocal.datasource.Workload;
+import com.equivocal.datasource.WorkloadPool;
 import com.equivocal.repository.ChatMessageRepository;
+import com.equivocal.repository.ChatSessionArchiveRepository;
 import com.equivocal.repository.ChatSessionRepository;
 import com.equivocal.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
@@ -16,6 +19,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 @RestController
+@WorkloadPool(Workload.ADMIN)
 @RequestMapping("/api/admin/stats")
 @RequiredArgsConstructor
 @PreAuthorize("hasRole('ADMIN')")
@@ -25,15 +29,15 @@ public class AdminStatsController {
     private final UserRepository userRepository;
     private final ChatSessionRepository chatSessionRepository;
     private final ChatMessageRepository chatMessageRepository;
+    private final ChatSessionArchiveRepository chatSessionArchiveRepository;
 
     /**
      * 获取统计数据
-     * @param quick 如果为 true，只返回核心用户统计（2次查询），否则返回完整统计（7次查询）
+     * @param quick 如果为 true，只返回核心用户统计（2次查询），否则返回完整统计（8次查询）
      */
     @GetMapping
     public ResponseEntity<Map<String, Object>> getStats(
             @org.springframework.web.bind.annotation.RequestParam(defaultValue = "true") boolean quick) {
-        long startTime = System.currentTimeMillis();
         Map<String, Object> stats = new HashMap<>();
 
         // 核心统计：只需要 2 次查询
@@ -54,7 +58,8 @@ public class AdminStatsController {
 
             // 聊天统计
             long totalSessions = chatSessionRepository.count();
-            long totalMessages = chatMessageRepository.count();
+            // 归档会话的消息已移出热表，按归档记录的条数补上
+            long totalMessages = chatMessageRepository.count() + chatSessionArchiveRepository.sumMessageCount();
             long todaySessions = chatSessionRepository.countByCreatedAtAfter(todayStart);
 
             stats.put("activeUsers", activeUsers);
@@ -67,9 +72,6 @@ public class AdminStatsController {
             stats.put("chat", chatStats);
         }
 
-        long endTime = System.currentTimeMillis();
-        log.debug("[PERF] AdminStatsController.getStats(quick={}) 耗时: {}ms", quick, (endTime - startTime));
-
         return ResponseEntity.ok(stats);
     }
 }
@@ -1,11 +1,20 @@
 package com.equivocal.controller;
 
+import com.equivocal.datasource.Workload;
+import com.equivocal.datasource.WorkloadPool;
+import com.equivocal.dto.SessionView;
+import com.equivocal.dto.UserPageResponse;
+import com.equivocal.dto.UserView;
 import com.equivocal.entity.ChatSession;
 import com.equivocal.entity.User;
 import com.equivocal.repository.ChatMessageRepository;
 import com.equivocal.repository.ChatSessionRepository;
 import com.equivocal.repository.UserRepository;
+import com.equivocal.security.AuthPersistenceExecutor;
+import com.equivocal.security.PasswordHashExecutor;
 import com.equivocal.security.PasswordService;
+import com.equivocal.service.ChatArchiveService;
+import com.equivocal.service.ChatSyncService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -21,9 +30,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @RestController
+@WorkloadPool(Workload.ADMIN)
 @RequestMapping("/api/admin/users")
 @RequiredArgsConstructor
 @Slf4j
@@ -33,53 +44,63 @@ public class AdminUserController {
     private final ChatSessionRepository chatSessionRepository;
     private final ChatMessageRepository chatMessageRepository;
     private final PasswordService passwordService;
+    private final ChatArchiveService chatArchiveService;
+    private final ChatSyncService chatSyncService;
+    private final AuthPersistenceExecutor persistenceExecutor;
     
+    /**
+     * 以 Servlet 异步方式返回：BCrypt 计算期间请求线程已归还给 Tomcat；哈希之后的保存在 {@link AuthPersistenceExecutor} 中执行
+     */
     @PostMapping
-    public ResponseEntity<?> createUser(@RequestBody CreateUserRequest request) {
+    public CompletableFuture<ResponseEntity<?>> createUser(@RequestBody CreateUserRequest request) {
+        CompletableFuture<User> created;
         try {
             log.info("[AdminUserController] Creating user: email={}, role={}", request.getEmail(), request.getRole());
             
             if (userRepository.existsByEmail(request.getEmail())) {
                 Map<String, String> error = new HashMap<>();
                 error.put("error", "邮箱已被注册");
-                return ResponseEntity.badRequest().body(error);
+                return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(error));
             }
             
             if (request.getPassword() == null || request.getPassword().isEmpty()) {
                 Map<String, String> error = new HashMap<>();
                 error.put("error", "密码不能为空");
-                return ResponseEntity.badRequest().body(error);
+                return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(error));
             }
 
             // 生成用户 ID
             String userId = "user_" + UUID.randomUUID().toString().replace("-", "");
             
-            String hashedPassword = passwordService.hashPassword(request.getPassword());
-            
-            User user = User.builder()
-                    .id(userId)
-                    .email(request.getEmail())
-                    .password(hashedPassword)
-                    .role(request.getRole() != null ? request.getRole() : 1)
-                    .emailVerified(true) // 管理员创建的用户默认已验证
-                    .createdAt(LocalDateTime.now())
-                    .updatedAt(LocalDateTime.now())
-                    .build();
-            
-            userRepository.save(user);
-            
-            log.info("[AdminUserController] User created: id={}", userId);
+            created = passwordService.hashPasswordAsync(request.getPassword()).thenCompose(hashedPassword ->
+                    persistenceExecutor.submit("admin-create-user", () -> {
+                        User user = User.builder()
+                                .id(userId)
+                                .email(request.getEmail())
+                                .password(hashedPassword)
+                                .role(request.getRole() != null ? request.getRole() : 1)
+                                .emailVerified(true) // 管理员创建的用户默认已验证
+                                .createdAt(LocalDateTime.now())
+                                .updatedAt(LocalDateTime.now())
+                                .build();
+                        userRepository.save(user);
+                        return user;
+                    }));
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(failed("create user", e));
+        }
+        
+        return created.handle((user, e) -> {
+            if (e != null) {
+                return failed("create user", e);
+            }
+            log.info("[AdminUserController] User created: id={}", user.getId());
             Map<String, Object> result = new HashMap<>();
             result.put("success", true);
             result.put("message", "用户创建成功");
-            result.put("data", sanitizeUser(user));
+            result.put("data", UserView.of(user));
             return ResponseEntity.ok(result);
-        } catch (Exception e) {
-            log.error("[AdminUserController] Failed to create user: {}", e.getMessage(), e);
-            Map<String, String> error = new HashMap<>();
-            error.put("error", "服务端内部错误");
-            return ResponseEntity.internalServerError().body(error);
-        }
+        });
     }
 
     @GetMapping
@@ -89,14 +110,12 @@ public class AdminUserController {
             @RequestParam(required = false) String search,
             @RequestParam(required = false) String role) {
         try {
-            long startTime = System.currentTimeMillis();
             log.info("[AdminUserController] Getting users: page={}, limit={}, search={}, role={}", page, limit, search, role);
             
             Pageable pageable = PageRequest.of(page - 1, limit, Sort.by(Sort.Direction.DESC, "createdAt"));
             
             Page<User> userPage;
             
-            long queryStartTime = System.currentTimeMillis();
             if (search != null && !search.isEmpty()) {
                 if (role != null && !role.isEmpty()) {
                     // 同时有搜索词和角色筛选
@@ -124,27 +143,14 @@ public class AdminUserController {
                     userPage = userRepository.findAll(pageable);
                 }
             }
-            long queryEndTime = System.currentTimeMillis();
-            log.info("[PERF] 用户分页查询耗时: {}ms", queryEndTime - queryStartTime);
-            
-            List<Map<String, Object>> users = userPage.getContent().stream()
-                    .map(this::sanitizeUser)
+            List<UserView> users = userPage.getContent().stream()
+                    .map(UserView::of)
                     .collect(Collectors.toList());
             
             // 统计数据已由 /api/admin/stats 端点提供，这里不再重复查询
             // 这样可以减少 3 次数据库查询，提升性能
             
-            Map<String, Object> result = new HashMap<String, Object>();
-            result.put("users", users);
-            result.put("total", userPage.getTotalElements());
-            result.put("page", page);
-            result.put("limit", limit);
-            result.put("totalPages", userPage.getTotalPages());
-            
-            long endTime = System.currentTimeMillis();
-            log.info("[PERF] getUsers() 总耗时: {}ms", endTime - startTime);
-            
-            return ResponseEntity.ok(result);
+            return ResponseEntity.ok(new UserPageResponse(users, userPage.getTotalElements(), page, limit, userPage.getTotalPages()));
         } catch (Exception e) {
             log.error("[AdminUserController] Failed to get users: {}", e.getMessage(), e);
             Map<String, String> error = new HashMap<String, String>();
@@ -163,7 +169,7 @@ public class AdminUserController {
                 return ResponseEntity.notFound().build();
             }
             
-            return ResponseEntity.ok(sanitizeUser(userOpt.get()));
+            return ResponseEntity.ok(UserView.of(userOpt.get()));
         } catch (Exception e) {
             log.error("[AdminUserController] Failed to get user: {}", e.getMessage(), e);
             Map<String, String> error = new HashMap<String, String>();
@@ -173,13 +179,14 @@ public class AdminUserController {
     }
     
     @PutMapping("/{id}")
-    public ResponseEntity<?> updateUser(@PathVariable String id, @RequestBody UpdateUserRequest request) {
+    public CompletableFuture<ResponseEntity<?>> updateUser(@PathVariable String id, @RequestBody UpdateUserRequest request) {
+        CompletableFuture<User> updated;
         try {
             log.info("[AdminUserController] Updating user: id={}", id);
             
             Optional<User> userOpt = userRepository.findById(id);
             if (!userOpt.isPresent()) {
-                return ResponseEntity.notFound().build();
+                return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
             }
             
             User user = userOpt.get();
@@ -191,23 +198,30 @@ public class AdminUserController {
                 user.setEmailVerified(request.getEmailVerified());
             }
             
+            CompletableFuture<User> prepared = CompletableFuture.completedFuture(user);
             if (request.getNewPassword() != null && !request.getNewPassword().isEmpty()) {
-                String hashedPassword = passwordService.hashPassword(request.getNewPassword());
-                user.setPassword(hashedPassword);
-                log.info("[AdminUserController] Password reset for user: id={}", id);
+                prepared = passwordService.hashPasswordAsync(request.getNewPassword()).thenApply(hashedPassword -> {
+                    user.setPassword(hashedPassword);
+                    log.info("[AdminUserController] Password reset for user: id={}", id);
+                    return user;
+                });
             }
             
-            user.setUpdatedAt(LocalDateTime.now());
-            userRepository.save(user);
-            
-            log.info("[AdminUserController] User updated: id={}", id);
-            return ResponseEntity.ok(sanitizeUser(user));
+            updated = prepared.thenCompose(u -> persistenceExecutor.submit("admin-update-user", () -> {
+                u.setUpdatedAt(LocalDateTime.now());
+                return userRepository.save(u);
+            }));
         } catch (Exception e) {
-            log.error("[AdminUserController] Failed to update user: {}", e.getMessage(), e);
-            Map<String, String> error = new HashMap<String, String>();
-            error.put("error", "服务端内部错误");
-            return ResponseEntity.internalServerError().body(error);
+            return CompletableFuture.completedFuture(failed("update user", e));
         }
+        
+        return updated.handle((user, e) -> {
+            if (e != null) {
+                return failed("update user", e);
+            }
+            log.info("[AdminUserController] User updated: id={}", id);
+            return ResponseEntity.ok(UserView.of(user));
+        });
     }
     
     @DeleteMapping("/{id}")
@@ -219,16 +233,20 @@ public class AdminUserController {
                 return ResponseEntity.notFound().build();
             }
 
-            List<ChatSession> sessions = chatSessionRepository.findByUserIdOrderByUpdatedAtDesc(id);
-            List<String> sessionIds = sessions.stream().map(ChatSession::getId).collect(Collectors.toList());
-            if (!sessionIds.isEmpty()) {
-                chatMessageRepository.deleteBySessionIdIn(sessionIds);
-            }
+            // 会话、消息、归档块、用户与同步状态同一事务删除，中途失败不会留下半删除的数据
+            chatSyncService.deleteUser(id, () -> {
+                List<ChatSession> sessions = chatSessionRepository.findByUserIdOrderByUpdatedAtDesc(id);
+                List<String> sessionIds = sessions.stream().map(ChatSession::getId).collect(Collectors.toList());
+                if (!sessionIds.isEmpty()) {
+                    chatMessageRepository.deleteBySessionIdIn(sessionIds);
+                    chatArchiveService.deleteArchives(sessionIds);
+                }
 
-            // 再删除用户的所有会话
-            chatSessionRepository.deleteByUserId(id);
-            
-            userRepository.deleteById(id);
+                // 再删除用户的所有会话
+                chatSessionRepository.deleteByUserId(id);
+                
+                userRepository.deleteById(id);
+            });
             
             log.info("[AdminUserController] User deleted: id={}", id);
             Map<String, Object> result = new HashMap<String, Object>();
@@ -270,19 +288,16 @@ public class AdminUserController {
                         ));
             }
              
-            List<Map<String, Object>> sessionList = sessions.stream()
-                    .map(session -> {
-                        Map<String, Object> map = new HashMap<>();
-                        map.put("id", session.getId());
-                        map.put("userId", session.getUserId());
-                        map.put("title", session.getTitle());
-                        map.put("createdAt", session.getCreatedAt());
-                        map.put("updatedAt", session.getUpdatedAt());
-                        
-                        map.put("messageCount", countsBySessionId.getOrDefault(session.getId(), 0L));
-                         
-                        return map;
-                    })
+            // 只有存在已归档会话时才查询归档块的消息数
+            List<String> archivedIds = sessions.stream()
+                    .filter(session -> session.getArchivedAt() != null)
+                    .map(ChatSession::getId)
+                    .collect(Collectors.toList());
+            Map<String, Long> archivedCounts = chatArchiveService.archivedMessageCounts(archivedIds);
+             
+            List<SessionView> sessionList = sessions.stream()
+                    .map(session -> SessionView.withMessageCount(session,
+                            countsBySessionId.getOrDefault(session.getId(), 0L) + archivedCounts.getOrDefault(session.getId(), 0L)))
                     .collect(Collectors.toList());
             
             return ResponseEntity.ok(sessionList);
@@ -294,15 +309,21 @@ public class AdminUserController {
         }
     }
     
-    private Map<String, Object> sanitizeUser(User user) {
-        Map<String, Object> result = new HashMap<String, Object>();
-        result.put("id", user.getId());
-        result.put("email", user.getEmail());
-        result.put("role", user.getRole());
-        result.put("emailVerified", user.getEmailVerified());
-        result.put("createdAt", user.getCreatedAt());
-        result.put("updatedAt", user.getUpdatedAt());
-        return result;
+    private ResponseEntity<?> failed(String action, Throwable e) {
+        if (PasswordHashExecutor.isRejected(e)) {
+            return hashBusy();
+        }
+        log.error("[AdminUserController] Failed to {}: {}", action, e.getMessage(), e);
+        Map<String, String> error = new HashMap<String, String>();
+        error.put("error", "服务端内部错误");
+        return ResponseEntity.internalServerError().body(error);
+    }
+    
+    private ResponseEntity<?> hashBusy() {
+        log.warn("[AdminUserController] 密码哈希队列已满，拒绝请求");
+        Map<String, String> error = new HashMap<String, String>();
+        error.put("error", "服务繁忙，请稍后再试");
+        return ResponseEntity.status(503).body(error);
     }
     
     public static class UpdateUserRequest {
@@ -1,14 +1,20 @@
 package com.equivocal.controller;
 
+import com.equivocal.datasource.Workload;
+import com.equivocal.datasource.WorkloadPool;
 import com.equivocal.dto.AuthRequest;
 import com.equivocal.dto.AuthResponse;
+import com.equivocal.security.PasswordHashExecutor;
 import com.equivocal.service.AuthService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+
 @RestController
+@WorkloadPool(Workload.AUTH)
 @RequestMapping("/api/auth")
 @RequiredArgsConstructor
 @Slf4j
@@ -18,23 +24,41 @@ public class AuthController {
     
     /**
      * POST /api/auth/login - 登录或注册
+     *
+     * 以 Servlet 异步方式返回：BCrypt 计算期间请求线程已归还给 Tomcat。
      */
     @PostMapping("/login")
-    public ResponseEntity<AuthResponse> authenticate(@RequestBody AuthRequest request) {
+    public CompletableFuture<ResponseEntity<AuthResponse>> authenticate(@RequestBody AuthRequest request) {
         log.info("[AuthController] 收到认证请求: email={}", request.getEmail());
         
+        CompletableFuture<AuthResponse> future;
         try {
-            AuthResponse response = authService.authenticate(request);
+            future = authService.authenticate(request);
+        } catch (Exception e) {
+            log.error("[AuthController] 认证过程中发生异常", e);
+            return CompletableFuture.completedFuture(internalError());
+        }
+        
+        return future.handle((response, e) -> {
+            if (e != null) {
+                if (PasswordHashExecutor.isRejected(e)) {
+                    log.warn("[AuthController] 密码哈希队列已满，拒绝认证请求: email={}", request.getEmail());
+                    return ResponseEntity.status(503).body(AuthResponse.error("服务繁忙，请稍后再试"));
+                }
+                log.error("[AuthController] 认证过程中发生异常", e);
+                return internalError();
+            }
             
             if (response.isSuccess()) {
                 return ResponseEntity.ok(response);
             } else {
                 return ResponseEntity.badRequest().body(response);
             }
-        } catch (Exception e) {
-            log.error("[AuthController] 认证过程中发生异常", e);
-            return ResponseEntity.internalServerError()
-                    .body(AuthResponse.error("服务端内部错误"));
-        }
+        });
+    }
+    
+    private static ResponseEntity<AuthResponse> internalError() {
+        return ResponseEntity.internalServerError()
+                .body(AuthResponse.error("服务端内部错误"));
     }
 }
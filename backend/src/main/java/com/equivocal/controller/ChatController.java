@@ -1,12 +1,22 @@
 package com.equivocal.controller;
 
+import com.equivocal.datasource.ReadYourWritesTracker;
 import com.equivocal.entity.ChatMessage;
 import com.equivocal.entity.ChatSession;
 import com.equivocal.entity.User;
+import com.equivocal.metrics.ChatStreamMetrics;
+import com.equivocal.metrics.RequestMetricsContext;
 import com.equivocal.repository.ChatMessageRepository;
 import com.equivocal.repository.ChatSessionRepository;
 import com.equivocal.repository.UserRepository;
 import com.equivocal.service.AgentService;
+import com.equivocal.service.ChatArchiveService;
+import com.equivocal.service.ChatSyncService;
+import com.equivocal.service.ContextCompactionService;
+import com.equivocal.service.SessionLanes;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.MediaType;
@@ -14,6 +24,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -30,6 +42,13 @@ public class ChatController {
     private final ChatSessionRepository chatSessionRepository;
     private final ChatMessageRepository chatMessageRepository;
     private final UserRepository userRepository;
+    private final ChatStreamMetrics chatStreamMetrics;
+    private final ObjectMapper objectMapper;
+    private final ChatSyncService chatSyncService;
+    private final ContextCompactionService contextCompactionService;
+    private final ChatArchiveService chatArchiveService;
+    private final ReadYourWritesTracker readYourWritesTracker;
+    private final SessionLanes sessionLanes;
     
     /**
      * 流式聊天端点 - 使用 Server-Sent Events (SSE)
@@ -41,6 +60,9 @@ public class ChatController {
         if (user == null) {
             return Flux.just("{\"type\":\"error\",\"message\":\"Unauthorized\"}");
         }
+        if (request.getVersion() != null && request.getVersion() > ChatRequest.CURRENT_VERSION) {
+            return Flux.just("{\"type\":\"error\",\"message\":\"Unsupported request version\"}");
+        }
         
         String userId = user.getId();
         
@@ -60,108 +82,59 @@ public class ChatController {
         }
         
         final String finalSessionId = session.getId();
-
-        // Save user message
-        List<Map<String, String>> messages = request.getMessages();
-        if (messages != null && !messages.isEmpty()) {
-            Map<String, String> lastMessage = messages.get(messages.size() - 1);
-            if ("user".equals(lastMessage.get("role"))) {
-                String contentType = lastMessage.getOrDefault("content_type", "text");
-                saveMessage(finalSessionId, "user", lastMessage.get("content"), contentType);
-            }
-        }
-        
-        // 修复：不再完全信任前端传来的消息列表，而是从数据库加载完整的历史上下文
-        // 这能解决用户刷新页面或消息丢失导致的“AI失忆”问题
-        List<Map<String, Object>> chatMessages = new ArrayList<>();
-        List<ChatMessage> historyMessages = chatMessageRepository.findBySessionIdOrderByCreatedAtAsc(finalSessionId);
-        
-        for (ChatMessage msg : historyMessages) {
-            Map<String, Object> chatMsg = new HashMap<>();
-            chatMsg.put("role", msg.getRole());
-            chatMsg.put("content", msg.getContent());
-            chatMsg.put("content_type", msg.getContentType() != null ? msg.getContentType() : "text");
-            chatMessages.add(chatMsg);
-        }
-        
-        // 用于收集完整响应
-        StringBuilder fullResponse = new StringBuilder();
+        final ChatSession resolvedSession = session;
+        ChatInput input = request.latestUserMessage();
         
         // 首先发送 session ID
-        Map<String, Object> sessionMap = new HashMap<>();
-        sessionMap.put("type", "session");
-        sessionMap.put("sessionId", finalSessionId);
-        
-        String sessionJson;
-        try {
-            sessionJson = new com.fasterxml.jackson.databind.ObjectMapper().writeValueAsString(sessionMap);
-        } catch (Exception e) {
-            sessionJson = "{\"type\":\"session\",\"sessionId\":\"" + finalSessionId + "\"}";
-        }
+        String sessionJson = objectMapper.createObjectNode()
+                .put("type", "session")
+                .put("sessionId", finalSessionId)
+                .toString();
         
         log.debug("[ChatController] Session event prepared");
         // 在 TEXT_EVENT_STREAM 模式下，Flux<String> 的每一项会被自动包装成 data: <item>\n\n
         Flux<String> sessionEvent = Flux.just(sessionJson);
         
-        // 调用 Agent 流式 API
-        log.debug("[ChatController] Calling agentService.streamChat: userId={}, sessionId={}", userId, finalSessionId);
-        // AgentService signature: streamChat(String userId, List<Map<String, Object>> messages)
-        Flux<String> chatStream = agentService.streamChat(userId, chatMessages)
-                .doOnSubscribe(s -> log.info("[ChatController] Stream subscribed for session: {}", finalSessionId))
+        // boundedElastic 上执行的 SQL 计入本请求；在组装时捕获，而不是取调度线程上的（可能是前一轮请求的）上下文
+        RequestMetricsContext metrics = RequestMetricsContext.capture();
+        // 同一会话的并发轮次（多个标签页同时发送）整轮排队：前一轮回复落库后，本轮才保存提问、加载历史
+        Flux<String> turn = sessionLanes.turn(finalSessionId, () -> Mono
+                .fromCallable(metrics.wrap(() -> prepareTurn(userId, resolvedSession, input)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(chatMessages -> streamReply(userId, finalSessionId, chatMessages, input, metrics)));
+        
+        // session 事件是本地立即生成的，只对 Agent 内容部分计时，首事件耗时即用户感知的 TTFT
+        return sessionEvent.concatWith(chatStreamMetrics.instrument(ChatStreamMetrics.CLIENT, turn));
+    }
+    
+    /**
+     * 调用 Agent 流式 API，流结束后保存完整回复；回复落库是本轮的最后一步
+     */
+    private Flux<String> streamReply(String userId, String sessionId, List<Map<String, Object>> chatMessages, ChatInput input,
+                                     RequestMetricsContext metrics) {
+        // 用于收集完整响应
+        StringBuilder fullResponse = new StringBuilder();
+        
+        log.debug("[ChatController] Calling agentService.streamChat: userId={}, sessionId={}", userId, sessionId);
+        // 会话 ID 同时作为 Agent 侧上下文句柄，Agent 已持有的前缀不再重复发送
+        Flux<String> chatStream = agentService.streamChat(userId, sessionId, chatMessages)
+                .doOnSubscribe(s -> log.info("[ChatController] Stream subscribed for session: {}", sessionId))
                 .doOnNext(item -> log.debug("[ChatController] Stream item received ({} chars)", item != null ? item.length() : 0))
-                .doOnNext(item -> {
-                    // 安全解析 JSON 收集内容用于后台保存
-                    try {
-                        com.fasterxml.jackson.databind.JsonNode node = new com.fasterxml.jackson.databind.ObjectMapper().readTree(item);
-                        if ("content".equals(node.path("type").asText())) {
-                            fullResponse.append(node.path("content").asText());
-                        }
-                    } catch (Exception e) {
-                        log.debug("Skip non-content event for accumulation");
-                    }
-                })
-                .doOnComplete(() -> {
-                    log.info("[ChatController] Stream completed for session: {}", finalSessionId);
-                    // 保存完整响应
-                    String response = fullResponse.toString();
-                    if (!response.isEmpty()) {
-                        saveMessage(finalSessionId, "assistant", response, "text");
-                        
-                        // 更新会话时间戳和标题
-                        chatSessionRepository.findById(finalSessionId).ifPresent(s -> {
-                            s.setUpdatedAt(LocalDateTime.now());
-                            
-                            // 如果是默认标题，尝试生成新标题
-                            if ("New Chat".equals(s.getTitle()) || "新对话".equals(s.getTitle())) {
-                                // 只传递用户消息内容，不带前缀
-                                String userMessage = (messages != null && !messages.isEmpty())
-                                    ? messages.get(messages.size()-1).get("content")
-                                    : "";
-                                
-                                CompletableFuture.runAsync(() -> {
-                                    try {
-                                        String newTitle = agentService.generateTitle(userMessage);
-                                        if (newTitle != null && !newTitle.isEmpty() && !newTitle.equals("新对话")) {
-                                            s.setTitle(newTitle);
-                                            chatSessionRepository.save(s);
-                                            log.info("Successfully updated session title to: {}", newTitle);
-                                        }
-                                    } catch (Exception e) {
-                                        log.error("Failed to generate/save new title: {}", e.getMessage());
-                                    }
-                                });
-                            } else {
-                                chatSessionRepository.save(s);
-                            }
-                        });
-                    }
-                })
+                .doOnNext(item -> accumulateContent(objectMapper, item, fullResponse))
+                .doOnComplete(() -> log.info("[ChatController] Stream completed for session: {}", sessionId))
                 .doOnError(e -> {
-                    log.error("[ChatController] Stream chat failed for session {}: {}", finalSessionId, e.getMessage(), e);
+                    log.error("[ChatController] Stream chat failed for session {}: {}", sessionId, e.getMessage(), e);
                 })
-                .doOnCancel(() -> log.info("[ChatController] Stream cancelled for session: {}", finalSessionId));
+                .doOnCancel(() -> log.info("[ChatController] Stream cancelled for session: {}", sessionId));
         
-        return sessionEvent.concatWith(chatStream);
+        // 保存完整响应：阻塞的数据库写入放到 boundedElastic，不占用 WebClient 的事件循环线程
+        Mono<String> persist = Mono.<String>fromRunnable(metrics.wrap(() -> {
+            String response = fullResponse.toString();
+            if (!response.isEmpty()) {
+                persistReply(userId, sessionId, response, input, metrics);
+            }
+        })).subscribeOn(Schedulers.boundedElastic());
+        return chatStream.concatWith(persist);
     }
     
     /**
@@ -217,7 +190,7 @@ public class ChatController {
             }
             
             ChatSession latestSession = sessions.get(0);
-            List<ChatMessage> messages = chatMessageRepository.findBySessionIdOrderByCreatedAtAsc(String.valueOf(latestSession.getId()));
+            List<ChatMessage> messages = chatArchiveService.findMessages(latestSession);
             
             Map<String, Object> result = new HashMap<>();
             result.put("sessionId", latestSession.getId());
@@ -232,6 +205,95 @@ public class ChatController {
         }
     }
     
+    /**
+     * 安全解析 JSON 收集内容用于后台保存
+     */
+    static void accumulateContent(ObjectMapper objectMapper, String item, StringBuilder fullResponse) {
+        try {
+            JsonNode node = objectMapper.readTree(item);
+            if ("content".equals(node.path("type").asText())) {
+                fullResponse.append(node.path("content").asText());
+            }
+        } catch (Exception e) {
+            log.debug("Skip non-content event for accumulation");
+        }
+    }
+    
+    /**
+     * 保存本轮用户消息并加载历史上下文（轮到本轮时在 boundedElastic 上执行）
+     */
+    private List<Map<String, Object>> prepareTurn(String userId, ChatSession session, ChatInput input) {
+        // 排队期间其他轮次可能已更新会话（标题、摘要、updatedAt），以最新状态为准
+        ChatSession current = chatSessionRepository.findById(session.getId()).orElse(session);
+        // 已归档的会话继续对话前先把消息恢复到热表
+        chatArchiveService.restore(current);
+
+        // Save user message（消息、会话时间戳与同步变更同一事务提交）
+        if (input != null) {
+            String contentType = input.getContentType() != null ? input.getContentType() : "text";
+            chatSyncService.run(userId, changes -> {
+                changes.messageCreated(saveMessage(current.getId(), "user", input.getContent(), contentType));
+                // 会话列表的 ETag 由 updatedAt 派生，新消息必须推进它
+                current.setUpdatedAt(LocalDateTime.now());
+                chatSessionRepository.save(current);
+                changes.sessionChanged(current);
+            });
+            // 不在请求线程上执行，需显式记录写入，随后的列表刷新才会读主库
+            readYourWritesTracker.recordWrite(userId);
+        }
+        
+        // 修复：不再完全信任前端传来的消息列表，而是从数据库加载完整的历史上下文
+        // 这能解决用户刷新页面或消息丢失导致的“AI失忆”问题；长会话只发送滚动摘要 + 最近消息
+        return contextCompactionService.buildContext(current);
+    }
+    
+    /**
+     * 保存助手回复并更新会话时间戳和标题（本轮结束前在 boundedElastic 上执行）
+     */
+    private void persistReply(String userId, String sessionId, String response, ChatInput input, RequestMetricsContext metrics) {
+        // 回复、会话时间戳与同步变更同一事务提交
+        ChatSession updated = chatSyncService.call(userId, changes -> {
+            changes.messageCreated(saveMessage(sessionId, "assistant", response, "text"));
+            return chatSessionRepository.findById(sessionId).map(s -> {
+                s.setUpdatedAt(LocalDateTime.now());
+                ChatSession saved = chatSessionRepository.save(s);
+                changes.sessionChanged(saved);
+                return saved;
+            }).orElse(null);
+        });
+        // 流结束回调不在请求线程上，需显式记录写入，随后的列表刷新才会读主库
+        readYourWritesTracker.recordWrite(userId);
+        
+        // 如果是默认标题，尝试生成新标题（事务提交后再调用 Agent）
+        if (updated != null && ("New Chat".equals(updated.getTitle()) || "新对话".equals(updated.getTitle()))) {
+            // 只传递用户消息内容，不带前缀
+            String userMessage = input != null && input.getContent() != null
+                ? input.getContent()
+                : "";
+            
+            CompletableFuture.runAsync(() -> {
+                try {
+                    String newTitle = agentService.generateTitle(userMessage);
+                    if (newTitle != null && !newTitle.isEmpty() && !newTitle.equals("新对话")) {
+                        // 标题生成耗时较长，期间会话可能已被后续轮次更新：排在会话队列中，重新读取后只改标题
+                        sessionLanes.turn(sessionId, () -> Mono.fromRunnable(metrics.wrap(() -> {
+                            chatSyncService.run(userId, changes ->
+                                    chatSessionRepository.findById(sessionId).ifPresent(latest -> {
+                                        latest.setTitle(newTitle);
+                                        changes.sessionChanged(chatSessionRepository.save(latest));
+                                    }));
+                            readYourWritesTracker.recordWrite(userId);
+                            log.info("Successfully updated session title to: {}", newTitle);
+                        })).subscribeOn(Schedulers.boundedElastic()))
+                                .subscribe(null, e -> log.error("Failed to save new title: {}", e.getMessage()));
+                    }
+                } catch (Exception e) {
+                    log.error("Failed to generate/save new title: {}", e.getMessage());
+                }
+            });
+        }
+    }
+    
     private ChatSession createNewSession(String userId) {
         // 生成会话 ID
         String sessionId = "session_" + UUID.randomUUID().toString().replace("-", "");
@@ -246,7 +308,7 @@ public class ChatController {
         return chatSessionRepository.save(session);
     }
     
-    private void saveMessage(String sessionId, String role, String content, String contentType) {
+    private ChatMessage saveMessage(String sessionId, String role, String content, String contentType) {
         ChatMessage message = ChatMessage.builder()
                 .sessionId(sessionId)
                 .role(role)
@@ -254,10 +316,20 @@ public class ChatController {
                 .contentType(contentType)
                 .createdAt(LocalDateTime.now())
                 .build();
-        chatMessageRepository.save(message);
+        return chatMessageRepository.save(message);
     }
     
+    /**
+     * 聊天请求。
+     *
+     * v2（version=2）只携带 sessionId 与本轮新消息 message；历史上下文一律由服务端从数据库加载。
+     * 旧格式（无 version）上传完整 messages 列表，服务端只取最后一条 user 消息，仍然兼容。
+     */
     public static class ChatRequest {
+        public static final int CURRENT_VERSION = 2;
+
+        private Integer version;
+        private ChatInput message;
         private List<Map<String, String>> messages;
         private String userId;
         private String sessionId;
@@ -265,6 +337,10 @@ public class ChatController {
         
         public ChatRequest() {}
         
+        public Integer getVersion() { return version; }
+        public void setVersion(Integer version) { this.version = version; }
+        public ChatInput getMessage() { return message; }
+        public void setMessage(ChatInput message) { this.message = message; }
         public List<Map<String, String>> getMessages() { return messages; }
         public void setMessages(List<Map<String, String>> messages) { this.messages = messages; }
         public String getUserId() { return userId; }
@@ -273,5 +349,41 @@ public class ChatController {
         public void setSessionId(String sessionId) { this.sessionId = sessionId; }
         public Boolean getStream() { return stream; }
         public void setStream(Boolean stream) { this.stream = stream; }
+
+        /**
+         * 本轮用户新消息：v2 取 message，旧格式取 messages 中最后一条 user 消息；没有则返回 null
+         */
+        public ChatInput latestUserMessage() {
+            if (message != null) {
+                return message;
+            }
+            if (messages == null || messages.isEmpty()) {
+                return null;
+            }
+            Map<String, String> last = messages.get(messages.size() - 1);
+            if (last == null || !"user".equals(last.get("role"))) {
+                return null;
+            }
+            ChatInput legacy = new ChatInput();
+            legacy.setContent(last.get("content"));
+            legacy.setContentType(last.get("content_type"));
+            return legacy;
+        }
+    }
+
+    /**
+     * 本轮用户输入（角色固定为 user）
+     */
+    public static class ChatInput {
+        private String content;
+        @JsonProperty("content_type")
+        private String contentType;
+
+        public ChatInput() {}
+
+        public String getContent() { return content; }
+        public void setContent(String content) { this.content = content; }
+        public String getContentType() { return contentType; }
+        public void setContentType(String contentType) { this.contentType = contentType; }
     }
 }
@@ -1,17 +1,33 @@
 package com.equivocal.controller;
 
+import com.equivocal.dto.MessageListResponse;
+import com.equivocal.dto.MessagePageResponse;
+import com.equivocal.dto.MessageView;
+import com.equivocal.dto.SessionListResponse;
+import com.equivocal.dto.SessionView;
 import com.equivocal.entity.ChatMessage;
 import com.equivocal.entity.ChatSession;
 import com.equivocal.entity.User;
 import com.equivocal.repository.ChatMessageRepository;
 import com.equivocal.repository.ChatSessionRepository;
+import com.equivocal.service.ChatArchiveService;
+import com.equivocal.service.ChatSyncService;
+import com.equivocal.service.MessageHistoryStreamer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,12 +43,19 @@ public class ChatSessionController {
     
     private final ChatSessionRepository chatSessionRepository;
     private final ChatMessageRepository chatMessageRepository;
+    private final ChatSyncService chatSyncService;
+    private final ChatArchiveService chatArchiveService;
+    private final MessageHistoryStreamer messageHistoryStreamer;
+    
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final Sort MESSAGE_ORDER = Sort.by(Sort.Order.asc("createdAt"), Sort.Order.asc("id"));
     
     /**
-     * 获取当前用户的所有会话列表
+     * 获取当前用户的所有会话列表；If-None-Match 命中时返回 304
      */
     @GetMapping
-    public ResponseEntity<?> getUserSessions(@AuthenticationPrincipal User user) {
+    public ResponseEntity<?> getUserSessions(@AuthenticationPrincipal User user,
+                                             @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
             if (user == null) {
                 Map<String, String> response = new HashMap<>();
@@ -42,18 +65,24 @@ public class ChatSessionController {
             
             log.info("[ChatSessionController] Getting sessions for user: {}", user.getId());
 
+            ChatSessionRepository.SessionListVersion version = chatSessionRepository.findListVersionByUserId(user.getId());
+            String etag = ETags.of("s", version.getCnt(), version.getLastUpdatedAt());
+            if (ETags.matches(ifNoneMatch, etag)) {
+                return notModified(etag);
+            }
+
             // 只返回有消息的会话（使用 EXISTS 子查询，避免 N+1）
             List<ChatSession> sessions = chatSessionRepository.findWithMessagesByUserIdOrderByUpdatedAtDesc(user.getId());
 
-            List<Map<String, Object>> sessionList = sessions.stream()
-                    .map(this::mapSession)
+            List<SessionView> sessionList = sessions.stream()
+                    .map(SessionView::of)
                     .collect(Collectors.toList());
             
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("sessions", sessionList);
-            
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .header(HttpHeaders.CACHE_CONTROL, ETags.REVALIDATE)
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .body(new SessionListResponse(true, sessionList));
         } catch (Exception e) {
             log.error("[ChatSessionController] Failed to get sessions: {}", e.getMessage(), e);
             Map<String, String> response = new HashMap<>();
@@ -90,17 +119,10 @@ public class ChatSessionController {
                 return ResponseEntity.status(403).body(response);
             }
             
-            Map<String, Object> result = mapSession(session);
-            
-            // 获取会话消息
-            List<ChatMessage> messages = chatMessageRepository.findBySessionIdOrderByCreatedAtAsc(id);
-            List<Map<String, Object>> messageList = messages.stream()
-                    .map(this::mapMessage)
-                    .collect(Collectors.toList());
-            
-            result.put("messages", messageList);
+            // 获取会话消息（已归档的会话从归档块读取）
+            List<ChatMessage> messages = chatArchiveService.findMessages(session);
             
-            return ResponseEntity.ok(result);
+            return ResponseEntity.ok(SessionView.withMessages(session, MessageView.ofAll(messages)));
         } catch (Exception e) {
             log.error("[ChatSessionController] Failed to get session: {}", e.getMessage(), e);
             Map<String, String> response = new HashMap<>();
@@ -110,10 +132,15 @@ public class ChatSessionController {
     }
     
     /**
-     * 获取会话的所有消息
+     * 获取会话的所有消息；带 page 参数时分页返回。ETag 只由会话行派生（每次写入消息都在同一事务中推进 updatedAt），
+     * If-None-Match 命中时返回 304，不查询 chat_messages。完整列表默认分块流式写出，不在内存中组装消息列表
      */
     @GetMapping("/{id}/messages")
-    public ResponseEntity<?> getSessionMessages(@PathVariable String id, @AuthenticationPrincipal User user) {
+    public ResponseEntity<?> getSessionMessages(@PathVariable String id, @AuthenticationPrincipal User user,
+                                                @RequestParam(required = false) Integer page,
+                                                @RequestParam(defaultValue = "100") int limit,
+                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
         try {
             if (user == null) {
                 Map<String, String> response = new HashMap<>();
@@ -123,7 +150,8 @@ public class ChatSessionController {
             
             log.info("[ChatSessionController] Getting messages for session: {}", id);
             
-            Optional<ChatSession> sessionOpt = chatSessionRepository.findById(id);
+            // 会话行与消息走同一路由（副本或读己之写时的主库），避免主库的新 ETag 配上副本的旧消息被客户端缓存
+            Optional<ChatSession> sessionOpt = chatSessionRepository.findForMessageRead(id);
             if (!sessionOpt.isPresent()) {
                 return ResponseEntity.notFound().build();
             }
@@ -137,16 +165,32 @@ public class ChatSessionController {
                 return ResponseEntity.status(403).body(response);
             }
             
-            List<ChatMessage> messages = chatMessageRepository.findBySessionIdOrderByCreatedAtAsc(id);
+            if (page != null) {
+                return getSessionMessagePage(session, page, limit, ifNoneMatch);
+            }
+            
+            String etag = ETags.of("m", session.getUpdatedAt());
+            if (ETags.matches(ifNoneMatch, etag)) {
+                return notModified(etag);
+            }
             
-            List<Map<String, Object>> messageList = messages.stream()
-                    .map(this::mapMessage)
-                    .collect(Collectors.toList());
+            MediaType format = messageHistoryStreamer.supports(session) ? messageHistoryStreamer.negotiate(accept) : null;
+            if (format != null) {
+                return ResponseEntity.ok()
+                        .eTag(etag)
+                        .header(HttpHeaders.CACHE_CONTROL, ETags.REVALIDATE)
+                        .varyBy(HttpHeaders.ACCEPT)
+                        .contentType(format)
+                        .body(messageHistoryStreamer.stream(session.getId(), format));
+            }
             
-            Map<String, Object> response = new HashMap<>();
-            response.put("messages", messageList);
+            List<ChatMessage> messages = chatArchiveService.findMessages(session);
             
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .header(HttpHeaders.CACHE_CONTROL, ETags.REVALIDATE)
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .body(new MessageListResponse(MessageView.ofAll(messages)));
         } catch (Exception e) {
             log.error("[ChatSessionController] Failed to get messages: {}", e.getMessage(), e);
             Map<String, String> response = new HashMap<>();
@@ -181,11 +225,16 @@ public class ChatSessionController {
                     .updatedAt(LocalDateTime.now())
                     .build();
             
-            session = chatSessionRepository.save(session);
+            ChatSession created = session;
+            session = chatSyncService.call(user.getId(), changes -> {
+                ChatSession saved = chatSessionRepository.save(created);
+                changes.sessionChanged(saved);
+                return saved;
+            });
             
             log.info("[ChatSessionController] Session created: {}", session.getId());
             
-            return ResponseEntity.ok(mapSession(session));
+            return ResponseEntity.ok(SessionView.of(session));
         } catch (Exception e) {
             log.error("[ChatSessionController] Failed to create session: {}", e.getMessage(), e);
             Map<String, String> response = new HashMap<>();
@@ -227,11 +276,16 @@ public class ChatSessionController {
             }
             session.setUpdatedAt(LocalDateTime.now());
             
-            session = chatSessionRepository.save(session);
+            ChatSession changed = session;
+            session = chatSyncService.call(user.getId(), changes -> {
+                ChatSession saved = chatSessionRepository.save(changed);
+                changes.sessionChanged(saved);
+                return saved;
+            });
             
             log.info("[ChatSessionController] Session updated: {}", id);
             
-            return ResponseEntity.ok(mapSession(session));
+            return ResponseEntity.ok(SessionView.of(session));
         } catch (Exception e) {
             log.error("[ChatSessionController] Failed to update session: {}", e.getMessage(), e);
             Map<String, String> response = new HashMap<>();
@@ -276,11 +330,17 @@ public class ChatSessionController {
                 return ResponseEntity.status(403).body(response);
             }
             
-            // 先删除会话的所有消息
-            chatMessageRepository.deleteBySessionId(id);
-            
-            // 再删除会话
-            chatSessionRepository.deleteById(id);
+            chatSyncService.run(user.getId(), changes -> {
+                // 先删除会话的所有消息（含归档块）
+                chatMessageRepository.deleteBySessionId(id);
+                chatArchiveService.deleteArchives(Collections.singletonList(id));
+                
+                // 再删除会话
+                chatSessionRepository.deleteById(id);
+                
+                // 墓碑：让其他已打开的客户端在下次同步时移除该会话
+                changes.sessionDeleted(id);
+            });
             
             log.info("[ChatSessionController] Session deleted: {}", id);
             
@@ -295,24 +355,42 @@ public class ChatSessionController {
             return ResponseEntity.internalServerError().body(response);
         }
     }
+
+    private ResponseEntity<?> getSessionMessagePage(ChatSession session, int page, int limit, String ifNoneMatch) {
+        int safePage = Math.max(1, page);
+        int safeLimit = Math.max(1, Math.min(MAX_PAGE_SIZE, limit));
+        String etag = ETags.of("m", session.getUpdatedAt(), safePage, safeLimit);
+        if (ETags.matches(ifNoneMatch, etag)) {
+            return notModified(etag);
+        }
+        
+        Slice<ChatMessage> slice = session.getArchivedAt() != null
+                ? archivedSlice(session, safePage, safeLimit)
+                : chatMessageRepository.findSliceBySessionId(session.getId(), PageRequest.of(safePage - 1, safeLimit, MESSAGE_ORDER));
+        
+        // 消息只追加不修改：后面还有消息的页已经写满，内容不会再变化，允许浏览器长期缓存
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .header(HttpHeaders.CACHE_CONTROL, slice.hasNext() ? ETags.IMMUTABLE : ETags.REVALIDATE)
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(new MessagePageResponse(MessageView.ofAll(slice.getContent()), safePage, safeLimit, slice.hasNext()));
+    }
     
-    private Map<String, Object> mapSession(ChatSession session) {
-        Map<String, Object> result = new HashMap<>();
-        result.put("id", session.getId());
-        result.put("userId", session.getUserId());
-        result.put("title", session.getTitle());
-        result.put("createdAt", session.getCreatedAt());
-        result.put("updatedAt", session.getUpdatedAt());
-        return result;
+    /**
+     * 归档会话的消息整块解码后在内存中分页（顺序与 MESSAGE_ORDER 一致）
+     */
+    private Slice<ChatMessage> archivedSlice(ChatSession session, int page, int limit) {
+        List<ChatMessage> messages = chatArchiveService.findMessages(session);
+        int from = Math.min(messages.size(), (page - 1) * limit);
+        int to = Math.min(messages.size(), from + limit);
+        return new SliceImpl<>(messages.subList(from, to), PageRequest.of(page - 1, limit, MESSAGE_ORDER), to < messages.size());
     }
     
-    private Map<String, Object> mapMessage(ChatMessage message) {
-        Map<String, Object> result = new HashMap<>();
-        result.put("id", message.getId());
-        result.put("sessionId", message.getSessionId());
-        result.put("role", message.getRole());
-        result.put("content", message.getContent());
-        result.put("createdAt", message.getCreatedAt());
-        return result;
+    private static ResponseEntity<?> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(etag)
+                .header(HttpHeaders.CACHE_CONTROL, ETags.REVALIDATE)
+                .varyBy(HttpHeaders.ACCEPT)
+                .build();
     }
 }
@@ -0,0 +1,49 @@
+package com.equivocal.controller;
+
+import com.equivocal.entity.User;
+import com.equivocal.service.ChatSyncService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/chat/sync")
+@RequiredArgsConstructor
+@Slf4j
+public class ChatSyncController {
+
+    private static final int MAX_LIMIT = 1000;
+
+    private final ChatSyncService chatSyncService;
+
+    /**
+     * 增量同步：返回 since 游标之后的会话与消息变化；hasMore=true 时用返回的 cursor 继续拉取
+     */
+    @GetMapping
+    public ResponseEntity<?> sync(@RequestParam(defaultValue = "0") long since,
+                                  @RequestParam(defaultValue = "500") int limit,
+                                  @AuthenticationPrincipal User user) {
+        try {
+            if (user == null) {
+                Map<String, String> response = new HashMap<>();
+                response.put("error", "未授权");
+                return ResponseEntity.status(401).body(response);
+            }
+            int safeLimit = Math.max(1, Math.min(MAX_LIMIT, limit));
+            return ResponseEntity.ok(chatSyncService.changesSince(user.getId(), Math.max(0L, since), safeLimit));
+        } catch (Exception e) {
+            log.error("[ChatSyncController] Sync failed: {}", e.getMessage(), e);
+            Map<String, String> response = new HashMap<>();
+            response.put("error", "服务端内部错误");
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.equivocal.controller;
+
+import org.springframework.http.CacheControl;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 条件 GET 的版本校验器：由会话 updatedAt、会话数量等廉价字段拼出弱 ETag，
+ * 命中 If-None-Match 时直接返回 304，不再查询和序列化完整列表
+ */
+final class ETags {
+
+    /**
+     * 轮询的列表：浏览器可缓存但每次都需带 ETag 回源校验
+     */
+    static final String REVALIDATE = CacheControl.noCache().cachePrivate().getHeaderValue();
+
+    /**
+     * 不会再变化的历史消息页（CacheControl 不支持 immutable 指令，这里直接拼接）
+     */
+    static final String IMMUTABLE = CacheControl.maxAge(1, TimeUnit.DAYS).cachePrivate().getHeaderValue() + ", immutable";
+
+    private ETags() {
+    }
+
+    static String of(Object... parts) {
+        StringBuilder sb = new StringBuilder("W/\"");
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                sb.append('-');
+            }
+            Object part = parts[i];
+            if (part instanceof LocalDateTime) {
+                LocalDateTime time = (LocalDateTime) part;
+                sb.append(Long.toString(time.toEpochSecond(ZoneOffset.UTC), 36))
+                        .append('.')
+                        .append(Integer.toString(time.getNano() / 1000, 36));
+            } else {
+                sb.append(part);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * If-None-Match 使用弱比较：忽略 W/ 前缀，支持逗号分隔的多个值与 *
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isEmpty()) {
+            return false;
+        }
+        String expected = opaque(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if ("*".equals(value) || opaque(value).equals(expected)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opaque(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+}
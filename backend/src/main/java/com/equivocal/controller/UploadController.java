@@ -1,20 +1,34 @@
 package com.equivocal.controller;
 
+import com.equivocal.dto.UploadResult;
+import com.equivocal.entity.UploadCacheEntry;
+import com.equivocal.entity.User;
 import com.equivocal.service.AgentService;
+import com.equivocal.service.UploadCacheService;
+import com.equivocal.service.UploadJobService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/upload")
@@ -23,6 +37,9 @@ import java.util.Set;
 public class UploadController {
 
     private final AgentService agentService;
+    private final UploadCacheService uploadCacheService;
+    private final UploadJobService uploadJobService;
+    private final ObjectMapper objectMapper;
 
     private static final Set<String> ALLOWED_CONTENT_TYPES = new HashSet<>(Arrays.asList(
             "application/pdf",
@@ -33,51 +50,37 @@ public class UploadController {
             "image/jpeg"
     ));
 
+    // 最长的魔数（PNG / OLE2）为 8 字节
+    private static final int SIGNATURE_HEADER_BYTES = 8;
+
     @PostMapping
-    public ResponseEntity<Map<String, Object>> uploadFile(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<Map<String, Object>> uploadFile(@RequestParam("file") MultipartFile file,
+                                                          @AuthenticationPrincipal User user) {
         Map<String, Object> response = new HashMap<>();
 
         try {
             log.info("Received upload request. File content type: {}", file.getContentType());
             
-            if (file.isEmpty()) {
-                response.put("success", false);
-                response.put("error", "文件不能为空");
-                return ResponseEntity.badRequest().body(response);
-            }
-
-            // 检查文件大小 (最大 10MB)
-            if (file.getSize() > 10 * 1024 * 1024) {
-                response.put("success", false);
-                response.put("error", "文件大小不能超过10MB");
-                return ResponseEntity.badRequest().body(response);
-            }
-
-            String contentType = file.getContentType();
-            if (!isAllowedContentType(contentType)) {
-                response.put("success", false);
-                response.put("error", "不支持的文件类型");
-                return ResponseEntity.badRequest().body(response);
+            ResponseEntity<Map<String, Object>> invalid = validate(file);
+            if (invalid != null) {
+                return invalid;
             }
+            String originalFilename = filenameOf(file);
 
-            String originalFilename = file.getOriginalFilename();
-            if (originalFilename == null || originalFilename.isEmpty()) {
-                originalFilename = "unknown_file";
-            }
-            // 注意：Spring Boot 默认已正确处理 UTF-8 编码的文件名，无需额外转换
-            // 日志中显示乱码是因为控制台编码问题，不影响实际传输
-            
-            byte[] fileData = file.getBytes();
-
-            log.info("Uploading file: {}, size: {} bytes", originalFilename, fileData.length);
-
-            if (!hasValidSignature(contentType, fileData)) {
-                response.put("success", false);
-                response.put("error", "文件内容与类型不匹配");
-                return ResponseEntity.badRequest().body(response);
+            // 同一用户上传过内容相同的文件时直接复用之前 Agent 的处理结果
+            String userId = user != null ? user.getId() : null;
+            String digest = uploadCacheService.digest(file);
+            Optional<UploadCacheEntry> cached = uploadCacheService.lookup(userId, digest);
+            if (cached.isPresent()) {
+                response.put("success", true);
+                response.put("data", new UploadResult(cached.get().getUrl(), cached.get().getFilename()).toResponseData());
+                response.put("filename", originalFilename);
+                response.put("size", file.getSize());
+                response.put("cached", true);
+                return ResponseEntity.ok(response);
             }
 
-            String agentRawResponse = agentService.uploadFile(fileData, originalFilename);
+            String agentRawResponse = agentService.uploadFile(file.getResource(), originalFilename);
             log.debug("Agent upload response received ({} chars)", agentRawResponse != null ? agentRawResponse.length() : 0);
 
             if (agentRawResponse == null) {
@@ -86,26 +89,19 @@ public class UploadController {
 
             // Parse Agent JSON response
             // Expected format: { "url": "...", "filename": "...", "extracted_text": "..." }
-            com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-            com.fasterxml.jackson.databind.JsonNode agentJson = mapper.readTree(agentRawResponse);
+            JsonNode agentJson = objectMapper.readTree(agentRawResponse);
             
             // Adapt to frontend format
             // Frontend expects: success: true, data: { id: "..." }
             // We map Agent's "url" to "id"
             
-            Map<String, Object> dataMap = new HashMap<>();
-            if (agentJson.has("url")) {
-                dataMap.put("id", agentJson.get("url").asText());
-                dataMap.put("file_id", agentJson.get("url").asText()); // Redundant but safe
-                dataMap.put("file_name", agentJson.has("filename") ? agentJson.get("filename").asText() : originalFilename);
-            } else {
-                 throw new RuntimeException("Agent API did not return URL");
-            }
+            UploadResult result = UploadResult.fromAgentResponse(agentJson, originalFilename);
+            uploadCacheService.store(userId, digest, result.getUrl(), result.getFilename(), file.getSize());
 
             response.put("success", true);
-            response.put("data", dataMap);
+            response.put("data", result.toResponseData());
             response.put("filename", originalFilename);
-            response.put("size", fileData.length);
+            response.put("size", file.getSize());
 
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -116,6 +112,152 @@ public class UploadController {
         }
     }
 
+    /**
+     * 异步上传：立即返回 jobId，通过 GET /api/upload/{jobId} 查询进度与结果
+     */
+    @PostMapping(params = "async=true")
+    public ResponseEntity<Map<String, Object>> uploadFileAsync(@RequestParam("file") MultipartFile file,
+                                                               @AuthenticationPrincipal User user) {
+        Map<String, Object> response = new HashMap<>();
+
+        try {
+            if (user == null) {
+                response.put("success", false);
+                response.put("error", "未授权");
+                return ResponseEntity.status(401).body(response);
+            }
+
+            ResponseEntity<Map<String, Object>> invalid = validate(file);
+            if (invalid != null) {
+                return invalid;
+            }
+            String originalFilename = filenameOf(file);
+
+            String digest = uploadCacheService.digest(file);
+            Optional<UploadCacheEntry> cached = uploadCacheService.lookup(user.getId(), digest);
+            UploadJobService.UploadJob job;
+            if (cached.isPresent()) {
+                job = uploadJobService.completed(user.getId(), originalFilename, file.getSize(),
+                        new UploadResult(cached.get().getUrl(), cached.get().getFilename()));
+            } else {
+                job = uploadJobService.submit(user.getId(), file, originalFilename, digest);
+            }
+
+            return ResponseEntity.status(202).body(mapJob(job));
+        } catch (RejectedExecutionException e) {
+            log.warn("[UploadController] Upload job rejected: {}", e.getMessage());
+            response.put("success", false);
+            response.put("error", "上传任务过多，请稍后再试");
+            return ResponseEntity.status(429).body(response);
+        } catch (Exception e) {
+            log.error("Async file upload failed", e);
+            response.put("success", false);
+            response.put("error", "服务端内部错误");
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    /**
+     * 查询异步上传任务状态
+     */
+    @GetMapping("/{jobId}")
+    public ResponseEntity<Map<String, Object>> getUploadJob(@PathVariable String jobId,
+                                                            @AuthenticationPrincipal User user) {
+        if (user == null) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("error", "未授权");
+            return ResponseEntity.status(401).body(response);
+        }
+
+        Optional<UploadJobService.UploadJob> job = uploadJobService.find(jobId, user.getId());
+        if (!job.isPresent()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(mapJob(job.get()));
+    }
+
+    /**
+     * 校验上传文件，不合法时返回 400 响应，合法时返回 null
+     */
+    private static ResponseEntity<Map<String, Object>> validate(MultipartFile file) throws IOException {
+        if (file.isEmpty()) {
+            return badRequest("文件不能为空");
+        }
+
+        // 检查文件大小 (最大 10MB)
+        if (file.getSize() > 10 * 1024 * 1024) {
+            return badRequest("文件大小不能超过10MB");
+        }
+
+        String contentType = file.getContentType();
+        if (!isAllowedContentType(contentType)) {
+            return badRequest("不支持的文件类型");
+        }
+
+        // 只读取文件头用于魔数校验，文件正文由 Agent 上传时流式读取
+        byte[] header = readHeader(file, SIGNATURE_HEADER_BYTES);
+
+        log.info("Uploading file: {}, size: {} bytes", filenameOf(file), file.getSize());
+
+        if (!hasValidSignature(contentType, header)) {
+            return badRequest("文件内容与类型不匹配");
+        }
+        return null;
+    }
+
+    private static String filenameOf(MultipartFile file) {
+        String originalFilename = file.getOriginalFilename();
+        // 注意：Spring Boot 默认已正确处理 UTF-8 编码的文件名，无需额外转换
+        // 日志中显示乱码是因为控制台编码问题，不影响实际传输
+        if (originalFilename == null || originalFilename.isEmpty()) {
+            return "unknown_file";
+        }
+        return originalFilename;
+    }
+
+    private static ResponseEntity<Map<String, Object>> badRequest(String error) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("error", error);
+        return ResponseEntity.badRequest().body(response);
+    }
+
+    private static Map<String, Object> mapJob(UploadJobService.UploadJob job) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", job.getStatus() != UploadJobService.Status.FAILED);
+        result.put("jobId", job.getId());
+        result.put("status", job.getStatus().name());
+        result.put("filename", job.getFilename());
+        result.put("size", job.getSize());
+        result.put("createdAt", job.getCreatedAt());
+        result.put("elapsedMs", job.getElapsedMs());
+        if (job.getStatus() == UploadJobService.Status.COMPLETED && job.getResult() != null) {
+            result.put("data", job.getResult().toResponseData());
+        } else if (job.getStatus() == UploadJobService.Status.FAILED) {
+            result.put("error", "服务端内部错误");
+        }
+        return result;
+    }
+
+    /**
+     * 读取文件开头最多 maxBytes 字节
+     */
+    private static byte[] readHeader(MultipartFile file, int maxBytes) throws IOException {
+        byte[] buffer = new byte[maxBytes];
+        int total = 0;
+        try (InputStream in = file.getInputStream()) {
+            while (total < maxBytes) {
+                int n = in.read(buffer, total, maxBytes - total);
+                if (n < 0) {
+                    break;
+                }
+                total += n;
+            }
+        }
+        return total == maxBytes ? buffer : Arrays.copyOf(buffer, total);
+    }
+
     private static boolean isAllowedContentType(String contentType) {
         if (contentType == null || contentType.trim().isEmpty()) {
             return false;
@@ -124,7 +266,7 @@ public class UploadController {
         return ALLOWED_CONTENT_TYPES.contains(normalized);
     }
 
-    private static boolean hasValidSignature(String contentType, byte[] data) {
+    static boolean hasValidSignature(String contentType, byte[] data) {
         if (data == null) {
             return false;
         }
@@ -1,5 +1,7 @@
 package com.equivocal.controller;
 
+import com.equivocal.datasource.Workload;
+import com.equivocal.datasource.WorkloadPool;
 import com.equivocal.service.VerificationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -10,6 +12,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 @RestController
+@WorkloadPool(Workload.AUTH)
 @RequestMapping("/api/auth")
 @RequiredArgsConstructor
 @Slf4j
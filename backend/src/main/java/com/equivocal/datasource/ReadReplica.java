@@ -0,0 +1,19 @@
+package com.equivocal.datasource;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记可以从只读副本读取的 Repository 方法。
+ *
+ * 只对已登录用户的请求生效，且该用户刚写入过数据时仍走主库（读己之写）；
+ * 在读写事务中调用时沿用事务已持有的主库连接。
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ReadReplica {
+}
@@ -0,0 +1,116 @@
+package com.equivocal.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 读写分离路由：在真正借出连接时决定走主库还是只读副本。
+ *
+ * 走副本需同时满足：
+ * <ul>
+ *   <li>当前是应用代码声明的 {@code @Transactional(readOnly = true)} 事务，或处于 {@link ReadReplica} 方法调用中；
+ *       Spring Data 给所有查询方法隐式加的只读事务不算，避免读后写的流程读到旧数据</li>
+ *   <li>当前线程有登录用户，且该用户不在写入后的窗口期内（见 {@link ReadYourWritesTracker}）</li>
+ * </ul>
+ * 其余情况一律走主库。必须包在 LazyConnectionDataSourceProxy 内使用：JPA 在事务开始时就会取连接，
+ * 此时只读标记尚未写入事务同步管理器。
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route {
+        PRIMARY, REPLICA
+    }
+
+    private static final String DEFAULT_REPOSITORY_TRANSACTION = SimpleJpaRepository.class.getName() + ".";
+
+    private static final ThreadLocal<int[]> REPLICA_READS = new ThreadLocal<>();
+
+    private final ReadYourWritesTracker tracker;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, ReadYourWritesTracker tracker) {
+        this.tracker = tracker;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(Route.PRIMARY, primary);
+        targets.put(Route.REPLICA, replica);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    /**
+     * 进入 {@link ReadReplica} 方法调用；可嵌套，须与 {@link #endReplicaRead()} 成对调用
+     */
+    public static void beginReplicaRead() {
+        int[] depth = REPLICA_READS.get();
+        if (depth == null) {
+            depth = new int[1];
+            REPLICA_READS.set(depth);
+        }
+        depth[0]++;
+    }
+
+    public static void endReplicaRead() {
+        int[] depth = REPLICA_READS.get();
+        if (depth == null || --depth[0] <= 0) {
+            REPLICA_READS.remove();
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String userId = ReadYourWritesTracker.currentUserId();
+        if (isWriteTransaction()) {
+            recordWrite(userId);
+            return Route.PRIMARY;
+        }
+        if (userId == null || !isReplicaEligible() || tracker.isPinned(userId)) {
+            return Route.PRIMARY;
+        }
+        log.trace("[ReadWriteRoutingDataSource] Routing read to replica: userId={}", userId);
+        return Route.REPLICA;
+    }
+
+    private static boolean isWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private static boolean isReplicaEligible() {
+        if (REPLICA_READS.get() != null) {
+            return true;
+        }
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+                || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return false;
+        }
+        String name = TransactionSynchronizationManager.getCurrentTransactionName();
+        return name == null || !name.startsWith(DEFAULT_REPOSITORY_TRANSACTION);
+    }
+
+    /**
+     * 借出写连接时先记一次（覆盖事务进行中的并发读），事务结束时再刷新一次，窗口期从提交时算起
+     */
+    private void recordWrite(String userId) {
+        if (userId == null) {
+            return;
+        }
+        tracker.recordWrite(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    tracker.recordWrite(userId);
+                }
+            });
+        }
+    }
+}
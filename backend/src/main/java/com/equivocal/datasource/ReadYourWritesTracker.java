@@ -0,0 +1,84 @@
+package com.equivocal.datasource;
+
+import com.equivocal.entity.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读己之写：记录每个用户最近一次写入的时间，窗口期内该用户的读请求固定走主库，
+ * 避免副本复制延迟导致刚发送的消息、刚改的标题在列表里"消失"。
+ *
+ * 请求线程上的写事务由路由数据源自动记录；在响应式回调等没有登录上下文的线程上写入时，
+ * 调用方需显式调用 {@link #recordWrite(String)}。
+ */
+@Component
+public class ReadYourWritesTracker {
+
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int maxUsers;
+
+    private final ConcurrentMap<String, Long> lastWriteAt = new ConcurrentHashMap<>();
+
+    public ReadYourWritesTracker(@Value("${app.datasource.replica.enabled:false}") boolean enabled,
+                                 @Value("${app.datasource.replica.read-your-writes-ms:5000}") long windowMs,
+                                 @Value("${app.datasource.replica.read-your-writes-max-users:100000}") int maxUsers) {
+        this.enabled = enabled;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, windowMs));
+        this.maxUsers = Math.max(1, maxUsers);
+    }
+
+    /**
+     * 当前线程登录用户的 ID；未登录（注册、登录、后台任务等）时返回 null
+     */
+    public static String currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof User) {
+            return ((User) authentication.getPrincipal()).getId();
+        }
+        return null;
+    }
+
+    public void recordWrite(String userId) {
+        if (!enabled || userId == null || windowNanos == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (lastWriteAt.size() >= maxUsers && !lastWriteAt.containsKey(userId)) {
+            evictExpired(now);
+        }
+        lastWriteAt.put(userId, now);
+    }
+
+    /**
+     * 用户是否仍在写入后的窗口期内（需要读主库）
+     */
+    public boolean isPinned(String userId) {
+        if (userId == null) {
+            return false;
+        }
+        Long writtenAt = lastWriteAt.get(userId);
+        if (writtenAt == null) {
+            return false;
+        }
+        if (System.nanoTime() - writtenAt < windowNanos) {
+            return true;
+        }
+        lastWriteAt.remove(userId, writtenAt);
+        return false;
+    }
+
+    private void evictExpired(long now) {
+        lastWriteAt.entrySet().removeIf(entry -> now - entry.getValue() >= windowNanos);
+        // 窗口期内的用户数仍超过上限时整体清空：最坏情况是少量读请求落到副本，不影响正确写入
+        if (lastWriteAt.size() >= maxUsers) {
+            lastWriteAt.clear();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.equivocal.datasource;
+
+/**
+ * 数据库负载类型，每类负载使用独立的主库连接池（app.datasource.pools.&lt;key&gt;）。
+ */
+public enum Workload {
+
+    /**
+     * 登录、注册、验证码：查询简单，要求低延迟
+     */
+    AUTH("auth"),
+
+    /**
+     * 聊天读写与会话列表；未标注的请求和线程默认使用
+     */
+    CHAT("chat"),
+
+    /**
+     * 管理后台查询与后台批处理任务（归档、压缩迁移）
+     */
+    ADMIN("admin");
+
+    public static final Workload DEFAULT = CHAT;
+
+    private final String key;
+
+    Workload(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+}
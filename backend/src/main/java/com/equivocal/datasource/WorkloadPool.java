@@ -0,0 +1,19 @@
+package com.equivocal.datasource;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 指定控制器（类或方法）使用的连接池负载，由 {@link WorkloadPoolFilter} 在请求线程上绑定；
+ * 方法上的标注优先于类上的标注
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface WorkloadPool {
+
+    Workload value();
+}
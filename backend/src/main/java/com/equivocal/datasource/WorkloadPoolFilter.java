@@ -0,0 +1,133 @@
+package com.equivocal.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ServletRequestPathUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 按控制器上的 {@link WorkloadPool} 为请求线程绑定连接池负载；未标注的请求使用默认负载。
+ *
+ * 注册在 Spring Security 过滤器链之前：JWT 认证查询用户时已经使用目标连接池，而不是默认的 chat 连接池。
+ * 处理器在这里提前匹配一次，匹配过程写入的请求属性留在包装请求上，不影响 DispatcherServlet 的正式匹配。
+ */
+@Slf4j
+public class WorkloadPoolFilter extends OncePerRequestFilter {
+
+    private final ObjectProvider<HandlerMapping> handlerMapping;
+
+    public WorkloadPoolFilter(ObjectProvider<HandlerMapping> handlerMapping) {
+        this.handlerMapping = handlerMapping;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Workload previous = WorkloadRoutingDataSource.bind(resolve(request));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            WorkloadRoutingDataSource.restore(previous);
+        }
+    }
+
+    /**
+     * 异步分派（SSE 完成回调等）同样需要绑定
+     */
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    Workload resolve(HttpServletRequest request) {
+        HandlerMapping mapping = handlerMapping.getIfAvailable();
+        if (mapping == null) {
+            return Workload.DEFAULT;
+        }
+        try {
+            HttpServletRequest lookup = new LookupRequest(request);
+            ServletRequestPathUtils.parseAndCache(lookup);
+            HandlerExecutionChain chain = mapping.getHandler(lookup);
+            return workloadOf(chain != null ? chain.getHandler() : null);
+        } catch (Exception e) {
+            log.debug("[WorkloadPoolFilter] Handler lookup failed for {}: {}", request.getRequestURI(), e.getMessage());
+            return Workload.DEFAULT;
+        }
+    }
+
+    public static Workload workloadOf(Object handler) {
+        if (handler instanceof HandlerMethod) {
+            HandlerMethod handlerMethod = (HandlerMethod) handler;
+            WorkloadPool pool = AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getMethod(), WorkloadPool.class);
+            if (pool == null) {
+                pool = AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getBeanType(), WorkloadPool.class);
+            }
+            if (pool != null) {
+                return pool.value();
+            }
+        }
+        return Workload.DEFAULT;
+    }
+
+    /**
+     * 匹配处理器用的请求：读取穿透到原请求，写入只保存在本地
+     */
+    private static final class LookupRequest extends HttpServletRequestWrapper {
+
+        private final Map<String, Object> attributes = new HashMap<>();
+        private final Set<String> removed = new HashSet<>();
+
+        LookupRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public Object getAttribute(String name) {
+            if (attributes.containsKey(name)) {
+                return attributes.get(name);
+            }
+            return removed.contains(name) ? null : super.getAttribute(name);
+        }
+
+        @Override
+        public Enumeration<String> getAttributeNames() {
+            Set<String> names = new HashSet<>(Collections.list(super.getAttributeNames()));
+            names.removeAll(removed);
+            names.addAll(attributes.keySet());
+            return Collections.enumeration(names);
+        }
+
+        @Override
+        public void setAttribute(String name, Object value) {
+            if (value == null) {
+                removeAttribute(name);
+                return;
+            }
+            attributes.put(name, value);
+            removed.remove(name);
+        }
+
+        @Override
+        public void removeAttribute(String name) {
+            attributes.remove(name);
+            removed.add(name);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.equivocal.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按当前线程的负载类型选择主库连接池，使管理后台的慢查询、批处理任务占满自己的连接池时，
+ * 登录与聊天写入仍能立即拿到连接。
+ *
+ * 请求线程由 {@link WorkloadPoolFilter} 在认证之前绑定；后台线程在创建时用 {@link #bound(Workload, Runnable)} 绑定。
+ */
+public class WorkloadRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final ThreadLocal<Workload> CURRENT = new ThreadLocal<>();
+
+    private final Map<Workload, DataSource> pools;
+
+    public WorkloadRoutingDataSource(Map<Workload, DataSource> pools) {
+        this.pools = new EnumMap<>(pools);
+        setTargetDataSources(new HashMap<Object, Object>(pools));
+        setDefaultTargetDataSource(pools.get(Workload.DEFAULT));
+        setLenientFallback(true);
+        afterPropertiesSet();
+    }
+
+    /**
+     * 为当前线程绑定负载类型，返回之前的绑定，供 {@link #restore(Workload)} 恢复
+     */
+    public static Workload bind(Workload workload) {
+        Workload previous = CURRENT.get();
+        CURRENT.set(workload);
+        return previous;
+    }
+
+    public static void restore(Workload previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    public static Workload current() {
+        Workload workload = CURRENT.get();
+        return workload != null ? workload : Workload.DEFAULT;
+    }
+
+    /**
+     * 在指定负载下执行任务，用于后台线程的入口
+     */
+    public static Runnable bound(Workload workload, Runnable task) {
+        return () -> {
+            Workload previous = bind(workload);
+            try {
+                task.run();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    public Map<Workload, DataSource> getPools() {
+        return pools;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return current();
+    }
+}
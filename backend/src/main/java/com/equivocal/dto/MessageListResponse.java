@@ -0,0 +1,13 @@
+package com.equivocal.dto;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * GET /api/chat/sessions/{id}/messages
+ */
+@Value
+public class MessageListResponse {
+    List<MessageView> messages;
+}
@@ -0,0 +1,18 @@
+package com.equivocal.dto;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * GET /api/chat/sessions/{id}/messages?page=N 分页形式
+ */
+@Value
+@JsonPropertyOrder({"messages", "page", "limit", "hasMore"})
+public class MessagePageResponse {
+    List<MessageView> messages;
+    int page;
+    int limit;
+    boolean hasMore;
+}
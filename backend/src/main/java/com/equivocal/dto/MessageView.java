@@ -0,0 +1,35 @@
+package com.equivocal.dto;
+
+import com.equivocal.entity.ChatMessage;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 消息响应（用户端与管理端共用）
+ */
+@Value
+@JsonPropertyOrder({"id", "sessionId", "role", "content", "createdAt"})
+public class MessageView {
+    Long id;
+    String sessionId;
+    String role;
+    String content;
+    LocalDateTime createdAt;
+
+    public static MessageView of(ChatMessage message) {
+        return new MessageView(message.getId(), message.getSessionId(), message.getRole(),
+                message.getContent(), message.getCreatedAt());
+    }
+
+    public static List<MessageView> ofAll(List<ChatMessage> messages) {
+        List<MessageView> views = new ArrayList<>(messages.size());
+        for (ChatMessage message : messages) {
+            views.add(of(message));
+        }
+        return views;
+    }
+}
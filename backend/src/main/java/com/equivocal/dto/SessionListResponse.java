@@ -0,0 +1,14 @@
+package com.equivocal.dto;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * GET /api/chat/sessions
+ */
+@Value
+public class SessionListResponse {
+    boolean success;
+    List<SessionView> sessions;
+}
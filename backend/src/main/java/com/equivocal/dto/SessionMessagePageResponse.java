@@ -0,0 +1,20 @@
+package com.equivocal.dto;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * GET /api/admin/chat-sessions/{id}/messages
+ */
+@Value
+@JsonPropertyOrder({"session", "messages", "page", "limit", "total", "totalPages"})
+public class SessionMessagePageResponse {
+    SessionView session;
+    List<MessageView> messages;
+    int page;
+    int limit;
+    long total;
+    int totalPages;
+}
@@ -0,0 +1,41 @@
+package com.equivocal.dto;
+
+import com.equivocal.entity.ChatSession;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 会话响应；messageCount（管理端）与 messages（会话详情）仅在对应端点返回
+ */
+@Value
+@JsonPropertyOrder({"id", "userId", "title", "createdAt", "updatedAt", "messageCount", "messages"})
+public class SessionView {
+    String id;
+    String userId;
+    String title;
+    LocalDateTime createdAt;
+    LocalDateTime updatedAt;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    Long messageCount;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    List<MessageView> messages;
+
+    public static SessionView of(ChatSession session) {
+        return new SessionView(session.getId(), session.getUserId(), session.getTitle(),
+                session.getCreatedAt(), session.getUpdatedAt(), null, null);
+    }
+
+    public static SessionView withMessageCount(ChatSession session, long messageCount) {
+        return new SessionView(session.getId(), session.getUserId(), session.getTitle(),
+                session.getCreatedAt(), session.getUpdatedAt(), messageCount, null);
+    }
+
+    public static SessionView withMessages(ChatSession session, List<MessageView> messages) {
+        return new SessionView(session.getId(), session.getUserId(), session.getTitle(),
+                session.getCreatedAt(), session.getUpdatedAt(), null, messages);
+    }
+}
@@ -0,0 +1,27 @@
+package com.equivocal.dto;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.Value;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * GET /api/chat/sync：游标之后新建/更新的会话（当前状态）、新消息和已删除的会话 ID。
+ * reset=true 表示游标已失效（变更已过保留期），客户端需全量重新加载后从 cursor 继续
+ */
+@Value
+@JsonPropertyOrder({"cursor", "hasMore", "reset", "sessions", "messages", "deletedSessionIds"})
+public class SyncResponse {
+    long cursor;
+    boolean hasMore;
+    boolean reset;
+    List<SessionView> sessions;
+    List<MessageView> messages;
+    List<String> deletedSessionIds;
+
+    public static SyncResponse reset(long cursor) {
+        return new SyncResponse(cursor, false, true, Collections.<SessionView>emptyList(),
+                Collections.<MessageView>emptyList(), Collections.<String>emptyList());
+    }
+}
@@ -0,0 +1,42 @@
+package com.equivocal.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Agent 文件上传结果
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadResult {
+    private String url;
+    private String filename;
+    
+    /**
+     * 解析 Agent 返回：{ "url": "...", "filename": "...", "extracted_text": "..." }
+     */
+    public static UploadResult fromAgentResponse(JsonNode agentJson, String fallbackFilename) {
+        if (agentJson == null || !agentJson.has("url")) {
+            throw new IllegalStateException("Agent API did not return URL");
+        }
+        String filename = agentJson.has("filename") ? agentJson.get("filename").asText() : fallbackFilename;
+        return new UploadResult(agentJson.get("url").asText(), filename);
+    }
+    
+    /**
+     * 适配前端格式：Agent 的 url 映射为 id
+     */
+    public Map<String, Object> toResponseData() {
+        Map<String, Object> dataMap = new HashMap<>();
+        dataMap.put("id", url);
+        dataMap.put("file_id", url); // Redundant but safe
+        dataMap.put("file_name", filename);
+        return dataMap;
+    }
+}
@@ -0,0 +1,19 @@
+package com.equivocal.dto;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * GET /api/admin/users
+ */
+@Value
+@JsonPropertyOrder({"users", "total", "page", "limit", "totalPages"})
+public class UserPageResponse {
+    List<UserView> users;
+    long total;
+    int page;
+    int limit;
+    int totalPages;
+}
@@ -0,0 +1,26 @@
+package com.equivocal.dto;
+
+import com.equivocal.entity.User;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * 管理端用户响应，不含密码等敏感字段
+ */
+@Value
+@JsonPropertyOrder({"id", "email", "role", "emailVerified", "createdAt", "updatedAt"})
+public class UserView {
+    String id;
+    String email;
+    Integer role;
+    Boolean emailVerified;
+    LocalDateTime createdAt;
+    LocalDateTime updatedAt;
+
+    public static UserView of(User user) {
+        return new UserView(user.getId(), user.getEmail(), user.getRole(), user.getEmailVerified(),
+                user.getCreatedAt(), user.getUpdatedAt());
+    }
+}
@@ -0,0 +1,58 @@
+package com.equivocal.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 会话/消息变更日志，供 GET /api/chat/sync 增量同步。
+ * seq 为每个用户内连续递增的序号（见 ChatSyncCounter），客户端以它作为同步游标
+ */
+@Entity
+@Table(name = "chat_changes", indexes = {
+        @Index(name = "uk_chat_changes_user_seq", columnList = "user_id, seq", unique = true),
+        @Index(name = "idx_chat_changes_user_created", columnList = "user_id, created_at")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatChange {
+
+    public enum Type {
+        /** 会话新建或更新（标题、更新时间） */
+        SESSION,
+        /** 会话已删除（墓碑），其消息一并视为删除 */
+        SESSION_DELETED,
+        /** 新消息 */
+        MESSAGE
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false, length = 64)
+    private String userId;
+
+    @Column(nullable = false)
+    private Long seq;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Type type;
+
+    @Column(name = "session_id", nullable = false, length = 64)
+    private String sessionId;
+
+    @Column(name = "message_id")
+    private Long messageId;
+
+    @Column(name = "created_at")
+    @Builder.Default
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
@@ -9,7 +9,11 @@ import javax.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "chat_messages")
+@Table(name = "chat_messages", indexes = {
+        @Index(name = "idx_chat_messages_session_id", columnList = "session_id, id"),
+        // 完整消息列表按 (created_at, id) 键集分块读取
+        @Index(name = "idx_chat_messages_session_created", columnList = "session_id, created_at, id")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -27,6 +31,7 @@ public class ChatMessage {
     private String role;
     
     @Column(columnDefinition = "LONGTEXT", nullable = false)
+    @Convert(converter = CompressedTextConverter.class)
     private String content;
     
     @Column(name = "content_type", length = 20)
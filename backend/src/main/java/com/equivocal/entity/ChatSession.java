@@ -34,4 +34,29 @@ public class ChatSession {
     @Column(name = "updated_at")
     @Builder.Default
     private LocalDateTime updatedAt = LocalDateTime.now();
-}
\ No newline at end of file
+    
+    /**
+     * 较早对话的滚动摘要；只经 ChatSessionRepository.updateSummary 写入，普通 save 不会覆盖
+     */
+    @Column(columnDefinition = "LONGTEXT", updatable = false)
+    private String summary;
+    
+    /**
+     * 摘要覆盖到的最后一条消息 ID；与 summarizedUpToCreatedAt 组成 (createdAt, id) 边界，
+     * 与消息排序一致（TiDB 自增 ID 不保证单调，不能单独作为边界）
+     */
+    @Column(name = "summarized_up_to_id", updatable = false)
+    private Long summarizedUpToId;
+    
+    /**
+     * 摘要覆盖到的最后一条消息的创建时间；旧数据为 null 时按 ID 边界读取
+     */
+    @Column(name = "summarized_up_to_created_at", updatable = false)
+    private LocalDateTime summarizedUpToCreatedAt;
+    
+    /**
+     * 消息已移入 chat_session_archives 的时间，未归档为 null；只经 ChatSessionRepository 的归档/恢复更新写入
+     */
+    @Column(name = "archived_at", updatable = false)
+    private LocalDateTime archivedAt;
+}
@@ -0,0 +1,53 @@
+package com.equivocal.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * 冷会话归档：闲置会话的全部消息压缩成一个块，从 chat_messages 移出。
+ *
+ * 消息 ID 原样保留在块内，恢复时按原 ID 写回，同步游标、摘要位置与 ETag 均不受影响
+ */
+@Entity
+@Table(name = "chat_session_archives")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatSessionArchive {
+
+    @Id
+    @Column(name = "session_id", length = 64)
+    private String sessionId;
+
+    /**
+     * ChatArchiveService 编码的压缩消息块
+     */
+    @Lob
+    @Column(columnDefinition = "LONGBLOB", nullable = false)
+    private byte[] payload;
+
+    @Column(name = "message_count", nullable = false)
+    private Integer messageCount;
+
+    @Column(name = "max_message_id", nullable = false)
+    private Long maxMessageId;
+
+    /**
+     * 压缩前的消息内容字节数，用于统计压缩率
+     */
+    @Column(name = "raw_bytes", nullable = false)
+    private Long rawBytes;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+}
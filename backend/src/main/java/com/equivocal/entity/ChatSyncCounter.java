@@ -0,0 +1,31 @@
+package com.equivocal.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * 每个用户的变更序号。
+ *
+ * 自增主键在 TiDB 上只保证唯一、不保证单调，不能直接当游标；这里在写变更的事务里
+ * 对用户行加一，行锁让同一用户的变更按提交顺序拿到连续的序号
+ */
+@Entity
+@Table(name = "chat_sync_counters")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatSyncCounter {
+
+    @Id
+    @Column(name = "user_id", length = 64)
+    private String userId;
+
+    @Column(nullable = false)
+    private Long seq;
+}
@@ -0,0 +1,128 @@
+package com.equivocal.entity;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 大文本列的透明压缩。
+ *
+ * 列类型保持 LONGTEXT 不变，压缩后的内容以标记前缀区分：
+ * "\u0001D" + Base64(Deflate(UTF-8)) 为压缩内容；"\u0001P" + 原文为以 \u0001 开头的明文（转义）；
+ * 其余均按旧数据的明文原样读取，读取时无需解码。
+ * 只有开启 app.storage.compression.enabled、长度达到 min-chars 且压缩后确实更小时才压缩；
+ * 关闭后仍能读取已压缩的行。由 Hibernate 通过 Spring 容器创建，配置项在此注入。
+ */
+@Converter
+@Component
+public class CompressedTextConverter implements AttributeConverter<String, String> {
+
+    static final char MARKER = '\u0001';
+    static final char DEFLATE = 'D';
+    static final char PLAIN = 'P';
+
+    @Value("${app.storage.compression.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.storage.compression.min-chars:1024}")
+    private int minChars = 1024;
+
+    /**
+     * 压缩后的存储大小不超过原文 UTF-8 字节数的该比例才采用压缩形式
+     */
+    private static final double MAX_RATIO = 0.9;
+
+    @Override
+    public String convertToDatabaseColumn(String attribute) {
+        if (attribute == null) {
+            return null;
+        }
+        if (enabled && attribute.length() >= minChars) {
+            byte[] raw = attribute.getBytes(StandardCharsets.UTF_8);
+            String encoded = Base64.getEncoder().encodeToString(deflate(raw));
+            if (encoded.length() + 2 <= raw.length * MAX_RATIO) {
+                return new StringBuilder(encoded.length() + 2).append(MARKER).append(DEFLATE).append(encoded).toString();
+            }
+        }
+        if (!attribute.isEmpty() && attribute.charAt(0) == MARKER) {
+            return new StringBuilder(attribute.length() + 2).append(MARKER).append(PLAIN).append(attribute).toString();
+        }
+        return attribute;
+    }
+
+    @Override
+    public String convertToEntityAttribute(String dbData) {
+        if (dbData == null || dbData.length() < 2 || dbData.charAt(0) != MARKER) {
+            return dbData;
+        }
+        char format = dbData.charAt(1);
+        if (format == DEFLATE) {
+            return new String(inflate(Base64.getDecoder().decode(dbData.substring(2))), StandardCharsets.UTF_8);
+        }
+        if (format == PLAIN) {
+            return dbData.substring(2);
+        }
+        // 未知格式按明文返回，避免旧数据恰好以控制字符开头时读取失败
+        return dbData;
+    }
+
+    /**
+     * 存储形式是否已经是压缩内容
+     */
+    public static boolean isCompressed(String dbData) {
+        return dbData != null && dbData.length() >= 2 && dbData.charAt(0) == MARKER && dbData.charAt(1) == DEFLATE;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getMinChars() {
+        return minChars;
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, input.length / 2));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] input) {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(input);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length * 3);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int read = inflater.inflate(buffer);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated compressed content");
+                }
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt compressed content", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
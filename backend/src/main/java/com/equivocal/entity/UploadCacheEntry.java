@@ -0,0 +1,64 @@
+package com.equivocal.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 上传去重缓存：按（用户, 文件内容 SHA-256）记录 Agent 返回的文件地址。
+ * 条目只对上传者本人可见，其他用户上传相同内容时不会拿到别人的文件地址。
+ */
+@Entity
+@Table(name = "user_upload_cache", indexes = {
+        @Index(name = "idx_user_upload_cache_user", columnList = "user_id"),
+        @Index(name = "idx_user_upload_cache_last_accessed", columnList = "last_accessed_at"),
+        @Index(name = "idx_user_upload_cache_created", columnList = "created_at")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadCacheEntry {
+    
+    /**
+     * userId + ":" + digest，见 {@link #keyOf(String, String)}
+     */
+    @Id
+    @Column(name = "cache_key", length = 128)
+    private String cacheKey;
+    
+    @Column(name = "user_id", nullable = false, length = 64)
+    private String userId;
+    
+    @Column(nullable = false, length = 64)
+    private String digest;
+    
+    @Column(nullable = false, length = 1024)
+    private String url;
+    
+    @Column(nullable = false)
+    private String filename;
+    
+    @Column(name = "size_bytes")
+    private Long sizeBytes;
+    
+    @Column(name = "hit_count")
+    @Builder.Default
+    private Long hitCount = 0L;
+    
+    @Column(name = "created_at")
+    @Builder.Default
+    private LocalDateTime createdAt = LocalDateTime.now();
+    
+    @Column(name = "last_accessed_at")
+    @Builder.Default
+    private LocalDateTime lastAccessedAt = LocalDateTime.now();
+    
+    public static String keyOf(String userId, String digest) {
+        return userId + ":" + digest;
+    }
+}
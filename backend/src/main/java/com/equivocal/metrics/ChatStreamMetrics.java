@@ -0,0 +1,175 @@
+package com.equivocal.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 聊天流指标。
+ *
+ * 对每次订阅统计：首个事件耗时（TTFT）、事件间隔、流总时长、事件数与字节数，
+ * 以及当前活跃流数量。stream 标签区分面向浏览器的 SSE（client）与上游 Agent 流（agent），
+ * 结束方式以 outcome 标签区分 completed / cancelled / error。
+ */
+@Component
+@Slf4j
+public class ChatStreamMetrics {
+
+    public static final String CLIENT = "client";
+    public static final String AGENT = "agent";
+
+    public static final String HANDLE_HIT = "hit";
+    public static final String HANDLE_MISS = "miss";
+    public static final String HANDLE_FULL = "full";
+
+    static final String COMPLETED = "completed";
+    static final String CANCELLED = "cancelled";
+    static final String ERROR = "error";
+
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, AtomicInteger> activeStreams = new ConcurrentHashMap<>();
+
+    public ChatStreamMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 为流加上指标统计；每次订阅单独计时
+     */
+    public Flux<String> instrument(String stream, Flux<String> source) {
+        AtomicInteger active = activeStreams.computeIfAbsent(stream, this::registerActiveGauge);
+        return Flux.defer(() -> {
+            StreamState state = new StreamState(System.nanoTime());
+            active.incrementAndGet();
+            return source
+                    .doOnNext(item -> onEvent(stream, state, item))
+                    .doFinally(signal -> {
+                        active.decrementAndGet();
+                        finish(stream, state, signal);
+                    });
+        });
+    }
+
+    /**
+     * 发给 Agent 的请求体大小与上下文消息条数（每轮一次）
+     */
+    public void recordAgentPayload(int bytes, int messages) {
+        DistributionSummary.builder("chat.context.payload.bytes")
+                .description("Agent chat request body size per turn")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(bytes);
+        DistributionSummary.builder("chat.context.payload.messages")
+                .description("Context messages sent to the agent per turn")
+                .register(meterRegistry)
+                .record(messages);
+    }
+
+    /**
+     * Agent 上下文句柄的使用情况：hit 增量发送、miss 句柄失效后全量重发、full 无可用句柄直接全量发送
+     */
+    public void recordContextHandle(String outcome) {
+        meterRegistry.counter("chat.context.handle", "outcome", outcome).increment();
+    }
+
+    private AtomicInteger registerActiveGauge(String stream) {
+        AtomicInteger active = new AtomicInteger();
+        Gauge.builder("chat.stream.active", active, AtomicInteger::get)
+                .description("Chat streams currently open")
+                .tag("stream", stream)
+                .register(meterRegistry);
+        return active;
+    }
+
+    private void onEvent(String stream, StreamState state, String item) {
+        long now = System.nanoTime();
+        if (state.events == 0) {
+            Timer.builder("chat.stream.first.event")
+                    .description("Time from subscription to the first stream event")
+                    .tag("stream", stream)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(now - state.startedAt, TimeUnit.NANOSECONDS);
+        } else {
+            Timer.builder("chat.stream.event.gap")
+                    .description("Time between consecutive stream events")
+                    .tag("stream", stream)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(now - state.lastEventAt, TimeUnit.NANOSECONDS);
+        }
+        state.lastEventAt = now;
+        state.events++;
+        if (item != null) {
+            state.bytes += item.getBytes(StandardCharsets.UTF_8).length;
+        }
+    }
+
+    private void finish(String stream, StreamState state, SignalType signal) {
+        String outcome = outcomeOf(signal);
+        long durationNanos = System.nanoTime() - state.startedAt;
+
+        Timer.builder("chat.stream.duration")
+                .description("Total duration of a chat stream")
+                .tag("stream", stream)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("chat.stream.events")
+                .description("Events emitted per chat stream")
+                .tag("stream", stream)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(state.events);
+        DistributionSummary.builder("chat.stream.bytes")
+                .description("Payload bytes emitted per chat stream")
+                .baseUnit("bytes")
+                .tag("stream", stream)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(state.bytes);
+
+        if (!COMPLETED.equals(outcome)) {
+            meterRegistry.counter("chat.stream.aborted", "stream", stream, "outcome", outcome).increment();
+            log.debug("[ChatStreamMetrics] Stream ended early: stream={}, outcome={}, events={}, durationMs={}",
+                    stream, outcome, state.events, TimeUnit.NANOSECONDS.toMillis(durationNanos));
+        }
+    }
+
+    private static String outcomeOf(SignalType signal) {
+        if (signal == SignalType.ON_ERROR) {
+            return ERROR;
+        }
+        if (signal == SignalType.CANCEL) {
+            return CANCELLED;
+        }
+        return COMPLETED;
+    }
+
+    /**
+     * 单次订阅的计数状态；Reactor 保证 onNext 串行，无需同步
+     */
+    private static final class StreamState {
+        private final long startedAt;
+        private long lastEventAt;
+        private long events;
+        private long bytes;
+
+        private StreamState(long startedAt) {
+            this.startedAt = startedAt;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.equivocal.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 数据库连接占用时间分析器。
+ *
+ * 每次从连接池借出连接记为一次 lease，归还时统计「连接占用时长」与「SQL 实际执行时长」，
+ * 并按事务名与请求端点打标签上报 Micrometer。lease 期间如果同一线程发起 WebClient 远程调用
+ * 或提交密码哈希，会被标记为慢操作：这类事务会在等待外部结果时一直占着连接池里的连接。
+ *
+ * 连接可能在借出线程之外被使用或归还（响应式回调、异步任务），因此每线程的 lease 栈与 lease 本身的统计都是线程安全的。
+ */
+@Component
+@Slf4j
+public class ConnectionHoldProfiler {
+
+    public static final String WEBCLIENT = "webclient";
+    public static final String PASSWORD_HASH = "password-hash";
+
+    private static final String NONE = "none";
+    private static final int MAX_RECENT = 200;
+
+    // 归还可能发生在其他线程上，借出线程的 lease 栈需支持并发移除
+    private static final ThreadLocal<Deque<Lease>> ACTIVE_LEASES = ThreadLocal.withInitial(ConcurrentLinkedDeque::new);
+    private static final ThreadLocal<String> CURRENT_ENDPOINT = new ThreadLocal<>();
+
+    private final MeterRegistry meterRegistry;
+    private final long warnThresholdMs;
+
+    private final Deque<LeaseRecord> recentLeases = new ConcurrentLinkedDeque<>();
+    private final Deque<LeaseRecord> recentViolations = new ConcurrentLinkedDeque<>();
+
+    public ConnectionHoldProfiler(MeterRegistry meterRegistry,
+                                  @Value("${app.profiling.connection-hold.warn-ms:1000}") long warnThresholdMs) {
+        this.meterRegistry = meterRegistry;
+        this.warnThresholdMs = warnThresholdMs;
+    }
+
+    /**
+     * 标记当前线程持有的所有连接期间发生了慢操作（远程调用 / 密码哈希）
+     */
+    public static void markSlowOperation(String kind) {
+        Deque<Lease> leases = ACTIVE_LEASES.get();
+        if (leases.isEmpty()) {
+            return;
+        }
+        for (Lease lease : leases) {
+            lease.captureTransactionName();
+            lease.addSlowOperation(kind);
+        }
+    }
+
+    /**
+     * 设置当前线程正在处理的端点（由 MVC 拦截器维护，经 RequestMetricsContext 传给其他线程）
+     */
+    public static void setCurrentEndpoint(String endpoint) {
+        if (endpoint == null) {
+            CURRENT_ENDPOINT.remove();
+        } else {
+            CURRENT_ENDPOINT.set(endpoint);
+        }
+    }
+
+    public static String currentEndpoint() {
+        String endpoint = CURRENT_ENDPOINT.get();
+        return endpoint != null ? endpoint : NONE;
+    }
+
+    static String endpointOrNull() {
+        return CURRENT_ENDPOINT.get();
+    }
+
+    /**
+     * 开始一次连接借出
+     */
+    Lease begin(Connection connection) {
+        Deque<Lease> leases = ACTIVE_LEASES.get();
+        Lease lease = new Lease(connection, currentEndpoint(), System.nanoTime(), leases);
+        leases.push(lease);
+        return lease;
+    }
+
+    /**
+     * 连接归还连接池，上报本次 lease 的统计
+     */
+    void end(Lease lease) {
+        long holdNanos = System.nanoTime() - lease.acquiredAt;
+        lease.owner.remove(lease);
+
+        String transaction = lease.transaction != null ? lease.transaction : NONE;
+        long sqlNanos = lease.sqlNanos.get();
+        LeaseRecord record = new LeaseRecord(transaction, lease.endpoint, holdNanos, sqlNanos,
+                lease.statements.get(), lease.slowOperations());
+
+        Timer.builder("db.connection.hold")
+                .description("Time a pooled connection was held by one lease")
+                .tag("transaction", transaction)
+                .tag("endpoint", lease.endpoint)
+                .register(meterRegistry)
+                .record(holdNanos, TimeUnit.NANOSECONDS);
+        Timer.builder("db.connection.sql")
+                .description("Time spent executing SQL while the connection was held")
+                .tag("transaction", transaction)
+                .tag("endpoint", lease.endpoint)
+                .register(meterRegistry)
+                .record(sqlNanos, TimeUnit.NANOSECONDS);
+
+        for (String kind : record.getSlowOperations()) {
+            meterRegistry.counter("db.connection.slow.operation",
+                    "kind", kind, "transaction", transaction, "endpoint", lease.endpoint).increment();
+        }
+
+        append(recentLeases, record);
+        if (!record.getSlowOperations().isEmpty()) {
+            append(recentViolations, record);
+            log.warn("[ConnectionHoldProfiler] 事务持有连接期间执行了慢操作: transaction={}, endpoint={}, ops={}, holdMs={}, sqlMs={}",
+                    transaction, lease.endpoint, record.getSlowOperations(), record.getHoldMillis(), record.getSqlMillis());
+        } else if (record.getHoldMillis() >= warnThresholdMs) {
+            log.warn("[ConnectionHoldProfiler] 连接占用时间过长: transaction={}, endpoint={}, holdMs={}, sqlMs={}",
+                    transaction, lease.endpoint, record.getHoldMillis(), record.getSqlMillis());
+        }
+    }
+
+    public List<LeaseRecord> getRecentLeases() {
+        return Collections.unmodifiableList(new ArrayList<LeaseRecord>(recentLeases));
+    }
+
+    public List<LeaseRecord> getRecentViolations() {
+        return Collections.unmodifiableList(new ArrayList<LeaseRecord>(recentViolations));
+    }
+
+    public void reset() {
+        recentLeases.clear();
+        recentViolations.clear();
+    }
+
+    private static void append(Deque<LeaseRecord> deque, LeaseRecord record) {
+        deque.addLast(record);
+        while (deque.size() > MAX_RECENT) {
+            deque.pollFirst();
+        }
+    }
+
+    /**
+     * 一次连接借出期间的可变状态；借出线程与实际使用、归还连接的线程可能不同
+     */
+    static final class Lease {
+        private final Connection connection;
+        private final String endpoint;
+        private final long acquiredAt;
+        private final Deque<Lease> owner;
+        private final Set<String> slowOperations = new LinkedHashSet<>();
+        private final AtomicLong sqlNanos = new AtomicLong();
+        private final AtomicInteger statements = new AtomicInteger();
+        private volatile String transaction;
+
+        private Lease(Connection connection, String endpoint, long acquiredAt, Deque<Lease> owner) {
+            this.connection = connection;
+            this.endpoint = endpoint;
+            this.acquiredAt = acquiredAt;
+            this.owner = owner;
+        }
+
+        Connection getConnection() {
+            return connection;
+        }
+
+        void recordStatement(long nanos) {
+            captureTransactionName();
+            sqlNanos.addAndGet(nanos);
+            statements.incrementAndGet();
+        }
+
+        private void addSlowOperation(String kind) {
+            synchronized (slowOperations) {
+                slowOperations.add(kind);
+            }
+        }
+
+        private List<String> slowOperations() {
+            synchronized (slowOperations) {
+                return new ArrayList<>(slowOperations);
+            }
+        }
+
+        // 事务名在连接获取之后才写入同步管理器，因此在执行语句时补采
+        private void captureTransactionName() {
+            if (transaction == null && TransactionSynchronizationManager.isActualTransactionActive()) {
+                transaction = TransactionSynchronizationManager.getCurrentTransactionName();
+            }
+        }
+    }
+
+    /**
+     * 一次已结束的连接借出记录
+     */
+    public static final class LeaseRecord {
+        private final String transaction;
+        private final String endpoint;
+        private final long holdNanos;
+        private final long sqlNanos;
+        private final int statements;
+        private final List<String> slowOperations;
+
+        LeaseRecord(String transaction, String endpoint, long holdNanos, long sqlNanos,
+                    int statements, List<String> slowOperations) {
+            this.transaction = transaction;
+            this.endpoint = endpoint;
+            this.holdNanos = holdNanos;
+            this.sqlNanos = sqlNanos;
+            this.statements = statements;
+            this.slowOperations = Collections.unmodifiableList(slowOperations);
+        }
+
+        public String getTransaction() { return transaction; }
+        public String getEndpoint() { return endpoint; }
+        public long getHoldMillis() { return TimeUnit.NANOSECONDS.toMillis(holdNanos); }
+        public long getSqlMillis() { return TimeUnit.NANOSECONDS.toMillis(sqlNanos); }
+        public long getIdleMillis() { return TimeUnit.NANOSECONDS.toMillis(Math.max(0, holdNanos - sqlNanos)); }
+        public int getStatements() { return statements; }
+        public List<String> getSlowOperations() { return slowOperations; }
+
+        @Override
+        public String toString() {
+            return "LeaseRecord{transaction=" + transaction + ", endpoint=" + endpoint
+                    + ", holdMs=" + getHoldMillis() + ", sqlMs=" + getSqlMillis()
+                    + ", statements=" + statements + ", slowOperations=" + slowOperations + "}";
+        }
+    }
+}
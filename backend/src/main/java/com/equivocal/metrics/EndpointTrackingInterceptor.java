@@ -0,0 +1,56 @@
+package com.equivocal.metrics;
+
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 将当前请求的端点模板（如 GET /api/chat/sessions/{id}）写入线程上下文，供指标打标签；
+ * 请求结束时记录端点耗时与 SQL 条数
+ */
+public class EndpointTrackingInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String STATS_ATTRIBUTE = EndpointTrackingInterceptor.class.getName() + ".stats";
+
+    private final PerformanceRecorder performanceRecorder;
+
+    public EndpointTrackingInterceptor(PerformanceRecorder performanceRecorder) {
+        this.performanceRecorder = performanceRecorder;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        ConnectionHoldProfiler.setCurrentEndpoint(endpointOf(request));
+        // 异步请求会再次分派到这里，沿用首次分派时创建的统计
+        PerformanceRecorder.RequestStats stats = (PerformanceRecorder.RequestStats) request.getAttribute(STATS_ATTRIBUTE);
+        if (stats == null) {
+            stats = new PerformanceRecorder.RequestStats();
+            request.setAttribute(STATS_ATTRIBUTE, stats);
+        }
+        PerformanceRecorder.attach(stats);
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        ConnectionHoldProfiler.setCurrentEndpoint(null);
+        PerformanceRecorder.attach(null);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        ConnectionHoldProfiler.setCurrentEndpoint(null);
+        PerformanceRecorder.attach(null);
+        PerformanceRecorder.RequestStats stats = (PerformanceRecorder.RequestStats) request.getAttribute(STATS_ATTRIBUTE);
+        if (stats != null) {
+            performanceRecorder.recordEndpoint(endpointOf(request), String.valueOf(response.getStatus()), stats);
+        }
+    }
+
+    public static String endpointOf(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + " " + (pattern != null ? pattern : "unmapped");
+    }
+}
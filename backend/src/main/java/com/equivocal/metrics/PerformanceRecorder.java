@@ -0,0 +1,167 @@
+package com.equivocal.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 端点与 Repository 延迟统计。
+ *
+ * 每个控制器端点记录一次 endpoint.latency，每次 Repository 方法调用记录一次 repository.latency
+ * （带所属端点标签，便于看出哪个查询拖慢了哪个端点），每个请求执行的 SQL 条数记入
+ * endpoint.sql.statements。所有计时器都发布 p50/p95/p99，/api/admin/perf 直接读取这些快照。
+ */
+@Component
+public class PerformanceRecorder {
+
+    static final String ENDPOINT_LATENCY = "endpoint.latency";
+    static final String ENDPOINT_SQL = "endpoint.sql.statements";
+    static final String REPOSITORY_LATENCY = "repository.latency";
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private static final ThreadLocal<RequestStats> CURRENT = new ThreadLocal<>();
+
+    private final MeterRegistry meterRegistry;
+
+    public PerformanceRecorder(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 当前线程开始（或在异步分派中继续）处理一个请求
+     */
+    public static void attach(RequestStats stats) {
+        if (stats == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(stats);
+        }
+    }
+
+    static RequestStats current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 当前线程上的请求执行了一条 SQL
+     */
+    public static void recordStatement() {
+        RequestStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.statements.incrementAndGet();
+        }
+    }
+
+    public void recordEndpoint(String endpoint, String status, RequestStats stats) {
+        Timer.builder(ENDPOINT_LATENCY)
+                .description("Controller endpoint latency")
+                .tag("endpoint", endpoint)
+                .tag("status", status)
+                .publishPercentiles(PERCENTILES)
+                .register(meterRegistry)
+                .record(System.nanoTime() - stats.startedAt, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder(ENDPOINT_SQL)
+                .description("SQL statements executed per request")
+                .tag("endpoint", endpoint)
+                .publishPercentiles(PERCENTILES)
+                .register(meterRegistry)
+                .record(stats.statements.get());
+    }
+
+    public void recordRepositoryCall(String repository, String method, long nanos) {
+        Timer.builder(REPOSITORY_LATENCY)
+                .description("Spring Data repository method latency")
+                .tag("repository", repository)
+                .tag("method", method)
+                .tag("endpoint", ConnectionHoldProfiler.currentEndpoint())
+                .publishPercentiles(PERCENTILES)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 汇总端点与 Repository 的延迟分位数，按总耗时降序
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("endpoints", describe(ENDPOINT_LATENCY));
+        result.put("sqlStatements", describe(ENDPOINT_SQL));
+        result.put("repositories", describe(REPOSITORY_LATENCY));
+        return result;
+    }
+
+    private List<Map<String, Object>> describe(String name) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Meter meter : meterRegistry.find(name).meters()) {
+            HistogramSnapshot snapshot;
+            boolean timed = meter instanceof Timer;
+            if (timed) {
+                snapshot = ((Timer) meter).takeSnapshot();
+            } else if (meter instanceof DistributionSummary) {
+                snapshot = ((DistributionSummary) meter).takeSnapshot();
+            } else {
+                continue;
+            }
+
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (Tag tag : meter.getId().getTags()) {
+                row.put(tag.getKey(), tag.getValue());
+            }
+            row.put("count", snapshot.count());
+            if (timed) {
+                row.put("totalMs", round(snapshot.total(TimeUnit.MILLISECONDS)));
+                row.put("meanMs", round(snapshot.mean(TimeUnit.MILLISECONDS)));
+                row.put("maxMs", round(snapshot.max(TimeUnit.MILLISECONDS)));
+                for (ValueAtPercentile value : snapshot.percentileValues()) {
+                    row.put(percentileKey(value.percentile()) + "Ms", round(value.value(TimeUnit.MILLISECONDS)));
+                }
+            } else {
+                row.put("total", snapshot.total());
+                row.put("mean", round(snapshot.mean()));
+                row.put("max", snapshot.max());
+                for (ValueAtPercentile value : snapshot.percentileValues()) {
+                    row.put(percentileKey(value.percentile()), value.value());
+                }
+            }
+            rows.add(row);
+        }
+        String sortKey = rows.isEmpty() || rows.get(0).containsKey("totalMs") ? "totalMs" : "total";
+        rows.sort(Comparator.comparingDouble((Map<String, Object> row) -> ((Number) row.get(sortKey)).doubleValue()).reversed());
+        return rows;
+    }
+
+    private static String percentileKey(double percentile) {
+        return "p" + Math.round(percentile * 100);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    /**
+     * 单个请求的计时状态，保存在 request attribute 中，跨异步分派复用；
+     * 经 {@link RequestMetricsContext} 传给处理该请求的其他线程，它们可能同时执行 SQL，计数用原子整数。
+     */
+    public static final class RequestStats {
+        private final long startedAt = System.nanoTime();
+        private final AtomicInteger statements = new AtomicInteger();
+
+        public int getStatements() {
+            return statements.get();
+        }
+    }
+}
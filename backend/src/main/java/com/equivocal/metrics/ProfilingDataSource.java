@@ -0,0 +1,143 @@
+package com.equivocal.metrics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.function.Supplier;
+
+/**
+ * 包装连接池，记录每次借出连接的占用时长与语句执行时长
+ */
+public class ProfilingDataSource extends DelegatingDataSource {
+
+    private final Supplier<ConnectionHoldProfiler> profilerSupplier;
+    private volatile ConnectionHoldProfiler profiler;
+
+    public ProfilingDataSource(DataSource targetDataSource, ConnectionHoldProfiler profiler) {
+        this(targetDataSource, () -> profiler);
+    }
+
+    /**
+     * profiler 在首次借出连接时才获取：MeterRegistry 初始化时会绑定连接池指标，
+     * 若在包装 DataSource 时就创建 profiler，会形成 MeterRegistry -> DataSource -> profiler 的循环依赖
+     */
+    public ProfilingDataSource(DataSource targetDataSource, Supplier<ConnectionHoldProfiler> profilerSupplier) {
+        super(targetDataSource);
+        this.profilerSupplier = profilerSupplier;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private ConnectionHoldProfiler profiler() {
+        ConnectionHoldProfiler current = profiler;
+        if (current == null) {
+            current = profilerSupplier.get();
+            profiler = current;
+        }
+        return current;
+    }
+
+    private Connection wrap(Connection target) {
+        ConnectionHoldProfiler.Lease lease = profiler().begin(target);
+        return (Connection) Proxy.newProxyInstance(
+                ProfilingDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ConnectionHandler(lease));
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+        private final ConnectionHoldProfiler.Lease lease;
+        private boolean closed;
+
+        ConnectionHandler(ConnectionHoldProfiler.Lease lease) {
+            this.lease = lease;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("close".equals(name)) {
+                if (closed) {
+                    return null;
+                }
+                closed = true;
+                try {
+                    return invokeTarget(lease.getConnection(), method, args);
+                } finally {
+                    profiler().end(lease);
+                }
+            }
+            if ("isClosed".equals(name) && closed) {
+                return true;
+            }
+
+            Object result = invokeTarget(lease.getConnection(), method, args);
+            if (result instanceof Statement) {
+                return wrapStatement((Statement) result, method.getReturnType());
+            }
+            return result;
+        }
+
+        private Object wrapStatement(Statement statement, Class<?> declaredType) {
+            Class<?> iface = Statement.class;
+            if (CallableStatement.class.isAssignableFrom(declaredType)) {
+                iface = CallableStatement.class;
+            } else if (PreparedStatement.class.isAssignableFrom(declaredType)) {
+                iface = PreparedStatement.class;
+            }
+            return Proxy.newProxyInstance(
+                    ProfilingDataSource.class.getClassLoader(),
+                    new Class<?>[]{iface},
+                    new StatementHandler(statement, lease));
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final ConnectionHoldProfiler.Lease lease;
+
+        StatementHandler(Statement target, ConnectionHoldProfiler.Lease lease) {
+            this.target = target;
+            this.lease = lease;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!method.getName().startsWith("execute")) {
+                return invokeTarget(target, method, args);
+            }
+            long start = System.nanoTime();
+            try {
+                return invokeTarget(target, method, args);
+            } finally {
+                lease.recordStatement(System.nanoTime() - start);
+                PerformanceRecorder.recordStatement();
+            }
+        }
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
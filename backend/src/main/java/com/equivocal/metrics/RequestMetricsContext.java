@@ -0,0 +1,60 @@
+package com.equivocal.metrics;
+
+import java.util.concurrent.Callable;
+
+/**
+ * 请求的指标上下文：SQL 计数（{@link PerformanceRecorder.RequestStats}）与端点标签。
+ *
+ * 二者保存在线程本地变量中，由 MVC 拦截器在请求线程上设置。请求的一部分工作交给其他线程
+ * （密码哈希线程池、boundedElastic、MVC 异步线程）时，在提交处 {@link #capture()}、在执行线程上
+ * {@link #attach()}，这些线程上执行的 SQL 才会计入该请求、带上该端点标签。
+ */
+public final class RequestMetricsContext {
+
+    private final PerformanceRecorder.RequestStats stats;
+    private final String endpoint;
+
+    private RequestMetricsContext(PerformanceRecorder.RequestStats stats, String endpoint) {
+        this.stats = stats;
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * 当前线程所属请求的上下文；不在请求中时两项均为空
+     */
+    public static RequestMetricsContext capture() {
+        return new RequestMetricsContext(PerformanceRecorder.current(), ConnectionHoldProfiler.endpointOrNull());
+    }
+
+    /**
+     * 在当前线程上沿用本上下文，返回之前的上下文；执行完毕后对返回值调用 attach() 恢复
+     */
+    public RequestMetricsContext attach() {
+        RequestMetricsContext previous = capture();
+        PerformanceRecorder.attach(stats);
+        ConnectionHoldProfiler.setCurrentEndpoint(endpoint);
+        return previous;
+    }
+
+    public Runnable wrap(Runnable task) {
+        return () -> {
+            RequestMetricsContext previous = attach();
+            try {
+                task.run();
+            } finally {
+                previous.attach();
+            }
+        };
+    }
+
+    public <T> Callable<T> wrap(Callable<T> task) {
+        return () -> {
+            RequestMetricsContext previous = attach();
+            try {
+                return task.call();
+            } finally {
+                previous.attach();
+            }
+        };
+    }
+}
@@ -0,0 +1,38 @@
+package com.equivocal.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+
+/**
+ * 记录启动就绪耗时；app.startup.exit-on-ready=true 时就绪后立即退出，
+ * 供 AppCDS 训练运行与启动基准测试使用
+ */
+@Component
+@Slf4j
+public class StartupReadyListener implements ApplicationListener<ApplicationReadyEvent> {
+
+    @Value("${app.startup.exit-on-ready:false}")
+    private boolean exitOnReady;
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        Duration timeTaken = event.getTimeTaken();
+        long readyMs = timeTaken != null ? timeTaken.toMillis() : -1;
+        long uptimeMs = ManagementFactory.getRuntimeMXBean().getUptime();
+        log.info("[StartupReadyListener] Application ready: startup-ready-ms={}, jvm-uptime-ms={}", readyMs, uptimeMs);
+
+        if (exitOnReady) {
+            // 不能在事件回调线程里直接关闭上下文
+            Thread exit = new Thread(() -> System.exit(SpringApplication.exit(event.getApplicationContext())),
+                    "startup-exit");
+            exit.start();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.equivocal.repository;
+
+import com.equivocal.entity.ChatChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ChatChangeRepository extends JpaRepository<ChatChange, Long> {
+
+    /**
+     * 取游标之后的变更，按序号升序
+     */
+    List<ChatChange> findByUserIdAndSeqGreaterThanOrderBySeqAsc(String userId, long seq, Pageable pageable);
+
+    /**
+     * 清理用户超过保留期的变更
+     */
+    @Modifying
+    @Query("DELETE FROM ChatChange c WHERE c.userId = :userId AND c.createdAt < :cutoff")
+    int deleteByUserIdCreatedBefore(@Param("userId") String userId, @Param("cutoff") LocalDateTime cutoff);
+
+    /**
+     * 删除用户时清空其变更日志
+     */
+    @Modifying
+    @Query("DELETE FROM ChatChange c WHERE c.userId = :userId")
+    int deleteByUserId(@Param("userId") String userId);
+}
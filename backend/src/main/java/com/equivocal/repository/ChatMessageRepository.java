@@ -1,8 +1,10 @@
 package com.equivocal.repository;
 
+import com.equivocal.datasource.ReadReplica;
 import com.equivocal.entity.ChatMessage;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -10,6 +12,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
 
@@ -21,25 +24,99 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long>
      */
     List<ChatMessage> findBySessionIdOrderByCreatedAtAsc(String sessionId);
 
+    /**
+     * ID 大于给定值的消息，按创建时间升序
+     */
+    List<ChatMessage> findBySessionIdAndIdGreaterThanOrderByCreatedAtAsc(String sessionId, Long id);
+
+    /**
+     * 会话全部消息，按 (createdAt, id) 升序；摘要边界取自这个顺序
+     */
+    List<ChatMessage> findBySessionIdOrderByCreatedAtAscIdAsc(String sessionId);
+
+    /**
+     * 摘要边界 (createdAt, id) 之后的消息，顺序同上
+     */
+    @Query("SELECT m FROM ChatMessage m WHERE m.sessionId = :sessionId " +
+            "AND (m.createdAt > :createdAt OR (m.createdAt = :createdAt AND m.id > :id)) " +
+            "ORDER BY m.createdAt ASC, m.id ASC")
+    List<ChatMessage> findAfterBoundary(@Param("sessionId") String sessionId,
+                                        @Param("createdAt") LocalDateTime createdAt,
+                                        @Param("id") Long id);
+
     /**
      * 分页查询会话消息（排序由 Pageable 的 Sort 决定）。
      */
+    @ReadReplica
     Page<ChatMessage> findBySessionId(String sessionId, Pageable pageable);
 
+    /**
+     * 分页查询会话消息，不执行 count 查询
+     */
+    @ReadReplica
+    Slice<ChatMessage> findSliceBySessionId(String sessionId, Pageable pageable);
+
+    @ReadReplica
     long countBySessionId(String sessionId);
 
+    /**
+     * 归档：按 ID 删除已写入归档块的消息。ID 不保证单调递增，不能按最大 ID 删除，否则会误删归档期间新写入的消息
+     */
+    @Modifying
+    @Query("DELETE FROM ChatMessage m WHERE m.sessionId = :sessionId AND m.id IN :ids")
+    int deleteArchivedMessages(@Param("sessionId") String sessionId, @Param("ids") Collection<Long> ids);
+
+    /**
+     * 恢复归档：按原 ID 写回消息（content 为 CompressedTextConverter 编码后的存储形式）
+     */
+    @Modifying
+    @Query(value = "INSERT INTO chat_messages (id, session_id, role, content, content_type, created_at) " +
+            "VALUES (:id, :sessionId, :role, :storedContent, :contentType, :createdAt)", nativeQuery = true)
+    int insertWithId(@Param("id") Long id,
+                     @Param("sessionId") String sessionId,
+                     @Param("role") String role,
+                     @Param("storedContent") String storedContent,
+                     @Param("contentType") String contentType,
+                     @Param("createdAt") LocalDateTime createdAt);
+
+    /**
+     * 压缩迁移：id 之后尚未压缩、且长度达到阈值的消息 ID（按主键顺序，不读取消息内容到应用）
+     */
+    @Query(value = "SELECT id FROM chat_messages WHERE id > :afterId AND CHAR_LENGTH(content) >= :minChars " +
+            "AND content NOT LIKE :compressedPrefix ORDER BY id LIMIT :limit", nativeQuery = true)
+    List<Long> findUncompressedIdsAfter(@Param("afterId") long afterId,
+                                        @Param("minChars") int minChars,
+                                        @Param("compressedPrefix") String compressedPrefix,
+                                        @Param("limit") int limit);
+
+    /**
+     * 直接写入列的存储形式（已由 CompressedTextConverter 编码）
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE chat_messages SET content = :storedContent WHERE id = :id", nativeQuery = true)
+    int updateStoredContent(@Param("id") Long id, @Param("storedContent") String storedContent);
+
     interface SessionMessageCount {
         String getSessionId();
 
         long getCnt();
     }
 
+    @ReadReplica
     @Query("SELECT m.sessionId as sessionId, COUNT(m) as cnt " +
             "FROM ChatMessage m " +
             "WHERE m.sessionId IN :sessionIds " +
             "GROUP BY m.sessionId")
     List<SessionMessageCount> countMessagesBySessionIds(@Param("sessionIds") Collection<String> sessionIds);
     
+    /**
+     * 消息总数（管理后台统计）
+     */
+    @ReadReplica
+    @Override
+    long count();
+    
     /**
      * 删除会话的所有消息
      */
@@ -0,0 +1,44 @@
+package com.equivocal.repository;
+
+import com.equivocal.datasource.ReadReplica;
+import com.equivocal.entity.ChatSessionArchive;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ChatSessionArchiveRepository extends JpaRepository<ChatSessionArchive, String> {
+
+    interface ArchiveSummary {
+        String getSessionId();
+
+        int getMessageCount();
+
+        long getMaxMessageId();
+    }
+
+    /**
+     * 归档会话的消息数与最大消息 ID（不读取压缩块）
+     */
+    @Query("SELECT a.sessionId as sessionId, a.messageCount as messageCount, a.maxMessageId as maxMessageId " +
+            "FROM ChatSessionArchive a WHERE a.sessionId IN :sessionIds")
+    List<ArchiveSummary> findSummariesBySessionIds(@Param("sessionIds") Collection<String> sessionIds);
+
+    /**
+     * 已归档的消息总数（管理后台统计，热表中的消息不含在内）
+     */
+    @ReadReplica
+    @Query("SELECT COALESCE(SUM(a.messageCount), 0) FROM ChatSessionArchive a")
+    long sumMessageCount();
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ChatSessionArchive a WHERE a.sessionId IN :sessionIds")
+    int deleteBySessionIdIn(@Param("sessionIds") Collection<String> sessionIds);
+}
@@ -1,6 +1,8 @@
 package com.equivocal.repository;
 
+import com.equivocal.datasource.ReadReplica;
 import com.equivocal.entity.ChatSession;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -10,6 +12,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ChatSessionRepository extends JpaRepository<ChatSession, String> {
@@ -25,11 +28,46 @@ public interface ChatSessionRepository extends JpaRepository<ChatSession, String
      * 说明：前端侧边栏只展示有聊天记录的会话；如果逐个会话去查 message 列表，会导致大量 SQL 请求，
      * 在 TiDB Cloud 等高延迟数据库环境下容易出现超时/500。
      */
+    @ReadReplica
     @Query("SELECT s FROM ChatSession s " +
             "WHERE s.userId = :userId " +
-            "AND EXISTS (SELECT 1 FROM ChatMessage m WHERE m.sessionId = s.id) " +
+            "AND (s.archivedAt IS NOT NULL OR EXISTS (SELECT 1 FROM ChatMessage m WHERE m.sessionId = s.id)) " +
             "ORDER BY s.updatedAt DESC")
     List<ChatSession> findWithMessagesByUserIdOrderByUpdatedAtDesc(@Param("userId") String userId);
+
+    /**
+     * 读取消息列表时的会话查询，与消息查询一样可读副本：ETag 由会话行派生，校验器不会比同一请求读到的消息新
+     */
+    @ReadReplica
+    @Query("SELECT s FROM ChatSession s WHERE s.id = :id")
+    Optional<ChatSession> findForMessageRead(@Param("id") String id);
+
+    interface SessionListVersion {
+        long getCnt();
+
+        LocalDateTime getLastUpdatedAt();
+    }
+
+    /**
+     * 会话列表的版本：会话数量 + 最近更新时间，只读 chat_sessions，用于 ETag
+     */
+    @ReadReplica
+    @Query("SELECT COUNT(s) as cnt, MAX(s.updatedAt) as lastUpdatedAt " +
+            "FROM ChatSession s " +
+            "WHERE s.userId = :userId")
+    SessionListVersion findListVersionByUserId(@Param("userId") String userId);
+    
+    /**
+     * 写入滚动摘要及其 (createdAt, id) 边界；边界只允许按消息顺序向前推进，避免较慢的旧任务覆盖新摘要
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ChatSession s SET s.summary = :summary, s.summarizedUpToCreatedAt = :upToCreatedAt, " +
+            "s.summarizedUpToId = :upToId " +
+            "WHERE s.id = :id AND (s.summarizedUpToCreatedAt IS NULL OR s.summarizedUpToCreatedAt < :upToCreatedAt " +
+            "OR (s.summarizedUpToCreatedAt = :upToCreatedAt AND s.summarizedUpToId < :upToId))")
+    int updateSummary(@Param("id") String id, @Param("summary") String summary,
+                      @Param("upToCreatedAt") LocalDateTime upToCreatedAt, @Param("upToId") Long upToId);
     
     /**
      * 删除用户的所有会话
@@ -41,5 +79,35 @@ public interface ChatSessionRepository extends JpaRepository<ChatSession, String
     /**
      * 统计指定时间之后创建的会话数量
      */
+    @ReadReplica
     long countByCreatedAtAfter(LocalDateTime dateTime);
+
+    /**
+     * 会话总数（管理后台统计）
+     */
+    @ReadReplica
+    @Override
+    long count();
+
+    /**
+     * 可归档的会话：未归档、最后更新早于 cutoff 且有消息，最久未更新的优先
+     */
+    @Query("SELECT s.id FROM ChatSession s " +
+            "WHERE s.archivedAt IS NULL AND s.updatedAt < :cutoff " +
+            "AND EXISTS (SELECT 1 FROM ChatMessage m WHERE m.sessionId = s.id) " +
+            "ORDER BY s.updatedAt ASC")
+    List<String> findArchiveCandidates(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    /**
+     * 标记为已归档；会话在此期间有新活动（updatedAt 推进）或已被归档时返回 0
+     */
+    @Modifying
+    @Query("UPDATE ChatSession s SET s.archivedAt = :archivedAt " +
+            "WHERE s.id = :id AND s.archivedAt IS NULL AND s.updatedAt < :cutoff")
+    int markArchived(@Param("id") String id, @Param("archivedAt") LocalDateTime archivedAt,
+                     @Param("cutoff") LocalDateTime cutoff);
+
+    @Modifying
+    @Query("UPDATE ChatSession s SET s.archivedAt = NULL WHERE s.id = :id AND s.archivedAt IS NOT NULL")
+    int markRestored(@Param("id") String id);
 }
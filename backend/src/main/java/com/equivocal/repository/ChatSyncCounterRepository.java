@@ -0,0 +1,29 @@
+package com.equivocal.repository;
+
+import com.equivocal.entity.ChatSyncCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ChatSyncCounterRepository extends JpaRepository<ChatSyncCounter, String> {
+
+    /**
+     * 序号加 count 并锁住该用户的计数行直到事务结束；返回 0 表示该用户还没有计数行
+     */
+    @Modifying
+    @Query("UPDATE ChatSyncCounter c SET c.seq = c.seq + :count WHERE c.userId = :userId")
+    int increment(@Param("userId") String userId, @Param("count") long count);
+
+    @Query("SELECT c.seq FROM ChatSyncCounter c WHERE c.userId = :userId")
+    Long findSeqByUserId(@Param("userId") String userId);
+
+    /**
+     * 删除用户时移除其计数行；不存在时返回 0
+     */
+    @Modifying
+    @Query("DELETE FROM ChatSyncCounter c WHERE c.userId = :userId")
+    int deleteByUserId(@Param("userId") String userId);
+}
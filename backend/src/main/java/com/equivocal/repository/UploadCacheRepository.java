@@ -0,0 +1,48 @@
+package com.equivocal.repository;
+
+import com.equivocal.entity.UploadCacheEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface UploadCacheRepository extends JpaRepository<UploadCacheEntry, String> {
+    
+    /**
+     * 删除创建时间早于 cutoff 的缓存条目（按写入时间过期，命中不会延长有效期）
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM UploadCacheEntry e WHERE e.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") LocalDateTime cutoff);
+    
+    /**
+     * 刷新最近访问时间并累加命中次数，不加载实体
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadCacheEntry e SET e.lastAccessedAt = :now, " +
+            "e.hitCount = COALESCE(e.hitCount, 0) + :hits WHERE e.cacheKey = :cacheKey")
+    int touch(@Param("cacheKey") String cacheKey, @Param("now") LocalDateTime now, @Param("hits") long hits);
+    
+    /**
+     * 只累加命中次数（定时淘汰时写回尚未落库的命中）
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadCacheEntry e SET e.hitCount = COALESCE(e.hitCount, 0) + :hits WHERE e.cacheKey = :cacheKey")
+    int addHits(@Param("cacheKey") String cacheKey, @Param("hits") long hits);
+    
+    /**
+     * 按最近访问时间升序取出最旧的条目（用于容量淘汰）
+     */
+    @Query("SELECT e.cacheKey FROM UploadCacheEntry e ORDER BY e.lastAccessedAt ASC")
+    List<String> findLeastRecentlyAccessed(Pageable pageable);
+}
@@ -1,5 +1,6 @@
 package com.equivocal.repository;
 
+import com.equivocal.datasource.ReadReplica;
 import com.equivocal.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -18,46 +19,62 @@ public interface UserRepository extends JpaRepository<User, String> {
     
     boolean existsByEmail(String email);
     
+    @ReadReplica
     @Query("SELECT u FROM User u WHERE u.email LIKE %:search%")
     Page<User> searchUsers(@Param("search") String search, Pageable pageable);
 
     /**
      * 查找管理员用户（role >= 10）
      */
+    @ReadReplica
     @Query("SELECT u FROM User u WHERE u.role >= 10")
     Page<User> findAdminUsers(Pageable pageable);
     
     /**
      * 查找普通用户（role < 10）
      */
+    @ReadReplica
     @Query("SELECT u FROM User u WHERE u.role < 10")
     Page<User> findRegularUsers(Pageable pageable);
 
     /**
      * 搜索管理员用户（role >= 10）
      */
+    @ReadReplica
     @Query("SELECT u FROM User u WHERE u.email LIKE %:search% AND u.role >= 10")
     Page<User> searchAdminUsers(@Param("search") String search, Pageable pageable);
     
     /**
      * 搜索普通用户（role < 10）
      */
+    @ReadReplica
     @Query("SELECT u FROM User u WHERE u.email LIKE %:search% AND u.role < 10")
     Page<User> searchRegularUsers(@Param("search") String search, Pageable pageable);
     
     /**
      * 统计管理员数量（role >= 10）
      */
+    @ReadReplica
     @Query("SELECT COUNT(u) FROM User u WHERE u.role >= 10")
     long countAdminUsers();
     
     /**
      * 统计普通用户数量（role < 10）
      */
+    @ReadReplica
     @Query("SELECT COUNT(u) FROM User u WHERE u.role < 10")
     long countRegularUsers();
     
+    @ReadReplica
     long countByEmailVerified(boolean emailVerified);
     
+    @ReadReplica
     long countByCreatedAtAfter(LocalDateTime dateTime);
-}
\ No newline at end of file
+
+    /**
+     * 用户分页列表（管理后台）
+     */
+    @ReadReplica
+    @Override
+    Page<User> findAll(Pageable pageable);
+}
@@ -0,0 +1,101 @@
+package com.equivocal.security;
+
+import com.equivocal.datasource.Workload;
+import com.equivocal.datasource.WorkloadRoutingDataSource;
+import com.equivocal.metrics.RequestMetricsContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 密码哈希完成后的数据库操作（保存用户、消耗验证码）专用线程池。
+ *
+ * {@link PasswordHashExecutor} 按 CPU 核数设置线程数，只做 BCrypt 计算；数据库写入若也在那里执行，
+ * 等连接、等 IO 的时间会占住哈希线程。这里的线程绑定 auth 连接池，线程数默认与 auth 连接池大小一致；
+ * 队列满时与哈希队列一样立即拒绝（调用方按 503 处理）。
+ */
+@Component
+@Slf4j
+public class AuthPersistenceExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final Counter rejected;
+
+    public AuthPersistenceExecutor(
+            @Value("${app.password-hash.persistence-threads:4}") int threads,
+            @Value("${app.password-hash.persistence-queue-capacity:64}") int queueCapacity,
+            MeterRegistry meterRegistry) {
+        int poolSize = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1, queueCapacity)),
+                new PersistenceThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("auth.persistence.queue.size", executor, e -> e.getQueue().size())
+                .description("Auth database tasks waiting for a worker")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("auth.persistence.rejected")
+                .description("Auth database tasks rejected because the queue was full")
+                .register(meterRegistry);
+
+        log.info("[AuthPersistenceExecutor] 初始化完成: threads={}, queueCapacity={}", poolSize, queueCapacity);
+    }
+
+    /**
+     * 提交一次数据库操作；队列已满时返回以 RejectedExecutionException 结束的 future
+     */
+    public <T> CompletableFuture<T> submit(String operation, Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        // 任务与其回调执行的 SQL 计入提交它的请求
+        RequestMetricsContext context = RequestMetricsContext.capture();
+        try {
+            executor.execute(context.wrap(() -> {
+                try {
+                    future.complete(task.get());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            log.warn("[AuthPersistenceExecutor] 队列已满，拒绝任务: op={}, queued={}",
+                    operation, executor.getQueue().size());
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static final class PersistenceThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(WorkloadRoutingDataSource.bound(Workload.AUTH, r),
+                    "auth-persistence-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.equivocal.security;
+
+import com.equivocal.datasource.Workload;
+import com.equivocal.datasource.WorkloadRoutingDataSource;
+import com.equivocal.metrics.ConnectionHoldProfiler;
+import com.equivocal.metrics.RequestMetricsContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 密码哈希专用线程池。
+ *
+ * BCrypt 单次计算约 100ms，直接跑在 Tomcat 请求线程上时，登录高峰会占满所有 servlet 线程。
+ * 这里按 CPU 核数限制并发，并使用有界队列：队列满时立即拒绝，而不是让请求无限排队。
+ */
+@Component
+@Slf4j
+public class PasswordHashExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<String, Timer> queueWaitTimers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Timer> computeTimers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> rejectedCounters = new ConcurrentHashMap<>();
+
+    public PasswordHashExecutor(
+            @Value("${app.password-hash.threads:0}") int threads,
+            @Value("${app.password-hash.queue-capacity:64}") int queueCapacity,
+            MeterRegistry meterRegistry) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.meterRegistry = meterRegistry;
+        this.executor = new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(Math.max(1, queueCapacity)),
+                new HashThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("password.hash.queue.size", executor, e -> e.getQueue().size())
+                .description("Password hash tasks waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("password.hash.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Password hash tasks currently computing")
+                .register(meterRegistry);
+
+        log.info("[PasswordHashExecutor] 初始化完成: threads={}, queueCapacity={}", poolSize, queueCapacity);
+    }
+
+    /**
+     * 提交一次哈希/验证计算；队列已满时返回以 RejectedExecutionException 结束的 future
+     */
+    public <T> CompletableFuture<T> submit(String operation, Supplier<T> task) {
+        // 调用方若仍持有数据库连接，会在等待哈希结果期间占住连接
+        ConnectionHoldProfiler.markSlowOperation(ConnectionHoldProfiler.PASSWORD_HASH);
+        CompletableFuture<T> future = new CompletableFuture<>();
+        // 任务与其回调执行的 SQL 计入提交它的请求
+        RequestMetricsContext context = RequestMetricsContext.capture();
+        long enqueuedAt = System.nanoTime();
+        try {
+            executor.execute(context.wrap(() -> {
+                long startedAt = System.nanoTime();
+                queueWaitTimer(operation).record(startedAt - enqueuedAt, TimeUnit.NANOSECONDS);
+                try {
+                    future.complete(task.get());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    computeTimer(operation).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            rejectedCounter(operation).increment();
+            log.warn("[PasswordHashExecutor] 哈希队列已满，拒绝任务: op={}, queued={}",
+                    operation, executor.getQueue().size());
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 判断异常是否源自哈希队列拒绝（会解开 CompletionException/ExecutionException 包装）
+     */
+    public static boolean isRejected(Throwable error) {
+        Throwable current = error;
+        while ((current instanceof CompletionException || current instanceof ExecutionException)
+                && current.getCause() != null) {
+            current = current.getCause();
+        }
+        return current instanceof RejectedExecutionException;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private Timer queueWaitTimer(String operation) {
+        return queueWaitTimers.computeIfAbsent(operation, op -> Timer.builder("password.hash.queue.wait")
+                .description("Time a password hash task waited for a worker")
+                .tag("op", op)
+                .register(meterRegistry));
+    }
+
+    private Timer computeTimer(String operation) {
+        return computeTimers.computeIfAbsent(operation, op -> Timer.builder("password.hash.compute")
+                .description("Time spent computing a password hash")
+                .tag("op", op)
+                .register(meterRegistry));
+    }
+
+    private Counter rejectedCounter(String operation) {
+        return rejectedCounters.computeIfAbsent(operation, op -> Counter.builder("password.hash.rejected")
+                .description("Password hash tasks rejected because the queue was full")
+                .tag("op", op)
+                .register(meterRegistry));
+    }
+
+    private static final class HashThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            // 数据库操作由 AuthPersistenceExecutor 执行；回调中若仍有查询，使用 auth 连接池
+            Thread thread = new Thread(WorkloadRoutingDataSource.bound(Workload.AUTH, r),
+                    "password-hash-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -4,14 +4,35 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
 @Service
 @Slf4j
 public class PasswordService {
     
     private final BCryptPasswordEncoder passwordEncoder;
+    private final PasswordHashExecutor hashExecutor;
     
-    public PasswordService() {
+    public PasswordService(PasswordHashExecutor hashExecutor) {
         this.passwordEncoder = new BCryptPasswordEncoder(10);
+        this.hashExecutor = hashExecutor;
+    }
+    
+    /**
+     * 在密码哈希线程池中异步加密，避免占用请求线程
+     */
+    public CompletableFuture<String> hashPasswordAsync(String password) {
+        return hashExecutor.submit("hash", () -> hashPassword(password));
+    }
+    
+    /**
+     * 在密码哈希线程池中异步验证；旧版哈希计算开销很小，直接在调用线程完成
+     */
+    public CompletableFuture<Boolean> verifyPasswordAsync(String rawPassword, String encodedPassword) {
+        if (encodedPassword == null || !isBcryptHash(encodedPassword)) {
+            return CompletableFuture.completedFuture(verifyPassword(rawPassword, encodedPassword));
+        }
+        return hashExecutor.submit("verify", () -> verifyPassword(rawPassword, encodedPassword));
     }
     
     /**
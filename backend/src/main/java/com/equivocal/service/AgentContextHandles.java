@@ -0,0 +1,143 @@
+package com.equivocal.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Agent 侧上下文句柄的本地记录。
+ *
+ * 上下文中每条消息依次计入哈希链：h(i) = sha256(h(i-1) \0 role \0 content_type \0 content)，h(0) 为空串，
+ * Agent 使用同样的算法。Agent 确认保存了某会话前 n 条消息（响应头 X-Context-Hash 回传 h(n)）后，
+ * 下一轮只要新上下文的前 n 条哈希仍为 h(n)，就只发送第 n 条之后的消息；摘要替换、窗口裁剪等导致前缀变化时
+ * 哈希对不上，自动退回全量发送。
+ */
+@Component
+public class AgentContextHandles {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    @Value("${agent.stateful-context.max-handles:10000}")
+    private int maxHandles = 10000;
+
+    private final ConcurrentMap<String, Acked> acked = new ConcurrentHashMap<>();
+
+    /**
+     * 决定本轮发送全量还是增量
+     */
+    public Plan plan(String handle, List<Map<String, Object>> messages) {
+        String[] hashes = chain(messages);
+        String fullHash = hashes[messages.size()];
+        Acked known = acked.get(handle);
+        if (known != null && known.count > 0 && known.count <= messages.size()
+                && known.hash.equals(hashes[known.count])) {
+            return new Plan(handle, known.count, known.hash, messages.size(), fullHash);
+        }
+        return new Plan(handle, 0, "", messages.size(), fullHash);
+    }
+
+    /**
+     * Agent 确认已保存前 count 条消息
+     */
+    public void acknowledge(String handle, int count, String hash) {
+        // 超出容量时整体清空：句柄丢失只会让下一轮退回全量发送
+        if (acked.size() >= maxHandles && !acked.containsKey(handle)) {
+            acked.clear();
+        }
+        acked.put(handle, new Acked(count, hash));
+    }
+
+    public void invalidate(String handle) {
+        acked.remove(handle);
+    }
+
+    /**
+     * hashes[i] 为前 i 条消息的链式哈希
+     */
+    static String[] chain(List<Map<String, Object>> messages) {
+        String[] hashes = new String[messages.size() + 1];
+        hashes[0] = "";
+        MessageDigest digest = sha256();
+        for (int i = 0; i < messages.size(); i++) {
+            Map<String, Object> message = messages.get(i);
+            digest.update(hashes[i].getBytes(StandardCharsets.US_ASCII));
+            update(digest, message.get("role"), "");
+            update(digest, message.get("content_type"), "text");
+            update(digest, message.get("content"), "");
+            hashes[i + 1] = hex(digest.digest());
+        }
+        return hashes;
+    }
+
+    private static void update(MessageDigest digest, Object value, String defaultValue) {
+        digest.update((byte) 0);
+        digest.update(String.valueOf(value != null ? value : defaultValue).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    private static final class Acked {
+        private final int count;
+        private final String hash;
+
+        private Acked(int count, String hash) {
+            this.count = count;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * 本轮发送计划：baseCount 为 Agent 已持有的前缀条数（0 表示全量发送）
+     */
+    public static final class Plan {
+        private final String handle;
+        private final int baseCount;
+        private final String baseHash;
+        private final int count;
+        private final String hash;
+
+        Plan(String handle, int baseCount, String baseHash, int count, String hash) {
+            this.handle = handle;
+            this.baseCount = baseCount;
+            this.baseHash = baseHash;
+            this.count = count;
+            this.hash = hash;
+        }
+
+        public boolean isIncremental() { return baseCount > 0; }
+        public String getHandle() { return handle; }
+        public int getBaseCount() { return baseCount; }
+        public String getBaseHash() { return baseHash; }
+        public int getCount() { return count; }
+        public String getHash() { return hash; }
+
+        /**
+         * 同一上下文改为全量发送
+         */
+        public Plan full() {
+            return new Plan(handle, 0, "", count, hash);
+        }
+    }
+}
@@ -1,16 +1,22 @@
 package com.equivocal.service;
 
+import com.equivocal.metrics.ChatStreamMetrics;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
+import org.springframework.core.io.Resource;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.web.reactive.function.BodyInserters;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,40 +25,117 @@ import java.util.Map;
 @Slf4j
 public class AgentService {
 
+    private static final String SUMMARY_INSTRUCTION = "请把下面的法律咨询对话压缩成一段摘要，供后续对话作为上下文使用。"
+            + "保留当事人身份与关键事实、时间金额等具体数字、争议焦点、已经给出的法律意见和尚未解决的问题；"
+            + "如有已有摘要，将其与新增对话合并。只输出摘要正文，不超过 800 字。";
+
+    static final String CONTEXT_HASH_HEADER = "X-Context-Hash";
+
     private final WebClient webClient;
     private final ObjectMapper objectMapper;
+    private final ChatStreamMetrics chatStreamMetrics;
+    private final AgentContextHandles agentContextHandles;
 
     @Value("${agent.api-url:http://localhost:8100/v1}")
     private String apiUrl;
 
-    public AgentService(WebClient webClient, ObjectMapper objectMapper) {
+    @Value("${agent.stateful-context.enabled:false}")
+    private boolean statefulContext;
+
+    public AgentService(WebClient webClient, ObjectMapper objectMapper, ChatStreamMetrics chatStreamMetrics,
+                        AgentContextHandles agentContextHandles) {
         this.webClient = webClient;
         this.objectMapper = objectMapper;
+        this.chatStreamMetrics = chatStreamMetrics;
+        this.agentContextHandles = agentContextHandles;
     }
 
     /**
-     * 流式聊天方法
+     * 流式聊天方法（无状态：每轮发送完整上下文）
      */
     public Flux<String> streamChat(String userId, List<Map<String, Object>> messages) {
+        return streamChat(userId, null, messages);
+    }
+
+    /**
+     * 流式聊天方法。
+     *
+     * 开启 agent.stateful-context 且传入会话 ID 时，以会话 ID 作为 Agent 侧上下文句柄：
+     * Agent 已确认持有的前缀不再重复发送，只发送新增消息；Agent 报告句柄失效（409）时退回全量重发。
+     * 句柄只存在于单个 Agent 进程内，默认关闭，仅适用于 Agent 单进程部署。
+     */
+    public Flux<String> streamChat(String userId, String sessionId, List<Map<String, Object>> messages) {
+        log.info("Sending stream request to Agent API: {}/chat/completions", apiUrl);
+
+        if (!statefulContext || sessionId == null) {
+            return chatStreamMetrics.instrument(ChatStreamMetrics.AGENT, send(userId, messages, null));
+        }
+
+        AgentContextHandles.Plan plan = agentContextHandles.plan(sessionId, messages);
+        Flux<String> stream;
+        if (plan.isIncremental()) {
+            chatStreamMetrics.recordContextHandle(ChatStreamMetrics.HANDLE_HIT);
+            stream = send(userId, messages.subList(plan.getBaseCount(), messages.size()), plan)
+                    .onErrorResume(ContextMissException.class, e -> {
+                        log.info("[AgentService] Agent context miss for session {}, resending full context", sessionId);
+                        agentContextHandles.invalidate(sessionId);
+                        chatStreamMetrics.recordContextHandle(ChatStreamMetrics.HANDLE_MISS);
+                        return send(userId, messages, plan.full());
+                    });
+        } else {
+            chatStreamMetrics.recordContextHandle(ChatStreamMetrics.HANDLE_FULL);
+            stream = send(userId, messages, plan);
+        }
+        return chatStreamMetrics.instrument(ChatStreamMetrics.AGENT, stream);
+    }
+
+    private Flux<String> send(String userId, List<Map<String, Object>> messages, AgentContextHandles.Plan plan) {
         Map<String, Object> requestBody = new HashMap<>();
         requestBody.put("messages", messages);
         requestBody.put("user_id", userId);
         requestBody.put("stream", true);
+        if (plan != null) {
+            Map<String, Object> context = new HashMap<>();
+            context.put("handle", plan.getHandle());
+            context.put("base_count", plan.getBaseCount());
+            context.put("base_hash", plan.getBaseHash());
+            context.put("hash", plan.getHash());
+            requestBody.put("context", context);
+        }
 
-        log.info("Sending stream request to Agent API: {}/chat/completions", apiUrl);
+        // 先序列化成字节再发送，顺带记录每轮请求体大小
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(requestBody);
+        } catch (JsonProcessingException e) {
+            return Flux.error(e);
+        }
+        chatStreamMetrics.recordAgentPayload(body.length, messages.size());
 
         return webClient.post()
                 .uri(apiUrl + "/chat/completions")
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.TEXT_EVENT_STREAM)
-                .bodyValue(requestBody)
-                .retrieve()
-                .bodyToFlux(String.class)
+                .bodyValue(body)
+                .exchangeToFlux(response -> {
+                    if (plan != null && response.statusCode() == HttpStatus.CONFLICT) {
+                        return response.releaseBody().thenMany(Flux.error(new ContextMissException()));
+                    }
+                    if (response.statusCode().isError()) {
+                        return response.createException().flatMapMany(Flux::error);
+                    }
+                    // Agent 回传哈希即表示已保存本轮完整上下文；不支持该协议的 Agent 不回传，始终全量发送
+                    String ackHash = response.headers().asHttpHeaders().getFirst(CONTEXT_HASH_HEADER);
+                    if (plan != null && plan.getHash().equals(ackHash)) {
+                        agentContextHandles.acknowledge(plan.getHandle(), plan.getCount(), plan.getHash());
+                    }
+                    return response.bodyToFlux(String.class);
+                })
                 .filter(line -> line != null && !line.trim().isEmpty())
                 .flatMap(this::processStreamLine);
     }
 
-    private Flux<String> processStreamLine(String line) {
+    Flux<String> processStreamLine(String line) {
         try {
             // Remove "data: " prefix if present
             String data = line.trim();
@@ -88,35 +171,88 @@ public class AgentService {
     }
     
     /**
-     * 上传文件到 Agent 服务
+     * 上传文件到 Agent 服务（同步）
      */
-    public String uploadFile(byte[] fileData, String filename) {
+    public String uploadFile(Resource file, String filename) {
         try {
-            MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-            body.add("file", new ByteArrayResource(fileData) {
-                @Override
-                public String getFilename() {
-                    return filename;
-                }
-            });
-
-            log.info("Uploading file to Agent API: {}/files/upload", apiUrl);
-
-            String response = webClient.post()
-                    .uri(apiUrl + "/files/upload")
-                    .contentType(MediaType.MULTIPART_FORM_DATA)
-                    .bodyValue(body)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block(); // Block for synchronous upload as expected by controller
-
-            return response;
+            return uploadFileAsync(file, filename).block(); // Block for synchronous upload as expected by controller
         } catch (Exception e) {
             log.error("Failed to upload file to Agent API", e);
             throw new RuntimeException("Upload failed: " + e.getMessage());
         }
     }
 
+    /**
+     * 上传文件到 Agent 服务（非阻塞）
+     *
+     * 文件内容以 DataBuffer 分块从 Resource 流式读取并转发，不会整体读入堆内存。
+     */
+    public Mono<String> uploadFileAsync(Resource file, String filename) {
+        MultipartBodyBuilder body = new MultipartBodyBuilder();
+        body.part("file", file).filename(filename);
+
+        log.info("Uploading file to Agent API: {}/files/upload", apiUrl);
+
+        return webClient.post()
+                .uri(apiUrl + "/files/upload")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(body.build()))
+                .retrieve()
+                .bodyToMono(String.class);
+    }
+
+    /**
+     * 让 Agent 把较早的对话与已有摘要合并为新的滚动摘要（非流式使用方，内部仍走流式接口并拼接 content 事件）
+     */
+    public Mono<String> summarize(String userId, String previousSummary, List<Map<String, Object>> messages) {
+        StringBuilder transcript = new StringBuilder();
+        if (previousSummary != null && !previousSummary.isEmpty()) {
+            transcript.append("【已有摘要】\n").append(previousSummary).append("\n\n");
+        }
+        transcript.append("【新增对话】\n");
+        for (Map<String, Object> message : messages) {
+            transcript.append("user".equals(message.get("role")) ? "用户：" : "助手：")
+                    .append(message.get("content"))
+                    .append('\n');
+        }
+
+        Map<String, Object> instruction = new HashMap<>();
+        instruction.put("role", "system");
+        instruction.put("content", SUMMARY_INSTRUCTION);
+        instruction.put("content_type", "text");
+        Map<String, Object> content = new HashMap<>();
+        content.put("role", "user");
+        content.put("content", transcript.toString());
+        content.put("content_type", "text");
+
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("messages", Arrays.asList(instruction, content));
+        requestBody.put("user_id", userId);
+        requestBody.put("stream", true);
+
+        return webClient.post()
+                .uri(apiUrl + "/chat/completions")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .bodyValue(requestBody)
+                .retrieve()
+                .bodyToFlux(String.class)
+                .filter(line -> line != null && !line.trim().isEmpty())
+                .flatMap(this::processStreamLine)
+                .reduce(new StringBuilder(), (summary, event) -> {
+                    try {
+                        JsonNode node = objectMapper.readTree(event);
+                        if ("content".equals(node.path("type").asText())) {
+                            summary.append(node.path("content").asText());
+                        }
+                    } catch (Exception e) {
+                        log.debug("Skip non-JSON event while summarizing");
+                    }
+                    return summary;
+                })
+                .map(summary -> summary.toString().trim());
+    }
+
     /**
      * 生成会话标题 (从用户消息中提取有意义的标题)
      */
@@ -178,4 +314,13 @@ public class AgentService {
         
         return truncated + "...";
     }
+
+    /**
+     * Agent 不再持有（或不认可）请求引用的上下文句柄
+     */
+    static final class ContextMissException extends RuntimeException {
+        ContextMissException() {
+            super("Agent context handle miss", null, false, false);
+        }
+    }
 }
@@ -4,17 +4,18 @@ import com.equivocal.dto.AuthRequest;
 import com.equivocal.dto.AuthResponse;
 import com.equivocal.entity.User;
 import com.equivocal.repository.UserRepository;
+import com.equivocal.security.AuthPersistenceExecutor;
 import com.equivocal.security.InMemoryRateLimiter;
 import com.equivocal.security.JwtService;
 import com.equivocal.security.PasswordService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @RequiredArgsConstructor
@@ -26,23 +27,27 @@ public class AuthService {
     private final JwtService jwtService;
     private final VerificationService verificationService;
     private final InMemoryRateLimiter rateLimiter;
+    private final AuthPersistenceExecutor persistenceExecutor;
     
     /**
      * 登录或注册
+     *
+     * 密码验证/加密在 {@link com.equivocal.security.PasswordHashExecutor} 中完成，
+     * 因此不在外层开启事务，避免 BCrypt 计算期间占用数据库连接；哈希之后的保存在 {@link AuthPersistenceExecutor} 中执行，
+     * 不占用哈希线程。
      */
-    @Transactional
-    public AuthResponse authenticate(AuthRequest request) {
+    public CompletableFuture<AuthResponse> authenticate(AuthRequest request) {
         String email = request.getEmail();
         String password = request.getPassword();
         
         if (email == null || email.isEmpty() || password == null || password.isEmpty()) {
-            return AuthResponse.error("邮箱和密码不能为空");
+            return CompletableFuture.completedFuture(AuthResponse.error("邮箱和密码不能为空"));
         }
 
         String normalizedEmail = email.trim().toLowerCase();
         if (!rateLimiter.allow("auth:" + normalizedEmail)) {
             log.warn("[AuthService] Authentication rate limited: email={}", normalizedEmail);
-            return AuthResponse.error("请求过于频繁，请稍后再试");
+            return CompletableFuture.completedFuture(AuthResponse.error("请求过于频繁，请稍后再试"));
         }
         
         Optional<User> existingUser = userRepository.findByEmail(normalizedEmail);
@@ -59,32 +64,37 @@ public class AuthService {
     /**
      * 登录
      */
-    private AuthResponse login(User user, String password) {
+    private CompletableFuture<AuthResponse> login(User user, String password) {
         log.info("[AuthService] 尝试登录: email={}, hasPassword={}, isBcrypt={}",
                 user.getEmail(),
                 user.getPassword() != null,
                 user.getPassword() != null && user.getPassword().startsWith("$2"));
 
         // 验证密码
-        try {
-            if (!passwordService.verifyPassword(password, user.getPassword())) {
-                log.warn("[AuthService] 密码错误: email={}", user.getEmail());
-                return AuthResponse.error("密码错误");
-            }
-        } catch (Exception e) {
-            log.error("[AuthService] 密码验证抛出异常", e);
-            throw e;
-        }
-        
-        // 检查是否需要升级密码哈希
-        if (passwordService.needsUpgrade(user.getPassword())) {
-            String newHash = passwordService.hashPassword(password);
-            user.setPassword(newHash);
-            user.setUpdatedAt(LocalDateTime.now());
-            userRepository.save(user);
-            log.info("[AuthService] 密码哈希已升级: userId={}", user.getId());
-        }
-        
+        return passwordService.verifyPasswordAsync(password, user.getPassword())
+                .thenCompose(matches -> {
+                    if (!matches) {
+                        log.warn("[AuthService] 密码错误: email={}", user.getEmail());
+                        return CompletableFuture.completedFuture(AuthResponse.error("密码错误"));
+                    }
+                    
+                    // 检查是否需要升级密码哈希
+                    if (passwordService.needsUpgrade(user.getPassword())) {
+                        return passwordService.hashPasswordAsync(password).thenCompose(newHash ->
+                                persistenceExecutor.submit("upgrade-hash", () -> {
+                                    user.setPassword(newHash);
+                                    user.setUpdatedAt(LocalDateTime.now());
+                                    userRepository.save(user);
+                                    log.info("[AuthService] 密码哈希已升级: userId={}", user.getId());
+                                    return loginSuccess(user);
+                                }));
+                    }
+                    
+                    return CompletableFuture.completedFuture(loginSuccess(user));
+                });
+    }
+    
+    private AuthResponse loginSuccess(User user) {
         // 生成 Token（使用最新的 role 值）
         String token = jwtService.generateToken(user.getId(), user.getEmail(), user.getRole());
         
@@ -96,29 +106,36 @@ public class AuthService {
     /**
      * 注册
      */
-    private AuthResponse register(String email, String password, String code) {
+    private CompletableFuture<AuthResponse> register(String email, String password, String code) {
         // 验证邮箱格式
         if (!isValidEmail(email)) {
-            return AuthResponse.error("邮箱格式不正确");
+            return CompletableFuture.completedFuture(AuthResponse.error("邮箱格式不正确"));
         }
         
         // 验证密码强度
         if (password.length() < 6) {
-            return AuthResponse.error("密码长度至少为6位");
+            return CompletableFuture.completedFuture(AuthResponse.error("密码长度至少为6位"));
         }
 
         // 验证验证码
         if (code == null || code.isEmpty()) {
-            return AuthResponse.error("请输入验证码");
+            return CompletableFuture.completedFuture(AuthResponse.error("请输入验证码"));
         }
-        VerificationService.VerificationResult verificationResult = verificationService.verifyCode(email, code);
+        // 先只校验不消耗，错误的验证码不必等待密码哈希
+        VerificationService.VerificationResult verificationResult = verificationService.checkCode(email, code);
         if (!verificationResult.isSuccess()) {
-            return AuthResponse.error(verificationResult.getMessage());
+            return CompletableFuture.completedFuture(AuthResponse.error(verificationResult.getMessage()));
         }
         
         // 创建用户
-        String hashedPassword = passwordService.hashPassword(password);
-        
+        return passwordService.hashPasswordAsync(password).thenCompose(hashedPassword ->
+                persistenceExecutor.submit("register", () -> createUser(email, code, hashedPassword)));
+    }
+
+    /**
+     * 保存新用户并消耗验证码，在 {@link AuthPersistenceExecutor} 上执行
+     */
+    private AuthResponse createUser(String email, String code, String hashedPassword) {
         // 生成用户 ID
         String userId = "user_" + UUID.randomUUID().toString().replace("-", "");
         
@@ -135,7 +152,13 @@ public class AuthService {
                 .updatedAt(LocalDateTime.now())
                 .build();
         
-        user = userRepository.save(user);
+        // 验证码与用户在同一事务中消耗和保存：哈希被拒绝、保存失败时验证码仍然有效；
+        // 并发的重复注册只有一个能消耗成功
+        VerificationService.VerificationResult consumed =
+                verificationService.consumeCode(email, code, () -> userRepository.save(user));
+        if (!consumed.isSuccess()) {
+            return AuthResponse.error(consumed.getMessage());
+        }
         
         // 生成 Token
         String token = jwtService.generateToken(user.getId(), user.getEmail(), user.getRole());
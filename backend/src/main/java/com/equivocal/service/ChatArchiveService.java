@@ -0,0 +1,363 @@
+package com.equivocal.service;
+
+import com.equivocal.datasource.Workload;
+import com.equivocal.datasource.WorkloadRoutingDataSource;
+import com.equivocal.entity.ChatMessage;
+import com.equivocal.entity.ChatSession;
+import com.equivocal.entity.ChatSessionArchive;
+import com.equivocal.entity.CompressedTextConverter;
+import com.equivocal.repository.ChatMessageRepository;
+import com.equivocal.repository.ChatSessionArchiveRepository;
+import com.equivocal.repository.ChatSessionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 会话冷热分层。
+ *
+ * 闲置超过 idle-days 的会话，其消息被压缩为一个归档块写入 chat_session_archives 并从 chat_messages 删除，
+ * 侧边栏与历史查询只扫热表。读取归档会话时直接解码归档块（不写回热表，避免打开一次旧会话就来回搬迁），
+ * 向会话写入新消息前才把消息按原 ID 恢复到热表。归档任务在后台按批执行，每批之间暂停。
+ */
+@Service
+@Slf4j
+public class ChatArchiveService implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * 单条 DELETE 的 ID 数上限
+     */
+    private static final int DELETE_CHUNK = 500;
+
+    private static final Comparator<ChatMessage> CHRONOLOGICAL = Comparator
+            .comparing(ChatMessage::getCreatedAt, Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder()))
+            .thenComparing(ChatMessage::getId);
+
+    private final ChatSessionRepository chatSessionRepository;
+    private final ChatMessageRepository chatMessageRepository;
+    private final ChatSessionArchiveRepository chatSessionArchiveRepository;
+    private final CompressedTextConverter compressedTextConverter;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.archive.idle-days:30}")
+    private int idleDays = 30;
+
+    @Value("${app.archive.batch-size:50}")
+    private int batchSize = 50;
+
+    @Value("${app.archive.max-batches-per-run:20}")
+    private int maxBatchesPerRun = 20;
+
+    @Value("${app.archive.batch-pause-ms:500}")
+    private long batchPauseMs = 500;
+
+    @Value("${app.archive.interval-minutes:60}")
+    private long intervalMinutes = 60;
+
+    private volatile ScheduledExecutorService scheduler;
+
+    public ChatArchiveService(ChatSessionRepository chatSessionRepository,
+                              ChatMessageRepository chatMessageRepository,
+                              ChatSessionArchiveRepository chatSessionArchiveRepository,
+                              CompressedTextConverter compressedTextConverter,
+                              PlatformTransactionManager transactionManager) {
+        this.chatSessionRepository = chatSessionRepository;
+        this.chatMessageRepository = chatMessageRepository;
+        this.chatSessionArchiveRepository = chatSessionArchiveRepository;
+        this.compressedTextConverter = compressedTextConverter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (!enabled) {
+            return;
+        }
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(WorkloadRoutingDataSource.bound(Workload.ADMIN, runnable), "chat-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::archiveIdleSessions, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+        scheduler = executor;
+        log.info("[ChatArchiveService] Archiving sessions idle for {} days every {} min", idleDays, intervalMinutes);
+    }
+
+    /**
+     * 会话的全部消息（按 createdAt、id 升序），归档会话从归档块读取
+     */
+    public List<ChatMessage> findMessages(ChatSession session) {
+        if (session.getArchivedAt() == null) {
+            return chatMessageRepository.findBySessionIdOrderByCreatedAtAsc(session.getId());
+        }
+        Optional<ChatSessionArchive> archive = chatSessionArchiveRepository.findById(session.getId());
+        if (!archive.isPresent()) {
+            // 恢复与读取并发：归档块已删除，消息已回到热表
+            return chatMessageRepository.findBySessionIdOrderByCreatedAtAsc(session.getId());
+        }
+        List<ChatMessage> messages = decode(session.getId(), archive.get().getPayload());
+        // 归档进行中写入的消息留在热表；ID 不单调，按归档块内的 ID 排除而不是按最大 ID 截断
+        List<ChatMessage> hot = chatMessageRepository.findBySessionIdOrderByCreatedAtAscIdAsc(session.getId());
+        if (hot.isEmpty()) {
+            return messages;
+        }
+        Set<Long> archivedIds = new HashSet<>();
+        for (ChatMessage message : messages) {
+            archivedIds.add(message.getId());
+        }
+        for (ChatMessage message : hot) {
+            if (!archivedIds.contains(message.getId())) {
+                messages.add(message);
+            }
+        }
+        messages.sort(CHRONOLOGICAL);
+        return messages;
+    }
+
+    /**
+     * 归档会话的消息数（sessionId -> 条数），不含热表中的消息
+     */
+    public Map<String, Long> archivedMessageCounts(Collection<String> sessionIds) {
+        if (sessionIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Long> counts = new HashMap<>();
+        for (ChatSessionArchiveRepository.ArchiveSummary summary : chatSessionArchiveRepository.findSummariesBySessionIds(sessionIds)) {
+            counts.put(summary.getSessionId(), (long) summary.getMessageCount());
+        }
+        return counts;
+    }
+
+    /**
+     * 写入新消息前调用：把归档会话的消息按原 ID 恢复到热表
+     */
+    public void restore(ChatSession session) {
+        if (session.getArchivedAt() == null) {
+            return;
+        }
+        String sessionId = session.getId();
+        Integer restored = transactionTemplate.execute(status -> {
+            Optional<ChatSessionArchive> archive = chatSessionArchiveRepository.findById(sessionId);
+            if (!archive.isPresent() || chatSessionRepository.markRestored(sessionId) == 0) {
+                return 0;
+            }
+            List<ChatMessage> messages = decode(sessionId, archive.get().getPayload());
+            for (ChatMessage message : messages) {
+                chatMessageRepository.insertWithId(message.getId(), sessionId, message.getRole(),
+                        compressedTextConverter.convertToDatabaseColumn(message.getContent()),
+                        message.getContentType(), message.getCreatedAt());
+            }
+            chatSessionArchiveRepository.delete(archive.get());
+            return messages.size();
+        });
+        session.setArchivedAt(null);
+        log.info("[ChatArchiveService] Restored session {} ({} messages)", sessionId, restored);
+    }
+
+    public void deleteArchives(Collection<String> sessionIds) {
+        if (!sessionIds.isEmpty()) {
+            chatSessionArchiveRepository.deleteBySessionIdIn(sessionIds);
+        }
+    }
+
+    /**
+     * 归档闲置会话，最多执行 max-batches-per-run 批；返回归档的会话数
+     */
+    public int archiveIdleSessions() {
+        long started = System.nanoTime();
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(idleDays);
+        int archived = 0;
+        try {
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                List<String> sessionIds = chatSessionRepository.findArchiveCandidates(cutoff, PageRequest.of(0, batchSize));
+                int archivedInBatch = 0;
+                for (String sessionId : sessionIds) {
+                    try {
+                        if (archive(sessionId, cutoff)) {
+                            archivedInBatch++;
+                        }
+                    } catch (Exception e) {
+                        log.error("[ChatArchiveService] Failed to archive session {}: {}", sessionId, e.getMessage());
+                    }
+                }
+                archived += archivedInBatch;
+                // 本批一个都没归档成功时停止，避免对同一批失败的会话反复重试
+                if (sessionIds.size() < batchSize || archivedInBatch == 0) {
+                    break;
+                }
+                if (batchPauseMs > 0) {
+                    TimeUnit.MILLISECONDS.sleep(batchPauseMs);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("[ChatArchiveService] Archive run failed: {}", e.getMessage());
+        }
+        if (archived > 0) {
+            log.info("[ChatArchiveService] Archived {} sessions in {} ms", archived,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        }
+        return archived;
+    }
+
+    private boolean archive(String sessionId, LocalDateTime cutoff) {
+        Boolean done = transactionTemplate.execute(status -> {
+            List<ChatMessage> messages = chatMessageRepository.findBySessionIdOrderByCreatedAtAscIdAsc(sessionId);
+            if (messages.isEmpty()) {
+                return false;
+            }
+            long maxId = 0;
+            long rawBytes = 0;
+            List<Long> ids = new ArrayList<>(messages.size());
+            for (ChatMessage message : messages) {
+                ids.add(message.getId());
+                maxId = Math.max(maxId, message.getId());
+                rawBytes += message.getContent() != null ? message.getContent().getBytes(StandardCharsets.UTF_8).length : 0;
+            }
+            // 先加条件标记：会话在候选查询之后有新活动时放弃本次归档
+            if (chatSessionRepository.markArchived(sessionId, LocalDateTime.now(), cutoff) == 0) {
+                return false;
+            }
+            chatSessionArchiveRepository.save(ChatSessionArchive.builder()
+                    .sessionId(sessionId)
+                    .payload(encode(messages))
+                    .messageCount(messages.size())
+                    .maxMessageId(maxId)
+                    .rawBytes(rawBytes)
+                    .archivedAt(LocalDateTime.now())
+                    .build());
+            // 只删除写入归档块的那些消息，读取之后才提交的消息留在热表
+            for (int from = 0; from < ids.size(); from += DELETE_CHUNK) {
+                chatMessageRepository.deleteArchivedMessages(sessionId,
+                        ids.subList(from, Math.min(from + DELETE_CHUNK, ids.size())));
+            }
+            return true;
+        });
+        return Boolean.TRUE.equals(done);
+    }
+
+    /**
+     * 归档块格式：版本号、条数，随后每条消息依次为 id、role、contentType（可空）、createdAt、content，整体 Deflate 压缩
+     */
+    static byte[] encode(List<ChatMessage> messages) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater, 8192))) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeInt(messages.size());
+            for (ChatMessage message : messages) {
+                out.writeLong(message.getId());
+                writeString(out, message.getRole());
+                writeString(out, message.getContentType());
+                LocalDateTime createdAt = message.getCreatedAt();
+                out.writeBoolean(createdAt != null);
+                if (createdAt != null) {
+                    out.writeLong(createdAt.toEpochSecond(ZoneOffset.UTC));
+                    out.writeInt(createdAt.getNano());
+                }
+                writeString(out, message.getContent());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    static List<ChatMessage> decode(String sessionId, byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(payload)))) {
+            int version = in.readUnsignedByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalStateException("Unsupported archive format " + version + " for session " + sessionId);
+            }
+            int count = in.readInt();
+            List<ChatMessage> messages = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long id = in.readLong();
+                String role = readString(in);
+                String contentType = readString(in);
+                LocalDateTime createdAt = in.readBoolean()
+                        ? LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC)
+                        : null;
+                messages.add(ChatMessage.builder()
+                        .id(id)
+                        .sessionId(sessionId)
+                        .role(role)
+                        .contentType(contentType)
+                        .createdAt(createdAt)
+                        .content(readString(in))
+                        .build());
+            }
+            return messages;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ScheduledExecutorService executor = scheduler;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
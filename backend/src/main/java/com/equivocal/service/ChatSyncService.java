@@ -0,0 +1,308 @@
+package com.equivocal.service;
+
+import com.equivocal.dto.MessageView;
+import com.equivocal.dto.SessionView;
+import com.equivocal.dto.SyncResponse;
+import com.equivocal.entity.ChatChange;
+import com.equivocal.entity.ChatMessage;
+import com.equivocal.entity.ChatSession;
+import com.equivocal.entity.ChatSyncCounter;
+import com.equivocal.repository.ChatChangeRepository;
+import com.equivocal.repository.ChatMessageRepository;
+import com.equivocal.repository.ChatSessionRepository;
+import com.equivocal.repository.ChatSyncCounterRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 增量同步：会话与消息写入时追加变更，客户端凭游标只拉取之后的变化。
+ *
+ * 实体写入通过 {@link #call} / {@link #run} 执行，变更与实体在同一事务内提交，序号因此连续且不漏记；
+ * 客户端游标落在已清理的区间时收到 reset 并全量刷新。
+ */
+@Service
+@Slf4j
+public class ChatSyncService {
+
+    private final ChatChangeRepository chatChangeRepository;
+    private final ChatSyncCounterRepository chatSyncCounterRepository;
+    private final ChatSessionRepository chatSessionRepository;
+    private final ChatMessageRepository chatMessageRepository;
+    private final ChatArchiveService chatArchiveService;
+    private final TransactionTemplate transactionTemplate;
+    /**
+     * 已确认存在计数行的用户，避免每次写入都查询
+     */
+    private final Set<String> knownCounters = ConcurrentHashMap.newKeySet();
+
+    @Value("${app.sync.retention-days:30}")
+    private int retentionDays = 30;
+
+    @Value("${app.sync.prune-every:200}")
+    private int pruneEvery = 200;
+
+    public ChatSyncService(ChatChangeRepository chatChangeRepository,
+                           ChatSyncCounterRepository chatSyncCounterRepository,
+                           ChatSessionRepository chatSessionRepository,
+                           ChatMessageRepository chatMessageRepository,
+                           ChatArchiveService chatArchiveService,
+                           PlatformTransactionManager transactionManager) {
+        this.chatChangeRepository = chatChangeRepository;
+        this.chatSyncCounterRepository = chatSyncCounterRepository;
+        this.chatSessionRepository = chatSessionRepository;
+        this.chatMessageRepository = chatMessageRepository;
+        this.chatArchiveService = chatArchiveService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 在一个事务内执行实体写入，并把期间登记的变更一并写入变更日志。
+     *
+     * 变更与数据同时提交或同时回滚，日志不会漏记某次已提交的写入；计数行在事务末尾一次加 n，
+     * 变更行随后批量插入，行锁只在提交前的最后几条语句期间持有。
+     */
+    public <T> T call(String userId, Function<Changes, T> work) {
+        ensureCounter(userId);
+        Changes changes = new Changes();
+        long[] lastSeq = {0L};
+        T result = transactionTemplate.execute(status -> {
+            T value = work.apply(changes);
+            lastSeq[0] = append(userId, changes.pending);
+            return value;
+        });
+        int count = changes.pending.size();
+        if (pruneEvery > 0 && count > 0 && lastSeq[0] / pruneEvery != (lastSeq[0] - count) / pruneEvery) {
+            try {
+                prune(userId);
+            } catch (Exception e) {
+                log.warn("[ChatSyncService] Failed to prune changes for user {}: {}", userId, e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    public void run(String userId, Consumer<Changes> work) {
+        call(userId, changes -> {
+            work.accept(changes);
+            return null;
+        });
+    }
+
+    /**
+     * 删除用户：work 删除用户本身及其会话、消息，与该用户的变更日志、计数行在同一事务中提交。
+     *
+     * 计数行删除后序号从 0 重新开始，该用户任何已有游标都大于最新序号，同步时收到 reset 并全量刷新，
+     * 效果等同于为每个会话写墓碑，且不会留下无主的变更与计数行
+     */
+    public void deleteUser(String userId, Runnable work) {
+        transactionTemplate.execute(status -> {
+            work.run();
+            int changes = chatChangeRepository.deleteByUserId(userId);
+            chatSyncCounterRepository.deleteByUserId(userId);
+            log.info("[ChatSyncService] Removed sync state of deleted user {} ({} changes)", userId, changes);
+            return null;
+        });
+        knownCounters.remove(userId);
+    }
+
+    /**
+     * 计数行只在用户第一次写变更时创建，放在主事务之外：
+     * 并发首写时只有插入方冲突重试，不会让聊天写入因唯一键冲突整体回滚
+     */
+    private void ensureCounter(String userId) {
+        if (knownCounters.contains(userId)) {
+            return;
+        }
+        if (!chatSyncCounterRepository.existsById(userId)) {
+            try {
+                transactionTemplate.execute(status -> chatSyncCounterRepository.saveAndFlush(new ChatSyncCounter(userId, 0L)));
+            } catch (DataIntegrityViolationException e) {
+                log.debug("[ChatSyncService] Counter for user {} created concurrently", userId);
+            }
+        }
+        knownCounters.add(userId);
+    }
+
+    private long append(String userId, List<ChatChange> pending) {
+        if (pending.isEmpty()) {
+            return 0L;
+        }
+        int count = pending.size();
+        if (chatSyncCounterRepository.increment(userId, count) == 0) {
+            knownCounters.remove(userId);
+            throw new IllegalStateException("sync counter missing for user " + userId);
+        }
+        long last = chatSyncCounterRepository.findSeqByUserId(userId);
+        long seq = last - count + 1;
+        LocalDateTime now = LocalDateTime.now();
+        for (ChatChange change : pending) {
+            change.setUserId(userId);
+            change.setSeq(seq++);
+            change.setCreatedAt(now);
+        }
+        chatChangeRepository.saveAll(pending);
+        return last;
+    }
+
+    private void prune(String userId) {
+        int removed = transactionTemplate.execute(status ->
+                chatChangeRepository.deleteByUserIdCreatedBefore(userId, LocalDateTime.now().minusDays(retentionDays)));
+        if (removed > 0) {
+            log.info("[ChatSyncService] Pruned {} changes for user {}", removed, userId);
+        }
+    }
+
+    /**
+     * 返回游标之后的变更；同一会话多次变更只返回一次当前状态
+     */
+    public SyncResponse changesSince(String userId, long since, int limit) {
+        Long latestSeq = chatSyncCounterRepository.findSeqByUserId(userId);
+        long latest = latestSeq != null ? latestSeq : 0L;
+        if (since > latest) {
+            // 游标来自别的环境或数据已被清空
+            return SyncResponse.reset(latest);
+        }
+        if (since == latest) {
+            return new SyncResponse(since, false, false, new ArrayList<SessionView>(),
+                    new ArrayList<MessageView>(), new ArrayList<String>());
+        }
+
+        List<ChatChange> changes = chatChangeRepository.findByUserIdAndSeqGreaterThanOrderBySeqAsc(
+                userId, since, PageRequest.of(0, limit + 1));
+        if (changes.isEmpty() || changes.get(0).getSeq() != since + 1) {
+            // 序号连续，断档说明游标之后的变更已过保留期被清理
+            return SyncResponse.reset(latest);
+        }
+        boolean hasMore = changes.size() > limit;
+        if (hasMore) {
+            changes = changes.subList(0, limit);
+        }
+
+        Set<String> upsertedSessionIds = new LinkedHashSet<>();
+        Set<String> deletedSessionIds = new LinkedHashSet<>();
+        List<Long> messageIds = new ArrayList<>();
+        for (ChatChange change : changes) {
+            switch (change.getType()) {
+                case SESSION:
+                    upsertedSessionIds.add(change.getSessionId());
+                    break;
+                case SESSION_DELETED:
+                    upsertedSessionIds.remove(change.getSessionId());
+                    deletedSessionIds.add(change.getSessionId());
+                    break;
+                case MESSAGE:
+                    if (change.getMessageId() != null) {
+                        messageIds.add(change.getMessageId());
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        List<SessionView> sessions = new ArrayList<>();
+        if (!upsertedSessionIds.isEmpty()) {
+            for (ChatSession session : chatSessionRepository.findAllById(upsertedSessionIds)) {
+                sessions.add(SessionView.of(session));
+            }
+            if (sessions.size() < upsertedSessionIds.size()) {
+                // 会话已被删除但墓碑还在后面的批次里（或未能记录），按删除处理
+                Set<String> missing = new LinkedHashSet<>(upsertedSessionIds);
+                for (SessionView session : sessions) {
+                    missing.remove(session.getId());
+                }
+                deletedSessionIds.addAll(missing);
+            }
+        }
+
+        List<MessageView> messages = new ArrayList<>();
+        if (!messageIds.isEmpty()) {
+            List<ChatMessage> loaded = new ArrayList<>(chatMessageRepository.findAllById(messageIds));
+            if (loaded.size() < messageIds.size()) {
+                loaded.addAll(findArchived(changes, messageIds, loaded, deletedSessionIds));
+            }
+            loaded.sort(Comparator.comparing(ChatMessage::getId));
+            for (ChatMessage message : loaded) {
+                if (!deletedSessionIds.contains(message.getSessionId())) {
+                    messages.add(MessageView.of(message));
+                }
+            }
+        }
+
+        long cursor = changes.get(changes.size() - 1).getSeq();
+        return new SyncResponse(cursor, hasMore, false, sessions, messages, new ArrayList<>(deletedSessionIds));
+    }
+
+    /**
+     * 热表中找不到的消息：所在会话已归档时从归档块读取；会话已删除的不再返回
+     */
+    private List<ChatMessage> findArchived(List<ChatChange> changes, List<Long> messageIds,
+                                           List<ChatMessage> loaded, Set<String> deletedSessionIds) {
+        Set<Long> missing = new HashSet<>(messageIds);
+        for (ChatMessage message : loaded) {
+            missing.remove(message.getId());
+        }
+        Set<String> sessionIds = new LinkedHashSet<>();
+        for (ChatChange change : changes) {
+            if (change.getType() == ChatChange.Type.MESSAGE && missing.contains(change.getMessageId())
+                    && !deletedSessionIds.contains(change.getSessionId())) {
+                sessionIds.add(change.getSessionId());
+            }
+        }
+        List<ChatMessage> archived = new ArrayList<>();
+        if (sessionIds.isEmpty()) {
+            return archived;
+        }
+        for (ChatSession session : chatSessionRepository.findAllById(sessionIds)) {
+            if (session.getArchivedAt() == null) {
+                continue;
+            }
+            for (ChatMessage message : chatArchiveService.findMessages(session)) {
+                if (missing.remove(message.getId())) {
+                    archived.add(message);
+                }
+            }
+        }
+        return archived;
+    }
+
+    /**
+     * 一次写入期间登记的变更，提交前统一分配序号
+     */
+    public static final class Changes {
+
+        private final List<ChatChange> pending = new ArrayList<>();
+
+        public void sessionChanged(ChatSession session) {
+            add(ChatChange.Type.SESSION, session.getId(), null);
+        }
+
+        public void sessionDeleted(String sessionId) {
+            add(ChatChange.Type.SESSION_DELETED, sessionId, null);
+        }
+
+        public void messageCreated(ChatMessage message) {
+            add(ChatChange.Type.MESSAGE, message.getSessionId(), message.getId());
+        }
+
+        private void add(ChatChange.Type type, String sessionId, Long messageId) {
+            pending.add(ChatChange.builder().type(type).sessionId(sessionId).messageId(messageId).build());
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.equivocal.service;
+
+import com.equivocal.entity.ChatMessage;
+import com.equivocal.entity.ChatSession;
+import com.equivocal.repository.ChatMessageRepository;
+import com.equivocal.repository.ChatSessionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 对话上下文压缩。
+ *
+ * 每轮只发送「滚动摘要 + 摘要之后的消息」。摘要之后的消息超过阈值（条数或字符数）时，
+ * 在后台让 Agent 把其中较早的部分并入摘要，只保留最近 keep-recent-messages 条原文；
+ * 摘要生成完成前本轮仍发送未摘要消息；无论是否有摘要，最终发送的内容都经 ContextWindowBuilder 按 token 预算裁剪。
+ */
+@Service
+@Slf4j
+public class ContextCompactionService {
+
+    static final String SUMMARY_PREFIX = "以下是本会话较早对话的摘要：\n";
+
+    private final ChatSessionRepository chatSessionRepository;
+    private final ChatMessageRepository chatMessageRepository;
+    private final AgentService agentService;
+    private final ContextWindowBuilder contextWindowBuilder;
+
+    @Value("${app.context.compaction.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.context.compaction.trigger-messages:40}")
+    private int triggerMessages = 40;
+
+    @Value("${app.context.compaction.trigger-chars:60000}")
+    private int triggerChars = 60000;
+
+    @Value("${app.context.compaction.keep-recent-messages:12}")
+    private int keepRecentMessages = 12;
+
+    @Value("${app.context.compaction.timeout-ms:120000}")
+    private long timeoutMs = 120000;
+
+    /**
+     * 正在生成摘要的会话，同一会话同时只跑一个任务
+     */
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final ThreadPoolExecutor executor;
+
+    public ContextCompactionService(ChatSessionRepository chatSessionRepository,
+                                    ChatMessageRepository chatMessageRepository,
+                                    AgentService agentService,
+                                    ContextWindowBuilder contextWindowBuilder) {
+        this.chatSessionRepository = chatSessionRepository;
+        this.chatMessageRepository = chatMessageRepository;
+        this.agentService = agentService;
+        this.contextWindowBuilder = contextWindowBuilder;
+        AtomicInteger threads = new AtomicInteger();
+        // 队列满时直接放弃，下一轮对话会再次触发
+        this.executor = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(100),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "context-compaction-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 组装发给 Agent 的上下文，必要时在后台触发摘要
+     */
+    public List<Map<String, Object>> buildContext(ChatSession session) {
+        boolean summarized = enabled && session.getSummary() != null && session.getSummarizedUpToId() != null;
+        List<ChatMessage> messages;
+        if (!summarized) {
+            messages = chatMessageRepository.findBySessionIdOrderByCreatedAtAscIdAsc(session.getId());
+        } else if (session.getSummarizedUpToCreatedAt() != null) {
+            messages = chatMessageRepository.findAfterBoundary(session.getId(),
+                    session.getSummarizedUpToCreatedAt(), session.getSummarizedUpToId());
+        } else {
+            // 升级前写入的摘要只有 ID 边界，下次压缩后改用 (createdAt, id) 边界
+            messages = chatMessageRepository.findBySessionIdAndIdGreaterThanOrderByCreatedAtAsc(
+                    session.getId(), session.getSummarizedUpToId());
+        }
+
+        String summary = summarized ? SUMMARY_PREFIX + session.getSummary() : null;
+        int reservedTokens = summary != null ? TokenEstimator.estimateText(summary) + TokenEstimator.MESSAGE_OVERHEAD_TOKENS : 0;
+        List<ChatMessage> window = contextWindowBuilder.select(messages, reservedTokens);
+
+        List<Map<String, Object>> context = new ArrayList<>(window.size() + 1);
+        if (summary != null) {
+            context.add(toContextMessage("system", summary, "text"));
+        }
+        for (ChatMessage message : window) {
+            context.add(toContextMessage(message.getRole(), message.getContent(),
+                    message.getContentType() != null ? message.getContentType() : "text"));
+        }
+
+        if (enabled && exceedsThreshold(messages)) {
+            scheduleCompaction(session, messages);
+        }
+        return context;
+    }
+
+    private boolean exceedsThreshold(List<ChatMessage> messages) {
+        if (messages.size() <= keepRecentMessages) {
+            return false;
+        }
+        if (messages.size() > triggerMessages) {
+            return true;
+        }
+        long chars = 0;
+        for (ChatMessage message : messages) {
+            chars += message.getContent() != null ? message.getContent().length() : 0;
+        }
+        return chars > triggerChars;
+    }
+
+    private void scheduleCompaction(ChatSession session, List<ChatMessage> messages) {
+        String sessionId = session.getId();
+        if (!inFlight.add(sessionId)) {
+            return;
+        }
+        List<ChatMessage> older = new ArrayList<>(messages.subList(0, messages.size() - keepRecentMessages));
+        try {
+            executor.execute(() -> {
+                try {
+                    compact(session.getUserId(), sessionId, session.getSummary(), older);
+                } finally {
+                    inFlight.remove(sessionId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(sessionId);
+            log.warn("[ContextCompactionService] Compaction queue full, skip session {}", sessionId);
+        }
+    }
+
+    void compact(String userId, String sessionId, String previousSummary, List<ChatMessage> older) {
+        long started = System.nanoTime();
+        try {
+            List<Map<String, Object>> turns = new ArrayList<>(older.size());
+            for (ChatMessage message : older) {
+                turns.add(toContextMessage(message.getRole(), message.getContent(), "text"));
+            }
+            String summary = agentService.summarize(userId, previousSummary, turns)
+                    .block(Duration.ofMillis(timeoutMs));
+            if (summary == null || summary.isEmpty()) {
+                log.warn("[ContextCompactionService] Agent returned empty summary for session {}", sessionId);
+                return;
+            }
+            ChatMessage last = older.get(older.size() - 1);
+            int updated = chatSessionRepository.updateSummary(sessionId, summary, last.getCreatedAt(), last.getId());
+            log.info("[ContextCompactionService] Session {} summarized up to message {} ({} messages, {} chars, {} ms, applied={})",
+                    sessionId, last.getId(), older.size(), summary.length(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), updated > 0);
+        } catch (Exception e) {
+            log.error("[ContextCompactionService] Failed to summarize session {}: {}", sessionId, e.getMessage());
+        }
+    }
+
+    private static Map<String, Object> toContextMessage(String role, String content, String contentType) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("role", role);
+        message.put("content", content);
+        message.put("content_type", contentType);
+        return message;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,112 @@
+package com.equivocal.service;
+
+import com.equivocal.entity.ChatMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按 token 预算裁剪发给 Agent 的上下文。
+ *
+ * 始终保留 system 消息、首轮对话（第一条 user 消息及紧随的 assistant 回复）和最新一条消息，
+ * 其余预算从最新往前连续填充，放不下的更早消息整体丢弃（不跳着挑，避免上下文出现空洞）。
+ */
+@Component
+@Slf4j
+public class ContextWindowBuilder {
+
+    private final TokenEstimator tokenEstimator;
+
+    @Value("${app.context.window.max-tokens:32000}")
+    private int maxTokens = 32000;
+
+    public ContextWindowBuilder(TokenEstimator tokenEstimator) {
+        this.tokenEstimator = tokenEstimator;
+    }
+
+    /**
+     * 选出放得进预算的消息，保持原有顺序
+     *
+     * @param reservedTokens 已被其他内容（如会话摘要）占用的 token 数
+     */
+    public List<ChatMessage> select(List<ChatMessage> messages, int reservedTokens) {
+        int size = messages.size();
+        if (size == 0) {
+            return messages;
+        }
+        int budget = maxTokens - reservedTokens;
+
+        int[] tokens = new int[size];
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            tokens[i] = tokenEstimator.estimate(messages.get(i));
+            total += tokens[i];
+        }
+        if (total <= budget) {
+            return messages;
+        }
+
+        boolean[] keep = new boolean[size];
+        int used = 0;
+
+        // 最新一条是本轮的问题，无论如何都要发送
+        keep[size - 1] = true;
+        used += tokens[size - 1];
+
+        for (int i = 0; i < size - 1; i++) {
+            if ("system".equals(messages.get(i).getRole()) && used + tokens[i] <= budget) {
+                keep[i] = true;
+                used += tokens[i];
+            }
+        }
+
+        int firstUser = -1;
+        for (int i = 0; i < size - 1; i++) {
+            if ("user".equals(messages.get(i).getRole())) {
+                firstUser = i;
+                break;
+            }
+        }
+        if (firstUser >= 0) {
+            int firstTurnEnd = firstUser + 1 < size - 1 && "assistant".equals(messages.get(firstUser + 1).getRole())
+                    ? firstUser + 1 : firstUser;
+            int firstTurnTokens = 0;
+            for (int i = firstUser; i <= firstTurnEnd; i++) {
+                firstTurnTokens += keep[i] ? 0 : tokens[i];
+            }
+            if (used + firstTurnTokens <= budget) {
+                for (int i = firstUser; i <= firstTurnEnd; i++) {
+                    keep[i] = true;
+                }
+                used += firstTurnTokens;
+            }
+        }
+
+        for (int i = size - 2; i >= 0; i--) {
+            if (keep[i]) {
+                continue;
+            }
+            if (used + tokens[i] > budget) {
+                break;
+            }
+            keep[i] = true;
+            used += tokens[i];
+        }
+
+        List<ChatMessage> selected = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (keep[i]) {
+                selected.add(messages.get(i));
+            }
+        }
+        if (used > budget) {
+            log.warn("[ContextWindowBuilder] Latest message alone exceeds budget: tokens={}, budget={}", used, budget);
+        }
+        log.debug("[ContextWindowBuilder] Trimmed context: {} -> {} messages, ~{} tokens (budget {})",
+                size, selected.size(), used, budget);
+        return selected;
+    }
+}
@@ -0,0 +1,108 @@
+package com.equivocal.service;
+
+import com.equivocal.datasource.Workload;
+import com.equivocal.datasource.WorkloadRoutingDataSource;
+import com.equivocal.entity.ChatMessage;
+import com.equivocal.entity.CompressedTextConverter;
+import com.equivocal.repository.ChatMessageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 存量消息压缩迁移。
+ *
+ * 开启压缩且 app.storage.compression.migrate-existing=true 时，启动后在后台线程按主键顺序分批压缩旧的明文消息，
+ * 批次之间暂停 batch-pause-ms 以免挤占线上流量；中途停止后下次启动重新扫描，已压缩的行会被跳过。
+ */
+@Service
+@Slf4j
+public class MessageCompressionMigrator implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final String COMPRESSED_PREFIX = "\u0001D%";
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final CompressedTextConverter converter;
+
+    @Value("${app.storage.compression.migrate-existing:false}")
+    private boolean migrateExisting;
+
+    @Value("${app.storage.compression.batch-size:200}")
+    private int batchSize = 200;
+
+    @Value("${app.storage.compression.batch-pause-ms:200}")
+    private long batchPauseMs = 200;
+
+    private volatile Thread worker;
+
+    public MessageCompressionMigrator(ChatMessageRepository chatMessageRepository, CompressedTextConverter converter) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.converter = converter;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (!converter.isEnabled() || !migrateExisting) {
+            return;
+        }
+        Thread thread = new Thread(WorkloadRoutingDataSource.bound(Workload.ADMIN, this::migrate),
+                "message-compression-migrator");
+        thread.setDaemon(true);
+        worker = thread;
+        thread.start();
+    }
+
+    /**
+     * 压缩所有存量明文消息，返回实际改写的行数
+     */
+    public long migrate() {
+        long started = System.nanoTime();
+        long afterId = 0;
+        long scanned = 0;
+        long compressed = 0;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                List<Long> ids = chatMessageRepository.findUncompressedIdsAfter(afterId, converter.getMinChars(),
+                        COMPRESSED_PREFIX, batchSize);
+                if (ids.isEmpty()) {
+                    break;
+                }
+                for (ChatMessage message : chatMessageRepository.findAllById(ids)) {
+                    String stored = converter.convertToDatabaseColumn(message.getContent());
+                    if (CompressedTextConverter.isCompressed(stored)) {
+                        compressed += chatMessageRepository.updateStoredContent(message.getId(), stored);
+                    }
+                }
+                scanned += ids.size();
+                afterId = ids.get(ids.size() - 1);
+                if (ids.size() < batchSize) {
+                    break;
+                }
+                if (batchPauseMs > 0) {
+                    TimeUnit.MILLISECONDS.sleep(batchPauseMs);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("[MessageCompressionMigrator] Migration stopped at id {}: {}", afterId, e.getMessage());
+        }
+        log.info("[MessageCompressionMigrator] Scanned {} messages, compressed {}, last id {}, {} ms",
+                scanned, compressed, afterId, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return compressed;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Thread thread = worker;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.equivocal.service;
+
+import com.equivocal.datasource.ReadWriteRoutingDataSource;
+import com.equivocal.datasource.Workload;
+import com.equivocal.datasource.WorkloadRoutingDataSource;
+import com.equivocal.dto.MessageView;
+import com.equivocal.entity.ChatSession;
+import com.equivocal.entity.CompressedTextConverter;
+import com.equivocal.metrics.RequestMetricsContext;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 会话完整消息列表的流式输出。
+ *
+ * 按 (created_at, id) 键集分块读取消息投影（不经过 Hibernate，不创建实体，不进持久化上下文），每块至多 chunk-size 条：
+ * 读完一块即归还连接，再通过 JsonGenerator 写给客户端，内存占用只与块大小有关，客户端读得再慢也不占用连接。
+ * 输出与 MessageListResponse 经对应 HttpMessageConverter 序列化的结果完全一致；JSON、CBOR、Smile
+ * 共用同一套写出逻辑，只是生成器不同。created_at 为空的旧消息与 ORDER BY created_at 一致排在最前。
+ */
+@Service
+@Slf4j
+public class MessageHistoryStreamer {
+
+    private static final String COLUMNS = "SELECT id, session_id, role, content, created_at FROM chat_messages ";
+
+    static final String SELECT_UNDATED = COLUMNS +
+            "WHERE session_id = ? AND created_at IS NULL AND id > ? ORDER BY id LIMIT ?";
+    static final String SELECT_FIRST_DATED = COLUMNS +
+            "WHERE session_id = ? AND created_at IS NOT NULL ORDER BY created_at, id LIMIT ?";
+    static final String SELECT_NEXT_DATED = COLUMNS +
+            "WHERE session_id = ? AND (created_at > ? OR (created_at = ? AND id > ?)) ORDER BY created_at, id LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    /**
+     * 可流式输出的编码：媒体类型 -> 对应 HttpMessageConverter 的 ObjectMapper
+     */
+    private final Map<MediaType, ObjectMapper> mappers = new LinkedHashMap<>();
+    private final Map<MediaType, ObjectWriter> messageWriters = new LinkedHashMap<>();
+    private final CompressedTextConverter compressedTextConverter;
+    private final int chunkSize;
+
+    @Value("${app.history.streaming.enabled:true}")
+    private boolean enabled;
+
+    public MessageHistoryStreamer(JdbcTemplate jdbcTemplate, List<AbstractJackson2HttpMessageConverter> converters,
+                                  CompressedTextConverter compressedTextConverter,
+                                  @Value("${app.history.streaming.chunk-size:500}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        for (AbstractJackson2HttpMessageConverter converter : converters) {
+            for (MediaType type : converter.getSupportedMediaTypes()) {
+                // application/*+json 之类的通配类型无法作为响应的 Content-Type
+                if (!type.isWildcardType() && !type.isWildcardSubtype() && !mappers.containsKey(type)) {
+                    ObjectMapper mapper = converter.getObjectMapper();
+                    mappers.put(type, mapper);
+                    // 逐条写入时不要每条 flush，由生成器缓冲区写满后再推给响应
+                    messageWriters.put(type, mapper.writerFor(MessageView.class)
+                            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE));
+                }
+            }
+        }
+        this.compressedTextConverter = compressedTextConverter;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * 已归档的会话消息在归档块中，仍走整块解码
+     */
+    public boolean supports(ChatSession session) {
+        return enabled && session.getArchivedAt() == null;
+    }
+
+    /**
+     * 按 Accept 选出响应编码，规则与 Spring MVC 内容协商一致：按具体程度与 q 值排序，通配优先匹配 JSON。
+     * 没有可流式输出的编码时返回 null，由调用方走普通响应（不可接受时由框架返回 406）
+     */
+    public MediaType negotiate(String accept) {
+        List<MediaType> acceptable;
+        try {
+            acceptable = StringUtils.hasText(accept)
+                    ? MediaType.parseMediaTypes(accept)
+                    : Collections.singletonList(MediaType.ALL);
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+        MediaType.sortBySpecificityAndQuality(acceptable);
+        for (MediaType requested : acceptable) {
+            if (requested.getQualityValue() == 0) {
+                continue;
+            }
+            if (requested.includes(MediaType.APPLICATION_JSON) && mappers.containsKey(MediaType.APPLICATION_JSON)) {
+                return MediaType.APPLICATION_JSON;
+            }
+            for (MediaType type : mappers.keySet()) {
+                if (requested.includes(type)) {
+                    return type;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 响应体；在 MVC 异步线程上执行，沿用请求线程的连接池负载与指标上下文，并与列表查询一样可读副本
+     */
+    public StreamingResponseBody stream(String sessionId, MediaType format) {
+        Workload workload = WorkloadRoutingDataSource.current();
+        RequestMetricsContext metrics = RequestMetricsContext.capture();
+        return out -> {
+            Workload previous = WorkloadRoutingDataSource.bind(workload);
+            RequestMetricsContext previousMetrics = metrics.attach();
+            ReadWriteRoutingDataSource.beginReplicaRead();
+            try {
+                long started = System.nanoTime();
+                int count = write(sessionId, format, out);
+                log.debug("[MessageHistoryStreamer] Streamed {} messages ({}) for session {} in {} ms",
+                        count, format, sessionId, (System.nanoTime() - started) / 1_000_000);
+            } finally {
+                ReadWriteRoutingDataSource.endReplicaRead();
+                previousMetrics.attach();
+                WorkloadRoutingDataSource.restore(previous);
+            }
+        };
+    }
+
+    /**
+     * 以 format 编码写出 {"messages":[...]}，返回消息条数
+     */
+    public int write(String sessionId, MediaType format, OutputStream out) throws IOException {
+        ObjectMapper mapper = mappers.get(format);
+        if (mapper == null) {
+            throw new IllegalArgumentException("Unsupported format: " + format);
+        }
+        ObjectWriter messageWriter = messageWriters.get(format);
+        int count = 0;
+        try (JsonGenerator generator = open(mapper, out)) {
+            List<MessageView> chunk;
+            long lastId = Long.MIN_VALUE;
+            do {
+                chunk = jdbcTemplate.query(SELECT_UNDATED, this::view, sessionId, lastId, chunkSize);
+                count += writeChunk(messageWriter, generator, chunk);
+                if (!chunk.isEmpty()) {
+                    lastId = chunk.get(chunk.size() - 1).getId();
+                }
+            } while (chunk.size() == chunkSize);
+
+            chunk = jdbcTemplate.query(SELECT_FIRST_DATED, this::view, sessionId, chunkSize);
+            count += writeChunk(messageWriter, generator, chunk);
+            while (chunk.size() == chunkSize) {
+                MessageView last = chunk.get(chunk.size() - 1);
+                Timestamp createdAt = Timestamp.valueOf(last.getCreatedAt());
+                chunk = jdbcTemplate.query(SELECT_NEXT_DATED, this::view,
+                        sessionId, createdAt, createdAt, last.getId(), chunkSize);
+                count += writeChunk(messageWriter, generator, chunk);
+            }
+            close(generator);
+        }
+        return count;
+    }
+
+    /**
+     * 写出一块并推给客户端；此时该块的查询已结束、连接已归还
+     */
+    private static int writeChunk(ObjectWriter messageWriter, JsonGenerator generator, List<MessageView> chunk) throws IOException {
+        for (MessageView view : chunk) {
+            messageWriter.writeValue(generator, view);
+        }
+        if (!chunk.isEmpty()) {
+            generator.flush();
+        }
+        return chunk.size();
+    }
+
+    private static JsonGenerator open(ObjectMapper mapper, OutputStream out) throws IOException {
+        JsonGenerator generator = mapper.createGenerator(out, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("messages");
+        return generator;
+    }
+
+    private static void close(JsonGenerator generator) throws IOException {
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    private MessageView view(ResultSet resultSet, int rowNum) throws SQLException {
+        // 与 Hibernate 读取 LocalDateTime 的方式一致（经 Timestamp 按 JVM 时区转换），保证与实体路径输出相同
+        Timestamp createdAt = resultSet.getTimestamp("created_at");
+        return new MessageView(
+                resultSet.getLong("id"),
+                resultSet.getString("session_id"),
+                resultSet.getString("role"),
+                compressedTextConverter.convertToEntityAttribute(resultSet.getString("content")),
+                createdAt != null ? createdAt.toLocalDateTime() : null);
+    }
+}
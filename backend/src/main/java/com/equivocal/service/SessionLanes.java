@@ -0,0 +1,93 @@
+package com.equivocal.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 会话轮次队列：同一会话的聊天轮次按到达顺序整轮串行执行（保存提问、加载历史、Agent 生成、保存回复）。
+ *
+ * 用户在多个标签页同时发送时，后到的一轮在前一轮回复落库之后才保存提问、加载历史，上下文里包含前一轮的完整问答，
+ * 回复落库顺序与提问顺序一致。排队在响应式链上进行，等待期间不占用线程与连接；不同会话互不等待。
+ *
+ * 等待超过 max-wait-ms 时不再等待前一轮、直接执行（outcome=timeout），单个卡住的轮次不会让会话一直无法发送。
+ * 队列在单个后端实例内存中，多实例部署时同一会话的请求需路由到同一实例才能保证顺序。
+ * 等待时间记录在 chat.session.lane.wait（outcome 标签）。
+ */
+@Component
+@Slf4j
+public class SessionLanes {
+
+    static final String ACQUIRED = "acquired";
+    static final String TIMEOUT = "timeout";
+
+    /**
+     * 每个会话队尾轮次的结束信号；队列排空后移除
+     */
+    private final ConcurrentMap<String, Mono<Void>> tails = new ConcurrentHashMap<>();
+    private final Duration maxWait;
+    private final Timer acquiredTimer;
+    private final Timer timeoutTimer;
+
+    public SessionLanes(@Value("${app.chat.lanes.max-wait-ms:300000}") long maxWaitMs,
+                        MeterRegistry meterRegistry) {
+        this.maxWait = Duration.ofMillis(Math.max(0, maxWaitMs));
+        this.acquiredTimer = waitTimer(meterRegistry, ACQUIRED);
+        this.timeoutTimer = waitTimer(meterRegistry, TIMEOUT);
+        log.info("[SessionLanes] 初始化完成: maxWaitMs={}", maxWaitMs);
+    }
+
+    /**
+     * 排在该会话已有轮次之后执行 turn；返回的 Flux 结束（完成、出错或取消）时下一轮开始
+     */
+    public <T> Flux<T> turn(String sessionId, Supplier<? extends Publisher<T>> turn) {
+        return Flux.defer(() -> {
+            Sinks.Empty<Void> done = Sinks.empty();
+            AtomicReference<Mono<Void>> before = new AtomicReference<>();
+            // 后一轮等待本轮与更早的轮次都结束：本轮还在排队时被取消，不会让后一轮越过仍在执行的前一轮
+            Mono<Void> tail = tails.compute(sessionId, (id, last) -> {
+                before.set(last);
+                return last == null ? done.asMono() : Mono.when(last, done.asMono()).cache();
+            });
+            Mono<Void> previous = before.get();
+            long queuedAt = System.nanoTime();
+            Mono<Boolean> inOrder = previous == null
+                    ? Mono.just(true)
+                    : previous.then(Mono.just(true)).timeout(maxWait, Mono.just(false));
+            return inOrder
+                    .flatMapMany(ordered -> {
+                        (ordered ? acquiredTimer : timeoutTimer).record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                        if (!ordered) {
+                            log.warn("[SessionLanes] Turn wait for session {} exceeded {} ms, running unordered",
+                                    sessionId, maxWait.toMillis());
+                        }
+                        return Flux.from(turn.get());
+                    })
+                    .doFinally(signal -> {
+                        done.tryEmitEmpty();
+                        tails.remove(sessionId, tail);
+                    });
+        });
+    }
+
+    private static Timer waitTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("chat.session.lane.wait")
+                .description("Time a chat turn waited for earlier turns of its session")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,91 @@
+package com.equivocal.service;
+
+import com.equivocal.entity.ChatMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 本地 token 估算。
+ *
+ * 不依赖具体分词器，按字符类别近似：中日韩字符约 4/3 token/字，ASCII 字母数字约 4 字符/token，
+ * ASCII 标点与其他字符 1 token/字。结果偏保守（略高于 BPE 实际值），用于上下文预算而非计费。
+ * 逐字符扫描、不分配对象；已落库的消息按 ID 缓存（消息内容写入后不再修改）。
+ */
+@Component
+public class TokenEstimator {
+
+    /**
+     * 每条消息的固定开销（role、分隔符等）
+     */
+    public static final int MESSAGE_OVERHEAD_TOKENS = 4;
+
+    // 以 1/12 token 为单位累加，避免浮点运算
+    private static final int UNITS_PER_TOKEN = 12;
+    private static final int CJK_UNITS = 16;
+    private static final int ALNUM_UNITS = 3;
+    private static final int WHITESPACE_UNITS = 3;
+    private static final int OTHER_UNITS = 12;
+
+    @Value("${app.context.window.token-cache-size:100000}")
+    private int cacheSize = 100000;
+
+    private final ConcurrentMap<Long, Integer> cache = new ConcurrentHashMap<>();
+
+    /**
+     * 估算一条消息的 token 数（含固定开销）
+     */
+    public int estimate(ChatMessage message) {
+        Long id = message.getId();
+        if (id == null) {
+            return estimateText(message.getContent()) + MESSAGE_OVERHEAD_TOKENS;
+        }
+        Integer cached = cache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        int tokens = estimateText(message.getContent()) + MESSAGE_OVERHEAD_TOKENS;
+        // 超出容量时整体清空：消息按会话集中访问，清空后很快重新填满活跃会话
+        if (cache.size() >= cacheSize) {
+            cache.clear();
+        }
+        cache.put(id, tokens);
+        return tokens;
+    }
+
+    /**
+     * 估算一段文本的 token 数
+     */
+    public static int estimateText(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        long units = 0;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            units += unitsOf(text.charAt(i));
+        }
+        return (int) ((units + UNITS_PER_TOKEN - 1) / UNITS_PER_TOKEN);
+    }
+
+    private static int unitsOf(char c) {
+        if (c < 0x80) {
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                return ALNUM_UNITS;
+            }
+            if (c == ' ' || c == '\n' || c == '\t' || c == '\r') {
+                return WHITESPACE_UNITS;
+            }
+            return OTHER_UNITS;
+        }
+        if ((c >= 0x4E00 && c <= 0x9FFF)     // CJK 统一汉字
+                || (c >= 0x3400 && c <= 0x4DBF)  // 扩展 A
+                || (c >= 0x3000 && c <= 0x30FF)  // 中日标点、假名
+                || (c >= 0xAC00 && c <= 0xD7AF)  // 韩文音节
+                || (c >= 0xFF00 && c <= 0xFFEF)) { // 全角字符
+            return CJK_UNITS;
+        }
+        return OTHER_UNITS;
+    }
+}
@@ -0,0 +1,230 @@
+package com.equivocal.service;
+
+import com.equivocal.datasource.Workload;
+import com.equivocal.datasource.WorkloadRoutingDataSource;
+import com.equivocal.entity.UploadCacheEntry;
+import com.equivocal.repository.UploadCacheRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上传去重缓存
+ *
+ * 同一份合同常在多个会话里被重复上传；按（用户, 内容 SHA-256）命中时直接复用 Agent 之前返回的结果，
+ * 不再重复触发 Agent 端的文本提取。缓存按用户隔离：文件地址只返回给当初上传它的用户，
+ * 不能凭一个摘要取得他人的文件。条目存放在数据库中，重启后仍然有效。
+ *
+ * 条目自写入起 max-age-days 后过期，命中不延长有效期。命中只在访问时间早于 touch-interval-minutes 时
+ * 才写库刷新（LRU 顺序只需粗粒度），其间的命中次数先记在内存里随刷新一并写回；过期与超容量条目由后台定时淘汰，
+ * 写入缓存时不再计数。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UploadCacheService implements ApplicationListener<ApplicationReadyEvent> {
+    
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    
+    private final UploadCacheRepository uploadCacheRepository;
+    
+    @Value("${app.upload-cache.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${app.upload-cache.max-entries:5000}")
+    private int maxEntries;
+    
+    @Value("${app.upload-cache.max-age-days:30}")
+    private int maxAgeDays;
+    
+    @Value("${app.upload-cache.touch-interval-minutes:60}")
+    private long touchIntervalMinutes = 60;
+    
+    @Value("${app.upload-cache.evict-interval-minutes:10}")
+    private long evictIntervalMinutes = 10;
+    
+    /**
+     * 尚未写回数据库的命中次数（cacheKey -> 次数）
+     */
+    private final Map<String, Long> pendingHits = new ConcurrentHashMap<>();
+    
+    private volatile ScheduledExecutorService scheduler;
+    
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (!enabled) {
+            return;
+        }
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(WorkloadRoutingDataSource.bound(Workload.ADMIN, runnable), "upload-cache-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::evictQuietly, evictIntervalMinutes, evictIntervalMinutes, TimeUnit.MINUTES);
+        scheduler = executor;
+    }
+    
+    /**
+     * 流式计算上传文件的 SHA-256（从落盘的临时文件分块读取）
+     */
+    public String digest(MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return sha256Hex(in);
+        }
+    }
+    
+    public static String sha256Hex(InputStream in) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            md.update(buffer, 0, n);
+        }
+        byte[] hash = md.digest();
+        char[] out = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            out[i * 2] = HEX[(hash[i] >> 4) & 0x0F];
+            out[i * 2 + 1] = HEX[hash[i] & 0x0F];
+        }
+        return new String(out);
+    }
+    
+    /**
+     * 查找缓存；过期条目视为未命中并删除，命中时刷新访问时间。
+     * 缓存只是优化，数据库异常时按未命中处理，不影响上传本身。
+     */
+    public Optional<UploadCacheEntry> lookup(String userId, String digest) {
+        if (!enabled || userId == null || digest == null) {
+            return Optional.empty();
+        }
+        try {
+            return doLookup(userId, digest);
+        } catch (Exception e) {
+            log.warn("[UploadCacheService] 查询上传缓存失败: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+    
+    private Optional<UploadCacheEntry> doLookup(String userId, String digest) {
+        Optional<UploadCacheEntry> entryOpt = uploadCacheRepository.findById(UploadCacheEntry.keyOf(userId, digest));
+        if (!entryOpt.isPresent()) {
+            return Optional.empty();
+        }
+        
+        UploadCacheEntry entry = entryOpt.get();
+        LocalDateTime now = LocalDateTime.now();
+        if (entry.getCreatedAt() != null && entry.getCreatedAt().isBefore(now.minusDays(maxAgeDays))) {
+            uploadCacheRepository.delete(entry);
+            pendingHits.remove(entry.getCacheKey());
+            return Optional.empty();
+        }
+        
+        long hits = pendingHits.merge(entry.getCacheKey(), 1L, Long::sum);
+        if (entry.getLastAccessedAt() == null || entry.getLastAccessedAt().isBefore(now.minusMinutes(touchIntervalMinutes))) {
+            hits = takePendingHits(entry.getCacheKey());
+            if (hits > 0) {
+                uploadCacheRepository.touch(entry.getCacheKey(), now, hits);
+            }
+        }
+        log.info("[UploadCacheService] 上传缓存命中: userId={}, digest={}, hits={}", userId, digest,
+                (entry.getHitCount() != null ? entry.getHitCount() : 0L) + hits);
+        return Optional.of(entry);
+    }
+    
+    private long takePendingHits(String cacheKey) {
+        Long hits = pendingHits.remove(cacheKey);
+        return hits != null ? hits : 0L;
+    }
+    
+    /**
+     * 记录 Agent 的上传结果；淘汰由后台定时执行
+     */
+    public void store(String userId, String digest, String url, String filename, long sizeBytes) {
+        if (!enabled || userId == null || digest == null) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        UploadCacheEntry entry = UploadCacheEntry.builder()
+                .cacheKey(UploadCacheEntry.keyOf(userId, digest))
+                .userId(userId)
+                .digest(digest)
+                .url(url)
+                .filename(filename)
+                .sizeBytes(sizeBytes)
+                .createdAt(now)
+                .lastAccessedAt(now)
+                .build();
+        try {
+            uploadCacheRepository.save(entry);
+        } catch (Exception e) {
+            log.warn("[UploadCacheService] 写入上传缓存失败: {}", e.getMessage());
+        }
+    }
+    
+    private void evictQuietly() {
+        try {
+            evict();
+        } catch (Exception e) {
+            log.warn("[UploadCacheService] 淘汰上传缓存失败: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * 写回累积的命中次数，淘汰过期条目，超出容量时删除最久未访问的条目
+     */
+    public int evict() {
+        for (String cacheKey : pendingHits.keySet()) {
+            long hits = takePendingHits(cacheKey);
+            if (hits > 0) {
+                uploadCacheRepository.addHits(cacheKey, hits);
+            }
+        }
+        
+        int removed = uploadCacheRepository.deleteCreatedBefore(LocalDateTime.now().minusDays(maxAgeDays));
+        
+        long overflow = uploadCacheRepository.count() - maxEntries;
+        if (overflow > 0) {
+            List<String> oldest = uploadCacheRepository.findLeastRecentlyAccessed(
+                    PageRequest.of(0, (int) Math.min(overflow, 1000)));
+            uploadCacheRepository.deleteAllByIdInBatch(oldest);
+            removed += oldest.size();
+        }
+        
+        if (removed > 0) {
+            log.info("[UploadCacheService] 淘汰上传缓存条目: {}", removed);
+        }
+        return removed;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        ScheduledExecutorService executor = scheduler;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
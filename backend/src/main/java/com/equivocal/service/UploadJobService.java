@@ -0,0 +1,216 @@
+package com.equivocal.service;
+
+import com.equivocal.dto.UploadResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 异步上传任务
+ *
+ * 请求线程只负责把上传内容转存到临时文件并登记任务，随后立即返回 jobId；
+ * 向 Agent 的转发在 WebClient 上非阻塞执行，不占用 Tomcat 线程。
+ * 同时运行的任务数受信号量限制，超出时直接拒绝。
+ */
+@Service
+@Slf4j
+public class UploadJobService {
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private final AgentService agentService;
+    private final UploadCacheService uploadCacheService;
+    private final ObjectMapper objectMapper;
+    private final Semaphore permits;
+    private final int maxJobs;
+    private final long retentionMs;
+    private final Duration agentTimeout;
+
+    private final ConcurrentMap<String, UploadJob> jobs = new ConcurrentHashMap<>();
+
+    public UploadJobService(AgentService agentService,
+                            UploadCacheService uploadCacheService,
+                            ObjectMapper objectMapper,
+                            @Value("${app.upload-jobs.max-concurrent:8}") int maxConcurrent,
+                            @Value("${app.upload-jobs.max-jobs:1000}") int maxJobs,
+                            @Value("${app.upload-jobs.retention-ms:600000}") long retentionMs,
+                            @Value("${app.upload-jobs.agent-timeout-ms:300000}") long agentTimeoutMs) {
+        this.agentService = agentService;
+        this.uploadCacheService = uploadCacheService;
+        this.objectMapper = objectMapper;
+        this.permits = new Semaphore(Math.max(1, maxConcurrent));
+        this.maxJobs = maxJobs;
+        this.retentionMs = retentionMs;
+        this.agentTimeout = Duration.ofMillis(agentTimeoutMs);
+    }
+
+    /**
+     * 登记一个已完成的任务（上传缓存命中时使用）
+     */
+    public UploadJob completed(String userId, String filename, long size, UploadResult result) {
+        UploadJob job = register(userId, filename, size);
+        job.complete(result);
+        return job;
+    }
+
+    /**
+     * 提交异步上传；并发任务已满时抛出 RejectedExecutionException
+     */
+    public UploadJob submit(String userId, MultipartFile file, String filename, String digest) throws IOException {
+        if (!permits.tryAcquire()) {
+            throw new RejectedExecutionException("too many concurrent upload jobs");
+        }
+
+        UploadJob job = null;
+        Path spooled = null;
+        try {
+            job = register(userId, filename, file.getSize());
+            // Servlet 容器会在请求结束后删除 multipart 临时文件，这里先转存（同盘时为一次 rename）
+            spooled = Files.createTempFile("upload-job-", ".tmp");
+            file.transferTo(spooled.toFile());
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            if (job != null) {
+                jobs.remove(job.getId());
+            }
+            if (spooled != null) {
+                deleteQuietly(spooled);
+            }
+            throw e;
+        }
+
+        long size = file.getSize();
+        UploadJob submitted = job;
+        Path spooledFile = spooled;
+
+        agentService.uploadFileAsync(new FileSystemResource(spooledFile), filename)
+                .timeout(agentTimeout)
+                // 解析与写缓存涉及 JDBC，不能跑在 Netty 事件循环线程上
+                .publishOn(Schedulers.boundedElastic())
+                .map(raw -> {
+                    try {
+                        UploadResult result = UploadResult.fromAgentResponse(objectMapper.readTree(raw), filename);
+                        uploadCacheService.store(userId, digest, result.getUrl(), result.getFilename(), size);
+                        return result;
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Invalid agent response", e);
+                    }
+                })
+                .doFinally(signal -> {
+                    permits.release();
+                    deleteQuietly(spooledFile);
+                })
+                .subscribe(submitted::complete, error -> {
+                    log.error("[UploadJobService] Upload job failed: jobId={}", submitted.getId(), error);
+                    submitted.fail();
+                });
+
+        log.info("[UploadJobService] Upload job submitted: jobId={}, file={}, size={}", submitted.getId(), filename, size);
+        return submitted;
+    }
+
+    /**
+     * 查询任务，只返回属于该用户的任务
+     */
+    public Optional<UploadJob> find(String jobId, String userId) {
+        UploadJob job = jobs.get(jobId);
+        if (job == null || !job.getUserId().equals(userId)) {
+            return Optional.empty();
+        }
+        return Optional.of(job);
+    }
+
+    private UploadJob register(String userId, String filename, long size) {
+        cleanupExpired();
+        if (jobs.size() >= maxJobs) {
+            throw new RejectedExecutionException("too many upload jobs retained");
+        }
+        String jobId = "upload_" + UUID.randomUUID().toString().replace("-", "");
+        UploadJob job = new UploadJob(jobId, userId, filename, size);
+        jobs.put(jobId, job);
+        return job;
+    }
+
+    private void cleanupExpired() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, UploadJob> entry : jobs.entrySet()) {
+            UploadJob job = entry.getValue();
+            if (job.getStatus() != Status.RUNNING && now - job.getFinishedAtMs() > retentionMs) {
+                jobs.remove(entry.getKey(), job);
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("[UploadJobService] Failed to delete spooled upload {}: {}", path, e.getMessage());
+        }
+    }
+
+    public static final class UploadJob {
+        private final String id;
+        private final String userId;
+        private final String filename;
+        private final long size;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private final long startedAtMs = System.currentTimeMillis();
+        private volatile Status status = Status.RUNNING;
+        private volatile UploadResult result;
+        private volatile long finishedAtMs;
+
+        UploadJob(String id, String userId, String filename, long size) {
+            this.id = id;
+            this.userId = userId;
+            this.filename = filename;
+            this.size = size;
+        }
+
+        void complete(UploadResult result) {
+            this.result = result;
+            this.finishedAtMs = System.currentTimeMillis();
+            this.status = Status.COMPLETED;
+        }
+
+        void fail() {
+            this.finishedAtMs = System.currentTimeMillis();
+            this.status = Status.FAILED;
+        }
+
+        public String getId() { return id; }
+        public String getUserId() { return userId; }
+        public String getFilename() { return filename; }
+        public long getSize() { return size; }
+        public LocalDateTime getCreatedAt() { return createdAt; }
+        public Status getStatus() { return status; }
+        public UploadResult getResult() { return result; }
+        public long getFinishedAtMs() { return finishedAtMs; }
+
+        public long getElapsedMs() {
+            long end = status == Status.RUNNING ? System.currentTimeMillis() : finishedAtMs;
+            return end - startedAtMs;
+        }
+    }
+}
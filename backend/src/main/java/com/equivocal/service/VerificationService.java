@@ -66,6 +66,32 @@ public class VerificationService {
     
     @Transactional
     public VerificationResult verifyCode(String email, String code) {
+        return verify(email, code, true);
+    }
+    
+    /**
+     * 只校验不消耗：错误次数照常累计，校验通过时验证码保留。
+     * 注册在耗时的密码哈希之前先用它快速失败，真正消耗见 {@link #consumeCode}
+     */
+    @Transactional
+    public VerificationResult checkCode(String email, String code) {
+        return verify(email, code, false);
+    }
+    
+    /**
+     * 校验并消耗验证码；校验通过时在同一事务内执行 onVerified（如保存新用户）。
+     * onVerified 抛出异常时验证码的删除一并回滚，用户可以用同一验证码重试
+     */
+    @Transactional
+    public VerificationResult consumeCode(String email, String code, Runnable onVerified) {
+        VerificationResult result = verify(email, code, true);
+        if (result.isSuccess()) {
+            onVerified.run();
+        }
+        return result;
+    }
+    
+    private VerificationResult verify(String email, String code, boolean consume) {
         VerificationCode verificationCode = verificationCodeRepository
                 .findFirstByEmailOrderByCreatedAtDesc(email)
                 .orElse(null);
@@ -90,7 +116,9 @@ public class VerificationService {
             return new VerificationResult(false, "Invalid verification code");
         }
         
-        verificationCodeRepository.delete(verificationCode);
+        if (consume) {
+            verificationCodeRepository.delete(verificationCode);
+        }
         return new VerificationResult(true, "Verification successful");
     }
     
@@ -1,64 +1,79 @@
 package com.equivocal;
 
 import com.equivocal.controller.AdminChatController;
+import com.equivocal.dto.SessionMessagePageResponse;
+import com.equivocal.entity.ChatMessage;
 import com.equivocal.entity.ChatSession;
 import com.equivocal.repository.ChatMessageRepository;
 import com.equivocal.repository.ChatSessionRepository;
+import com.equivocal.service.ChatArchiveService;
+import com.equivocal.service.ChatSyncService;
+import com.equivocal.support.QueryBudget;
+import com.equivocal.support.SqlRecordingJpaTestConfig;
+import com.equivocal.support.SqlStatementRecorder;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.ArgumentCaptor;
-import org.mockito.Captor;
-import org.mockito.InjectMocks;
-import org.mockito.Mock;
-import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.Pageable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
 
+import javax.sql.DataSource;
 import java.time.LocalDateTime;
-import java.util.Collections;
-import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.mock;
 
-@ExtendWith(MockitoExtension.class)
+/**
+ * 连接内存 H2 执行真实查询，按 JDBC 层实际发出的 SQL 计数。
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import(SqlRecordingJpaTestConfig.class)
 class AdminChatControllerPaginationTest {
 
-    @Mock
+    @Autowired
     private ChatSessionRepository chatSessionRepository;
-
-    @Mock
+    @Autowired
     private ChatMessageRepository chatMessageRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private DataSource dataSource;
 
-    @InjectMocks
+    private SqlStatementRecorder sqlRecorder;
     private AdminChatController adminChatController;
 
-    @Captor
-    private ArgumentCaptor<Pageable> pageableCaptor;
+    @BeforeEach
+    void setUp() {
+        sqlRecorder = SqlRecordingJpaTestConfig.recorderOf(dataSource);
+        adminChatController = new AdminChatController(chatSessionRepository, chatMessageRepository,
+                mock(ChatSyncService.class), mock(ChatArchiveService.class));
+    }
 
     @Test
     void getSessionMessages_clampsPageAndLimit() {
-        ChatSession session = ChatSession.builder()
-                .id("s")
-                .userId("u")
-                .title("t")
-                .createdAt(LocalDateTime.now())
-                .updatedAt(LocalDateTime.now())
-                .build();
+        LocalDateTime base = LocalDateTime.of(2024, 5, 1, 12, 0);
+        entityManager.persist(ChatSession.builder().id("s").userId("u").title("t")
+                .createdAt(base).updatedAt(base).build());
+        for (int i = 0; i < 3; i++) {
+            entityManager.persist(ChatMessage.builder().sessionId("s").role("user").content("m" + i)
+                    .createdAt(base.plusSeconds(i)).build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+        sqlRecorder.reset();
 
-        when(chatSessionRepository.findById("s")).thenReturn(Optional.of(session));
-        when(chatMessageRepository.findBySessionId(eq("s"), any(Pageable.class)))
-                .thenReturn(new PageImpl<>(Collections.emptyList()));
+        SessionMessagePageResponse response =
+                (SessionMessagePageResponse) adminChatController.getSessionMessages("s", -100, 99999).getBody();
 
-        adminChatController.getSessionMessages("s", -100, 99999);
-
-        verify(chatMessageRepository).findBySessionId(eq("s"), pageableCaptor.capture());
-        Pageable pageable = pageableCaptor.getValue();
-        assertEquals(0, pageable.getPageNumber());
-        assertEquals(500, pageable.getPageSize());
+        assertEquals(1, response.getPage());
+        assertEquals(500, response.getLimit());
+        assertEquals(3, response.getMessages().size());
+        assertEquals("m0", response.getMessages().get(0).getContent());
+        assertEquals(3L, response.getTotal());
+        // 会话查询 + 消息分页；第一页未满时 Spring Data 不再发出 count 查询
+        assertEquals(2, sqlRecorder.getStatements().size(), String.valueOf(sqlRecorder.getStatements()));
+        QueryBudget.assertStatementBudget(sqlRecorder, 2);
+        QueryBudget.assertNoRepeatedStatements(sqlRecorder);
     }
 }
-
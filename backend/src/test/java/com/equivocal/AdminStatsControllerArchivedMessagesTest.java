@@ -0,0 +1,32 @@
+package com.equivocal;
+
+import com.equivocal.controller.AdminStatsController;
+import com.equivocal.repository.ChatMessageRepository;
+import com.equivocal.repository.ChatSessionArchiveRepository;
+import com.equivocal.repository.ChatSessionRepository;
+import com.equivocal.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AdminStatsControllerArchivedMessagesTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void fullStats_totalMessagesIncludesArchivedSessions() {
+        ChatMessageRepository chatMessageRepository = mock(ChatMessageRepository.class);
+        ChatSessionArchiveRepository chatSessionArchiveRepository = mock(ChatSessionArchiveRepository.class);
+        when(chatMessageRepository.count()).thenReturn(40L);
+        when(chatSessionArchiveRepository.sumMessageCount()).thenReturn(1200L);
+        AdminStatsController controller = new AdminStatsController(mock(UserRepository.class),
+                mock(ChatSessionRepository.class), chatMessageRepository, chatSessionArchiveRepository);
+
+        Map<String, Object> stats = controller.getStats(false).getBody();
+
+        assertEquals(1240L, ((Map<String, Object>) stats.get("chat")).get("totalMessages"));
+    }
+}
@@ -0,0 +1,73 @@
+package com.equivocal;
+
+import com.equivocal.controller.AdminUserController;
+import com.equivocal.entity.User;
+import com.equivocal.repository.ChatMessageRepository;
+import com.equivocal.repository.ChatSessionRepository;
+import com.equivocal.repository.UserRepository;
+import com.equivocal.security.AuthPersistenceExecutor;
+import com.equivocal.security.PasswordService;
+import com.equivocal.service.ChatArchiveService;
+import com.equivocal.service.ChatSyncService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AdminUserControllerAsyncPasswordTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final PasswordService passwordService = mock(PasswordService.class);
+    private final AdminUserController controller = new AdminUserController(userRepository,
+            mock(ChatSessionRepository.class), mock(ChatMessageRepository.class), passwordService,
+            mock(ChatArchiveService.class), mock(ChatSyncService.class), new AuthPersistenceExecutor(1, 4, new SimpleMeterRegistry()));
+
+    @Test
+    void createUser_returnsBeforeTheHashFinishes_andSavesAfterwards() {
+        CompletableFuture<String> hash = new CompletableFuture<>();
+        when(passwordService.hashPasswordAsync("pass123")).thenReturn(hash);
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        CompletableFuture<ResponseEntity<?>> response = controller.createUser(createRequest());
+
+        assertFalse(response.isDone());
+        verify(userRepository, never()).save(any(User.class));
+
+        hash.complete("$2hash");
+        assertEquals(200, response.join().getStatusCodeValue());
+        verify(userRepository).save(any(User.class));
+    }
+
+    @Test
+    void passwordReset_hashQueueFull_returns503WithoutSaving() {
+        User user = User.builder().id("u1").email("a@example.com").password("$2old").role(1).build();
+        when(userRepository.findById("u1")).thenReturn(Optional.of(user));
+        CompletableFuture<String> rejected = new CompletableFuture<>();
+        rejected.completeExceptionally(new RejectedExecutionException("queue full"));
+        when(passwordService.hashPasswordAsync("newpass")).thenReturn(rejected);
+
+        AdminUserController.UpdateUserRequest request = new AdminUserController.UpdateUserRequest();
+        request.setNewPassword("newpass");
+
+        assertEquals(503, controller.updateUser("u1", request).join().getStatusCodeValue());
+        verify(userRepository, never()).save(any(User.class));
+    }
+
+    private static AdminUserController.CreateUserRequest createRequest() {
+        AdminUserController.CreateUserRequest request = new AdminUserController.CreateUserRequest();
+        request.setEmail("new@example.com");
+        request.setPassword("pass123");
+        return request;
+    }
+}
@@ -1,43 +1,120 @@
 package com.equivocal;
 
 import com.equivocal.controller.AdminUserController;
+import com.equivocal.dto.SessionView;
+import com.equivocal.entity.ChatMessage;
+import com.equivocal.entity.ChatSession;
+import com.equivocal.entity.User;
 import com.equivocal.repository.ChatMessageRepository;
 import com.equivocal.repository.ChatSessionRepository;
 import com.equivocal.repository.UserRepository;
+import com.equivocal.security.AuthPersistenceExecutor;
 import com.equivocal.security.PasswordService;
+import com.equivocal.service.ChatArchiveService;
+import com.equivocal.service.ChatSyncService;
+import com.equivocal.support.QueryBudget;
+import com.equivocal.support.SqlRecordingJpaTestConfig;
+import com.equivocal.support.SqlStatementRecorder;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
 
+import javax.sql.DataSource;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.never;
-import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
 
+/**
+ * 连接内存 H2 执行真实查询，按 JDBC 层实际发出的 SQL 计数。
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import(SqlRecordingJpaTestConfig.class)
 class AdminUserControllerChatSessionsEmptyTest {
 
-    @Test
-    void getUserChatSessions_whenNoSessions_doesNotQueryCountsWithEmptyInClause() {
-        UserRepository userRepository = mock(UserRepository.class);
-        ChatSessionRepository chatSessionRepository = mock(ChatSessionRepository.class);
-        ChatMessageRepository chatMessageRepository = mock(ChatMessageRepository.class);
-        PasswordService passwordService = mock(PasswordService.class);
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ChatSessionRepository chatSessionRepository;
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private DataSource dataSource;
+
+    private SqlStatementRecorder sqlRecorder;
 
-        when(userRepository.existsById("u")).thenReturn(true);
-        when(chatSessionRepository.findByUserIdOrderByUpdatedAtDesc("u")).thenReturn(Collections.emptyList());
+    private AdminUserController controller;
+
+    @BeforeEach
+    void setUp() {
+        sqlRecorder = SqlRecordingJpaTestConfig.recorderOf(dataSource);
+        controller = new AdminUserController(userRepository, chatSessionRepository, chatMessageRepository,
+                mock(PasswordService.class), mock(ChatArchiveService.class), mock(ChatSyncService.class),
+                mock(AuthPersistenceExecutor.class));
+        entityManager.persist(User.builder().id("u").email("u@example.com").password("x").build());
+    }
 
-        AdminUserController controller = new AdminUserController(
-                userRepository,
-                chatSessionRepository,
-                chatMessageRepository,
-                passwordService
-        );
+    @Test
+    void getUserChatSessions_whenNoSessions_doesNotQueryCountsWithEmptyInClause() {
+        startRecording();
 
         Object response = controller.getUserChatSessions("u").getBody();
+
         assertEquals(Collections.emptyList(), response);
+        // 存在性检查 + 会话列表，不发出 IN () 计数查询
+        QueryBudget.assertStatementBudget(sqlRecorder, 2);
+        QueryBudget.assertNoRepeatedStatements(sqlRecorder);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getUserChatSessions_withManySessions_countsMessagesInOneQuery() {
+        for (String sessionId : Arrays.asList("s1", "s2", "s3")) {
+            entityManager.persist(ChatSession.builder().id(sessionId).userId("u").title(sessionId).build());
+            entityManager.persist(ChatMessage.builder().sessionId(sessionId).role("user").content("q").build());
+        }
+        entityManager.persist(ChatMessage.builder().sessionId("s2").role("assistant").content("a").build());
+        startRecording();
+
+        List<SessionView> sessions = (List<SessionView>) controller.getUserChatSessions("u").getBody();
 
-        verify(chatMessageRepository, never()).countMessagesBySessionIds(Collections.emptyList());
+        assertEquals(3, sessions.size());
+        assertEquals(Arrays.asList(1L, 2L, 1L), sessions.stream()
+                .sorted((a, b) -> a.getId().compareTo(b.getId()))
+                .map(SessionView::getMessageCount)
+                .collect(Collectors.toList()));
+        // 会话数量不影响查询次数：1 次存在性检查 + 1 次会话列表 + 1 次批量计数
+        assertEquals(3, sqlRecorder.getStatements().size(), String.valueOf(sqlRecorder.getStatements()));
+        QueryBudget.assertStatementBudget(sqlRecorder, 3);
+        QueryBudget.assertNoRepeatedStatements(sqlRecorder);
     }
-}
 
+    @Test
+    void recorder_detectsPerSessionCountLoop() {
+        for (String sessionId : Arrays.asList("s1", "s2")) {
+            entityManager.persist(ChatSession.builder().id(sessionId).userId("u").title(sessionId).build());
+        }
+        startRecording();
+
+        // 逐个会话计数（N+1 写法）：绑定参数不同，SQL 文本相同，应被判为重复
+        chatMessageRepository.countMessagesBySessionIds(Collections.singletonList("s1"));
+        chatMessageRepository.countMessagesBySessionIds(Collections.singletonList("s2"));
+
+        assertThrows(AssertionError.class, () -> QueryBudget.assertNoRepeatedStatements(sqlRecorder));
+    }
+
+    private void startRecording() {
+        entityManager.flush();
+        entityManager.clear();
+        sqlRecorder.reset();
+    }
+}
@@ -5,14 +5,19 @@ import com.equivocal.entity.ChatSession;
 import com.equivocal.repository.ChatMessageRepository;
 import com.equivocal.repository.ChatSessionRepository;
 import com.equivocal.repository.UserRepository;
+import com.equivocal.security.AuthPersistenceExecutor;
 import com.equivocal.security.PasswordService;
+import com.equivocal.service.ChatArchiveService;
+import com.equivocal.service.ChatSyncService;
 import org.junit.jupiter.api.Test;
 import org.mockito.InOrder;
 
 import java.util.Arrays;
 import java.util.List;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -20,7 +25,7 @@ import static org.mockito.Mockito.when;
 class AdminUserControllerDeleteCascadeTest {
 
     @Test
-    void deleteUser_deletesMessagesBeforeSessionsAndUser() {
+    void deleteUser_deletesMessagesBeforeSessionsAndUser_insideTheSyncDeleteTransaction() {
         UserRepository userRepository = mock(UserRepository.class);
         ChatSessionRepository chatSessionRepository = mock(ChatSessionRepository.class);
         ChatMessageRepository chatMessageRepository = mock(ChatMessageRepository.class);
@@ -33,17 +38,26 @@ class AdminUserControllerDeleteCascadeTest {
                 ChatSession.builder().id("s2").userId("u").build()
         );
         when(chatSessionRepository.findByUserIdOrderByUpdatedAtDesc("u")).thenReturn(sessions);
+        ChatSyncService chatSyncService = mock(ChatSyncService.class);
+        doAnswer(invocation -> {
+            invocation.getArgument(1, Runnable.class).run();
+            return null;
+        }).when(chatSyncService).deleteUser(eq("u"), any(Runnable.class));
 
         AdminUserController controller = new AdminUserController(
                 userRepository,
                 chatSessionRepository,
                 chatMessageRepository,
-                passwordService
+                passwordService,
+                mock(ChatArchiveService.class),
+                chatSyncService,
+                mock(AuthPersistenceExecutor.class)
         );
 
         controller.deleteUser("u");
 
-        InOrder order = inOrder(chatSessionRepository, chatMessageRepository, userRepository);
+        InOrder order = inOrder(chatSyncService, chatSessionRepository, chatMessageRepository, userRepository);
+        order.verify(chatSyncService).deleteUser(eq("u"), any(Runnable.class));
         order.verify(chatSessionRepository).findByUserIdOrderByUpdatedAtDesc(eq("u"));
         order.verify(chatMessageRepository).deleteBySessionIdIn(eq(Arrays.asList("s1", "s2")));
         order.verify(chatSessionRepository).deleteByUserId(eq("u"));
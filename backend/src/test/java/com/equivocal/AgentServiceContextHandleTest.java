@@ -0,0 +1,125 @@
+package com.equivocal;
+
+import com.equivocal.metrics.ChatStreamMetrics;
+import com.equivocal.service.AgentContextHandles;
+import com.equivocal.service.AgentService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AgentServiceContextHandleTest {
+
+    private static final String SSE_BODY = "data: {\"type\":\"content\",\"content\":\"好\"}\n\ndata: [DONE]\n\n";
+
+    @Test
+    void chainHash_matchesAgentImplementation() {
+        // 与 ai-agent/app/services/context_store.py 的 chain_hash 结果一致
+        List<Map<String, Object>> messages = new ArrayList<>();
+        messages.add(message("user", "押金不退怎么办？"));
+        assertEquals("58207cbdc95906f08eb78717c19fd9d8d26b7855525fd0a49cc70154e749f829",
+                new AgentContextHandles().plan("s", messages).getHash());
+
+        Map<String, Object> reply = new HashMap<>();
+        reply.put("role", "assistant");
+        reply.put("content", "可以起诉。");
+        messages.add(reply);
+        assertEquals("438a62ec93823ea21ccfc3c8286210a5290fa4f48c91b33fff199509dac0a127",
+                new AgentContextHandles().plan("s", messages).getHash());
+    }
+
+    @Test
+    void plan_changedPrefix_fallsBackToFullSend() {
+        AgentContextHandles handles = new AgentContextHandles();
+        List<Map<String, Object>> turn1 = conversation(2);
+        AgentContextHandles.Plan first = handles.plan("s1", turn1);
+        handles.acknowledge("s1", first.getCount(), first.getHash());
+
+        List<Map<String, Object>> turn2 = conversation(4);
+        AgentContextHandles.Plan second = handles.plan("s1", turn2);
+        assertTrue(second.isIncremental());
+        assertEquals(2, second.getBaseCount());
+
+        // 前缀被摘要替换后哈希对不上
+        turn2.set(0, message("system", "摘要"));
+        assertFalse(handles.plan("s1", turn2).isIncremental());
+    }
+
+    @Test
+    void streamChat_sendsOnlyNewMessagesAndResendsFullContextOnMiss() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AgentContextHandles handles = new AgentContextHandles();
+        Deque<ClientResponse> responses = new ArrayDeque<>();
+        WebClient webClient = WebClient.builder()
+                .exchangeFunction(request -> Mono.just(responses.removeFirst()))
+                .build();
+        AgentService agentService = new AgentService(webClient, new ObjectMapper(), new ChatStreamMetrics(registry), handles);
+        ReflectionTestUtils.setField(agentService, "apiUrl", "http://agent.test/v1");
+        ReflectionTestUtils.setField(agentService, "statefulContext", true);
+
+        // 第一轮：全量发送，Agent 回传哈希确认
+        List<Map<String, Object>> turn1 = conversation(2);
+        responses.add(ok(handles.plan("s1", turn1).getHash()));
+        List<String> events = agentService.streamChat("u1", "s1", turn1).collectList().block(Duration.ofSeconds(2));
+        assertEquals(2, events.size());
+
+        // 第二轮：只发送新增的 2 条；Agent 报告句柄失效后全量重发 4 条
+        List<Map<String, Object>> turn2 = conversation(4);
+        responses.add(ClientResponse.create(HttpStatus.CONFLICT, ExchangeStrategies.withDefaults()).build());
+        responses.add(ok(handles.plan("s1", turn2).getHash()));
+        events = agentService.streamChat("u1", "s1", turn2).collectList().block(Duration.ofSeconds(2));
+        assertEquals(2, events.size());
+        assertTrue(responses.isEmpty());
+
+        // 第三轮：重新确认后恢复增量
+        assertTrue(handles.plan("s1", conversation(6)).isIncremental());
+
+        assertEquals(1.0, registry.get("chat.context.handle").tag("outcome", "full").counter().count());
+        assertEquals(1.0, registry.get("chat.context.handle").tag("outcome", "hit").counter().count());
+        assertEquals(1.0, registry.get("chat.context.handle").tag("outcome", "miss").counter().count());
+        // 三次请求分别发送 2、2、4 条消息
+        assertEquals(3, registry.get("chat.context.payload.messages").summary().count());
+        assertEquals(8.0, registry.get("chat.context.payload.messages").summary().totalAmount());
+    }
+
+    private static ClientResponse ok(String contextHash) {
+        return ClientResponse.create(HttpStatus.OK, ExchangeStrategies.withDefaults())
+                .header("Content-Type", "text/event-stream")
+                .header("X-Context-Hash", contextHash)
+                .body(SSE_BODY)
+                .build();
+    }
+
+    private static List<Map<String, Object>> conversation(int count) {
+        List<Map<String, Object>> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            messages.add(message(i % 2 == 0 ? "user" : "assistant", "第 " + i + " 条"));
+        }
+        return messages;
+    }
+
+    private static Map<String, Object> message(String role, String content) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("role", role);
+        message.put("content", content);
+        message.put("content_type", "text");
+        return message;
+    }
+}
@@ -21,7 +21,7 @@ class AuthControllerErrorSanitizationTest {
                 .thenThrow(new RuntimeException("db down"));
 
         AuthController controller = new AuthController(authService);
-        AuthResponse response = controller.authenticate(new AuthRequest("user@example.com", "pass", null)).getBody();
+        AuthResponse response = controller.authenticate(new AuthRequest("user@example.com", "pass", null)).join().getBody();
 
         assertNotNull(response);
         assertTrue(response.isSuccess() == false);
@@ -4,25 +4,30 @@ import com.equivocal.dto.AuthRequest;
 import com.equivocal.dto.AuthResponse;
 import com.equivocal.entity.User;
 import com.equivocal.repository.UserRepository;
+import com.equivocal.security.AuthPersistenceExecutor;
 import com.equivocal.security.InMemoryRateLimiter;
 import com.equivocal.security.JwtService;
 import com.equivocal.security.PasswordService;
 import com.equivocal.service.AuthService;
 import com.equivocal.service.VerificationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -43,6 +48,9 @@ class AuthServiceAdminBackdoorTest {
     @Mock
     private InMemoryRateLimiter rateLimiter;
 
+    @Spy
+    private AuthPersistenceExecutor persistenceExecutor = new AuthPersistenceExecutor(1, 4, new SimpleMeterRegistry());
+
     @InjectMocks
     private AuthService authService;
 
@@ -53,13 +61,18 @@ class AuthServiceAdminBackdoorTest {
     void register_adminEmail_doesNotGrantAdminRole() {
         when(rateLimiter.allow("auth:admin@example.com")).thenReturn(true);
         when(userRepository.findByEmail("admin@example.com")).thenReturn(Optional.empty());
-        when(verificationService.verifyCode("admin@example.com", "123456"))
+        when(verificationService.checkCode("admin@example.com", "123456"))
                 .thenReturn(new VerificationService.VerificationResult(true, "ok"));
-        when(passwordService.hashPassword("pass123")).thenReturn("$2hash");
+        when(verificationService.consumeCode(eq("admin@example.com"), eq("123456"), any(Runnable.class)))
+                .thenAnswer(invocation -> {
+                    invocation.getArgument(2, Runnable.class).run();
+                    return new VerificationService.VerificationResult(true, "ok");
+                });
+        when(passwordService.hashPasswordAsync("pass123")).thenReturn(CompletableFuture.completedFuture("$2hash"));
         when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
         when(jwtService.generateToken(any(), any(), any())).thenReturn("token");
 
-        AuthResponse response = authService.authenticate(new AuthRequest("admin@example.com", "pass123", "123456"));
+        AuthResponse response = authService.authenticate(new AuthRequest("admin@example.com", "pass123", "123456")).join();
 
         assertTrue(response.isSuccess());
         assertNotNull(response.getUser());
@@ -78,11 +91,12 @@ class AuthServiceAdminBackdoorTest {
 
         when(rateLimiter.allow("auth:admin@example.com")).thenReturn(true);
         when(userRepository.findByEmail("admin@example.com")).thenReturn(Optional.of(existing));
-        when(passwordService.verifyPassword("pass123", existing.getPassword())).thenReturn(true);
+        when(passwordService.verifyPasswordAsync("pass123", existing.getPassword()))
+                .thenReturn(CompletableFuture.completedFuture(true));
         when(passwordService.needsUpgrade(existing.getPassword())).thenReturn(false);
         when(jwtService.generateToken(any(), any(), any())).thenReturn("token");
 
-        AuthResponse response = authService.authenticate(new AuthRequest("admin@example.com", "pass123", null));
+        AuthResponse response = authService.authenticate(new AuthRequest("admin@example.com", "pass123", null)).join();
 
         assertTrue(response.isSuccess());
         assertNotNull(response.getUser());
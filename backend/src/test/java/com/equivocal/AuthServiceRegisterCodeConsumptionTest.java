@@ -0,0 +1,126 @@
+package com.equivocal;
+
+import com.equivocal.datasource.Workload;
+import com.equivocal.datasource.WorkloadRoutingDataSource;
+import com.equivocal.dto.AuthRequest;
+import com.equivocal.dto.AuthResponse;
+import com.equivocal.entity.User;
+import com.equivocal.entity.VerificationCode;
+import com.equivocal.repository.UserRepository;
+import com.equivocal.repository.VerificationCodeRepository;
+import com.equivocal.security.AuthPersistenceExecutor;
+import com.equivocal.security.InMemoryRateLimiter;
+import com.equivocal.security.JwtService;
+import com.equivocal.security.PasswordHashExecutor;
+import com.equivocal.security.PasswordService;
+import com.equivocal.service.AuthService;
+import com.equivocal.service.EmailService;
+import com.equivocal.service.VerificationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AuthServiceRegisterCodeConsumptionTest {
+
+    private static final String EMAIL = "new@example.com";
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final PasswordService passwordService = mock(PasswordService.class);
+    private final VerificationCodeRepository codeRepository = mock(VerificationCodeRepository.class);
+    private final VerificationCode code = VerificationCode.builder()
+            .id(1L).email(EMAIL).code("123456").expiresAt(LocalDateTime.now().plusMinutes(5)).build();
+
+    private AuthService authService;
+
+    @BeforeEach
+    void setUp() {
+        InMemoryRateLimiter rateLimiter = mock(InMemoryRateLimiter.class);
+        when(rateLimiter.allow(anyString())).thenReturn(true);
+        JwtService jwtService = mock(JwtService.class);
+        when(jwtService.generateToken(any(), any(), any())).thenReturn("token");
+        when(userRepository.findByEmail(EMAIL)).thenReturn(Optional.empty());
+        when(codeRepository.findFirstByEmailOrderByCreatedAtDesc(EMAIL)).thenReturn(Optional.of(code));
+
+        VerificationService verificationService = new VerificationService(codeRepository, mock(EmailService.class), rateLimiter);
+        authService = new AuthService(userRepository, passwordService, jwtService, verificationService, rateLimiter,
+                new AuthPersistenceExecutor(1, 4, new SimpleMeterRegistry()));
+    }
+
+    @Test
+    void hashRejected_keepsTheCodeForARetry() {
+        CompletableFuture<String> rejected = new CompletableFuture<>();
+        rejected.completeExceptionally(new RejectedExecutionException("queue full"));
+        when(passwordService.hashPasswordAsync("pass123")).thenReturn(rejected);
+
+        CompletableFuture<AuthResponse> response = authService.authenticate(new AuthRequest(EMAIL, "pass123", "123456"));
+
+        assertThrows(CompletionException.class, response::join);
+        verify(codeRepository, never()).delete(any(VerificationCode.class));
+        verify(userRepository, never()).save(any(User.class));
+    }
+
+    @Test
+    void successfulRegistration_consumesTheCodeTogetherWithTheUserSave() {
+        when(passwordService.hashPasswordAsync("pass123")).thenReturn(CompletableFuture.completedFuture("$2hash"));
+
+        AuthResponse response = authService.authenticate(new AuthRequest(EMAIL, "pass123", "123456")).join();
+
+        assertTrue(response.isSuccess());
+        InOrder order = inOrder(codeRepository, userRepository);
+        order.verify(codeRepository).delete(code);
+        order.verify(userRepository).save(any(User.class));
+    }
+
+    @Test
+    void successfulRegistration_savesOnTheAuthPersistencePoolNotTheHashPool() {
+        PasswordHashExecutor hashExecutor = new PasswordHashExecutor(1, 4, new SimpleMeterRegistry());
+        when(passwordService.hashPasswordAsync("pass123"))
+                .thenAnswer(invocation -> hashExecutor.submit("hash", () -> "$2hash"));
+        List<String> savedOn = new ArrayList<>();
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> {
+            savedOn.add(Thread.currentThread().getName() + "/" + WorkloadRoutingDataSource.current());
+            return invocation.getArgument(0);
+        });
+
+        try {
+            assertTrue(authService.authenticate(new AuthRequest(EMAIL, "pass123", "123456")).join().isSuccess());
+        } finally {
+            hashExecutor.shutdown();
+        }
+
+        assertEquals(1, savedOn.size());
+        assertTrue(savedOn.get(0).startsWith("auth-persistence-"), "saved on " + savedOn.get(0));
+        assertTrue(savedOn.get(0).endsWith("/" + Workload.AUTH), "saved on " + savedOn.get(0));
+    }
+
+    @Test
+    void wrongCode_failsBeforeHashing() {
+        AuthResponse response = authService.authenticate(new AuthRequest(EMAIL, "pass123", "000000")).join();
+
+        assertFalse(response.isSuccess());
+        assertEquals("Invalid verification code", response.getError());
+        assertEquals(1, code.getAttempts());
+        verify(passwordService, never()).hashPasswordAsync(anyString());
+    }
+}
@@ -0,0 +1,190 @@
+package com.equivocal;
+
+import com.equivocal.entity.ChatMessage;
+import com.equivocal.entity.ChatSession;
+import com.equivocal.entity.ChatSessionArchive;
+import com.equivocal.entity.CompressedTextConverter;
+import com.equivocal.repository.ChatMessageRepository;
+import com.equivocal.repository.ChatSessionArchiveRepository;
+import com.equivocal.repository.ChatSessionRepository;
+import com.equivocal.service.ChatArchiveService;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChatArchiveServiceTieringTest {
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 1, 2, 3, 4, 5, 600_000_000);
+
+    private final ChatSessionRepository chatSessionRepository = mock(ChatSessionRepository.class);
+    private final ChatMessageRepository chatMessageRepository = mock(ChatMessageRepository.class);
+    private final ChatSessionArchiveRepository archiveRepository = mock(ChatSessionArchiveRepository.class);
+    private final ChatArchiveService service = new ChatArchiveService(chatSessionRepository, chatMessageRepository,
+            archiveRepository, new CompressedTextConverter(), mock(PlatformTransactionManager.class));
+
+    @Test
+    void archiveIdleSessions_movesMessagesIntoCompressedBlockAndReadsThemBack() {
+        List<ChatMessage> messages = messages("s1", 10L, 6);
+        when(chatSessionRepository.findArchiveCandidates(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(Collections.singletonList("s1"));
+        when(chatMessageRepository.findBySessionIdOrderByCreatedAtAscIdAsc("s1")).thenReturn(messages);
+        when(chatSessionRepository.markArchived(eq("s1"), any(LocalDateTime.class), any(LocalDateTime.class))).thenReturn(1);
+
+        assertEquals(1, service.archiveIdleSessions());
+
+        ArgumentCaptor<ChatSessionArchive> saved = ArgumentCaptor.forClass(ChatSessionArchive.class);
+        verify(archiveRepository).save(saved.capture());
+        ChatSessionArchive archive = saved.getValue();
+        assertEquals(6, archive.getMessageCount());
+        assertEquals(Long.valueOf(15L), archive.getMaxMessageId());
+        assertTrue(archive.getPayload().length < archive.getRawBytes());
+        // 只删除已写入归档块的消息
+        verify(chatMessageRepository).deleteArchivedMessages("s1", Arrays.asList(10L, 11L, 12L, 13L, 14L, 15L));
+
+        // 读取：归档块 + 归档期间写入热表的消息
+        ChatSession session = ChatSession.builder().id("s1").userId("u1").archivedAt(LocalDateTime.now()).build();
+        when(archiveRepository.findById("s1")).thenReturn(Optional.of(archive));
+        List<ChatMessage> hot = messages("s1", 16L, 1);
+        hot.get(0).setCreatedAt(CREATED_AT.plusHours(1));
+        when(chatMessageRepository.findBySessionIdOrderByCreatedAtAscIdAsc("s1")).thenReturn(hot);
+
+        List<ChatMessage> read = service.findMessages(session);
+
+        assertEquals(7, read.size());
+        for (int i = 0; i < 6; i++) {
+            assertEquals(messages.get(i).getId(), read.get(i).getId());
+            assertEquals(messages.get(i).getContent(), read.get(i).getContent());
+            assertEquals(messages.get(i).getCreatedAt(), read.get(i).getCreatedAt());
+        }
+        assertNull(read.get(1).getContentType());
+        assertEquals(Long.valueOf(16L), read.get(6).getId());
+    }
+
+    @Test
+    void archiveIdleSessions_messageWithLowerIdWrittenMeanwhile_staysHotAndIsRead() {
+        // TiDB 的自增 ID 按节点分段分配：归档读取之后写入的消息 ID 可能小于块内最大 ID
+        List<ChatMessage> messages = messages("s1", 100L, 2);
+        when(chatSessionRepository.findArchiveCandidates(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(Collections.singletonList("s1"));
+        when(chatMessageRepository.findBySessionIdOrderByCreatedAtAscIdAsc("s1")).thenReturn(messages);
+        when(chatSessionRepository.markArchived(eq("s1"), any(LocalDateTime.class), any(LocalDateTime.class))).thenReturn(1);
+
+        assertEquals(1, service.archiveIdleSessions());
+
+        ArgumentCaptor<ChatSessionArchive> saved = ArgumentCaptor.forClass(ChatSessionArchive.class);
+        verify(archiveRepository).save(saved.capture());
+        verify(chatMessageRepository).deleteArchivedMessages("s1", Arrays.asList(100L, 101L));
+
+        List<ChatMessage> late = messages("s1", 7L, 1);
+        late.get(0).setCreatedAt(CREATED_AT.plusHours(1));
+        ChatSession session = ChatSession.builder().id("s1").userId("u1").archivedAt(LocalDateTime.now()).build();
+        when(archiveRepository.findById("s1")).thenReturn(Optional.of(saved.getValue()));
+        when(chatMessageRepository.findBySessionIdOrderByCreatedAtAscIdAsc("s1")).thenReturn(late);
+
+        List<ChatMessage> read = service.findMessages(session);
+
+        assertEquals(Arrays.asList(100L, 101L, 7L), ids(read));
+    }
+
+    @Test
+    void archiveIdleSessions_largeSession_deletesInChunks() {
+        when(chatSessionRepository.findArchiveCandidates(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(Collections.singletonList("s1"));
+        when(chatMessageRepository.findBySessionIdOrderByCreatedAtAscIdAsc("s1")).thenReturn(messages("s1", 1L, 1201));
+        when(chatSessionRepository.markArchived(eq("s1"), any(LocalDateTime.class), any(LocalDateTime.class))).thenReturn(1);
+
+        assertEquals(1, service.archiveIdleSessions());
+
+        ArgumentCaptor<List<Long>> deleted = ArgumentCaptor.forClass(List.class);
+        verify(chatMessageRepository, times(3)).deleteArchivedMessages(eq("s1"), deleted.capture());
+        List<Long> all = new ArrayList<>();
+        for (List<Long> chunk : deleted.getAllValues()) {
+            assertTrue(chunk.size() <= 500);
+            all.addAll(chunk);
+        }
+        assertEquals(1201, all.size());
+        assertEquals(Long.valueOf(1201L), all.get(1200));
+    }
+
+    @Test
+    void archiveIdleSessions_sessionTouchedMeanwhile_isLeftHot() {
+        when(chatSessionRepository.findArchiveCandidates(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(Collections.singletonList("s1"));
+        when(chatMessageRepository.findBySessionIdOrderByCreatedAtAscIdAsc("s1")).thenReturn(messages("s1", 1L, 2));
+        when(chatSessionRepository.markArchived(eq("s1"), any(LocalDateTime.class), any(LocalDateTime.class))).thenReturn(0);
+
+        assertEquals(0, service.archiveIdleSessions());
+        verify(archiveRepository, never()).save(any(ChatSessionArchive.class));
+        verify(chatMessageRepository, never()).deleteArchivedMessages(anyString(), any());
+    }
+
+    @Test
+    void restore_reinsertsMessagesWithOriginalIds() {
+        ReflectionTestUtils.setField(service, "batchPauseMs", 0L);
+        List<ChatMessage> messages = messages("s1", 40L, 3);
+        when(chatSessionRepository.findArchiveCandidates(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(Collections.singletonList("s1"));
+        when(chatMessageRepository.findBySessionIdOrderByCreatedAtAscIdAsc("s1")).thenReturn(messages);
+        when(chatSessionRepository.markArchived(eq("s1"), any(LocalDateTime.class), any(LocalDateTime.class))).thenReturn(1);
+        service.archiveIdleSessions();
+        ArgumentCaptor<ChatSessionArchive> saved = ArgumentCaptor.forClass(ChatSessionArchive.class);
+        verify(archiveRepository).save(saved.capture());
+
+        ChatSession session = ChatSession.builder().id("s1").userId("u1").archivedAt(LocalDateTime.now()).build();
+        when(archiveRepository.findById("s1")).thenReturn(Optional.of(saved.getValue()));
+        when(chatSessionRepository.markRestored("s1")).thenReturn(1);
+
+        service.restore(session);
+
+        for (ChatMessage message : messages) {
+            verify(chatMessageRepository).insertWithId(message.getId(), "s1", message.getRole(), message.getContent(),
+                    message.getContentType(), message.getCreatedAt());
+        }
+        verify(archiveRepository).delete(saved.getValue());
+        assertNull(session.getArchivedAt());
+    }
+
+    private static List<Long> ids(List<ChatMessage> messages) {
+        List<Long> ids = new ArrayList<>();
+        for (ChatMessage message : messages) {
+            ids.add(message.getId());
+        }
+        return ids;
+    }
+
+    private static List<ChatMessage> messages(String sessionId, long firstId, int count) {
+        List<ChatMessage> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            messages.add(ChatMessage.builder()
+                    .id(firstId + i)
+                    .sessionId(sessionId)
+                    .role(i % 2 == 0 ? "user" : "assistant")
+                    .content("第 " + i + " 条：房屋租赁合同到期后房东拒绝退还押金，应当如何维权？根据《民法典》相关规定……")
+                    .contentType(i % 2 == 0 ? "text" : null)
+                    .createdAt(CREATED_AT.plusMinutes(i))
+                    .build());
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,205 @@
+package com.equivocal;
+
+import com.equivocal.controller.ChatController;
+import com.equivocal.datasource.ReadYourWritesTracker;
+import com.equivocal.entity.ChatMessage;
+import com.equivocal.entity.ChatSession;
+import com.equivocal.entity.User;
+import com.equivocal.metrics.ChatStreamMetrics;
+import com.equivocal.repository.ChatMessageRepository;
+import com.equivocal.repository.ChatSessionRepository;
+import com.equivocal.repository.UserRepository;
+import com.equivocal.service.AgentService;
+import com.equivocal.service.ChatArchiveService;
+import com.equivocal.service.ChatSyncService;
+import com.equivocal.service.ContextCompactionService;
+import com.equivocal.service.SessionLanes;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 同一会话的两轮并发请求（两个标签页同时发送）经过控制器后的上下文与落库顺序
+ */
+class ChatControllerConcurrentTurnsTest {
+
+    private final AgentService agentService = mock(AgentService.class);
+    private final ChatSessionRepository chatSessionRepository = mock(ChatSessionRepository.class);
+    private final ChatMessageRepository chatMessageRepository = mock(ChatMessageRepository.class);
+    private final ChatSyncService chatSyncService = mock(ChatSyncService.class);
+    private final ContextCompactionService contextCompactionService = mock(ContextCompactionService.class);
+
+    /**
+     * 内存中的 chat_messages，按写入顺序
+     */
+    private final List<ChatMessage> stored = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicLong ids = new AtomicLong();
+
+    @Test
+    void twoTabsSendingAtOnce_secondTurnSeesFirstAnswerAndRepliesPersistInQuestionOrder() throws Exception {
+        ChatSession session = ChatSession.builder().id("s1").userId("u1").title("合同纠纷").build();
+        when(chatSessionRepository.findById("s1")).thenReturn(Optional.of(session));
+        when(chatSessionRepository.save(any(ChatSession.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(chatMessageRepository.save(any(ChatMessage.class))).thenAnswer(invocation -> {
+            ChatMessage message = invocation.getArgument(0);
+            message.setId(ids.incrementAndGet());
+            stored.add(message);
+            return message;
+        });
+        doAnswer(invocation -> {
+            invocation.<Consumer<ChatSyncService.Changes>>getArgument(1).accept(new ChatSyncService.Changes());
+            return null;
+        }).when(chatSyncService).run(anyString(), any());
+        when(chatSyncService.call(anyString(), any())).thenAnswer(invocation ->
+                invocation.<Function<ChatSyncService.Changes, Object>>getArgument(1).apply(new ChatSyncService.Changes()));
+        // 上下文取加载那一刻已落库的全部消息
+        List<List<String>> contexts = Collections.synchronizedList(new ArrayList<>());
+        when(contextCompactionService.buildContext(any(ChatSession.class))).thenAnswer(invocation -> {
+            List<String> snapshot = contents();
+            contexts.add(snapshot);
+            return snapshot.stream().map(content -> {
+                Map<String, Object> message = new HashMap<>();
+                message.put("content", content);
+                return message;
+            }).collect(Collectors.toList());
+        });
+        Sinks.Many<String> firstAgent = Sinks.many().unicast().onBackpressureBuffer();
+        Sinks.Many<String> secondAgent = Sinks.many().unicast().onBackpressureBuffer();
+        when(agentService.streamChat(eq("u1"), eq("s1"), anyList()))
+                .thenReturn(firstAgent.asFlux(), secondAgent.asFlux());
+
+        ChatController controller = controller();
+        Mono<List<String>> tab1 = controller.streamChat(request("押金不退怎么办？"), user()).collectList().cache();
+        Mono<List<String>> tab2 = controller.streamChat(request("需要准备什么证据？"), user()).collectList().cache();
+        tab1.subscribe();
+        tab2.subscribe();
+
+        // 第一轮还在生成：第二轮的提问尚未写入，也还没有加载上下文
+        waitFor(() -> contexts.size() == 1);
+        Thread.sleep(100);
+        assertEquals(Collections.singletonList("押金不退怎么办？"), contents());
+
+        firstAgent.tryEmitNext(content("可以"));
+        firstAgent.tryEmitNext(content("起诉。"));
+        firstAgent.tryEmitComplete();
+        tab1.block(Duration.ofSeconds(5));
+
+        // 第一轮回复落库后第二轮才开始：上下文包含第一轮的完整问答
+        waitFor(() -> contexts.size() == 2);
+        assertEquals(Arrays.asList("押金不退怎么办？", "可以起诉。", "需要准备什么证据？"), contexts.get(1));
+
+        secondAgent.tryEmitNext(content("租赁合同和转账记录。"));
+        secondAgent.tryEmitComplete();
+        List<String> secondEvents = tab2.block(Duration.ofSeconds(5));
+
+        assertTrue(secondEvents.get(0).contains("\"sessionId\":\"s1\""));
+        assertEquals(Arrays.asList("押金不退怎么办？", "可以起诉。", "需要准备什么证据？", "租赁合同和转账记录。"), contents());
+        assertEquals(Arrays.asList("user", "assistant", "user", "assistant"),
+                stored.stream().map(ChatMessage::getRole).collect(Collectors.toList()));
+    }
+
+    @Test
+    void replyIsPersistedOffTheAgentThread() {
+        ChatSession session = ChatSession.builder().id("s1").userId("u1").title("合同纠纷").build();
+        when(chatSessionRepository.findById("s1")).thenReturn(Optional.of(session));
+        when(chatSessionRepository.save(any(ChatSession.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        List<String> savingThreads = Collections.synchronizedList(new ArrayList<>());
+        when(chatMessageRepository.save(any(ChatMessage.class))).thenAnswer(invocation -> {
+            savingThreads.add(Thread.currentThread().getName());
+            return invocation.getArgument(0);
+        });
+        doAnswer(invocation -> {
+            invocation.<Consumer<ChatSyncService.Changes>>getArgument(1).accept(new ChatSyncService.Changes());
+            return null;
+        }).when(chatSyncService).run(anyString(), any());
+        when(chatSyncService.call(anyString(), any())).thenAnswer(invocation ->
+                invocation.<Function<ChatSyncService.Changes, Object>>getArgument(1).apply(new ChatSyncService.Changes()));
+        when(contextCompactionService.buildContext(any(ChatSession.class))).thenReturn(Collections.emptyList());
+        // 模拟 WebClient：内容在事件循环线程上发出并完成
+        Scheduler eventLoop = Schedulers.newSingle("reactor-http-nio");
+        when(agentService.streamChat(eq("u1"), eq("s1"), anyList()))
+                .thenReturn(Flux.just(content("好的。")).subscribeOn(eventLoop));
+
+        try {
+            controller().streamChat(request("你好"), user()).collectList().block(Duration.ofSeconds(5));
+        } finally {
+            eventLoop.dispose();
+        }
+
+        // 提问与回复都在 boundedElastic 上保存，不阻塞事件循环
+        assertEquals(2, savingThreads.size());
+        for (String thread : savingThreads) {
+            assertTrue(thread.startsWith("boundedElastic"), "saved on " + thread);
+        }
+    }
+
+    private ChatController controller() {
+        return new ChatController(agentService, chatSessionRepository, chatMessageRepository, mock(UserRepository.class),
+                new ChatStreamMetrics(new SimpleMeterRegistry()), new ObjectMapper(), chatSyncService,
+                contextCompactionService, mock(ChatArchiveService.class), mock(ReadYourWritesTracker.class),
+                new SessionLanes(5000, new SimpleMeterRegistry()));
+    }
+
+    private List<String> contents() {
+        synchronized (stored) {
+            return stored.stream().map(ChatMessage::getContent).collect(Collectors.toList());
+        }
+    }
+
+    private static ChatController.ChatRequest request(String content) {
+        ChatController.ChatInput input = new ChatController.ChatInput();
+        input.setContent(content);
+        ChatController.ChatRequest request = new ChatController.ChatRequest();
+        request.setVersion(ChatController.ChatRequest.CURRENT_VERSION);
+        request.setSessionId("s1");
+        request.setMessage(input);
+        return request;
+    }
+
+    private static User user() {
+        return User.builder().id("u1").email("u1@example.com").password("x").role(1).build();
+    }
+
+    private static String content(String text) {
+        return new ObjectMapper().createObjectNode().put("type", "content").put("content", text).toString();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("condition not met within 5s");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -1,15 +1,24 @@
 package com.equivocal;
 
 import com.equivocal.controller.ChatController;
+import com.equivocal.datasource.ReadYourWritesTracker;
 import com.equivocal.entity.ChatMessage;
 import com.equivocal.entity.ChatSession;
 import com.equivocal.entity.User;
+import com.equivocal.metrics.ChatStreamMetrics;
 import com.equivocal.repository.ChatMessageRepository;
 import com.equivocal.repository.ChatSessionRepository;
 import com.equivocal.repository.UserRepository;
 import com.equivocal.service.AgentService;
+import com.equivocal.service.ChatSyncService;
+import com.equivocal.service.ContextCompactionService;
+import com.equivocal.service.SessionLanes;
+import com.equivocal.service.ContextWindowBuilder;
+import com.equivocal.service.TokenEstimator;
+import com.equivocal.service.ChatArchiveService;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
@@ -24,6 +33,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -31,6 +41,8 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -71,12 +83,24 @@ class ChatControllerSessionOwnershipTest {
         when(chatSessionRepository.findById("session_b")).thenReturn(Optional.of(sessionB));
         lenient().when(chatSessionRepository.save(any(ChatSession.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
-        when(chatMessageRepository.findBySessionIdOrderByCreatedAtAsc(anyString())).thenReturn(Collections.emptyList());
+        when(chatMessageRepository.findBySessionIdOrderByCreatedAtAscIdAsc(anyString())).thenReturn(Collections.emptyList());
         when(chatMessageRepository.save(any(ChatMessage.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
-        when(agentService.streamChat(anyString(), anyList())).thenReturn(Flux.empty());
+        when(agentService.streamChat(anyString(), anyString(), anyList())).thenReturn(Flux.empty());
 
-        ChatController controller = new ChatController(agentService, chatSessionRepository, chatMessageRepository, userRepository);
+        // 同步服务只负责包事务，这里直接执行写入
+        ChatSyncService chatSyncService = mock(ChatSyncService.class);
+        doAnswer(invocation -> {
+            invocation.<Consumer<ChatSyncService.Changes>>getArgument(1).accept(new ChatSyncService.Changes());
+            return null;
+        }).when(chatSyncService).run(anyString(), any());
+
+        ChatController controller = new ChatController(agentService, chatSessionRepository, chatMessageRepository, userRepository,
+                new ChatStreamMetrics(new SimpleMeterRegistry()), new ObjectMapper(), chatSyncService,
+                new ContextCompactionService(chatSessionRepository, chatMessageRepository, agentService,
+                new ContextWindowBuilder(new TokenEstimator())),
+                mock(ChatArchiveService.class), mock(ReadYourWritesTracker.class),
+                new SessionLanes(1000, new SimpleMeterRegistry()));
 
         ChatController.ChatRequest request = new ChatController.ChatRequest();
         request.setSessionId("session_b");
@@ -95,7 +119,7 @@ class ChatControllerSessionOwnershipTest {
         String returnedSessionId = first.path("sessionId").asText();
 
         assertNotEquals("session_b", returnedSessionId);
-        verify(chatMessageRepository, never()).findBySessionIdOrderByCreatedAtAsc("session_b");
+        verify(chatMessageRepository, never()).findBySessionIdOrderByCreatedAtAscIdAsc("session_b");
 
         verify(chatMessageRepository).save(savedMessageCaptor.capture());
         assertNotEquals("session_b", savedMessageCaptor.getValue().getSessionId());
@@ -1,11 +1,19 @@
 package com.equivocal;
 
 import com.equivocal.controller.ChatController;
+import com.equivocal.datasource.ReadYourWritesTracker;
 import com.equivocal.entity.User;
+import com.equivocal.metrics.ChatStreamMetrics;
 import com.equivocal.repository.ChatMessageRepository;
 import com.equivocal.repository.ChatSessionRepository;
 import com.equivocal.repository.UserRepository;
 import com.equivocal.service.AgentService;
+import com.equivocal.service.ChatSyncService;
+import com.equivocal.service.ContextCompactionService;
+import com.equivocal.service.SessionLanes;
+import com.equivocal.service.ChatArchiveService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.ResponseEntity;
 
@@ -29,7 +37,14 @@ class ChatControllerSyncDeprecatedTest {
                 agentService,
                 chatSessionRepository,
                 chatMessageRepository,
-                userRepository
+                userRepository,
+                new ChatStreamMetrics(new SimpleMeterRegistry()),
+                new ObjectMapper(),
+                mock(ChatSyncService.class),
+                mock(ContextCompactionService.class),
+                mock(ChatArchiveService.class),
+                mock(ReadYourWritesTracker.class),
+                mock(SessionLanes.class)
         );
 
         ChatController.ChatRequest request = new ChatController.ChatRequest();
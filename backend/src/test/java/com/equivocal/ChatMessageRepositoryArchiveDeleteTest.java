@@ -0,0 +1,54 @@
+package com.equivocal;
+
+import com.equivocal.entity.ChatMessage;
+import com.equivocal.repository.ChatMessageRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 归档删除在内存 H2 上的实际语义：只删除给定 ID 的消息
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+class ChatMessageRepositoryArchiveDeleteTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void deleteArchivedMessages_keepsMessagesOutsideTheArchivedIds() {
+        ChatMessage a = persist("a", "s1", BASE);
+        // 归档读取之后写入、ID 落在已归档 ID 之间的消息
+        persist("late", "s1", BASE.plusMinutes(5));
+        ChatMessage c = persist("c", "s1", BASE.plusSeconds(1));
+        ChatMessage other = persist("other", "s2", BASE);
+        entityManager.flush();
+
+        int deleted = chatMessageRepository.deleteArchivedMessages("s1", Arrays.asList(a.getId(), c.getId(), other.getId()));
+        entityManager.clear();
+
+        assertEquals(2, deleted);
+        assertEquals(Arrays.asList("late"), contents(chatMessageRepository.findBySessionIdOrderByCreatedAtAscIdAsc("s1")));
+        assertEquals(Arrays.asList("other"), contents(chatMessageRepository.findBySessionIdOrderByCreatedAtAscIdAsc("s2")));
+    }
+
+    private ChatMessage persist(String content, String sessionId, LocalDateTime createdAt) {
+        return entityManager.persist(ChatMessage.builder().sessionId(sessionId).role("user").content(content).createdAt(createdAt).build());
+    }
+
+    private static List<String> contents(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getContent).collect(Collectors.toList());
+    }
+}
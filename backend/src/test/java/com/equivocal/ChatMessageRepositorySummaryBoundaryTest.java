@@ -0,0 +1,83 @@
+package com.equivocal;
+
+import com.equivocal.entity.ChatMessage;
+import com.equivocal.entity.ChatSession;
+import com.equivocal.repository.ChatMessageRepository;
+import com.equivocal.repository.ChatSessionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 摘要边界查询在内存 H2 上的实际语义
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+class ChatMessageRepositorySummaryBoundaryTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+    @Autowired
+    private ChatSessionRepository chatSessionRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void findAfterBoundary_usesCreatedAtThenIdOrder() {
+        ChatMessage a = persist("a", BASE);
+        ChatMessage b = persist("b", BASE.plusSeconds(1));
+        persist("c", BASE.plusSeconds(1));
+        ChatMessage d = persist("d", BASE.plusSeconds(2));
+        entityManager.persist(message("other", "s2", BASE.plusSeconds(3)));
+        entityManager.flush();
+
+        List<String> all = contents(chatMessageRepository.findBySessionIdOrderByCreatedAtAscIdAsc("s1"));
+        assertEquals(Arrays.asList("a", "b", "c", "d"), all);
+
+        // 边界落在同一时刻的第一条上：同时刻 ID 更大的 c 仍在边界之后
+        assertEquals(Arrays.asList("c", "d"),
+                contents(chatMessageRepository.findAfterBoundary("s1", b.getCreatedAt(), b.getId())));
+        assertEquals(Arrays.asList("b", "c", "d"),
+                contents(chatMessageRepository.findAfterBoundary("s1", a.getCreatedAt(), a.getId())));
+        assertEquals(0, chatMessageRepository.findAfterBoundary("s1", d.getCreatedAt(), d.getId()).size());
+    }
+
+    @Test
+    void updateSummary_onlyAdvancesAlongMessageOrder() {
+        entityManager.persist(ChatSession.builder().id("s1").userId("u1").build());
+        entityManager.flush();
+
+        assertEquals(1, chatSessionRepository.updateSummary("s1", "v2", BASE.plusSeconds(5), 20L));
+        // 较慢的旧任务：时间更早，即使 ID 更大也不能覆盖
+        assertEquals(0, chatSessionRepository.updateSummary("s1", "stale", BASE.plusSeconds(4), 99L));
+        // 同一时刻 ID 更大的边界可以推进
+        assertEquals(1, chatSessionRepository.updateSummary("s1", "v3", BASE.plusSeconds(5), 21L));
+        entityManager.clear();
+
+        ChatSession session = chatSessionRepository.findById("s1").get();
+        assertEquals("v3", session.getSummary());
+        assertEquals(BASE.plusSeconds(5), session.getSummarizedUpToCreatedAt());
+        assertEquals(21L, session.getSummarizedUpToId());
+    }
+
+    private ChatMessage persist(String content, LocalDateTime createdAt) {
+        return entityManager.persist(message(content, "s1", createdAt));
+    }
+
+    private static ChatMessage message(String content, String sessionId, LocalDateTime createdAt) {
+        return ChatMessage.builder().sessionId(sessionId).role("user").content(content).createdAt(createdAt).build();
+    }
+
+    private static List<String> contents(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getContent).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,82 @@
+package com.equivocal;
+
+import com.equivocal.controller.ChatController;
+import com.equivocal.datasource.ReadYourWritesTracker;
+import com.equivocal.entity.User;
+import com.equivocal.metrics.ChatStreamMetrics;
+import com.equivocal.repository.ChatMessageRepository;
+import com.equivocal.repository.ChatSessionRepository;
+import com.equivocal.repository.UserRepository;
+import com.equivocal.service.AgentService;
+import com.equivocal.service.ChatSyncService;
+import com.equivocal.service.ContextCompactionService;
+import com.equivocal.service.SessionLanes;
+import com.equivocal.service.ChatArchiveService;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class ChatRequestLeanProtocolTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    @Test
+    void v2Request_carriesOnlyTheNewMessage() throws Exception {
+        ChatController.ChatRequest request = objectMapper.readValue(
+                "{\"version\":2,\"sessionId\":\"s1\",\"message\":{\"content\":\"押金不退怎么办？\",\"content_type\":\"object_string\"}}",
+                ChatController.ChatRequest.class);
+
+        ChatController.ChatInput input = request.latestUserMessage();
+
+        assertEquals("s1", request.getSessionId());
+        assertEquals("押金不退怎么办？", input.getContent());
+        assertEquals("object_string", input.getContentType());
+        assertNull(request.getMessages());
+    }
+
+    @Test
+    void legacyRequest_usesLastUserMessage() throws Exception {
+        ChatController.ChatRequest request = objectMapper.readValue(
+                "{\"sessionId\":\"s1\",\"messages\":[{\"role\":\"user\",\"content\":\"第一问\"},"
+                        + "{\"role\":\"assistant\",\"content\":\"回答\"},{\"role\":\"user\",\"content\":\"第二问\"}]}",
+                ChatController.ChatRequest.class);
+
+        assertEquals("第二问", request.latestUserMessage().getContent());
+        assertNull(request.latestUserMessage().getContentType());
+
+        ChatController.ChatRequest trailingAssistant = objectMapper.readValue(
+                "{\"messages\":[{\"role\":\"assistant\",\"content\":\"回答\"}]}", ChatController.ChatRequest.class);
+        assertNull(trailingAssistant.latestUserMessage());
+    }
+
+    @Test
+    void unsupportedVersion_isRejectedWithoutSideEffects() {
+        ChatSessionRepository chatSessionRepository = mock(ChatSessionRepository.class);
+        ChatMessageRepository chatMessageRepository = mock(ChatMessageRepository.class);
+        AgentService agentService = mock(AgentService.class);
+        ChatController controller = new ChatController(agentService, chatSessionRepository, chatMessageRepository,
+                mock(UserRepository.class), new ChatStreamMetrics(new SimpleMeterRegistry()), objectMapper,
+                mock(ChatSyncService.class), mock(ContextCompactionService.class), mock(ChatArchiveService.class),
+                mock(ReadYourWritesTracker.class), new SessionLanes(1000, new SimpleMeterRegistry()));
+
+        ChatController.ChatRequest request = new ChatController.ChatRequest();
+        request.setVersion(3);
+        User user = User.builder().id("user_1").email("u@example.com").password("x").role(1).build();
+
+        List<String> events = controller.streamChat(request, user).collectList().block(Duration.ofSeconds(2));
+
+        assertEquals(1, events.size());
+        assertTrue(events.get(0).contains("Unsupported request version"));
+        verifyNoInteractions(agentService, chatSessionRepository, chatMessageRepository);
+    }
+}
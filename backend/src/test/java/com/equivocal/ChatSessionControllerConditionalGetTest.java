@@ -0,0 +1,135 @@
+package com.equivocal;
+
+import com.equivocal.controller.ChatSessionController;
+import com.equivocal.datasource.ReadReplica;
+import com.equivocal.entity.ChatMessage;
+import com.equivocal.entity.ChatSession;
+import com.equivocal.entity.User;
+import com.equivocal.repository.ChatMessageRepository;
+import com.equivocal.repository.ChatSessionRepository;
+import com.equivocal.service.ChatSyncService;
+import com.equivocal.service.ChatArchiveService;
+import com.equivocal.repository.ChatSessionArchiveRepository;
+import com.equivocal.entity.CompressedTextConverter;
+import com.equivocal.service.MessageHistoryStreamer;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ChatSessionControllerConditionalGetTest {
+
+    private static final LocalDateTime UPDATED_AT = LocalDateTime.of(2024, 5, 1, 12, 30, 15, 123_000_000);
+
+    private final ChatSessionRepository chatSessionRepository = mock(ChatSessionRepository.class);
+    private final ChatMessageRepository chatMessageRepository = mock(ChatMessageRepository.class);
+    private final ChatSessionController controller = new ChatSessionController(chatSessionRepository, chatMessageRepository,
+            mock(ChatSyncService.class), new ChatArchiveService(chatSessionRepository, chatMessageRepository,
+                    mock(ChatSessionArchiveRepository.class), new CompressedTextConverter(), mock(PlatformTransactionManager.class)),
+            mock(MessageHistoryStreamer.class));
+    private final User user = User.builder().id("u1").email("u@example.com").password("x").role(1).build();
+
+    @Test
+    void getUserSessions_matchingETag_returns304WithoutLoadingSessions() {
+        ChatSessionRepository.SessionListVersion version = mock(ChatSessionRepository.SessionListVersion.class);
+        when(version.getCnt()).thenReturn(3L);
+        when(version.getLastUpdatedAt()).thenReturn(UPDATED_AT);
+        when(chatSessionRepository.findListVersionByUserId("u1")).thenReturn(version);
+        when(chatSessionRepository.findWithMessagesByUserIdOrderByUpdatedAtDesc("u1")).thenReturn(Collections.emptyList());
+
+        ResponseEntity<?> first = controller.getUserSessions(user, null);
+        String etag = first.getHeaders().getETag();
+        assertEquals(200, first.getStatusCodeValue());
+        assertNotNull(etag);
+        assertTrue(first.getHeaders().getCacheControl().contains("no-cache"));
+
+        ResponseEntity<?> second = controller.getUserSessions(user, "\"other\", " + etag);
+        assertEquals(304, second.getStatusCodeValue());
+        assertNull(second.getBody());
+        verify(chatSessionRepository).findWithMessagesByUserIdOrderByUpdatedAtDesc("u1");
+
+        // 会话被更新后校验器随之变化
+        when(version.getLastUpdatedAt()).thenReturn(UPDATED_AT.plusNanos(1000));
+        assertEquals(200, controller.getUserSessions(user, etag).getStatusCodeValue());
+    }
+
+    @Test
+    void getSessionMessages_matchingETag_returns304WithoutQueryingMessages() {
+        ChatSession session = ChatSession.builder().id("s1").userId("u1").updatedAt(UPDATED_AT).build();
+        when(chatSessionRepository.findForMessageRead("s1")).thenReturn(Optional.of(session));
+        when(chatMessageRepository.findBySessionIdOrderByCreatedAtAsc("s1")).thenReturn(Collections.emptyList());
+
+        String etag = controller.getSessionMessages("s1", user, null, 100, null, null).getHeaders().getETag();
+        verify(chatMessageRepository).findBySessionIdOrderByCreatedAtAsc("s1");
+
+        clearInvocations(chatMessageRepository);
+        ResponseEntity<?> notModified = controller.getSessionMessages("s1", user, null, 100, etag.substring(2), null);
+        assertEquals(304, notModified.getStatusCodeValue());
+        verifyNoInteractions(chatMessageRepository);
+
+        // 分页请求与全量请求的 ETag 不能互相命中
+        when(chatMessageRepository.findSliceBySessionId(eq("s1"), any(Pageable.class)))
+                .thenReturn(new SliceImpl<>(Collections.<ChatMessage>emptyList(), PageRequest.of(0, 100), false));
+        assertEquals(200, controller.getSessionMessages("s1", user, 1, 100, etag, null).getStatusCodeValue());
+
+        // 写入新消息时同一事务推进了会话的 updatedAt
+        session.setUpdatedAt(UPDATED_AT.plusNanos(1000));
+        assertEquals(200, controller.getSessionMessages("s1", user, null, 100, etag, null).getStatusCodeValue());
+    }
+
+    @Test
+    void getSessionMessages_fullPastPage_isImmutableButLastPageRevalidates() {
+        ChatSession session = ChatSession.builder().id("s1").userId("u1").updatedAt(UPDATED_AT).build();
+        when(chatSessionRepository.findForMessageRead("s1")).thenReturn(Optional.of(session));
+        ChatMessage m1 = ChatMessage.builder().id(1L).sessionId("s1").role("user").content("a").build();
+        ChatMessage m2 = ChatMessage.builder().id(2L).sessionId("s1").role("assistant").content("b").build();
+        ChatMessage m3 = ChatMessage.builder().id(3L).sessionId("s1").role("user").content("c").build();
+        when(chatMessageRepository.findSliceBySessionId(eq("s1"), eq(PageRequest.of(0, 2, sortOf()))))
+                .thenReturn(new SliceImpl<>(Arrays.asList(m1, m2), PageRequest.of(0, 2), true));
+        when(chatMessageRepository.findSliceBySessionId(eq("s1"), eq(PageRequest.of(1, 2, sortOf()))))
+                .thenReturn(new SliceImpl<>(Collections.singletonList(m3), PageRequest.of(1, 2), false));
+
+        ResponseEntity<?> past = controller.getSessionMessages("s1", user, 1, 2, null, null);
+        ResponseEntity<?> last = controller.getSessionMessages("s1", user, 2, 2, null, null);
+
+        assertTrue(past.getHeaders().getFirst(HttpHeaders.CACHE_CONTROL).contains("immutable"));
+        assertTrue(last.getHeaders().getFirst(HttpHeaders.CACHE_CONTROL).contains("no-cache"));
+        verify(chatMessageRepository, never()).findBySessionIdOrderByCreatedAtAsc(anyString());
+    }
+
+    @Test
+    void messageReads_validatorAndBodyUseTheSameRoute() throws Exception {
+        // ETag 取自会话行：会话行与分页消息都可读副本，校验器不会比响应体新
+        assertTrue(ChatSessionRepository.class.getMethod("findForMessageRead", String.class)
+                .isAnnotationPresent(ReadReplica.class));
+        assertTrue(ChatMessageRepository.class.getMethod("findSliceBySessionId", String.class, Pageable.class)
+                .isAnnotationPresent(ReadReplica.class));
+    }
+
+    private static Sort sortOf() {
+        return Sort.by(Sort.Order.asc("createdAt"), Sort.Order.asc("id"));
+    }
+}
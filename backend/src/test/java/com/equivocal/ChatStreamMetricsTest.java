@@ -0,0 +1,49 @@
+package com.equivocal;
+
+import com.equivocal.metrics.ChatStreamMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ChatStreamMetricsTest {
+
+    @Test
+    void instrument_completedStream_recordsFirstEventGapsEventsAndBytes() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ChatStreamMetrics metrics = new ChatStreamMetrics(registry);
+
+        metrics.instrument(ChatStreamMetrics.AGENT, Flux.just("ab", "cd", "ef")).blockLast(Duration.ofSeconds(2));
+
+        assertEquals(1, registry.get("chat.stream.first.event").tag("stream", "agent").timer().count());
+        assertEquals(2, registry.get("chat.stream.event.gap").tag("stream", "agent").timer().count());
+        assertEquals(1, registry.get("chat.stream.duration").tags("stream", "agent", "outcome", "completed").timer().count());
+        assertEquals(3.0, registry.get("chat.stream.events").tags("stream", "agent", "outcome", "completed").summary().totalAmount());
+        assertEquals(6.0, registry.get("chat.stream.bytes").tags("stream", "agent", "outcome", "completed").summary().totalAmount());
+        assertEquals(0.0, registry.get("chat.stream.active").tag("stream", "agent").gauge().value());
+        assertNull(registry.find("chat.stream.aborted").counter());
+    }
+
+    @Test
+    void instrument_erroredAndCancelledStreams_areCountedByOutcome() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ChatStreamMetrics metrics = new ChatStreamMetrics(registry);
+
+        Flux<String> failing = Flux.just("a").concatWith(Flux.<String>error(new IllegalStateException("agent down")));
+        assertThrows(IllegalStateException.class,
+                () -> metrics.instrument(ChatStreamMetrics.CLIENT, failing).blockLast(Duration.ofSeconds(2)));
+
+        metrics.instrument(ChatStreamMetrics.CLIENT, Flux.just("a", "b", "c")).take(1).blockLast(Duration.ofSeconds(2));
+
+        assertEquals(1.0, registry.get("chat.stream.aborted").tags("stream", "client", "outcome", "error").counter().count());
+        assertEquals(1.0, registry.get("chat.stream.aborted").tags("stream", "client", "outcome", "cancelled").counter().count());
+        assertNotNull(registry.find("chat.stream.duration").tags("outcome", "error").timer());
+        assertEquals(0.0, registry.get("chat.stream.active").tag("stream", "client").gauge().value());
+    }
+}
@@ -0,0 +1,232 @@
+package com.equivocal;
+
+import com.equivocal.dto.MessageView;
+import com.equivocal.dto.SyncResponse;
+import com.equivocal.entity.ChatChange;
+import com.equivocal.entity.ChatMessage;
+import com.equivocal.entity.ChatSession;
+import com.equivocal.entity.ChatSyncCounter;
+import com.equivocal.repository.ChatChangeRepository;
+import com.equivocal.repository.ChatMessageRepository;
+import com.equivocal.repository.ChatSessionRepository;
+import com.equivocal.repository.ChatSyncCounterRepository;
+import com.equivocal.service.ChatArchiveService;
+import com.equivocal.service.ChatSyncService;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChatSyncServiceDeltaTest {
+
+    private final ChatChangeRepository chatChangeRepository = mock(ChatChangeRepository.class);
+    private final ChatSyncCounterRepository chatSyncCounterRepository = mock(ChatSyncCounterRepository.class);
+    private final ChatSessionRepository chatSessionRepository = mock(ChatSessionRepository.class);
+    private final ChatMessageRepository chatMessageRepository = mock(ChatMessageRepository.class);
+    private final ChatArchiveService chatArchiveService = mock(ChatArchiveService.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final ChatSyncService service = new ChatSyncService(chatChangeRepository, chatSyncCounterRepository,
+            chatSessionRepository, chatMessageRepository, chatArchiveService, transactionManager);
+
+    @Test
+    void call_assignsConsecutiveSeqsWithOneCounterUpdatePerWrite() {
+        when(chatSyncCounterRepository.existsById("u1")).thenReturn(true);
+        when(chatSyncCounterRepository.increment("u1", 2L)).thenReturn(1);
+        when(chatSyncCounterRepository.findSeqByUserId("u1")).thenReturn(6L);
+
+        String result = service.call("u1", changes -> {
+            changes.messageCreated(ChatMessage.builder().id(9L).sessionId("s1").build());
+            changes.sessionChanged(ChatSession.builder().id("s1").userId("u1").build());
+            return "saved";
+        });
+
+        assertEquals("saved", result);
+        verify(chatSyncCounterRepository).increment("u1", 2L);
+        List<ChatChange> saved = savedChanges();
+        assertEquals(2, saved.size());
+        assertEquals(5L, saved.get(0).getSeq());
+        assertEquals(ChatChange.Type.MESSAGE, saved.get(0).getType());
+        assertEquals(9L, saved.get(0).getMessageId());
+        assertEquals(6L, saved.get(1).getSeq());
+        assertEquals(ChatChange.Type.SESSION, saved.get(1).getType());
+        assertEquals("u1", saved.get(1).getUserId());
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void call_firstWriteCreatesCounterOnceOutsideTheWriteTransaction() {
+        when(chatSyncCounterRepository.existsById("u1")).thenReturn(false);
+        when(chatSyncCounterRepository.increment("u1", 1L)).thenReturn(1);
+        when(chatSyncCounterRepository.findSeqByUserId("u1")).thenReturn(1L, 2L);
+
+        service.run("u1", changes -> changes.sessionChanged(ChatSession.builder().id("s1").userId("u1").build()));
+        service.run("u1", changes -> changes.sessionDeleted("s1"));
+
+        ArgumentCaptor<ChatSyncCounter> counter = ArgumentCaptor.forClass(ChatSyncCounter.class);
+        verify(chatSyncCounterRepository).saveAndFlush(counter.capture());
+        assertEquals(0L, counter.getValue().getSeq());
+        verify(chatSyncCounterRepository, times(1)).existsById("u1");
+        verify(chatSyncCounterRepository, times(2)).increment("u1", 1L);
+    }
+
+    @Test
+    void call_whenChangeLogFails_propagatesAndRollsBackTheEntityWrite() {
+        when(chatSyncCounterRepository.existsById("u1")).thenReturn(true);
+        when(chatSyncCounterRepository.increment("u1", 1L)).thenThrow(new QueryTimeoutException("lock wait timeout"));
+        ChatMessage message = ChatMessage.builder().id(1L).sessionId("s1").build();
+        when(chatMessageRepository.save(message)).thenReturn(message);
+
+        assertThrows(QueryTimeoutException.class, () -> service.run("u1", changes ->
+                changes.messageCreated(chatMessageRepository.save(message))));
+
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+        verify(chatChangeRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void deleteUser_removesChangesAndCounterInTheSameTransactionAndForgetsTheCounter() {
+        when(chatSyncCounterRepository.existsById("u1")).thenReturn(true);
+        service.run("u1", changes -> { });
+        List<String> steps = new ArrayList<>();
+        when(chatChangeRepository.deleteByUserId("u1")).thenAnswer(invocation -> {
+            steps.add("changes");
+            return 3;
+        });
+
+        service.deleteUser("u1", () -> steps.add("user"));
+
+        assertEquals(Arrays.asList("user", "changes"), steps);
+        verify(chatSyncCounterRepository).deleteByUserId("u1");
+        verify(transactionManager, times(2)).commit(any());
+        // 计数行已删除：同一 id 再写变更时重新检查并创建
+        when(chatSyncCounterRepository.existsById("u1")).thenReturn(false);
+        service.run("u1", changes -> { });
+        verify(chatSyncCounterRepository, times(2)).existsById("u1");
+    }
+
+    @Test
+    void call_withoutChanges_doesNotTouchTheCounter() {
+        when(chatSyncCounterRepository.existsById("u1")).thenReturn(true);
+
+        service.run("u1", changes -> { });
+
+        verify(chatSyncCounterRepository, never()).increment(anyString(), anyLong());
+        verify(chatChangeRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void changesSince_foldsChangesAndDropsMessagesOfDeletedSessions() {
+        when(chatSyncCounterRepository.findSeqByUserId("u1")).thenReturn(15L);
+        when(chatChangeRepository.findByUserIdAndSeqGreaterThanOrderBySeqAsc(eq("u1"), eq(10L), any(Pageable.class)))
+                .thenReturn(Arrays.asList(
+                        change(11, ChatChange.Type.SESSION, "s1", null),
+                        change(12, ChatChange.Type.MESSAGE, "s1", 100L),
+                        change(13, ChatChange.Type.SESSION, "s2", null),
+                        change(14, ChatChange.Type.MESSAGE, "s2", 101L),
+                        change(15, ChatChange.Type.SESSION_DELETED, "s2", null)));
+        when(chatSessionRepository.findAllById(anyCollection()))
+                .thenReturn(Collections.singletonList(ChatSession.builder().id("s1").userId("u1").build()));
+        when(chatMessageRepository.findAllById(anyCollection())).thenReturn(new ArrayList<>(Arrays.asList(
+                ChatMessage.builder().id(101L).sessionId("s2").build(),
+                ChatMessage.builder().id(100L).sessionId("s1").build())));
+
+        SyncResponse response = service.changesSince("u1", 10L, 500);
+
+        assertEquals(15L, response.getCursor());
+        assertFalse(response.isReset());
+        assertFalse(response.isHasMore());
+        assertEquals(1, response.getSessions().size());
+        assertEquals("s1", response.getSessions().get(0).getId());
+        assertEquals(1, response.getMessages().size());
+        assertEquals(100L, response.getMessages().get(0).getId());
+        assertEquals(Collections.singletonList("s2"), response.getDeletedSessionIds());
+    }
+
+    @Test
+    void changesSince_readsMessagesOfArchivedSessionsFromTheArchive() {
+        when(chatSyncCounterRepository.findSeqByUserId("u1")).thenReturn(12L);
+        when(chatChangeRepository.findByUserIdAndSeqGreaterThanOrderBySeqAsc(eq("u1"), eq(10L), any(Pageable.class)))
+                .thenReturn(Arrays.asList(
+                        change(11, ChatChange.Type.MESSAGE, "s1", 100L),
+                        change(12, ChatChange.Type.MESSAGE, "s2", 101L)));
+        // s1 已归档，消息不在热表
+        when(chatMessageRepository.findAllById(anyCollection())).thenReturn(Collections.singletonList(
+                ChatMessage.builder().id(101L).sessionId("s2").build()));
+        ChatSession archived = ChatSession.builder().id("s1").userId("u1").archivedAt(LocalDateTime.now()).build();
+        when(chatSessionRepository.findAllById(anyCollection())).thenReturn(Collections.singletonList(archived));
+        when(chatArchiveService.findMessages(archived)).thenReturn(Arrays.asList(
+                ChatMessage.builder().id(99L).sessionId("s1").build(),
+                ChatMessage.builder().id(100L).sessionId("s1").build()));
+
+        SyncResponse response = service.changesSince("u1", 10L, 500);
+
+        assertEquals(Arrays.asList(100L, 101L), response.getMessages().stream()
+                .map(MessageView::getId).collect(Collectors.toList()));
+        assertFalse(response.isReset());
+    }
+
+    @Test
+    void changesSince_upToDateCursorSkipsChangeQuery() {
+        when(chatSyncCounterRepository.findSeqByUserId("u1")).thenReturn(7L);
+
+        SyncResponse response = service.changesSince("u1", 7L, 500);
+
+        assertEquals(7L, response.getCursor());
+        assertTrue(response.getSessions().isEmpty());
+        verify(chatChangeRepository, never()).findByUserIdAndSeqGreaterThanOrderBySeqAsc(anyString(), anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    void changesSince_prunedOrUnknownCursorAsksClientToReset() {
+        when(chatSyncCounterRepository.findSeqByUserId("u1")).thenReturn(50L);
+        List<ChatChange> afterPrune = Collections.singletonList(change(40, ChatChange.Type.SESSION, "s1", null));
+        when(chatChangeRepository.findByUserIdAndSeqGreaterThanOrderBySeqAsc(eq("u1"), eq(3L), any(Pageable.class)))
+                .thenReturn(afterPrune);
+
+        SyncResponse pruned = service.changesSince("u1", 3L, 500);
+        assertTrue(pruned.isReset());
+        assertEquals(50L, pruned.getCursor());
+
+        SyncResponse unknown = service.changesSince("u1", 99L, 500);
+        assertTrue(unknown.isReset());
+        assertEquals(50L, unknown.getCursor());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ChatChange> savedChanges() {
+        ArgumentCaptor<Iterable<ChatChange>> captor = ArgumentCaptor.forClass(Iterable.class);
+        verify(chatChangeRepository).saveAll(captor.capture());
+        List<ChatChange> saved = new ArrayList<>();
+        captor.getValue().forEach(saved::add);
+        return saved;
+    }
+
+    private static ChatChange change(long seq, ChatChange.Type type, String sessionId, Long messageId) {
+        return ChatChange.builder().userId("u1").seq(seq).type(type).sessionId(sessionId).messageId(messageId).build();
+    }
+}
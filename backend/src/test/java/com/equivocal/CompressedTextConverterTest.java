@@ -0,0 +1,113 @@
+package com.equivocal;
+
+import com.equivocal.entity.ChatMessage;
+import com.equivocal.entity.CompressedTextConverter;
+import com.equivocal.repository.ChatMessageRepository;
+import com.equivocal.service.MessageCompressionMigrator;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CompressedTextConverterTest {
+
+    private static final String LONG_ANSWER = repeat("根据《民法典》第七百零三条，租赁合同是出租人将租赁物交付承租人使用、收益，承租人支付租金的合同。", 40);
+
+    @Test
+    void enabled_compressesLargeContentAndRoundTrips() {
+        CompressedTextConverter converter = converter(true);
+
+        String stored = converter.convertToDatabaseColumn(LONG_ANSWER);
+
+        assertTrue(CompressedTextConverter.isCompressed(stored));
+        assertTrue(stored.length() < LONG_ANSWER.getBytes(StandardCharsets.UTF_8).length / 2);
+        assertEquals(LONG_ANSWER, converter.convertToEntityAttribute(stored));
+    }
+
+    @Test
+    void shortContentAndDisabledConverter_storePlainText() {
+        assertEquals("你好", converter(true).convertToDatabaseColumn("你好"));
+        assertEquals(LONG_ANSWER, converter(false).convertToDatabaseColumn(LONG_ANSWER));
+        assertNull(converter(true).convertToDatabaseColumn(null));
+    }
+
+    @Test
+    void legacyRowsAndMarkerLikeContent_readBackUnchanged() {
+        CompressedTextConverter converter = converter(false);
+
+        // 旧数据原样读取
+        assertEquals("普通旧消息", converter.convertToEntityAttribute("普通旧消息"));
+        // 以标记字符开头的明文会被转义，读取时还原
+        String tricky = "\u0001D 不是压缩内容";
+        String stored = converter.convertToDatabaseColumn(tricky);
+        assertFalse(CompressedTextConverter.isCompressed(stored));
+        assertEquals(tricky, converter.convertToEntityAttribute(stored));
+        // 关闭压缩后仍能读取已压缩的行
+        assertEquals(LONG_ANSWER, converter.convertToEntityAttribute(converter(true).convertToDatabaseColumn(LONG_ANSWER)));
+    }
+
+    @Test
+    void migrator_rewritesOnlyCompressibleRowsInBatches() {
+        ChatMessageRepository repository = mock(ChatMessageRepository.class);
+        CompressedTextConverter converter = converter(true);
+        MessageCompressionMigrator migrator = new MessageCompressionMigrator(repository, converter);
+        ReflectionTestUtils.setField(migrator, "batchSize", 2);
+        ReflectionTestUtils.setField(migrator, "batchPauseMs", 0L);
+
+        when(repository.findUncompressedIdsAfter(eq(0L), anyInt(), anyString(), eq(2))).thenReturn(Arrays.asList(1L, 2L));
+        when(repository.findUncompressedIdsAfter(eq(2L), anyInt(), anyString(), eq(2))).thenReturn(Collections.singletonList(5L));
+        when(repository.findAllById(Arrays.asList(1L, 2L))).thenReturn(Arrays.asList(message(1L, LONG_ANSWER), message(2L, LONG_ANSWER)));
+        when(repository.findAllById(Collections.singletonList(5L))).thenReturn(Collections.singletonList(message(5L, randomAscii(2048))));
+        when(repository.updateStoredContent(anyLong(), anyString())).thenReturn(1);
+
+        assertEquals(2, migrator.migrate());
+        verify(repository).updateStoredContent(eq(1L), anyString());
+        verify(repository).updateStoredContent(eq(2L), anyString());
+        // 压缩后不够小的行保持明文
+        verify(repository, never()).updateStoredContent(eq(5L), anyString());
+    }
+
+    private static CompressedTextConverter converter(boolean enabled) {
+        CompressedTextConverter converter = new CompressedTextConverter();
+        ReflectionTestUtils.setField(converter, "enabled", enabled);
+        ReflectionTestUtils.setField(converter, "minChars", 512);
+        return converter;
+    }
+
+    private static ChatMessage message(Long id, String content) {
+        return ChatMessage.builder().id(id).sessionId("s").role("assistant").content(content).build();
+    }
+
+    private static String repeat(String text, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(text);
+        }
+        return builder.toString();
+    }
+
+    private static String randomAscii(int length) {
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('!' + random.nextInt(90)));
+        }
+        return builder.toString();
+    }
+}
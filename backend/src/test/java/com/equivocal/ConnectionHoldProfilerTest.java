@@ -0,0 +1,141 @@
+package com.equivocal;
+
+import com.equivocal.metrics.ConnectionHoldProfiler;
+import com.equivocal.metrics.ProfilingDataSource;
+import com.equivocal.security.PasswordHashExecutor;
+import com.equivocal.support.ConnectionHoldAssertions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConnectionHoldProfilerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ConnectionHoldProfiler profiler = new ConnectionHoldProfiler(registry, 1000);
+
+    @AfterEach
+    void clearThreadState() {
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        TransactionSynchronizationManager.setCurrentTransactionName(null);
+        ConnectionHoldProfiler.setCurrentEndpoint(null);
+    }
+
+    @Test
+    void remoteCallWhileHoldingConnection_isFlaggedPerTransactionAndEndpoint() throws Exception {
+        DataSource target = mock(DataSource.class);
+        Connection rawConnection = mock(Connection.class);
+        PreparedStatement rawStatement = mock(PreparedStatement.class);
+        when(target.getConnection()).thenReturn(rawConnection);
+        when(rawConnection.prepareStatement("select 1")).thenReturn(rawStatement);
+
+        ConnectionHoldProfiler.setCurrentEndpoint("POST /api/auth/send-code");
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.setCurrentTransactionName("VerificationService.sendVerificationCode");
+
+        Connection connection = new ProfilingDataSource(target, profiler).getConnection();
+        connection.prepareStatement("select 1").executeQuery();
+        ConnectionHoldProfiler.markSlowOperation(ConnectionHoldProfiler.WEBCLIENT);
+        connection.close();
+
+        verify(rawStatement).executeQuery();
+        verify(rawConnection).close();
+
+        assertEquals(1, profiler.getRecentViolations().size());
+        ConnectionHoldProfiler.LeaseRecord record = profiler.getRecentViolations().get(0);
+        assertEquals("VerificationService.sendVerificationCode", record.getTransaction());
+        assertEquals("POST /api/auth/send-code", record.getEndpoint());
+        assertEquals(1, record.getStatements());
+        assertEquals(1.0, registry.get("db.connection.slow.operation")
+                .tag("kind", "webclient")
+                .tag("endpoint", "POST /api/auth/send-code")
+                .counter().count());
+        assertEquals(1L, registry.get("db.connection.hold")
+                .tag("transaction", "VerificationService.sendVerificationCode")
+                .timer().count());
+
+        assertThrows(AssertionError.class,
+                () -> ConnectionHoldAssertions.assertNoSlowOperationsWhileHoldingConnection(profiler));
+    }
+
+    @Test
+    void passwordHashSubmission_isFlaggedOnlyWhileHoldingConnection() throws Exception {
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenReturn(mock(Connection.class));
+        PasswordHashExecutor executor = new PasswordHashExecutor(1, 4, registry);
+
+        try {
+            Connection connection = new ProfilingDataSource(target, profiler).getConnection();
+            connection.close();
+            executor.submit("hash", () -> "x").join();
+
+            ConnectionHoldAssertions.assertNoSlowOperationsWhileHoldingConnection(profiler);
+            ConnectionHoldAssertions.assertMaxHoldMillis(profiler, null, 1000);
+
+            Connection held = new ProfilingDataSource(target, profiler).getConnection();
+            executor.submit("hash", () -> "y").join();
+            held.close();
+
+            assertEquals(1, profiler.getRecentViolations().size());
+            assertEquals(ConnectionHoldProfiler.PASSWORD_HASH,
+                    profiler.getRecentViolations().get(0).getSlowOperations().get(0));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void connectionUsedAndClosedOnAnotherThread_isRemovedFromTheBorrowingThread() throws Exception {
+        DataSource target = mock(DataSource.class);
+        Connection rawConnection = mock(Connection.class);
+        when(target.getConnection()).thenReturn(rawConnection);
+        when(rawConnection.prepareStatement("select 1")).thenReturn(mock(PreparedStatement.class));
+        ExecutorService workers = Executors.newFixedThreadPool(4);
+
+        try {
+            Connection connection = new ProfilingDataSource(target, profiler).getConnection();
+            CompletableFuture<?>[] statements = new CompletableFuture<?>[4];
+            for (int i = 0; i < statements.length; i++) {
+                statements[i] = CompletableFuture.runAsync(() -> {
+                    try {
+                        for (int j = 0; j < 250; j++) {
+                            connection.prepareStatement("select 1").executeQuery();
+                        }
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }, workers);
+            }
+            CompletableFuture.allOf(statements).join();
+            CompletableFuture.runAsync(() -> {
+                try {
+                    connection.close();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }, workers).join();
+
+            // 借出线程上已没有活动 lease：此后的慢操作不应记到已归还的连接上
+            ConnectionHoldProfiler.markSlowOperation(ConnectionHoldProfiler.WEBCLIENT);
+
+            assertEquals(1, profiler.getRecentLeases().size());
+            assertEquals(1000, profiler.getRecentLeases().get(0).getStatements());
+            ConnectionHoldAssertions.assertNoSlowOperationsWhileHoldingConnection(profiler);
+        } finally {
+            workers.shutdown();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.equivocal;
+
+import com.equivocal.entity.ChatMessage;
+import com.equivocal.entity.ChatSession;
+import com.equivocal.repository.ChatMessageRepository;
+import com.equivocal.repository.ChatSessionRepository;
+import com.equivocal.service.AgentService;
+import com.equivocal.service.ContextCompactionService;
+import com.equivocal.service.ContextWindowBuilder;
+import com.equivocal.service.TokenEstimator;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ContextCompactionServiceTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    private final ChatSessionRepository chatSessionRepository = mock(ChatSessionRepository.class);
+    private final ChatMessageRepository chatMessageRepository = mock(ChatMessageRepository.class);
+    private final AgentService agentService = mock(AgentService.class);
+    private final ContextCompactionService service =
+            new ContextCompactionService(chatSessionRepository, chatMessageRepository, agentService,
+                new ContextWindowBuilder(new TokenEstimator()));
+
+    @Test
+    void buildContext_summarizedSession_sendsSummaryPlusMessagesAfterCreatedAtIdBoundary() {
+        ChatSession session = ChatSession.builder().id("s1").userId("u1")
+                .summary("用户在排查登录问题").summarizedUpToCreatedAt(BASE.plusSeconds(9)).summarizedUpToId(10L).build();
+        when(chatMessageRepository.findAfterBoundary("s1", BASE.plusSeconds(9), 10L))
+                .thenReturn(messages(11, 3));
+
+        List<Map<String, Object>> context = service.buildContext(session);
+
+        assertEquals(4, context.size());
+        assertEquals("system", context.get(0).get("role"));
+        assertTrue(((String) context.get(0).get("content")).endsWith("用户在排查登录问题"));
+        assertEquals("message 11", context.get(1).get("content"));
+        verify(chatMessageRepository, never()).findBySessionIdOrderByCreatedAtAscIdAsc(anyString());
+        verify(chatMessageRepository, never()).findBySessionIdAndIdGreaterThanOrderByCreatedAtAsc(anyString(), anyLong());
+        verify(agentService, never()).summarize(anyString(), anyString(), anyList());
+    }
+
+    @Test
+    void buildContext_legacySummaryWithoutCreatedAt_fallsBackToIdBoundary() {
+        ChatSession session = ChatSession.builder().id("s1").userId("u1")
+                .summary("旧摘要").summarizedUpToId(10L).build();
+        when(chatMessageRepository.findBySessionIdAndIdGreaterThanOrderByCreatedAtAsc("s1", 10L))
+                .thenReturn(messages(11, 2));
+
+        assertEquals(3, service.buildContext(session).size());
+        verify(chatMessageRepository, never()).findAfterBoundary(anyString(), any(LocalDateTime.class), anyLong());
+    }
+
+    @Test
+    void buildContext_longSession_sendsEverythingAndSummarizesOlderTurnsInBackground() {
+        ChatSession session = ChatSession.builder().id("s2").userId("u1").build();
+        when(chatMessageRepository.findBySessionIdOrderByCreatedAtAscIdAsc("s2")).thenReturn(messages(1, 50));
+        when(agentService.summarize(eq("u1"), isNull(), anyList())).thenReturn(Mono.just("摘要"));
+
+        List<Map<String, Object>> context = service.buildContext(session);
+
+        // 摘要生成前本轮仍发送全部未摘要消息
+        assertEquals(50, context.size());
+        // 50 条中保留最近 12 条原文，前 38 条（id 1..38）并入摘要，边界为第 38 条的 (createdAt, id)
+        verify(chatSessionRepository, timeout(2000)).updateSummary("s2", "摘要", BASE.plusSeconds(37), 38L);
+    }
+
+    @Test
+    void buildContext_idsNotMonotonicInTime_boundaryIsLastSummarizedMessageInOrder() {
+        ChatSession session = ChatSession.builder().id("s4").userId("u1").build();
+        // 按 (createdAt, id) 排好序，但 ID 与时间顺序相反（TiDB 自增 ID 不保证单调）
+        List<ChatMessage> ordered = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            ordered.add(ChatMessage.builder().id(1000L - i).sessionId("s4").role(i % 2 == 0 ? "user" : "assistant")
+                    .content("message " + i).contentType("text").createdAt(BASE.plusSeconds(i)).build());
+        }
+        when(chatMessageRepository.findBySessionIdOrderByCreatedAtAscIdAsc("s4")).thenReturn(ordered);
+        when(agentService.summarize(eq("u1"), isNull(), anyList())).thenReturn(Mono.just("摘要"));
+
+        service.buildContext(session);
+
+        // 第 38 条的 ID 为 963；若只按 id > 963 读取，会重发已摘要的前 37 条并漏掉最近 12 条
+        verify(chatSessionRepository, timeout(2000)).updateSummary("s4", "摘要", BASE.plusSeconds(37), 963L);
+    }
+
+    @Test
+    void buildContext_shortSession_doesNotSummarize() {
+        ChatSession session = ChatSession.builder().id("s3").userId("u1").build();
+        when(chatMessageRepository.findBySessionIdOrderByCreatedAtAscIdAsc("s3")).thenReturn(messages(1, 5));
+
+        assertEquals(5, service.buildContext(session).size());
+        verify(agentService, never()).summarize(anyString(), anyString(), anyList());
+        verify(agentService, never()).summarize(anyString(), isNull(), anyList());
+    }
+
+    private static List<ChatMessage> messages(long firstId, int count) {
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        List<ChatMessage> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            long id = firstId + i;
+            messages.add(ChatMessage.builder().id(id).sessionId("s").role(i % 2 == 0 ? "user" : "assistant")
+                    .content("message " + id).contentType("text").createdAt(BASE.plusSeconds(id - 1)).build());
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,88 @@
+package com.equivocal;
+
+import com.equivocal.entity.ChatMessage;
+import com.equivocal.service.ContextWindowBuilder;
+import com.equivocal.service.TokenEstimator;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContextWindowBuilderBudgetTest {
+
+    @Test
+    void estimate_countsCjkHigherThanAsciiAndIgnoresNull() {
+        assertEquals(0, TokenEstimator.estimateText(null));
+        // 4 个 ASCII 字母约 1 token，4 个汉字约 6 token
+        assertEquals(1, TokenEstimator.estimateText("abcd"));
+        assertEquals(6, TokenEstimator.estimateText("民法典第"));
+        assertTrue(TokenEstimator.estimateText("合同到期后房东拒绝退还押金") > TokenEstimator.estimateText("deposit refused"));
+    }
+
+    @Test
+    void select_withinBudget_returnsSameList() {
+        ContextWindowBuilder builder = builder(1000);
+        List<ChatMessage> messages = conversation(6, "短消息");
+
+        assertSame(messages, builder.select(messages, 0));
+    }
+
+    @Test
+    void select_overBudget_keepsSystemFirstTurnAndMostRecentMessages() {
+        ContextWindowBuilder builder = builder(200);
+        List<ChatMessage> messages = new ArrayList<>();
+        messages.add(message(1L, "system", "你是法律助手"));
+        messages.addAll(conversation(20, "这是一段用来占用预算的对话内容，长度大约二十个字。"));
+
+        List<ChatMessage> selected = builder.select(messages, 0);
+
+        int total = 0;
+        for (ChatMessage message : selected) {
+            total += new TokenEstimator().estimate(message);
+        }
+        assertTrue(total <= 200, "window exceeds budget: " + total);
+        assertEquals("system", selected.get(0).getRole());
+        assertEquals(Long.valueOf(100), selected.get(1).getId());
+        assertEquals(Long.valueOf(101), selected.get(2).getId());
+        assertEquals(Long.valueOf(119), selected.get(selected.size() - 1).getId());
+        // 中间连续：最近的消息没有空洞
+        for (int i = 4; i < selected.size(); i++) {
+            assertEquals(selected.get(i - 1).getId() + 1, (long) selected.get(i).getId());
+        }
+        assertTrue(selected.size() < messages.size());
+    }
+
+    @Test
+    void select_reservedTokensShrinkTheWindow() {
+        ContextWindowBuilder builder = builder(300);
+        List<ChatMessage> messages = conversation(30, "这是一段用来占用预算的对话内容。");
+
+        int withoutSummary = builder.select(messages, 0).size();
+        int withSummary = builder.select(messages, 150).size();
+
+        assertTrue(withSummary < withoutSummary);
+    }
+
+    private static ContextWindowBuilder builder(int maxTokens) {
+        ContextWindowBuilder builder = new ContextWindowBuilder(new TokenEstimator());
+        ReflectionTestUtils.setField(builder, "maxTokens", maxTokens);
+        return builder;
+    }
+
+    private static List<ChatMessage> conversation(int count, String content) {
+        List<ChatMessage> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            messages.add(message(100L + i, i % 2 == 0 ? "user" : "assistant", content));
+        }
+        return messages;
+    }
+
+    private static ChatMessage message(Long id, String role, String content) {
+        return ChatMessage.builder().id(id).sessionId("s").role(role).content(content).contentType("text").build();
+    }
+}
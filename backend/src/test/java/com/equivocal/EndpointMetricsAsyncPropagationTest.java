@@ -0,0 +1,200 @@
+package com.equivocal;
+
+import com.equivocal.controller.AuthController;
+import com.equivocal.controller.ChatController;
+import com.equivocal.datasource.ReadYourWritesTracker;
+import com.equivocal.entity.ChatMessage;
+import com.equivocal.entity.ChatSession;
+import com.equivocal.entity.User;
+import com.equivocal.metrics.ChatStreamMetrics;
+import com.equivocal.metrics.ConnectionHoldProfiler;
+import com.equivocal.metrics.EndpointTrackingInterceptor;
+import com.equivocal.metrics.PerformanceRecorder;
+import com.equivocal.repository.ChatMessageRepository;
+import com.equivocal.repository.ChatSessionRepository;
+import com.equivocal.repository.UserRepository;
+import com.equivocal.security.AuthPersistenceExecutor;
+import com.equivocal.security.InMemoryRateLimiter;
+import com.equivocal.security.JwtService;
+import com.equivocal.security.PasswordHashExecutor;
+import com.equivocal.security.PasswordService;
+import com.equivocal.service.AgentService;
+import com.equivocal.service.AuthService;
+import com.equivocal.service.ChatArchiveService;
+import com.equivocal.service.ChatSyncService;
+import com.equivocal.service.ContextCompactionService;
+import com.equivocal.service.SessionLanes;
+import com.equivocal.service.VerificationService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.method.annotation.AuthenticationPrincipalArgumentResolver;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 异步端点在其他线程（boundedElastic、密码哈希与认证持久化线程池）上执行的 SQL 计入该请求、带上该端点标签
+ */
+class EndpointMetricsAsyncPropagationTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final EndpointTrackingInterceptor interceptor = new EndpointTrackingInterceptor(new PerformanceRecorder(registry));
+
+    /**
+     * 每条模拟 SQL 执行时的线程与端点标签
+     */
+    private final List<String> statements = Collections.synchronizedList(new ArrayList<>());
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void chatStream_countsStatementsFromBoundedElastic() throws Exception {
+        ChatSessionRepository chatSessionRepository = mock(ChatSessionRepository.class);
+        ChatMessageRepository chatMessageRepository = mock(ChatMessageRepository.class);
+        ChatSyncService chatSyncService = mock(ChatSyncService.class);
+        ContextCompactionService contextCompactionService = mock(ContextCompactionService.class);
+        AgentService agentService = mock(AgentService.class);
+        ChatSession session = ChatSession.builder().id("s1").userId("u1").title("合同纠纷").build();
+        when(chatSessionRepository.findById("s1")).thenAnswer(statement(invocation -> Optional.of(session)));
+        when(chatSessionRepository.save(any(ChatSession.class))).thenAnswer(statement(invocation -> invocation.getArgument(0)));
+        when(chatMessageRepository.save(any(ChatMessage.class))).thenAnswer(statement(invocation -> invocation.getArgument(0)));
+        when(contextCompactionService.buildContext(any(ChatSession.class))).thenAnswer(statement(invocation -> Collections.emptyList()));
+        doAnswer(invocation -> {
+            invocation.<Consumer<ChatSyncService.Changes>>getArgument(1).accept(new ChatSyncService.Changes());
+            return null;
+        }).when(chatSyncService).run(anyString(), any());
+        when(chatSyncService.call(anyString(), any())).thenAnswer(invocation ->
+                invocation.<Function<ChatSyncService.Changes, Object>>getArgument(1).apply(new ChatSyncService.Changes()));
+        // 模拟 WebClient：内容在事件循环线程上发出并完成
+        Scheduler eventLoop = Schedulers.newSingle("reactor-http-nio");
+        when(agentService.streamChat(eq("u1"), eq("s1"), anyList())).thenReturn(Flux.just(
+                new ObjectMapper().createObjectNode().put("type", "content").put("content", "好的。").toString())
+                .subscribeOn(eventLoop));
+        ChatController controller = new ChatController(agentService, chatSessionRepository, chatMessageRepository,
+                mock(UserRepository.class), new ChatStreamMetrics(new SimpleMeterRegistry()), new ObjectMapper(),
+                chatSyncService, contextCompactionService, mock(ChatArchiveService.class), mock(ReadYourWritesTracker.class),
+                new SessionLanes(5000, new SimpleMeterRegistry()));
+        User user = User.builder().id("u1").email("u1@example.com").password("x").role(1).build();
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, Collections.emptyList()));
+
+        try {
+            MockMvc mvc = MockMvcBuilders.standaloneSetup(controller)
+                    .setCustomArgumentResolvers(new AuthenticationPrincipalArgumentResolver())
+                    .addInterceptors(interceptor)
+                    .build();
+            MvcResult started = mvc.perform(post("/api/chat")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .accept(MediaType.TEXT_EVENT_STREAM)
+                            .content("{\"version\":2,\"sessionId\":\"s1\",\"message\":{\"content\":\"你好\"}}"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            mvc.perform(asyncDispatch(started)).andExpect(status().isOk());
+        } finally {
+            eventLoop.dispose();
+        }
+
+        // 请求线程查会话 1 条；boundedElastic 上保存提问 3 条、保存回复 3 条
+        assertEquals(8, statements.size(), "statements: " + statements);
+        assertTrue(statements.stream().anyMatch(statement -> statement.startsWith("boundedElastic")), "statements: " + statements);
+        assertAllTagged("POST /api/chat");
+        assertEquals(8.0, registry.get("endpoint.sql.statements").tag("endpoint", "POST /api/chat").summary().totalAmount());
+    }
+
+    @Test
+    void register_countsStatementsFromTheAuthPersistencePool() throws Exception {
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findByEmail("new@example.com")).thenAnswer(statement(invocation -> Optional.empty()));
+        when(userRepository.save(any(User.class))).thenAnswer(statement(invocation -> invocation.getArgument(0)));
+        VerificationService verificationService = mock(VerificationService.class);
+        when(verificationService.checkCode("new@example.com", "123456"))
+                .thenReturn(new VerificationService.VerificationResult(true, "ok"));
+        when(verificationService.consumeCode(eq("new@example.com"), eq("123456"), any(Runnable.class))).thenAnswer(invocation -> {
+            invocation.getArgument(2, Runnable.class).run();
+            return new VerificationService.VerificationResult(true, "ok");
+        });
+        InMemoryRateLimiter rateLimiter = mock(InMemoryRateLimiter.class);
+        when(rateLimiter.allow(anyString())).thenReturn(true);
+        JwtService jwtService = mock(JwtService.class);
+        when(jwtService.generateToken(any(), any(), any())).thenReturn("token");
+        PasswordHashExecutor hashExecutor = new PasswordHashExecutor(1, 4, new SimpleMeterRegistry());
+        AuthPersistenceExecutor persistenceExecutor = new AuthPersistenceExecutor(1, 4, new SimpleMeterRegistry());
+        AuthService authService = new AuthService(userRepository, new PasswordService(hashExecutor), jwtService,
+                verificationService, rateLimiter, persistenceExecutor);
+
+        try {
+            MockMvc mvc = MockMvcBuilders.standaloneSetup(new AuthController(authService))
+                    .addInterceptors(interceptor)
+                    .build();
+            MvcResult started = mvc.perform(post("/api/auth/login")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"email\":\"new@example.com\",\"password\":\"pass123\",\"code\":\"123456\"}"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            mvc.perform(asyncDispatch(started)).andExpect(status().isOk());
+        } finally {
+            hashExecutor.shutdown();
+            persistenceExecutor.shutdown();
+        }
+
+        assertEquals(2, statements.size(), "statements: " + statements);
+        assertTrue(statements.stream().anyMatch(statement -> statement.startsWith("auth-persistence-")), "statements: " + statements);
+        assertAllTagged("POST /api/auth/login");
+        assertEquals(2.0, registry.get("endpoint.sql.statements").tag("endpoint", "POST /api/auth/login").summary().totalAmount());
+    }
+
+    /**
+     * 模拟 ProfilingDataSource：每次调用计一条 SQL，并记下线程与端点标签
+     */
+    private <T> Answer<T> statement(Answer<T> result) {
+        return invocation -> {
+            PerformanceRecorder.recordStatement();
+            statements.add(Thread.currentThread().getName() + "@" + ConnectionHoldProfiler.currentEndpoint());
+            return result.answer(invocation);
+        };
+    }
+
+    private void assertAllTagged(String endpoint) {
+        HashSet<String> tags = new HashSet<>();
+        synchronized (statements) {
+            for (String statement : statements) {
+                tags.add(statement.substring(statement.indexOf('@') + 1));
+            }
+        }
+        assertEquals(Collections.singleton(endpoint), tags);
+    }
+}
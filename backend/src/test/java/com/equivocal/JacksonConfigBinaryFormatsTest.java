@@ -0,0 +1,122 @@
+package com.equivocal;
+
+import com.equivocal.config.JacksonConfig;
+import com.equivocal.dto.MessageListResponse;
+import com.equivocal.dto.MessageView;
+import com.equivocal.dto.UserPageResponse;
+import com.equivocal.dto.UserView;
+import com.equivocal.entity.ChatMessage;
+import com.equivocal.entity.User;
+import com.equivocal.service.MessageHistoryStreamer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JacksonConfigBinaryFormatsTest {
+
+    private static final MediaType SMILE = MediaType.valueOf("application/x-jackson-smile");
+
+    private final JacksonConfig config = new JacksonConfig();
+    private final MappingJackson2HttpMessageConverter json = new MappingJackson2HttpMessageConverter(builder().build());
+    private final MappingJackson2CborHttpMessageConverter cbor = config.cborHttpMessageConverter(builder());
+    private final MappingJackson2SmileHttpMessageConverter smile = config.smileHttpMessageConverter(builder());
+
+    @Test
+    void binaryConverters_followJson_soWildcardAcceptStillGetsJson() {
+        List<HttpMessageConverter<?>> converters = new HttpMessageConverters(cbor, smile, json).getConverters();
+
+        int jsonIndex = converters.indexOf(json);
+        assertTrue(jsonIndex >= 0);
+        assertTrue(converters.indexOf(smile) > jsonIndex);
+        assertTrue(converters.indexOf(cbor) > jsonIndex);
+    }
+
+    @Test
+    void binaryEncodings_decodeToTheSameDocumentAsJson() throws Exception {
+        MessageListResponse response = new MessageListResponse(MessageView.ofAll(messages()));
+
+        byte[] cborBytes = cbor.getObjectMapper().writeValueAsBytes(response);
+        byte[] smileBytes = smile.getObjectMapper().writeValueAsBytes(response);
+        String jsonText = json.getObjectMapper().writeValueAsString(response);
+
+        assertEquals(json.getObjectMapper().readTree(jsonText), cbor.getObjectMapper().readTree(cborBytes));
+        assertEquals(json.getObjectMapper().readTree(jsonText), smile.getObjectMapper().readTree(smileBytes));
+        // 日期与 JSON 一样输出为 ISO 字符串
+        assertEquals("2024-05-01T12:30:00",
+                cbor.getObjectMapper().readTree(cborBytes).at("/messages/0/createdAt").asText());
+    }
+
+    @Test
+    void binaryEncodings_areSmallerThanJson() throws Exception {
+        LocalDateTime time = LocalDateTime.of(2024, 5, 1, 12, 30);
+        List<UserView> userViews = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            userViews.add(UserView.of(User.builder().id("user_" + i).email("user" + i + "@example.com")
+                    .password("x").role(1).emailVerified(i % 3 != 0).createdAt(time).updatedAt(time).build()));
+        }
+        Object[] payloads = {
+                new MessageListResponse(MessageView.ofAll(messages())),
+                new UserPageResponse(userViews, 20, 1, 20, 1)
+        };
+
+        for (Object payload : payloads) {
+            int jsonBytes = json.getObjectMapper().writeValueAsBytes(payload).length;
+            int cborBytes = cbor.getObjectMapper().writeValueAsBytes(payload).length;
+            int smileBytes = smile.getObjectMapper().writeValueAsBytes(payload).length;
+            String sizes = payload.getClass().getSimpleName() + ": json=" + jsonBytes + " cbor=" + cborBytes + " smile=" + smileBytes;
+            assertTrue(cborBytes < jsonBytes, sizes);
+            // Smile 复用重复出现的字段名，比 CBOR 更小
+            assertTrue(smileBytes < cborBytes, sizes);
+        }
+    }
+
+    @Test
+    void historyStreamer_negotiatesLikeSpringMvc() {
+        MessageHistoryStreamer streamer = new MessageHistoryStreamer(null, Arrays.asList(cbor, smile, json), null, 500);
+
+        assertEquals(MediaType.APPLICATION_JSON, streamer.negotiate(null));
+        assertEquals(MediaType.APPLICATION_JSON, streamer.negotiate("*/*"));
+        assertEquals(MediaType.APPLICATION_JSON, streamer.negotiate("application/*"));
+        assertEquals(MediaType.APPLICATION_CBOR, streamer.negotiate("application/cbor"));
+        assertEquals(SMILE, streamer.negotiate("application/json;q=0.5, application/x-jackson-smile"));
+        assertEquals(MediaType.APPLICATION_CBOR, streamer.negotiate("application/json;q=0, application/cbor;q=0.2"));
+        assertNull(streamer.negotiate("text/html"));
+        assertNull(streamer.negotiate("not a media type"));
+    }
+
+    // 与 Spring Boot 注入的 Jackson2ObjectMapperBuilder 配置一致
+    private static Jackson2ObjectMapperBuilder builder() {
+        return Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .modulesToInstall(new BlackbirdModule());
+    }
+
+    private static List<ChatMessage> messages() {
+        LocalDateTime time = LocalDateTime.of(2024, 5, 1, 12, 30);
+        List<ChatMessage> messages = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            messages.add(ChatMessage.builder().id((long) i).sessionId("session_1")
+                    .role(i % 2 == 0 ? "user" : "assistant")
+                    .content("根据《民法典》第五百七十七条的规定，当事人一方不履行合同义务的，应当承担违约责任。" + i)
+                    .contentType("text").createdAt(time.plusMinutes(i)).build());
+        }
+        return messages;
+    }
+}
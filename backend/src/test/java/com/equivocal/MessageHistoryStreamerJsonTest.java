@@ -0,0 +1,217 @@
+package com.equivocal;
+
+import com.equivocal.dto.MessageListResponse;
+import com.equivocal.dto.MessageView;
+import com.equivocal.entity.ChatSession;
+import com.equivocal.entity.CompressedTextConverter;
+import com.equivocal.service.MessageHistoryStreamer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageHistoryStreamerJsonTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final ObjectMapper cborMapper = Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build();
+    private DataSource dataSource;
+    private JdbcTemplate jdbc;
+    private CompressedTextConverter converter;
+    private MessageHistoryStreamer streamer;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:history_stream;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE chat_messages (id BIGINT PRIMARY KEY, session_id VARCHAR(64) NOT NULL, " +
+                "role VARCHAR(255) NOT NULL, content LONGTEXT NOT NULL, content_type VARCHAR(20), created_at TIMESTAMP)");
+
+        converter = new CompressedTextConverter();
+        ReflectionTestUtils.setField(converter, "enabled", true);
+        ReflectionTestUtils.setField(converter, "minChars", 64);
+
+        streamer = streamer(jdbc, 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbc.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    void write_matchesListResponseJson_inCreatedAtOrderWithDecompressedContent() throws Exception {
+        LocalDateTime base = LocalDateTime.of(2024, 5, 1, 12, 0, 0, 250_000_000);
+        List<MessageView> expected = new ArrayList<>();
+        StringBuilder longAnswer = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            longAnswer.append("租赁合同是出租人将租赁物交付承租人使用、收益的合同。\"引号\"\n");
+        }
+        // id 顺序与时间顺序相反的两条，验证按 created_at 排序；另一个会话的消息不应出现
+        insert(3L, "s1", "user", "第一问", base);
+        insert(2L, "s1", "assistant", longAnswer.toString(), base.plusSeconds(1));
+        insert(5L, "s1", "user", "<script>&</script>", base.plusSeconds(2));
+        insert(4L, "s2", "user", "other session", base);
+        expected.add(new MessageView(3L, "s1", "user", "第一问", base));
+        expected.add(new MessageView(2L, "s1", "assistant", longAnswer.toString(), base.plusSeconds(1)));
+        expected.add(new MessageView(5L, "s1", "user", "<script>&</script>", base.plusSeconds(2)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(3, streamer.write("s1", MediaType.APPLICATION_JSON, out));
+
+        assertEquals(objectMapper.writeValueAsString(new MessageListResponse(expected)),
+                new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void write_cbor_decodesToTheSameDocumentAsTheConverter() throws Exception {
+        LocalDateTime base = LocalDateTime.of(2024, 5, 1, 12, 0);
+        insert(1L, "s1", "user", "押金不退怎么办", base);
+        insert(2L, "s1", "assistant", "可以依据租赁合同主张返还。", base.plusSeconds(1));
+        List<MessageView> expected = Arrays.asList(
+                new MessageView(1L, "s1", "user", "押金不退怎么办", base),
+                new MessageView(2L, "s1", "assistant", "可以依据租赁合同主张返还。", base.plusSeconds(1)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, streamer.write("s1", MediaType.APPLICATION_CBOR, out));
+
+        assertEquals(cborMapper.readTree(cborMapper.writeValueAsBytes(new MessageListResponse(expected))),
+                cborMapper.readTree(out.toByteArray()));
+    }
+
+    @Test
+    void write_emptySession_writesEmptyList() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(0, streamer.write("missing", MediaType.APPLICATION_JSON, out));
+        assertEquals("{\"messages\":[]}", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void supports_onlyHotSessions() {
+        assertTrue(streamer.supports(ChatSession.builder().id("s1").build()));
+        assertFalse(streamer.supports(ChatSession.builder().id("s1").archivedAt(LocalDateTime.now()).build()));
+    }
+
+    @Test
+    void write_pagesByCreatedAtAndId_andHoldsNoConnectionWhileWriting() throws Exception {
+        LocalDateTime base = LocalDateTime.of(2024, 5, 1, 12, 0);
+        StringBuilder longAnswer = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            longAnswer.append("租赁合同是出租人将租赁物交付承租人使用、收益的合同。");
+        }
+        // 两条无时间的旧消息在最前；同一时间的多条消息跨越块边界，按 id 续读；id 与时间顺序无关
+        insert(9L, "s1", "user", "旧消息二", null);
+        insert(7L, "s1", "user", "旧消息一", null);
+        insert(4L, "s1", "user", longAnswer.toString(), base);
+        insert(2L, "s1", "assistant", longAnswer.toString(), base.plusSeconds(1));
+        insert(6L, "s1", "user", longAnswer.toString(), base.plusSeconds(1));
+        insert(8L, "s1", "assistant", longAnswer.toString(), base.plusSeconds(1));
+        insert(1L, "s1", "user", longAnswer.toString(), base.plusSeconds(2));
+        List<MessageView> expected = Arrays.asList(
+                new MessageView(7L, "s1", "user", "旧消息一", null),
+                new MessageView(9L, "s1", "user", "旧消息二", null),
+                new MessageView(4L, "s1", "user", longAnswer.toString(), base),
+                new MessageView(2L, "s1", "assistant", longAnswer.toString(), base.plusSeconds(1)),
+                new MessageView(6L, "s1", "user", longAnswer.toString(), base.plusSeconds(1)),
+                new MessageView(8L, "s1", "assistant", longAnswer.toString(), base.plusSeconds(1)),
+                new MessageView(1L, "s1", "user", longAnswer.toString(), base.plusSeconds(2)));
+        AtomicInteger open = new AtomicInteger();
+        MessageHistoryStreamer chunked = streamer(new JdbcTemplate(counting(dataSource, open)), 2);
+
+        List<Integer> openDuringWrites = new ArrayList<>();
+        ProbeOutputStream out = new ProbeOutputStream(open, openDuringWrites);
+        assertEquals(7, chunked.write("s1", MediaType.APPLICATION_JSON, out));
+
+        assertEquals(objectMapper.writeValueAsString(new MessageListResponse(expected)),
+                new String(out.toByteArray(), StandardCharsets.UTF_8));
+        // 每块写出时该块的查询已结束、连接已归还
+        assertTrue(openDuringWrites.size() > 1);
+        assertTrue(openDuringWrites.stream().allMatch(count -> count == 0), "open during writes: " + openDuringWrites);
+        assertEquals(0, open.get());
+    }
+
+    private MessageHistoryStreamer streamer(JdbcTemplate jdbcTemplate, int chunkSize) {
+        MessageHistoryStreamer created = new MessageHistoryStreamer(jdbcTemplate,
+                Arrays.asList(new MappingJackson2HttpMessageConverter(objectMapper),
+                        new MappingJackson2CborHttpMessageConverter(cborMapper)), converter, chunkSize);
+        ReflectionTestUtils.setField(created, "enabled", true);
+        return created;
+    }
+
+    /**
+     * 记录当前借出的连接数
+     */
+    private static DataSource counting(DataSource target, AtomicInteger open) {
+        return new DelegatingDataSource(target) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                Connection connection = super.getConnection();
+                open.incrementAndGet();
+                return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                        new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                            if ("close".equals(method.getName())) {
+                                open.decrementAndGet();
+                            }
+                            try {
+                                return method.invoke(connection, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                        });
+            }
+        };
+    }
+
+    /**
+     * 每次写出时记录借出的连接数
+     */
+    private static final class ProbeOutputStream extends ByteArrayOutputStream {
+
+        private final AtomicInteger open;
+        private final List<Integer> observed;
+
+        ProbeOutputStream(AtomicInteger open, List<Integer> observed) {
+            this.open = open;
+            this.observed = observed;
+        }
+
+        @Override
+        public synchronized void write(byte[] bytes, int offset, int length) {
+            observed.add(open.get());
+            super.write(bytes, offset, length);
+        }
+    }
+
+    private void insert(long id, String sessionId, String role, String content, LocalDateTime createdAt) {
+        jdbc.update("INSERT INTO chat_messages (id, session_id, role, content, content_type, created_at) VALUES (?, ?, ?, ?, 'text', ?)",
+                id, sessionId, role, converter.convertToDatabaseColumn(content),
+                createdAt != null ? Timestamp.valueOf(createdAt) : null);
+    }
+}
@@ -0,0 +1,89 @@
+package com.equivocal;
+
+import com.equivocal.controller.AuthController;
+import com.equivocal.dto.AuthRequest;
+import com.equivocal.dto.AuthResponse;
+import com.equivocal.security.PasswordHashExecutor;
+import com.equivocal.service.AuthService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PasswordHashExecutorBoundedQueueTest {
+
+    @Test
+    void submit_whenQueueFull_rejectsImmediatelyAndRecordsMetrics() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PasswordHashExecutor executor = new PasswordHashExecutor(1, 1, registry);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+
+        try {
+            CompletableFuture<String> running = executor.submit("hash", () -> {
+                started.countDown();
+                await(release);
+                return "a";
+            });
+            assertTrue(started.await(2, TimeUnit.SECONDS));
+            CompletableFuture<String> queued = executor.submit("hash", () -> "b");
+            CompletableFuture<String> rejected = executor.submit("hash", () -> "c");
+
+            assertTrue(rejected.isCompletedExceptionally());
+            assertTrue(PasswordHashExecutor.isRejected(joinFailure(rejected)));
+            assertEquals(1.0, registry.get("password.hash.rejected").tag("op", "hash").counter().count());
+
+            release.countDown();
+            assertEquals("a", running.get(2, TimeUnit.SECONDS));
+            assertEquals("b", queued.get(2, TimeUnit.SECONDS));
+            assertEquals(2L, registry.get("password.hash.compute").tag("op", "hash").timer().count());
+            assertEquals(2L, registry.get("password.hash.queue.wait").tag("op", "hash").timer().count());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void login_whenHashQueueRejects_returns503() {
+        AuthService authService = mock(AuthService.class);
+        AuthRequest request = new AuthRequest("user@example.com", "pass123", null);
+        CompletableFuture<AuthResponse> rejected = new CompletableFuture<>();
+        rejected.completeExceptionally(new RejectedExecutionException("full"));
+        when(authService.authenticate(request)).thenReturn(rejected);
+
+        ResponseEntity<AuthResponse> response = new AuthController(authService).authenticate(request).join();
+
+        assertEquals(503, response.getStatusCodeValue());
+        assertNotNull(response.getBody());
+        assertFalse(response.getBody().isSuccess());
+    }
+
+    private static Throwable joinFailure(CompletableFuture<?> future) {
+        try {
+            future.join();
+        } catch (Exception e) {
+            return e;
+        }
+        throw new AssertionError("expected future to fail");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
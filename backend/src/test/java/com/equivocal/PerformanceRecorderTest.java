@@ -0,0 +1,109 @@
+package com.equivocal;
+
+import com.equivocal.metrics.EndpointTrackingInterceptor;
+import com.equivocal.metrics.PerformanceRecorder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PerformanceRecorderTest {
+
+    @Test
+    void interceptor_recordsEndpointLatencyAndSqlCountAcrossAsyncDispatch() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PerformanceRecorder recorder = new PerformanceRecorder(registry);
+        EndpointTrackingInterceptor interceptor = new EndpointTrackingInterceptor(recorder);
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/admin/users");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/admin/users");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        interceptor.preHandle(request, response, new Object());
+        PerformanceRecorder.recordStatement();
+        PerformanceRecorder.recordStatement();
+        interceptor.afterConcurrentHandlingStarted(request, response, new Object());
+
+        // 不属于任何请求的语句不计入
+        PerformanceRecorder.recordStatement();
+
+        interceptor.preHandle(request, response, new Object());
+        PerformanceRecorder.recordStatement();
+        interceptor.afterCompletion(request, response, new Object(), null);
+
+        assertEquals(1, registry.get("endpoint.latency")
+                .tags("endpoint", "GET /api/admin/users", "status", "200").timer().count());
+        assertEquals(3.0, registry.get("endpoint.sql.statements")
+                .tag("endpoint", "GET /api/admin/users").summary().totalAmount());
+    }
+
+    @Test
+    void recordStatement_fromConcurrentThreadsSharingOneRequest_countsEveryStatement() throws Exception {
+        PerformanceRecorder.RequestStats stats = new PerformanceRecorder.RequestStats();
+        int threads = 4;
+        int perThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    PerformanceRecorder.attach(stats);
+                    try {
+                        start.await();
+                        for (int j = 0; j < perThread; j++) {
+                            PerformanceRecorder.recordStatement();
+                        }
+                    } finally {
+                        PerformanceRecorder.attach(null);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(threads * perThread, stats.getStatements());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void snapshot_reportsRepositoryPercentilesSortedByTotalTime() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PerformanceRecorder recorder = new PerformanceRecorder(registry);
+
+        recorder.recordRepositoryCall("UserRepository", "findAll", 1_000_000L);
+        recorder.recordRepositoryCall("ChatMessageRepository", "countMessagesBySessionIds", 50_000_000L);
+        recorder.recordRepositoryCall("ChatMessageRepository", "countMessagesBySessionIds", 30_000_000L);
+
+        Map<String, Object> snapshot = recorder.snapshot();
+        List<Map<String, Object>> repositories = (List<Map<String, Object>>) snapshot.get("repositories");
+
+        assertEquals(2, repositories.size());
+        Map<String, Object> slowest = repositories.get(0);
+        assertEquals("ChatMessageRepository", slowest.get("repository"));
+        assertEquals("countMessagesBySessionIds", slowest.get("method"));
+        assertEquals("none", slowest.get("endpoint"));
+        assertEquals(2L, slowest.get("count"));
+        assertTrue(slowest.containsKey("p95Ms"));
+        assertTrue(slowest.containsKey("p99Ms"));
+    }
+}
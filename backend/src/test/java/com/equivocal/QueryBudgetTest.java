@@ -0,0 +1,63 @@
+package com.equivocal;
+
+import com.equivocal.support.QueryBudget;
+import com.equivocal.support.SqlStatementRecorder;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class QueryBudgetTest {
+
+    @Test
+    void sqlRecorder_perRowQueriesInLoop_areReportedAsRepeatedStatements() throws Exception {
+        SqlStatementRecorder recorder = newRecorder();
+
+        try (Connection connection = recorder.getConnection()) {
+            connection.prepareStatement("select * from chat_sessions where user_id = ?").executeQuery();
+            for (int i = 0; i < 3; i++) {
+                PreparedStatement count = connection.prepareStatement(
+                        "select count(*) from chat_messages\n   where session_id = ?");
+                count.setString(1, "s" + i);
+                count.executeQuery();
+            }
+        }
+
+        assertEquals(4, recorder.getStatements().size());
+        assertEquals("select count(*) from chat_messages where session_id = ?", recorder.getStatements().get(1));
+        assertThrows(AssertionError.class, () -> QueryBudget.assertNoRepeatedStatements(recorder));
+        assertThrows(AssertionError.class, () -> QueryBudget.assertStatementBudget(recorder, 2));
+    }
+
+    @Test
+    void sqlRecorder_batchedQuery_staysWithinBudget() throws Exception {
+        SqlStatementRecorder recorder = newRecorder();
+
+        try (Connection connection = recorder.getConnection()) {
+            connection.prepareStatement("select * from chat_sessions where user_id = ?").executeQuery();
+            connection.prepareStatement("select session_id, count(*) from chat_messages where session_id in (?, ?, ?) group by session_id")
+                    .executeQuery();
+        }
+
+        QueryBudget.assertStatementBudget(recorder, 2);
+        QueryBudget.assertNoRepeatedStatements(recorder);
+
+        recorder.reset();
+        assertEquals(0, recorder.getStatements().size());
+    }
+
+    private static SqlStatementRecorder newRecorder() throws Exception {
+        DataSource target = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        when(target.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenAnswer(invocation -> mock(PreparedStatement.class));
+        return new SqlStatementRecorder(target);
+    }
+}
@@ -0,0 +1,111 @@
+package com.equivocal;
+
+import com.equivocal.config.DataSourceConfig;
+import com.equivocal.datasource.ReadWriteRoutingDataSource;
+import com.equivocal.datasource.ReadYourWritesTracker;
+import com.equivocal.entity.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReadWriteRoutingDataSourceReadYourWritesTest {
+
+    private DriverManagerDataSource primary;
+    private DriverManagerDataSource replica;
+    private JdbcTemplate jdbc;
+    private DataSourceTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        // 两个独立的内存库，各自写入自己的名字，查询结果即可说明连接来自哪个库
+        primary = database("rw_primary");
+        replica = database("rw_replica");
+
+        ReadYourWritesTracker tracker = new ReadYourWritesTracker(true, 60_000, 1000);
+        DataSource routing = DataSourceConfig.routingDataSource(primary, replica, tracker);
+        jdbc = new JdbcTemplate(routing);
+        transactionManager = new DataSourceTransactionManager(routing);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        new JdbcTemplate(primary).execute("DROP ALL OBJECTS");
+        new JdbcTemplate(replica).execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    void readOnlyTransaction_declaredByApplication_readsFromReplica() {
+        login("user_1");
+
+        assertEquals("rw_replica", readOnly("com.equivocal.controller.ChatSessionController.listSessions"));
+    }
+
+    @Test
+    void defaultRepositoryTransactionsAndAnonymousReads_stayOnPrimary() {
+        assertEquals("rw_primary", readOnly("com.equivocal.controller.ChatSessionController.listSessions"));
+
+        login("user_1");
+        assertEquals("rw_primary",
+                readOnly("org.springframework.data.jpa.repository.support.SimpleJpaRepository.findById"));
+        assertEquals("rw_primary", jdbc.queryForObject("SELECT name FROM db_name", String.class));
+    }
+
+    @Test
+    void markedRepositoryCall_outsideTransaction_readsFromReplica() {
+        login("user_1");
+
+        ReadWriteRoutingDataSource.beginReplicaRead();
+        try {
+            assertEquals("rw_replica", jdbc.queryForObject("SELECT name FROM db_name", String.class));
+        } finally {
+            ReadWriteRoutingDataSource.endReplicaRead();
+        }
+        assertEquals("rw_primary", jdbc.queryForObject("SELECT name FROM db_name", String.class));
+    }
+
+    @Test
+    void afterWrite_sameUserReadsPrimary_otherUsersStillUseReplica() {
+        login("user_1");
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                jdbc.update("UPDATE db_name SET name = name"));
+
+        assertEquals("rw_primary", readOnly("com.equivocal.controller.ChatSessionController.listSessions"));
+
+        login("user_2");
+        assertEquals("rw_replica", readOnly("com.equivocal.controller.ChatSessionController.listSessions"));
+    }
+
+    private String readOnly(String transactionName) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        template.setName(transactionName);
+        return template.execute(status -> jdbc.queryForObject("SELECT name FROM db_name", String.class));
+    }
+
+    private static void login(String userId) {
+        User user = User.builder().id(userId).email(userId + "@example.com").password("x").role(1).build();
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, Collections.emptyList()));
+    }
+
+    private static DriverManagerDataSource database(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE db_name (name VARCHAR(32))");
+        jdbc.update("INSERT INTO db_name (name) VALUES (?)", name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,63 @@
+package com.equivocal;
+
+import com.equivocal.dto.MessageView;
+import com.equivocal.dto.SessionListResponse;
+import com.equivocal.dto.SessionView;
+import com.equivocal.dto.UserView;
+import com.equivocal.entity.ChatMessage;
+import com.equivocal.entity.ChatSession;
+import com.equivocal.entity.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ResponseViewSerializationTest {
+
+    private static final LocalDateTime TIME = LocalDateTime.of(2024, 5, 1, 12, 30);
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build()
+            .registerModule(new BlackbirdModule());
+
+    @Test
+    void sessionList_keepsTheFieldsOfTheFormerMapResponse() throws Exception {
+        ChatSession session = ChatSession.builder().id("s1").userId("u1").title("新对话").createdAt(TIME).updatedAt(TIME).build();
+
+        String json = objectMapper.writeValueAsString(new SessionListResponse(true, Collections.singletonList(SessionView.of(session))));
+
+        assertEquals("{\"success\":true,\"sessions\":[{\"id\":\"s1\",\"userId\":\"u1\",\"title\":\"新对话\","
+                + "\"createdAt\":\"2024-05-01T12:30:00\",\"updatedAt\":\"2024-05-01T12:30:00\"}]}", json);
+    }
+
+    @Test
+    void sessionDetailAndAdminViews_includeOptionalFieldsOnlyWhenSet() throws Exception {
+        ChatSession session = ChatSession.builder().id("s1").userId("u1").title(null).createdAt(TIME).updatedAt(TIME).build();
+        ChatMessage message = ChatMessage.builder().id(7L).sessionId("s1").role("user").content("hi")
+                .contentType("text").createdAt(TIME).build();
+
+        assertEquals("{\"id\":\"s1\",\"userId\":\"u1\",\"title\":null,\"createdAt\":\"2024-05-01T12:30:00\","
+                        + "\"updatedAt\":\"2024-05-01T12:30:00\",\"messageCount\":3}",
+                objectMapper.writeValueAsString(SessionView.withMessageCount(session, 3)));
+        assertEquals("{\"id\":\"s1\",\"userId\":\"u1\",\"title\":null,\"createdAt\":\"2024-05-01T12:30:00\","
+                        + "\"updatedAt\":\"2024-05-01T12:30:00\",\"messages\":[{\"id\":7,\"sessionId\":\"s1\",\"role\":\"user\","
+                        + "\"content\":\"hi\",\"createdAt\":\"2024-05-01T12:30:00\"}]}",
+                objectMapper.writeValueAsString(SessionView.withMessages(session, MessageView.ofAll(Collections.singletonList(message)))));
+    }
+
+    @Test
+    void userView_omitsPassword() throws Exception {
+        User user = User.builder().id("u1").email("a@example.com").password("$2a$hash").role(10)
+                .emailVerified(true).createdAt(TIME).updatedAt(TIME).build();
+
+        assertEquals("{\"id\":\"u1\",\"email\":\"a@example.com\",\"role\":10,\"emailVerified\":true,"
+                + "\"createdAt\":\"2024-05-01T12:30:00\",\"updatedAt\":\"2024-05-01T12:30:00\"}",
+                objectMapper.writeValueAsString(UserView.of(user)));
+    }
+}
@@ -0,0 +1,97 @@
+package com.equivocal;
+
+import com.equivocal.config.SecurityConfig;
+import com.equivocal.repository.UserRepository;
+import com.equivocal.security.JwtAuthFilter;
+import com.equivocal.security.JwtService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.junit.jupiter.web.SpringJUnitWebConfig;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.cors.CorsConfigurationSource;
+import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import static org.mockito.Mockito.mock;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringJUnitWebConfig(classes = {SecurityConfig.class, SecurityConfigActuatorAccessTest.TestBeans.class})
+class SecurityConfigActuatorAccessTest {
+
+    @Autowired
+    private WebApplicationContext context;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+    }
+
+    @Test
+    void prometheus_withoutToken_isRejected() throws Exception {
+        mockMvc.perform(get("/actuator/prometheus")).andExpect(status().isForbidden());
+    }
+
+    @Test
+    void prometheus_asRegularUser_isForbidden() throws Exception {
+        mockMvc.perform(get("/actuator/prometheus").with(user("u1").roles("USER")))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void prometheus_asAdmin_isServed() throws Exception {
+        mockMvc.perform(get("/actuator/prometheus").with(user("admin").roles("ADMIN")))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void health_withoutToken_isPublic() throws Exception {
+        mockMvc.perform(get("/actuator/health")).andExpect(status().isOk());
+    }
+
+    /**
+     * 不加 @Configuration / @RestController：压测 profile 的类路径包含测试类，避免被组件扫描进应用上下文
+     */
+    @EnableWebMvc
+    static class TestBeans {
+        @Bean
+        JwtAuthFilter jwtAuthFilter() {
+            return new JwtAuthFilter(mock(JwtService.class), mock(UserRepository.class));
+        }
+
+        @Bean
+        CorsConfigurationSource corsConfigurationSource() {
+            return new UrlBasedCorsConfigurationSource();
+        }
+
+        @Bean
+        ActuatorStub actuatorStub() {
+            return new ActuatorStub();
+        }
+    }
+
+    @RequestMapping("/actuator")
+    @ResponseBody
+    static class ActuatorStub {
+        @GetMapping("/prometheus")
+        String prometheus() {
+            return "# metrics";
+        }
+
+        @GetMapping("/health")
+        String health() {
+            return "{\"status\":\"UP\"}";
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.equivocal;
+
+import com.equivocal.service.SessionLanes;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionLanesOrderingTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void sameSession_turnsRunOneAtATimeInArrivalOrder() throws Exception {
+        SessionLanes lanes = new SessionLanes(5000, registry);
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        Sinks.Empty<Void> releaseFirst = Sinks.empty();
+
+        Flux<String> first = lanes.turn("session_1", () -> {
+            events.add("first:start");
+            return releaseFirst.asMono().then(Mono.fromCallable(() -> {
+                events.add("first:end");
+                return "first";
+            }));
+        });
+        Flux<String> second = lanes.turn("session_1", () -> {
+            events.add("second");
+            return Mono.just("second");
+        });
+
+        Mono<List<String>> firstResult = first.collectList().cache();
+        firstResult.subscribe();
+        Mono<List<String>> secondResult = second.collectList().cache();
+        secondResult.subscribe();
+        Thread.sleep(100);
+        assertEquals(Collections.singletonList("first:start"), events);
+
+        releaseFirst.tryEmitEmpty();
+        assertEquals(Collections.singletonList("first"), firstResult.block(Duration.ofSeconds(5)));
+        assertEquals(Collections.singletonList("second"), secondResult.block(Duration.ofSeconds(5)));
+        assertEquals(Arrays.asList("first:start", "first:end", "second"), events);
+
+        double waitedMs = registry.get("chat.session.lane.wait").tag("outcome", "acquired")
+                .timer().totalTime(TimeUnit.MILLISECONDS);
+        assertTrue(waitedMs >= 50, "second turn should have recorded its wait, was " + waitedMs);
+    }
+
+    @Test
+    void differentSessions_doNotWaitForEachOther() {
+        SessionLanes lanes = new SessionLanes(5000, registry);
+        Sinks.Empty<Void> release = Sinks.empty();
+        Disposable slow = lanes.turn("session_a", release::asMono).subscribe();
+        try {
+            assertEquals("ok", lanes.turn("session_b", () -> Mono.just("ok")).blockFirst(Duration.ofSeconds(1)));
+        } finally {
+            release.tryEmitEmpty();
+            slow.dispose();
+        }
+    }
+
+    @Test
+    void waitBeyondLimit_runsUnorderedAndCountsTimeout() {
+        SessionLanes lanes = new SessionLanes(50, registry);
+        Sinks.Empty<Void> release = Sinks.empty();
+        lanes.turn("session_1", release::asMono).subscribe();
+
+        assertEquals("ran", lanes.turn("session_1", () -> Mono.just("ran")).blockFirst(Duration.ofSeconds(5)));
+        assertEquals(1, registry.get("chat.session.lane.wait").tag("outcome", "timeout").timer().count());
+
+        release.tryEmitEmpty();
+        // 卡住的轮次结束后队列恢复：下一轮无需等待
+        assertEquals("ok", lanes.turn("session_1", () -> Mono.just("ok")).blockFirst(Duration.ofSeconds(1)));
+    }
+
+    @Test
+    void turnCancelledWhileQueued_nextTurnStillWaitsForTheRunningOne() throws Exception {
+        SessionLanes lanes = new SessionLanes(5000, registry);
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        Sinks.Empty<Void> releaseFirst = Sinks.empty();
+
+        lanes.turn("session_1", () -> releaseFirst.asMono().then(Mono.fromRunnable(() -> events.add("first")))).subscribe();
+        // 第二个标签页发出后立即关闭
+        Disposable abandoned = lanes.turn("session_1", () -> Mono.fromRunnable(() -> events.add("abandoned"))).subscribe();
+        Mono<List<Object>> third = lanes.turn("session_1", () -> Mono.fromRunnable(() -> events.add("third")))
+                .collectList().cache();
+        third.subscribe();
+
+        abandoned.dispose();
+        Thread.sleep(100);
+        assertTrue(events.isEmpty(), "third turn must not overtake the running first turn: " + events);
+
+        releaseFirst.tryEmitEmpty();
+        third.block(Duration.ofSeconds(5));
+        assertEquals(Arrays.asList("first", "third"), events);
+    }
+
+    @Test
+    void failedTurn_releasesTheQueue() {
+        SessionLanes lanes = new SessionLanes(5000, registry);
+
+        Flux<String> failing = lanes.turn("session_1", () -> Mono.error(new IllegalStateException("agent down")));
+        assertEquals("recovered", failing.onErrorResume(e -> Mono.just("recovered")).blockFirst(Duration.ofSeconds(1)));
+
+        assertEquals("next", lanes.turn("session_1", () -> Mono.just("next")).blockFirst(Duration.ofSeconds(1)));
+        assertEquals(0, registry.get("chat.session.lane.wait").tag("outcome", "timeout").timer().count());
+    }
+}
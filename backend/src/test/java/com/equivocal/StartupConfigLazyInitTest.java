@@ -0,0 +1,24 @@
+package com.equivocal;
+
+import com.equivocal.config.StartupConfig;
+import com.equivocal.security.JwtAuthFilter;
+import com.equivocal.security.JwtService;
+import com.equivocal.service.AgentService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StartupConfigLazyInitTest {
+
+    @Test
+    void eagerStartupBeans_keepsSecurityBeansEagerButLeavesOthersLazy() {
+        LazyInitializationExcludeFilter filter = StartupConfig.eagerStartupBeans();
+
+        assertTrue(filter.isExcluded("jwtService", new RootBeanDefinition(JwtService.class), JwtService.class));
+        assertTrue(filter.isExcluded("jwtAuthFilter", new RootBeanDefinition(JwtAuthFilter.class), JwtAuthFilter.class));
+        assertFalse(filter.isExcluded("agentService", new RootBeanDefinition(AgentService.class), AgentService.class));
+    }
+}
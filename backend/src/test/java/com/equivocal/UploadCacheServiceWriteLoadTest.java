@@ -0,0 +1,88 @@
+package com.equivocal;
+
+import com.equivocal.entity.UploadCacheEntry;
+import com.equivocal.repository.UploadCacheRepository;
+import com.equivocal.service.UploadCacheService;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 上传缓存命中与写入不产生多余的数据库写：访问时间粗粒度刷新，淘汰由定时任务完成
+ */
+class UploadCacheServiceWriteLoadTest {
+
+    private final UploadCacheRepository repository = mock(UploadCacheRepository.class);
+    private final UploadCacheService cacheService = new UploadCacheService(repository);
+
+    UploadCacheServiceWriteLoadTest() {
+        ReflectionTestUtils.setField(cacheService, "enabled", true);
+        ReflectionTestUtils.setField(cacheService, "maxEntries", 100);
+        ReflectionTestUtils.setField(cacheService, "maxAgeDays", 30);
+        ReflectionTestUtils.setField(cacheService, "touchIntervalMinutes", 60L);
+    }
+
+    @Test
+    void lookup_recentlyTouchedEntry_hitsWithoutUpdate_untilTheTouchIntervalPasses() {
+        String key = UploadCacheEntry.keyOf("u1", "d");
+        when(repository.findById(key))
+                .thenReturn(Optional.of(entry(LocalDateTime.now().minusMinutes(5))))
+                .thenReturn(Optional.of(entry(LocalDateTime.now().minusMinutes(5))))
+                .thenReturn(Optional.of(entry(LocalDateTime.now().minusMinutes(90))));
+
+        assertTrue(cacheService.lookup("u1", "d").isPresent());
+        assertTrue(cacheService.lookup("u1", "d").isPresent());
+        verify(repository, never()).touch(anyString(), any(), anyLong());
+
+        assertTrue(cacheService.lookup("u1", "d").isPresent());
+        // 三次命中随一次刷新写回
+        verify(repository).touch(eq(key), any(LocalDateTime.class), eq(3L));
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void store_savesWithoutCountingOrEvicting() {
+        cacheService.store("u1", "d", "file://x", "x.pdf", 10L);
+
+        verify(repository).save(any(UploadCacheEntry.class));
+        verify(repository, never()).count();
+        verify(repository, never()).deleteCreatedBefore(any());
+    }
+
+    @Test
+    void evict_flushesPendingHitsAndExpiresByCreationTime() {
+        when(repository.findById(UploadCacheEntry.keyOf("u1", "d")))
+                .thenReturn(Optional.of(entry(LocalDateTime.now())));
+        cacheService.lookup("u1", "d");
+        when(repository.count()).thenReturn(10L);
+
+        cacheService.evict();
+
+        verify(repository).addHits(UploadCacheEntry.keyOf("u1", "d"), 1L);
+        verify(repository).deleteCreatedBefore(any(LocalDateTime.class));
+    }
+
+    private static UploadCacheEntry entry(LocalDateTime lastAccessedAt) {
+        return UploadCacheEntry.builder()
+                .cacheKey(UploadCacheEntry.keyOf("u1", "d"))
+                .userId("u1")
+                .digest("d")
+                .url("file://x")
+                .filename("x.pdf")
+                .createdAt(LocalDateTime.now().minusDays(1))
+                .lastAccessedAt(lastAccessedAt)
+                .build();
+    }
+}
@@ -0,0 +1,149 @@
+package com.equivocal;
+
+import com.equivocal.controller.UploadController;
+import com.equivocal.entity.UploadCacheEntry;
+import com.equivocal.entity.User;
+import com.equivocal.repository.UploadCacheRepository;
+import com.equivocal.service.AgentService;
+import com.equivocal.service.UploadCacheService;
+import com.equivocal.service.UploadJobService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UploadControllerDedupCacheTest {
+
+    private final User owner = User.builder().id("u1").email("a@example.com").password("x").role(1).build();
+    private final User other = User.builder().id("u2").email("b@example.com").password("x").role(1).build();
+
+    @Test
+    void uploadFile_whenDigestCached_returnsStoredResultWithoutCallingAgent() throws Exception {
+        AgentService agentService = mock(AgentService.class);
+        UploadCacheRepository repository = mock(UploadCacheRepository.class);
+        UploadCacheService cacheService = newCacheService(repository);
+
+        byte[] content = "%PDF-1.4 same contract".getBytes(StandardCharsets.US_ASCII);
+        String digest = UploadCacheService.sha256Hex(new ByteArrayInputStream(content));
+        when(repository.findById(UploadCacheEntry.keyOf("u1", digest))).thenReturn(Optional.of(UploadCacheEntry.builder()
+                .cacheKey(UploadCacheEntry.keyOf("u1", digest))
+                .userId("u1")
+                .digest(digest)
+                .url("file://cached")
+                .filename("contract.pdf")
+                .lastAccessedAt(LocalDateTime.now().minusDays(1))
+                .build()));
+
+        MultipartFile file = mock(MultipartFile.class);
+        when(file.getContentType()).thenReturn("application/pdf");
+        when(file.getSize()).thenReturn((long) content.length);
+        when(file.getOriginalFilename()).thenReturn("contract.pdf");
+        when(file.getInputStream()).thenAnswer(invocation -> new ByteArrayInputStream(content));
+
+        ResponseEntity<Map<String, Object>> response =
+                new UploadController(agentService, cacheService, mock(UploadJobService.class), new ObjectMapper()).uploadFile(file, owner);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(true, response.getBody().get("cached"));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> data = (Map<String, Object>) response.getBody().get("data");
+        assertEquals("file://cached", data.get("id"));
+        verify(agentService, never()).uploadFile(any(), any());
+    }
+
+    @Test
+    void uploadFile_whenSameContentCachedByAnotherUser_callsAgentAndStoresUnderOwnKey() throws Exception {
+        AgentService agentService = mock(AgentService.class);
+        UploadCacheRepository repository = mock(UploadCacheRepository.class);
+        UploadCacheService cacheService = newCacheService(repository);
+
+        byte[] content = "%PDF-1.4 same contract".getBytes(StandardCharsets.US_ASCII);
+        String digest = UploadCacheService.sha256Hex(new ByteArrayInputStream(content));
+        when(repository.findById(UploadCacheEntry.keyOf("u1", digest))).thenReturn(Optional.of(UploadCacheEntry.builder()
+                .cacheKey(UploadCacheEntry.keyOf("u1", digest))
+                .userId("u1")
+                .digest(digest)
+                .url("file://owner-only")
+                .filename("contract.pdf")
+                .build()));
+        when(repository.findById(UploadCacheEntry.keyOf("u2", digest))).thenReturn(Optional.empty());
+        when(agentService.uploadFile(any(), any())).thenReturn("{\"url\":\"file://u2-copy\",\"filename\":\"contract.pdf\"}");
+
+        MultipartFile file = mock(MultipartFile.class);
+        when(file.getContentType()).thenReturn("application/pdf");
+        when(file.getSize()).thenReturn((long) content.length);
+        when(file.getOriginalFilename()).thenReturn("contract.pdf");
+        when(file.getInputStream()).thenAnswer(invocation -> new ByteArrayInputStream(content));
+
+        ResponseEntity<Map<String, Object>> response =
+                new UploadController(agentService, cacheService, mock(UploadJobService.class), new ObjectMapper()).uploadFile(file, other);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertNull(response.getBody().get("cached"));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> data = (Map<String, Object>) response.getBody().get("data");
+        assertEquals("file://u2-copy", data.get("id"));
+        ArgumentCaptor<UploadCacheEntry> stored = ArgumentCaptor.forClass(UploadCacheEntry.class);
+        verify(repository).save(stored.capture());
+        assertEquals(UploadCacheEntry.keyOf("u2", digest), stored.getValue().getCacheKey());
+        assertEquals("u2", stored.getValue().getUserId());
+    }
+
+    @Test
+    void lookup_withoutUser_missesWithoutQuerying() {
+        UploadCacheRepository repository = mock(UploadCacheRepository.class);
+
+        assertFalse(newCacheService(repository).lookup(null, "d").isPresent());
+        verify(repository, never()).findById(any());
+    }
+
+    @Test
+    void lookup_whenEntryCreatedBeforeMaxAge_evictsAndMissesEvenIfRecentlyHit() {
+        UploadCacheRepository repository = mock(UploadCacheRepository.class);
+        UploadCacheService cacheService = newCacheService(repository);
+        UploadCacheEntry stale = UploadCacheEntry.builder()
+                .cacheKey(UploadCacheEntry.keyOf("u1", "d"))
+                .userId("u1")
+                .digest("d")
+                .url("file://old")
+                .filename("old.pdf")
+                .createdAt(LocalDateTime.now().minusDays(31))
+                .lastAccessedAt(LocalDateTime.now())
+                .build();
+        when(repository.findById(UploadCacheEntry.keyOf("u1", "d"))).thenReturn(Optional.of(stale));
+
+        assertFalse(cacheService.lookup("u1", "d").isPresent());
+        verify(repository).delete(stale);
+    }
+
+    @Test
+    void sha256Hex_matchesKnownVector() throws Exception {
+        String digest = UploadCacheService.sha256Hex(new ByteArrayInputStream("abc".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", digest);
+    }
+
+    private static UploadCacheService newCacheService(UploadCacheRepository repository) {
+        UploadCacheService cacheService = new UploadCacheService(repository);
+        ReflectionTestUtils.setField(cacheService, "enabled", true);
+        ReflectionTestUtils.setField(cacheService, "maxEntries", 100);
+        ReflectionTestUtils.setField(cacheService, "maxAgeDays", 30);
+        return cacheService;
+    }
+}
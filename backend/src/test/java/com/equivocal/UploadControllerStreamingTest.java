@@ -0,0 +1,84 @@
+package com.equivocal;
+
+import com.equivocal.controller.UploadController;
+import com.equivocal.service.AgentService;
+import com.equivocal.service.UploadCacheService;
+import com.equivocal.service.UploadJobService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UploadControllerStreamingTest {
+
+    @Test
+    void uploadFile_readsOnlyHeaderBytes_andRelaysResourceToAgent() throws Exception {
+        AgentService agentService = mock(AgentService.class);
+        UploadController controller = new UploadController(agentService, mock(UploadCacheService.class), mock(UploadJobService.class), new ObjectMapper());
+
+        byte[] content = new byte[64 * 1024];
+        byte[] magic = "%PDF-1.4".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(magic, 0, content, 0, magic.length);
+        Arrays.fill(content, magic.length, content.length, (byte) 'x');
+        CountingInputStream in = new CountingInputStream(content);
+
+        MultipartFile file = mock(MultipartFile.class);
+        Resource resource = mock(Resource.class);
+        when(file.getContentType()).thenReturn("application/pdf");
+        when(file.isEmpty()).thenReturn(false);
+        when(file.getSize()).thenReturn((long) content.length);
+        when(file.getOriginalFilename()).thenReturn("contract.pdf");
+        when(file.getInputStream()).thenReturn(in);
+        when(file.getResource()).thenReturn(resource);
+        when(agentService.uploadFile(resource, "contract.pdf"))
+                .thenReturn("{\"url\":\"file://contract\",\"filename\":\"contract.pdf\"}");
+
+        ResponseEntity<Map<String, Object>> response = controller.uploadFile(file, null);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals((long) content.length, response.getBody().get("size"));
+        assertTrue(in.bytesRead <= 8, "signature check should only read the header, read " + in.bytesRead);
+        verify(file, never()).getBytes();
+        verify(agentService).uploadFile(eq(resource), eq("contract.pdf"));
+    }
+
+    private static final class CountingInputStream extends ByteArrayInputStream {
+        private int bytesRead;
+
+        CountingInputStream(byte[] data) {
+            super(data);
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                bytesRead += n;
+            }
+            return n;
+        }
+
+        @Override
+        public synchronized int read() {
+            int n = super.read();
+            if (n >= 0) {
+                bytesRead++;
+            }
+            return n;
+        }
+    }
+}
@@ -2,10 +2,14 @@ package com.equivocal;
 
 import com.equivocal.controller.UploadController;
 import com.equivocal.service.AgentService;
+import com.equivocal.service.UploadCacheService;
+import com.equivocal.service.UploadJobService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -20,16 +24,16 @@ class UploadControllerValidationTest {
     @Test
     void uploadFile_rejectsDisallowedContentType() throws Exception {
         AgentService agentService = mock(AgentService.class);
-        UploadController controller = new UploadController(agentService);
+        UploadController controller = new UploadController(agentService, mock(UploadCacheService.class), mock(UploadJobService.class), new ObjectMapper());
 
         MultipartFile file = mock(MultipartFile.class);
         when(file.getContentType()).thenReturn("application/x-msdownload");
         when(file.isEmpty()).thenReturn(false);
         when(file.getSize()).thenReturn(10L);
         when(file.getOriginalFilename()).thenReturn("evil.exe");
-        when(file.getBytes()).thenReturn(new byte[]{1});
+        when(file.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[]{1}));
 
-        ResponseEntity<Map<String, Object>> response = controller.uploadFile(file);
+        ResponseEntity<Map<String, Object>> response = controller.uploadFile(file, null);
 
         assertEquals(400, response.getStatusCodeValue());
         assertNotNull(response.getBody());
@@ -40,19 +44,19 @@ class UploadControllerValidationTest {
     @Test
     void uploadFile_whenAgentThrows_doesNotLeakExceptionMessage() throws Exception {
         AgentService agentService = mock(AgentService.class);
-        UploadController controller = new UploadController(agentService);
+        UploadController controller = new UploadController(agentService, mock(UploadCacheService.class), mock(UploadJobService.class), new ObjectMapper());
 
         MultipartFile file = mock(MultipartFile.class);
         when(file.getContentType()).thenReturn("application/pdf");
         when(file.isEmpty()).thenReturn(false);
         when(file.getSize()).thenReturn(10L);
         when(file.getOriginalFilename()).thenReturn("ok.pdf");
-        when(file.getBytes()).thenReturn("%PDF-1.4\n%".getBytes(java.nio.charset.StandardCharsets.US_ASCII));
+        when(file.getInputStream()).thenReturn(new ByteArrayInputStream("%PDF-1.4\n%".getBytes(java.nio.charset.StandardCharsets.US_ASCII)));
 
         when(agentService.uploadFile(org.mockito.ArgumentMatchers.any(), org.mockito.ArgumentMatchers.any()))
                 .thenThrow(new RuntimeException("secret details"));
 
-        ResponseEntity<Map<String, Object>> response = controller.uploadFile(file);
+        ResponseEntity<Map<String, Object>> response = controller.uploadFile(file, null);
 
         assertEquals(500, response.getStatusCodeValue());
         assertNotNull(response.getBody());
@@ -63,16 +67,16 @@ class UploadControllerValidationTest {
     @Test
     void uploadFile_rejectsPdfWithInvalidMagic() throws Exception {
         AgentService agentService = mock(AgentService.class);
-        UploadController controller = new UploadController(agentService);
+        UploadController controller = new UploadController(agentService, mock(UploadCacheService.class), mock(UploadJobService.class), new ObjectMapper());
 
         MultipartFile file = mock(MultipartFile.class);
         when(file.getContentType()).thenReturn("application/pdf");
         when(file.isEmpty()).thenReturn(false);
         when(file.getSize()).thenReturn(10L);
         when(file.getOriginalFilename()).thenReturn("fake.pdf");
-        when(file.getBytes()).thenReturn(new byte[]{1, 2, 3, 4});
+        when(file.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[]{1, 2, 3, 4}));
 
-        ResponseEntity<Map<String, Object>> response = controller.uploadFile(file);
+        ResponseEntity<Map<String, Object>> response = controller.uploadFile(file, null);
 
         assertEquals(400, response.getStatusCodeValue());
         assertNotNull(response.getBody());
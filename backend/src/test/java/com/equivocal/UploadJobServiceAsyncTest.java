@@ -0,0 +1,107 @@
+package com.equivocal;
+
+import com.equivocal.service.AgentService;
+import com.equivocal.service.UploadCacheService;
+import com.equivocal.service.UploadJobService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UploadJobServiceAsyncTest {
+
+    @Test
+    void submit_returnsRunningJobAndCompletesWhenAgentResponds() throws Exception {
+        AgentService agentService = mock(AgentService.class);
+        UploadCacheService cacheService = mock(UploadCacheService.class);
+        Sinks.One<String> agentResponse = Sinks.one();
+        when(agentService.uploadFileAsync(any(Resource.class), anyString())).thenReturn(agentResponse.asMono());
+
+        UploadJobService service = newService(agentService, cacheService, 2);
+        UploadJobService.UploadJob job = service.submit("u1", newFile(), "contract.pdf", "digest-1");
+
+        assertEquals(UploadJobService.Status.RUNNING, job.getStatus());
+
+        agentResponse.tryEmitValue("{\"url\":\"file://agent/1\",\"filename\":\"contract.pdf\"}");
+        awaitFinished(job);
+
+        assertEquals(UploadJobService.Status.COMPLETED, job.getStatus());
+        assertEquals("file://agent/1", job.getResult().getUrl());
+        verify(cacheService, timeout(1000)).store(eq("u1"), eq("digest-1"), eq("file://agent/1"), eq("contract.pdf"), anyLong());
+    }
+
+    @Test
+    void submit_whenAllPermitsInUse_rejectsNewJob() throws Exception {
+        AgentService agentService = mock(AgentService.class);
+        when(agentService.uploadFileAsync(any(Resource.class), anyString())).thenReturn(Mono.<String>never());
+
+        UploadJobService service = newService(agentService, mock(UploadCacheService.class), 1);
+        service.submit("u1", newFile(), "a.pdf", "d1");
+
+        assertThrows(RejectedExecutionException.class, () -> service.submit("u1", newFile(), "b.pdf", "d2"));
+    }
+
+    @Test
+    void submit_whenAgentFails_marksJobFailedAndReleasesPermit() throws Exception {
+        AgentService agentService = mock(AgentService.class);
+        when(agentService.uploadFileAsync(any(Resource.class), anyString()))
+                .thenReturn(Mono.<String>error(new IllegalStateException("agent down")))
+                .thenReturn(Mono.just("{\"url\":\"file://agent/2\"}"));
+
+        UploadJobService service = newService(agentService, mock(UploadCacheService.class), 1);
+        UploadJobService.UploadJob failed = service.submit("u1", newFile(), "a.pdf", "d1");
+        awaitFinished(failed);
+        assertEquals(UploadJobService.Status.FAILED, failed.getStatus());
+
+        UploadJobService.UploadJob next = service.submit("u1", newFile(), "b.pdf", "d2");
+        awaitFinished(next);
+        assertEquals(UploadJobService.Status.COMPLETED, next.getStatus());
+    }
+
+    @Test
+    void find_onlyReturnsJobsOwnedByUser() throws Exception {
+        AgentService agentService = mock(AgentService.class);
+        when(agentService.uploadFileAsync(any(Resource.class), anyString())).thenReturn(Mono.<String>never());
+
+        UploadJobService service = newService(agentService, mock(UploadCacheService.class), 2);
+        UploadJobService.UploadJob job = service.submit("owner", newFile(), "a.pdf", "d1");
+
+        assertTrue(service.find(job.getId(), "owner").isPresent());
+        assertFalse(service.find(job.getId(), "someone-else").isPresent());
+        assertFalse(service.find("missing", "owner").isPresent());
+    }
+
+    private static UploadJobService newService(AgentService agentService, UploadCacheService cacheService, int maxConcurrent) {
+        return new UploadJobService(agentService, cacheService, new ObjectMapper(), maxConcurrent, 100, 60000L, 5000L);
+    }
+
+    private static MultipartFile newFile() {
+        MultipartFile file = mock(MultipartFile.class);
+        when(file.getSize()).thenReturn(8L);
+        return file;
+    }
+
+    private static void awaitFinished(UploadJobService.UploadJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (job.getStatus() == UploadJobService.Status.RUNNING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
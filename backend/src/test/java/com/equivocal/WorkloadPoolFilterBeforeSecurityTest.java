@@ -0,0 +1,87 @@
+package com.equivocal;
+
+import com.equivocal.config.DataSourceConfig;
+import com.equivocal.controller.AuthController;
+import com.equivocal.datasource.Workload;
+import com.equivocal.datasource.WorkloadPoolFilter;
+import com.equivocal.datasource.WorkloadRoutingDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ServletRequestPathUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WorkloadPoolFilterBeforeSecurityTest {
+
+    @AfterEach
+    void tearDown() {
+        WorkloadRoutingDataSource.restore(null);
+    }
+
+    @Test
+    void registration_runsBeforeSpringSecurity() {
+        FilterRegistrationBean<WorkloadPoolFilter> registration =
+                new DataSourceConfig(provider(null)).workloadPoolFilter(provider(null));
+
+        assertTrue(registration.getOrder() < SecurityProperties.DEFAULT_FILTER_ORDER);
+    }
+
+    @Test
+    void doFilter_bindsWorkloadForDownstreamAuthAndLeavesRequestUntouched() throws Exception {
+        HandlerMapping mapping = mock(HandlerMapping.class);
+        when(mapping.getHandler(any(HttpServletRequest.class))).thenAnswer(invocation -> {
+            HttpServletRequest lookup = invocation.getArgument(0);
+            // 路径匹配需要预先解析的请求路径；匹配结果写入的属性不能泄漏到原请求
+            assertTrue(ServletRequestPathUtils.hasParsedRequestPath(lookup));
+            lookup.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, "lookup");
+            return new HandlerExecutionChain(new HandlerMethod(mock(AuthController.class), Object.class.getMethod("toString")));
+        });
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/auth/login");
+        AtomicReference<Workload> seenByAuth = new AtomicReference<>();
+
+        // 下游过滤器（JWT 认证查询用户）看到的负载
+        new WorkloadPoolFilter(provider(mapping)).doFilter(request, new MockHttpServletResponse(),
+                (req, res) -> seenByAuth.set(WorkloadRoutingDataSource.current()));
+
+        assertEquals(Workload.AUTH, seenByAuth.get());
+        assertEquals(Workload.DEFAULT, WorkloadRoutingDataSource.current());
+        assertNull(request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE));
+        assertFalse(ServletRequestPathUtils.hasParsedRequestPath(request));
+    }
+
+    @Test
+    void doFilter_unmatchedOrFailingLookup_usesDefaultWorkload() throws Exception {
+        HandlerMapping mapping = mock(HandlerMapping.class);
+        when(mapping.getHandler(any(HttpServletRequest.class))).thenThrow(new IllegalStateException("boom"));
+        AtomicReference<Workload> seen = new AtomicReference<>();
+
+        new WorkloadPoolFilter(provider(mapping)).doFilter(new MockHttpServletRequest("GET", "/missing"),
+                new MockHttpServletResponse(), (req, res) -> seen.set(WorkloadRoutingDataSource.current()));
+
+        assertEquals(Workload.DEFAULT, seen.get());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> ObjectProvider<T> provider(T value) {
+        ObjectProvider<T> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(value);
+        return provider;
+    }
+}
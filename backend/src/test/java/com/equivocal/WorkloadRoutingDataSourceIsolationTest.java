@@ -0,0 +1,88 @@
+package com.equivocal;
+
+import com.equivocal.controller.AdminStatsController;
+import com.equivocal.controller.AuthController;
+import com.equivocal.controller.ChatSessionController;
+import com.equivocal.datasource.Workload;
+import com.equivocal.datasource.WorkloadPoolFilter;
+import com.equivocal.datasource.WorkloadRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.method.HandlerMethod;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+class WorkloadRoutingDataSourceIsolationTest {
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        WorkloadRoutingDataSource.restore(null);
+        pools.forEach(HikariDataSource::close);
+    }
+
+    @Test
+    void exhaustedAdminPool_doesNotBlockAuthOrChat() throws Exception {
+        Map<Workload, DataSource> targets = new EnumMap<>(Workload.class);
+        for (Workload workload : Workload.values()) {
+            targets.put(workload, pool(workload));
+        }
+        WorkloadRoutingDataSource dataSource = new WorkloadRoutingDataSource(targets);
+
+        Workload previous = WorkloadRoutingDataSource.bind(Workload.ADMIN);
+        try (Connection heavyAdminQuery = dataSource.getConnection()) {
+            assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+
+            WorkloadRoutingDataSource.bind(Workload.AUTH);
+            try (Connection login = dataSource.getConnection()) {
+                assertEquals("jdbc:h2:mem:workload_auth", login.getMetaData().getURL());
+            }
+        } finally {
+            WorkloadRoutingDataSource.restore(previous);
+        }
+
+        // 未绑定的线程使用默认的 chat 连接池
+        try (Connection chat = dataSource.getConnection()) {
+            assertEquals("jdbc:h2:mem:workload_chat", chat.getMetaData().getURL());
+        }
+    }
+
+    @Test
+    void filter_resolvesWorkloadFromControllerAnnotation() throws Exception {
+        assertEquals(Workload.AUTH, WorkloadPoolFilter.workloadOf(handler(AuthController.class)));
+        assertEquals(Workload.ADMIN, WorkloadPoolFilter.workloadOf(handler(AdminStatsController.class)));
+        assertEquals(Workload.CHAT, WorkloadPoolFilter.workloadOf(handler(ChatSessionController.class)));
+
+        Runnable task = WorkloadRoutingDataSource.bound(Workload.ADMIN,
+                () -> assertEquals(Workload.ADMIN, WorkloadRoutingDataSource.current()));
+        task.run();
+        assertEquals(Workload.DEFAULT, WorkloadRoutingDataSource.current());
+    }
+
+    private HikariDataSource pool(Workload workload) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl("jdbc:h2:mem:workload_" + workload.getKey() + ";DB_CLOSE_DELAY=-1");
+        pool.setUsername("sa");
+        pool.setPoolName("workload-" + workload.getKey());
+        pool.setMaximumPoolSize(1);
+        pool.setConnectionTimeout(250);
+        pools.add(pool);
+        return pool;
+    }
+
+    private static HandlerMethod handler(Class<?> controller) throws Exception {
+        return new HandlerMethod(mock(controller), Object.class.getMethod("toString"));
+    }
+}
@@ -0,0 +1,32 @@
+package com.equivocal.support;
+
+import com.equivocal.metrics.ConnectionHoldProfiler;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 测试断言：连接占用期间不得发生远程调用 / 密码哈希，且占用时长不超过预算。
+ */
+public final class ConnectionHoldAssertions {
+
+    private ConnectionHoldAssertions() {
+    }
+
+    public static void assertNoSlowOperationsWhileHoldingConnection(ConnectionHoldProfiler profiler) {
+        List<ConnectionHoldProfiler.LeaseRecord> violations = profiler.getRecentViolations();
+        if (!violations.isEmpty()) {
+            throw new AssertionError("connection held across slow operations: " + violations);
+        }
+    }
+
+    public static void assertMaxHoldMillis(ConnectionHoldProfiler profiler, String endpoint, long maxHoldMillis) {
+        List<ConnectionHoldProfiler.LeaseRecord> tooLong = profiler.getRecentLeases().stream()
+                .filter(record -> endpoint == null || endpoint.equals(record.getEndpoint()))
+                .filter(record -> record.getHoldMillis() > maxHoldMillis)
+                .collect(Collectors.toList());
+        if (!tooLong.isEmpty()) {
+            throw new AssertionError("connection held longer than " + maxHoldMillis + "ms: " + tooLong);
+        }
+    }
+}
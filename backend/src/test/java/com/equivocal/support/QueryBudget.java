@@ -0,0 +1,48 @@
+package com.equivocal.support;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 测试断言：查询条数预算与 N+1 检测。
+ *
+ * 同一条 SQL 在一次请求内被执行多次，通常意味着在循环里逐条查询，应改为一次 IN 查询或 JOIN FETCH。
+ * 计数来自 {@link SqlStatementRecorder} 在 JDBC 层记录的真实 SQL 文本（预编译语句不含绑定参数，
+ * 逐条查询即表现为相同文本重复出现），配合 {@link SqlRecordingJpaTestConfig} 在 @DataJpaTest 中使用。
+ */
+public final class QueryBudget {
+
+    private QueryBudget() {
+    }
+
+    public static void assertStatementBudget(SqlStatementRecorder recorder, int maxStatements) {
+        assertBudget(recorder.getStatements(), maxStatements, "SQL statements");
+    }
+
+    public static void assertNoRepeatedStatements(SqlStatementRecorder recorder) {
+        assertNoRepeats(recorder.getStatements(), "SQL statement");
+    }
+
+    private static void assertBudget(List<String> executed, int max, String what) {
+        if (executed.size() > max) {
+            throw new AssertionError("expected at most " + max + " " + what + " but got "
+                    + executed.size() + ":\n  " + String.join("\n  ", executed));
+        }
+    }
+
+    private static void assertNoRepeats(List<String> executed, String what) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (String item : executed) {
+            counts.merge(item, 1, Integer::sum);
+        }
+        List<String> repeated = counts.entrySet().stream()
+                .filter(entry -> entry.getValue() > 1)
+                .map(entry -> entry.getValue() + "x " + entry.getKey())
+                .collect(Collectors.toList());
+        if (!repeated.isEmpty()) {
+            throw new AssertionError("repeated " + what + " (possible N+1):\n  " + String.join("\n  ", repeated));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.equivocal.support;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+
+/**
+ * 配合 @DataJpaTest 使用：把测试用的内存 H2 数据源包装成 {@link SqlStatementRecorder}，
+ * 测试注入 DataSource 后通过 {@link #recorderOf(DataSource)} 取得记录器，按真实执行的 SQL 断言查询预算。
+ * （测试数据源由 FactoryBean 创建，按类型注入时仍解析为 DataSource。）
+ * 通过 @Import 引入而不标注 @TestConfiguration：压测 profile 的类路径包含测试类，避免被组件扫描进应用。
+ */
+public class SqlRecordingJpaTestConfig {
+
+    public static SqlStatementRecorder recorderOf(DataSource dataSource) {
+        if (!(dataSource instanceof SqlStatementRecorder)) {
+            throw new IllegalStateException("DataSource is not recorded; import SqlRecordingJpaTestConfig");
+        }
+        return (SqlStatementRecorder) dataSource;
+    }
+
+    @Bean
+    static BeanPostProcessor sqlStatementRecorderPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && !(bean instanceof SqlStatementRecorder)) {
+                    return new SqlStatementRecorder((DataSource) bean);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,93 @@
+package com.equivocal.support;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 测试用 DataSource 包装：按执行顺序记录所有 SQL 文本，供 {@link QueryBudget} 断言。
+ */
+public class SqlStatementRecorder extends DelegatingDataSource {
+
+    private final List<String> statements = Collections.synchronizedList(new ArrayList<String>());
+
+    public SqlStatementRecorder(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrapConnection(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrapConnection(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    public List<String> getStatements() {
+        synchronized (statements) {
+            return new ArrayList<String>(statements);
+        }
+    }
+
+    public void reset() {
+        statements.clear();
+    }
+
+    private Connection wrapConnection(Connection target) {
+        return (Connection) Proxy.newProxyInstance(
+                SqlStatementRecorder.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invokeTarget(target, method, args);
+                    if (result instanceof Statement) {
+                        String preparedSql = args != null && args.length > 0 && args[0] instanceof String
+                                ? (String) args[0] : null;
+                        return wrapStatement((Statement) result, method.getReturnType(), preparedSql);
+                    }
+                    return result;
+                });
+    }
+
+    private Object wrapStatement(Statement target, Class<?> declaredType, String preparedSql) {
+        Class<?> iface = Statement.class;
+        if (CallableStatement.class.isAssignableFrom(declaredType)) {
+            iface = CallableStatement.class;
+        } else if (PreparedStatement.class.isAssignableFrom(declaredType)) {
+            iface = PreparedStatement.class;
+        }
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getName().startsWith("execute")) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+                statements.add(normalize(sql));
+            }
+            return invokeTarget(target, method, args);
+        };
+        return Proxy.newProxyInstance(SqlStatementRecorder.class.getClassLoader(), new Class<?>[]{iface}, handler);
+    }
+
+    private static String normalize(String sql) {
+        return sql == null ? "<unknown>" : sql.trim().replaceAll("\\s+", " ");
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
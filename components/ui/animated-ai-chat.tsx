@@ -734,7 +734,6 @@ export function AnimatedAIChat({ sessionId, onSessionChange, onNewMessage }: Ani
     let contentType: "text" | "object_string" = "text";
 
     // 如果有附件，构建 object_string 格式的内容
-    const uploadedFileIds = attachments.map((att) => att.id);
     if (attachments.length > 0) {
       const contentParts: any[] = [];
 
@@ -790,25 +789,13 @@ export function AnimatedAIChat({ sessionId, onSessionChange, onNewMessage }: Ani
       configPayload.botId = botId;
     }
 
-    // 构建发送给后端的消息
-    const apiMessages = nextMessages.map((msg, index) => {
-      // 只有最后一条用户消息需要包含文件
-      if (index === nextMessages.length - 1 && msg.role === "user" && uploadedFileIds.length > 0) {
-        return {
-          role: msg.role,
-          content: messageContent,
-          content_type: contentType,
-        };
-      }
-      return {
-        role: msg.role,
-        content: msg.content,
-        content_type: "text" as const,
-      };
-    });
-
+    // 只发送本轮新消息（请求格式 v2），历史上下文由后端从数据库加载
     const payload: Record<string, unknown> = {
-      messages: apiMessages,
+      version: 2,
+      message: {
+        content: messageContent,
+        content_type: contentType,
+      },
       sessionId: sessionId || undefined,
     };
 